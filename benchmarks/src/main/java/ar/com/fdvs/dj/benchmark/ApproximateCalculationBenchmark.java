@@ -0,0 +1,115 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.benchmark;
+
+import ar.com.fdvs.dj.core.DynamicJasperHelper;
+import ar.com.fdvs.dj.core.PreparedDynamicReport;
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.domain.DJCalculation;
+import ar.com.fdvs.dj.domain.builders.FastReportBuilder;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.data.JRMapCollectionDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fill of a report with a single grand total over a column where almost every value is distinct, the
+ * exact DISTINCT_COUNT keeps all of them while the approximate calculations use constant memory
+ * (compare <code>gc.alloc.rate.norm</code> too).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ApproximateCalculationBenchmark {
+
+    public enum Calculation {
+        DISTINCT_COUNT(DJCalculation.DISTINCT_COUNT),
+        APPROXIMATE_DISTINCT_COUNT(DJCalculation.APPROXIMATE_DISTINCT_COUNT),
+        MEDIAN(DJCalculation.MEDIAN),
+        PERCENTILE_99(DJCalculation.PERCENTILE_99);
+
+        private final DJCalculation calculation;
+
+        Calculation(DJCalculation calculation) {
+            this.calculation = calculation;
+        }
+    }
+
+    @Param({"DISTINCT_COUNT", "APPROXIMATE_DISTINCT_COUNT", "MEDIAN", "PERCENTILE_99"})
+    public Calculation calculation;
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    private PreparedDynamicReport preparedReport;
+    private Map<String, Object> parameters;
+    private List<Map<String, ?>> data;
+
+    @Setup
+    public void prepare() throws Exception {
+        FastReportBuilder drb = new FastReportBuilder();
+        drb.addColumn("Id", "id", Long.class.getName(), 30);
+        drb.addGlobalFooterVariable(1, calculation.calculation, null);
+        drb.setUseFullPageWidth(true);
+
+        parameters = new HashMap<String, Object>();
+        preparedReport = DynamicJasperHelper.prepareReport(drb.build(), new ClassicLayoutManager(), parameters);
+
+        data = new ArrayList<Map<String, ?>>(rows);
+        for (int row = 0; row < rows; row++) {
+            Map<String, Object> values = new HashMap<String, Object>();
+            values.put("id", Long.valueOf(row * 7919L % (rows * 2L)));
+            data.add(values);
+        }
+    }
+
+    @Benchmark
+    public JasperPrint fill() throws Exception {
+        return preparedReport.fill(new JRMapCollectionDataSource(data), parameters);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.benchmark;
+
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.test.BaseDjReportTest;
+import ar.com.fdvs.dj.test.ChartReportTest;
+import ar.com.fdvs.dj.test.FastReportTest;
+import ar.com.fdvs.dj.test.GroupsReportTest;
+import ar.com.fdvs.dj.test.crosstab.CrosstabReportTest;
+import ar.com.fdvs.dj.test.subreport.SubReportBuilderTest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The report definitions measured, taken from the functional tests so the benchmarks follow them as they evolve.
+ */
+public enum BenchmarkReport {
+
+    FAST {
+        BaseDjReportTest newTest() {
+            return new FastReportTest();
+        }
+    },
+
+    GROUPS {
+        BaseDjReportTest newTest() {
+            return new GroupsReportTest();
+        }
+    },
+
+    CHART {
+        BaseDjReportTest newTest() {
+            return new ChartReportTest();
+        }
+    },
+
+    CROSSTAB {
+        BaseDjReportTest newTest() {
+            return new CrosstabReportTest();
+        }
+    },
+
+    SUBREPORT {
+        BaseDjReportTest newTest() {
+            return new SubReportBuilderTest();
+        }
+    };
+
+    abstract BaseDjReportTest newTest();
+
+    /**
+     * A new definition of the report and the parameters it needs (i.e. the crosstab and subreport datasources)
+     */
+    public Definition build() throws Exception {
+        BaseDjReportTest test = newTest();
+        DynamicReport dr = test.buildReport();
+        //noinspection unchecked
+        return new Definition(dr, new HashMap<String, Object>(test.getParams()));
+    }
+
+    public static class Definition {
+        private final DynamicReport dynamicReport;
+        private final Map<String, Object> parameters;
+
+        Definition(DynamicReport dynamicReport, Map<String, Object> parameters) {
+            this.dynamicReport = dynamicReport;
+            this.parameters = parameters;
+        }
+
+        public DynamicReport getDynamicReport() {
+            return dynamicReport;
+        }
+
+        public Map<String, Object> getParameters() {
+            return parameters;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+package ar.com.fdvs.dj.benchmark;
+
+import ar.com.fdvs.dj.core.DynamicJasperHelper;
+import ar.com.fdvs.dj.core.PreparedDynamicReport;
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.domain.Style;
+import ar.com.fdvs.dj.domain.builders.ColumnBuilder;
+import ar.com.fdvs.dj.domain.builders.FastReportBuilder;
+import ar.com.fdvs.dj.domain.entities.conditionalStyle.ConditionStyleExpression;
+import ar.com.fdvs.dj.domain.entities.conditionalStyle.ConditionalStyle;
+import ar.com.fdvs.dj.domain.entities.conditionalStyle.StatusLightCondition;
+import ar.com.fdvs.dj.domain.entities.conditionalStyle.StyleRangeTable;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.data.JRMapCollectionDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fill of a report with three colored ranges on each of its columns: status lights (inlined comparisons), a
+ * {@link StyleRangeTable} (one search per record) and the same status lights as a subclass, which is invoked
+ * through the parameters map as any other condition.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ConditionalStyleBenchmark {
+
+    public enum Conditions {
+        STATUS_LIGHT,
+        RANGE_TABLE,
+        INVOKED
+    }
+
+    /**
+     * Not inlined, see {@link ConditionStyleExpression#getInlineText(String)}
+     */
+    public static class InvokedStatusLightCondition extends StatusLightCondition {
+        public InvokedStatusLightCondition(Double min, Double max) {
+            super(min, max);
+        }
+    }
+
+    @Param({"STATUS_LIGHT", "RANGE_TABLE", "INVOKED"})
+    public Conditions conditions;
+
+    @Param({"10"})
+    public int columns;
+
+    @Param({"100000"})
+    public int rows;
+
+    private PreparedDynamicReport preparedReport;
+    private Map<String, Object> parameters;
+    private List<Map<String, ?>> data;
+
+    private static Style textColor(Color color) {
+        Style style = new Style();
+        style.setTextColor(color);
+        return style;
+    }
+
+    private List<ConditionalStyle> createConditionalStyles() {
+        if (conditions == Conditions.RANGE_TABLE) {
+            return new StyleRangeTable()
+                    .addRange(Double.NEGATIVE_INFINITY, textColor(Color.RED))
+                    .addRange(300d, textColor(Color.YELLOW))
+                    .addRange(700d, textColor(Color.GREEN))
+                    .getConditionalStyles();
+        }
+
+        List<ConditionalStyle> conditionalStyles = new ArrayList<ConditionalStyle>();
+        if (conditions == Conditions.STATUS_LIGHT) {
+            conditionalStyles.add(new ConditionalStyle(new StatusLightCondition(300d, null), textColor(Color.RED)));
+            conditionalStyles.add(new ConditionalStyle(new StatusLightCondition(300d, 700d), textColor(Color.YELLOW)));
+            conditionalStyles.add(new ConditionalStyle(new StatusLightCondition(null, 700d), textColor(Color.GREEN)));
+        } else {
+            conditionalStyles.add(new ConditionalStyle(new InvokedStatusLightCondition(300d, null), textColor(Color.RED)));
+            conditionalStyles.add(new ConditionalStyle(new InvokedStatusLightCondition(300d, 700d), textColor(Color.YELLOW)));
+            conditionalStyles.add(new ConditionalStyle(new InvokedStatusLightCondition(null, 700d), textColor(Color.GREEN)));
+        }
+        return conditionalStyles;
+    }
+
+    @Setup
+    public void prepare() throws Exception {
+        FastReportBuilder drb = new FastReportBuilder();
+        for (int column = 0; column < columns; column++) {
+            drb.addColumn(ColumnBuilder.getNew()
+                    .setColumnProperty("value" + column, Integer.class.getName())
+                    .setTitle("Value " + column).setWidth(40)
+                    .addConditionalStyles(createConditionalStyles())
+                    .build());
+        }
+        drb.setUseFullPageWidth(true);
+
+        parameters = new HashMap<String, Object>();
+        preparedReport = DynamicJasperHelper.prepareReport(drb.build(), new ClassicLayoutManager(), parameters);
+
+        data = new ArrayList<Map<String, ?>>(rows);
+        for (int row = 0; row < rows; row++) {
+            Map<String, Object> values = new HashMap<String, Object>();
+            for (int column = 0; column < columns; column++)
+                values.put("value" + column, Integer.valueOf((row * 31 + column * 17) % 1000));
+            data.add(values);
+        }
+    }
+
+    @Benchmark
+    public JasperPrint fill() throws Exception {
+        return preparedReport.fill(new JRMapCollectionDataSource(data), parameters);
+    }
+}
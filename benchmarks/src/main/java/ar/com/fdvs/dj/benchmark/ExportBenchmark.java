@@ -0,0 +1,105 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.benchmark;
+
+import ar.com.fdvs.dj.core.DJConstants;
+import ar.com.fdvs.dj.core.DynamicJasperHelper;
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.output.ReportWriterFactory;
+import ar.com.fdvs.dj.output.StreamingReportWriter;
+import net.sf.jasperreports.engine.JRExporterParameter;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export of a filled report with each of the exporters DJ registers. The output is discarded, only its size is kept.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ExportBenchmark {
+
+    @Param({"FAST", "GROUPS", "CHART", "CROSSTAB", "SUBREPORT"})
+    public BenchmarkReport report;
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    @Param({DJConstants.FORMAT_PDF, DJConstants.FORMAT_XLS, DJConstants.FORMAT_CSV, DJConstants.FORMAT_HTML, DJConstants.FORMAT_RTF, DJConstants.FORMAT_XML})
+    public String format;
+
+    private JasperPrint jasperPrint;
+
+    @Setup
+    public void fill() throws Exception {
+        BenchmarkReport.Definition definition = report.build();
+        jasperPrint = DynamicJasperHelper.generateJasperPrint(definition.getDynamicReport(), new ClassicLayoutManager(),
+                new JRBeanCollectionDataSource(new RepeatedRows(definition.getDynamicReport(), rows)), definition.getParameters());
+    }
+
+    @Benchmark
+    public long export() throws Exception {
+        StreamingReportWriter writer = (StreamingReportWriter) ReportWriterFactory.buildStreaming()
+                .getReportWriter(jasperPrint, format, new HashMap<JRExporterParameter, Object>());
+        CountingOutputStream output = new CountingOutputStream();
+        writer.writeTo(output);
+        return output.count;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        public void write(int b) {
+            count++;
+        }
+
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
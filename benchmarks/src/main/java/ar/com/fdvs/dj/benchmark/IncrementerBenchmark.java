@@ -0,0 +1,135 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.benchmark;
+
+import ar.com.fdvs.dj.core.DynamicJasperHelper;
+import ar.com.fdvs.dj.core.PreparedDynamicReport;
+import ar.com.fdvs.dj.core.calculation.PrimitiveIncrementerFactory;
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.domain.DJCalculation;
+import ar.com.fdvs.dj.domain.builders.FastReportBuilder;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.data.JRMapCollectionDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fill of a report whose cost is dominated by SUM totals: one group, every numeric column has a
+ * footer variable in the group and a global one. Compares the JasperReports default incrementers
+ * with the ones from {@link PrimitiveIncrementerFactory}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IncrementerBenchmark {
+
+    public enum ValueClass {
+        DOUBLE, BIG_DECIMAL
+    }
+
+    @Param({"true", "false"})
+    public boolean primitiveIncrementers;
+
+    @Param({"10", "50"})
+    public int totals;
+
+    @Param({"DOUBLE", "BIG_DECIMAL"})
+    public ValueClass valueClass;
+
+    @Param({"100000"})
+    public int rows;
+
+    private PreparedDynamicReport preparedReport;
+    private Map<String, Object> parameters;
+    private List<Map<String, ?>> data;
+
+    @Setup(Level.Trial)
+    public void prepare() throws Exception {
+        //the factory is chosen when the variables are registered
+        PrimitiveIncrementerFactory.setEnabled(primitiveIncrementers);
+
+        String className = valueClass == ValueClass.DOUBLE ? Double.class.getName() : BigDecimal.class.getName();
+        FastReportBuilder drb = new FastReportBuilder();
+        drb.addColumn("Group", "group", String.class.getName(), 30);
+        for (int i = 0; i < totals; i++)
+            drb.addColumn("Value " + i, "value" + i, className, 30);
+        drb.addGroups(1);
+        for (int column = 2; column <= totals + 1; column++) {
+            drb.addFooterVariable(1, column, DJCalculation.SUM, null);
+            drb.addGlobalFooterVariable(column, DJCalculation.SUM, null);
+        }
+        drb.setUseFullPageWidth(true);
+
+        parameters = new HashMap<String, Object>();
+        preparedReport = DynamicJasperHelper.prepareReport(drb.build(), new ClassicLayoutManager(), parameters);
+
+        data = new ArrayList<Map<String, ?>>(rows);
+        for (int row = 0; row < rows; row++) {
+            Map<String, Object> values = new HashMap<String, Object>();
+            values.put("group", "Group " + (row / 1000));
+            for (int i = 0; i < totals; i++) {
+                long cents = (row * 31L + i * 7L) % 100000L;
+                values.put("value" + i, valueClass == ValueClass.DOUBLE ? (Object) Double.valueOf(cents / 100d) : BigDecimal.valueOf(cents, 2));
+            }
+            data.add(values);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void restore() {
+        PrimitiveIncrementerFactory.setEnabled(true);
+    }
+
+    @Benchmark
+    public JasperPrint fill() throws Exception {
+        return preparedReport.fill(new JRMapCollectionDataSource(data), parameters);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.benchmark;
+
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.test.TestRepositoryProducts;
+import ar.com.fdvs.dj.util.SortUtils;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Any number of rows built by repeating the test products, sorted by the report columns so groups break as in
+ * the functional tests. Rows are not copied, memory usage does not depend on the size.
+ */
+public class RepeatedRows extends AbstractList<Object> implements RandomAccess {
+
+    private final List<?> products;
+    private final int size;
+
+    public RepeatedRows(DynamicReport dr, int size) {
+        this.products = SortUtils.sortCollection(TestRepositoryProducts.getDummyCollection(), dr.getColumns());
+        this.size = size;
+    }
+
+    public Object get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        //every product is repeated in a block, so the order is kept
+        return products.get((int) ((long) index * products.size() / size));
+    }
+
+    public int size() {
+        return size;
+    }
+}
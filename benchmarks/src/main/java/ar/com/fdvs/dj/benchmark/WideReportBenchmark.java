@@ -0,0 +1,95 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+
+package ar.com.fdvs.dj.benchmark;
+
+import ar.com.fdvs.dj.core.DynamicJasperHelper;
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.domain.DJCalculation;
+import ar.com.fdvs.dj.domain.DynamicJasperDesign;
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.domain.builders.FastReportBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Design and layout of synthetic wide reports: the first columns are the groups, every other column
+ * has a footer variable in each group. Shows how the layout scales with the number of columns.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WideReportBenchmark {
+
+    @Param({"100", "1000"})
+    public int columns;
+
+    @Param({"1", "12"})
+    public int groups;
+
+    private DynamicReport dynamicReport;
+
+    @Setup(Level.Invocation)
+    public void buildReport() throws Exception {
+        FastReportBuilder drb = new FastReportBuilder();
+        for (int i = 0; i < columns; i++) {
+            if (i < groups)
+                drb.addColumn("Group " + i, "group" + i, String.class.getName(), 30);
+            else
+                drb.addColumn("Column " + i, "column" + i, Long.class.getName(), 30);
+        }
+        drb.addGroups(groups);
+        for (int group = 1; group <= groups; group++) {
+            for (int column = groups + 1; column <= columns; column++)
+                drb.addFooterVariable(group, column, DJCalculation.SUM, null);
+        }
+        drb.setPrintColumnNames(true);
+        dynamicReport = drb.build();
+    }
+
+    @Benchmark
+    public DynamicJasperDesign design() throws Exception {
+        return DynamicJasperHelper.generateJasperDesign(dynamicReport, new ClassicLayoutManager(), new HashMap<String, Object>());
+    }
+}
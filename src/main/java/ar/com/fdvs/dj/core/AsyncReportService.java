@@ -0,0 +1,423 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import ar.com.fdvs.dj.core.layout.LayoutManager;
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.output.ReportWriter;
+import ar.com.fdvs.dj.output.ReportWriterFactory;
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRExporterParameter;
+import net.sf.jasperreports.engine.JasperPrint;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Generates reports in the background, so the calling threads (i.e. web request threads) are not held during
+ * the design, compilation, fill and export of the reports.<br>
+ * <br>
+ * Each report belongs to a tenant (any string identifying a customer, an application, etc.). At most
+ * {@link #getMaxConcurrent(String)} reports of the same tenant run at the same time, the rest wait in the tenant
+ * queue without holding a thread, so a tenant requesting many big reports does not starve the others.<br>
+ * <br>
+ * Cancelling a returned future (<code>future.cancel(true)</code>) removes the report from the queue, or interrupts
+ * the thread running it: JasperReports stops the fill at the next row.<br>
+ * <br>
+ * By default reports run on virtual threads when the JVM supports them (Java 21+), otherwise on a pool of daemon
+ * threads created on demand. Usage:
+ * <pre>
+ * AsyncReportService service = new AsyncReportService();
+ * service.setMaxConcurrent(2); //per tenant
+ * CompletableFuture&lt;JasperPrint&gt; future = service.generateJasperPrint(customerId, dr, new ClassicLayoutManager(), ds, params);
+ * </pre>
+ */
+public class AsyncReportService {
+
+	private static final Log log = LogFactory.getLog(AsyncReportService.class);
+
+	public static final String DEFAULT_TENANT = "default";
+
+	public static final int DEFAULT_MAX_CONCURRENT = 4;
+
+	private final Executor executor;
+	private final ExecutorService ownExecutor;
+	private final boolean virtualThreads;
+
+	private volatile int maxConcurrent = DEFAULT_MAX_CONCURRENT;
+	private final ConcurrentMap<String, Integer> tenantMaxConcurrent = new ConcurrentHashMap<String, Integer>();
+
+	//guarded by this
+	private final Map<String, TenantQueue> tenants = new HashMap<String, TenantQueue>();
+
+	private final AtomicLong completedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final AtomicLong cancelledCount = new AtomicLong();
+
+	/**
+	 * Runs the reports on virtual threads if available, or on daemon threads created on demand
+	 */
+	public AsyncReportService() {
+		ExecutorService virtualThreadsExecutor = createVirtualThreadsExecutor();
+		this.virtualThreads = virtualThreadsExecutor != null;
+		this.ownExecutor = virtualThreads ? virtualThreadsExecutor : Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "dj-report-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.executor = ownExecutor;
+	}
+
+	/**
+	 * @param executor runs the reports, it is not shut down by {@link #shutdown()}. Its threads are taken only by
+	 *                 running reports, never by queued ones.
+	 */
+	public AsyncReportService(Executor executor) {
+		if (executor == null)
+			throw new IllegalArgumentException("executor must not be null");
+		this.executor = executor;
+		this.ownExecutor = null;
+		this.virtualThreads = false;
+	}
+
+	/**
+	 * Executors.newVirtualThreadPerTaskExecutor() exists since Java 21, DJ is built for older versions
+	 */
+	private static ExecutorService createVirtualThreadsExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (Exception e) {
+			log.warn("Could not create a virtual threads executor, using platform threads: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Designs, compiles and fills the report in the background, see {@link DynamicJasperHelper#generateJasperPrint(DynamicReport, LayoutManager, JRDataSource, Map)}
+	 */
+	public CompletableFuture<JasperPrint> generateJasperPrint(String tenant, final DynamicReport dr, final LayoutManager layoutManager, final JRDataSource ds, final Map<String, Object> parameters) {
+		return submit(tenant, new Callable<JasperPrint>() {
+			public JasperPrint call() throws Exception {
+				return DynamicJasperHelper.generateJasperPrint(dr, layoutManager, ds, parameters == null ? new HashMap<String, Object>() : parameters);
+			}
+		});
+	}
+
+	public CompletableFuture<JasperPrint> generateJasperPrint(String tenant, DynamicReport dr, LayoutManager layoutManager, Collection collection, Map<String, Object> parameters) {
+		return generateJasperPrint(tenant, dr, layoutManager, DynamicJasperHelper.createCollectionDataSource(dr, collection), parameters);
+	}
+
+	/**
+	 * Fills an already compiled report in the background
+	 */
+	public CompletableFuture<JasperPrint> fill(String tenant, final PreparedDynamicReport preparedReport, final JRDataSource ds, final Map<String, Object> parameters) {
+		return submit(tenant, new Callable<JasperPrint>() {
+			public JasperPrint call() throws Exception {
+				return preparedReport.fill(ds, parameters);
+			}
+		});
+	}
+
+	/**
+	 * Generates the JasperPrint in the background and creates the ReportWriter for the given format. The export
+	 * itself happens when the writer is used, to export in the background too, use {@link #submit(String, Callable)}
+	 * with a task that writes the report.
+	 */
+	public CompletableFuture<ReportWriter> generateReportWriter(String tenant, final DynamicReport dr, final LayoutManager layoutManager, final JRDataSource ds,
+			final Map<String, Object> parameters, final String format, final Map<JRExporterParameter, Object> exporterParameters) {
+		return submit(tenant, new Callable<ReportWriter>() {
+			public ReportWriter call() throws Exception {
+				JasperPrint jasperPrint = DynamicJasperHelper.generateJasperPrint(dr, layoutManager, ds, parameters == null ? new HashMap<String, Object>() : parameters);
+				Map<JRExporterParameter, Object> exporterParams = exporterParameters == null ? new HashMap<JRExporterParameter, Object>() : exporterParameters;
+				return ReportWriterFactory.getInstance().getReportWriter(jasperPrint, format, exporterParams);
+			}
+		});
+	}
+
+	/**
+	 * Runs any task with the concurrency limits of the tenant
+	 *
+	 * @param tenant null for the {@link #DEFAULT_TENANT}
+	 * @param task
+	 * @return completes with the result of the task, or exceptionally with the exception it throws
+	 */
+	public <T> CompletableFuture<T> submit(String tenant, Callable<T> task) {
+		if (task == null)
+			throw new IllegalArgumentException("task must not be null");
+		final ReportTask<T> reportTask = new ReportTask<T>(tenant == null ? DEFAULT_TENANT : tenant, task);
+		reportTask.future.whenComplete(new BiConsumer<T, Throwable>() {
+			public void accept(T result, Throwable throwable) {
+				if (reportTask.future.isCancelled())
+					cancel(reportTask);
+			}
+		});
+
+		boolean start;
+		synchronized (this) {
+			TenantQueue queue = tenants.get(reportTask.tenant);
+			if (queue == null) {
+				queue = new TenantQueue();
+				tenants.put(reportTask.tenant, queue);
+			}
+			start = queue.running < getMaxConcurrent(reportTask.tenant);
+			if (start)
+				queue.running++;
+			else
+				queue.pending.add(reportTask);
+		}
+		if (start)
+			execute(reportTask);
+		else if (log.isDebugEnabled())
+			log.debug("report queued for tenant " + reportTask.tenant);
+		return reportTask.future;
+	}
+
+	private void execute(ReportTask<?> reportTask) {
+		try {
+			executor.execute(reportTask);
+		} catch (RejectedExecutionException e) {
+			reportTask.future.completeExceptionally(e);
+			finished(reportTask);
+		}
+	}
+
+	private void finished(ReportTask<?> reportTask) {
+		ReportTask<?> next;
+		synchronized (this) {
+			TenantQueue queue = tenants.get(reportTask.tenant);
+			queue.running--;
+			next = queue.pending.poll();
+			if (next != null)
+				queue.running++;
+			else if (queue.running == 0)
+				tenants.remove(reportTask.tenant);
+		}
+		if (next != null)
+			execute(next);
+	}
+
+	private void cancel(ReportTask<?> reportTask) {
+		boolean wasQueued;
+		synchronized (this) {
+			TenantQueue queue = tenants.get(reportTask.tenant);
+			wasQueued = queue != null && queue.pending.remove(reportTask);
+			if (wasQueued && queue.running == 0 && queue.pending.isEmpty())
+				tenants.remove(reportTask.tenant);
+		}
+		cancelledCount.incrementAndGet();
+		if (!wasQueued)
+			reportTask.interrupt();
+	}
+
+	/**
+	 * How many reports of the tenant can run at the same time, unless set with {@link #setMaxConcurrent(String, int)}
+	 * @param maxConcurrent
+	 */
+	public void setMaxConcurrent(int maxConcurrent) {
+		if (maxConcurrent < 1)
+			throw new IllegalArgumentException("maxConcurrent must be greater than 0");
+		this.maxConcurrent = maxConcurrent;
+	}
+
+	public int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	/**
+	 * @param tenant
+	 * @param maxConcurrent how many reports of the tenant can run at the same time
+	 */
+	public void setMaxConcurrent(String tenant, int maxConcurrent) {
+		if (maxConcurrent < 1)
+			throw new IllegalArgumentException("maxConcurrent must be greater than 0");
+		tenantMaxConcurrent.put(tenant, maxConcurrent);
+	}
+
+	public int getMaxConcurrent(String tenant) {
+		Integer max = tenantMaxConcurrent.get(tenant);
+		return max != null ? max : maxConcurrent;
+	}
+
+	/**
+	 * @return reports waiting for a slot, of all the tenants
+	 */
+	public synchronized int getQueuedCount() {
+		int count = 0;
+		for (TenantQueue queue : tenants.values())
+			count += queue.pending.size();
+		return count;
+	}
+
+	public synchronized int getQueuedCount(String tenant) {
+		TenantQueue queue = tenants.get(tenant);
+		return queue == null ? 0 : queue.pending.size();
+	}
+
+	/**
+	 * @return reports being generated, of all the tenants
+	 */
+	public synchronized int getRunningCount() {
+		int count = 0;
+		for (TenantQueue queue : tenants.values())
+			count += queue.running;
+		return count;
+	}
+
+	public synchronized int getRunningCount(String tenant) {
+		TenantQueue queue = tenants.get(tenant);
+		return queue == null ? 0 : queue.running;
+	}
+
+	/**
+	 * @return the number of queued reports of every tenant that has reports running or queued, sorted by tenant
+	 */
+	public synchronized Map<String, Integer> getQueueDepths() {
+		Map<String, Integer> depths = new TreeMap<String, Integer>();
+		for (Map.Entry<String, TenantQueue> entry : tenants.entrySet())
+			depths.put(entry.getKey(), entry.getValue().pending.size());
+		return Collections.unmodifiableMap(depths);
+	}
+
+	public long getCompletedCount() {
+		return completedCount.get();
+	}
+
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	public long getCancelledCount() {
+		return cancelledCount.get();
+	}
+
+	/**
+	 * @return true if the reports run on virtual threads
+	 */
+	public boolean isUsingVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * Cancels the queued reports and interrupts the running ones. The executor is shut down only if it was
+	 * created by this service.
+	 */
+	public void shutdown() {
+		List<ReportTask<?>> queued = new ArrayList<ReportTask<?>>();
+		synchronized (this) {
+			for (TenantQueue queue : tenants.values())
+				queued.addAll(queue.pending);
+		}
+		for (ReportTask<?> reportTask : queued)
+			reportTask.future.cancel(true);
+		if (ownExecutor != null)
+			ownExecutor.shutdownNow();
+	}
+
+	private static class TenantQueue {
+		private int running;
+		private final Deque<ReportTask<?>> pending = new ArrayDeque<ReportTask<?>>();
+	}
+
+	private class ReportTask<T> implements Runnable {
+		private final String tenant;
+		private final Callable<T> callable;
+		private final CompletableFuture<T> future = new CompletableFuture<T>();
+
+		//guarded by this
+		private Thread runner;
+
+		ReportTask(String tenant, Callable<T> callable) {
+			this.tenant = tenant;
+			this.callable = callable;
+		}
+
+		public void run() {
+			try {
+				synchronized (this) {
+					if (future.isDone())
+						return;
+					runner = Thread.currentThread();
+				}
+				T result = callable.call();
+				//counted before completing, so callers see the counter updated as soon as they get the result
+				completedCount.incrementAndGet();
+				if (!future.complete(result))
+					completedCount.decrementAndGet();
+			} catch (Throwable e) {
+				failedCount.incrementAndGet();
+				if (future.completeExceptionally(e))
+					log.warn("Error generating report for tenant " + tenant + ": " + e.getMessage(), e);
+				else
+					failedCount.decrementAndGet();
+			} finally {
+				synchronized (this) {
+					runner = null;
+					//a cancellation may have interrupted this thread, it must not leak to the next task
+					Thread.interrupted();
+				}
+				finished(this);
+			}
+		}
+
+		synchronized void interrupt() {
+			if (runner != null)
+				runner.interrupt();
+		}
+	}
+}
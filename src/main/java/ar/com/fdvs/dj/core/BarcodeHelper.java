@@ -29,7 +29,9 @@
 
 package ar.com.fdvs.dj.core;
 
+import net.sf.jasperreports.renderers.Renderable;
 import net.sourceforge.barbecue.Barcode;
+import net.sourceforge.barbecue.BarcodeException;
 import net.sourceforge.barbecue.BarcodeFactory;
 import net.sourceforge.barbecue.BarcodeImageHandler;
 import net.sourceforge.barbecue.linear.code39.Code39Barcode;
@@ -38,15 +40,52 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+/**
+ * Creates the barcodes shown by {@link ar.com.fdvs.dj.domain.entities.columns.BarCodeColumn}.<br>
+ * All methods are thread safe. Rendered barcodes are kept in a bounded cache, so repeated codes (very common
+ * in labels) are rendered only once, see {@link #setCacheSize(int)}
+ */
 public class BarcodeHelper implements BarcodeTypes {
 	/**
 	 * Logger for this class
 	 */
 	private static final Log logger = LogFactory.getLog(BarcodeHelper.class);
 
-	private static Barcode bc = null;
+	public static final int DEFAULT_CACHE_SIZE = 500;
+
+	private static volatile int cacheSize = DEFAULT_CACHE_SIZE;
+
+	private static final Map<BarcodeKey, Object> cache = Collections.synchronizedMap(new LinkedHashMap<BarcodeKey, Object>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<BarcodeKey, Object> eldest) {
+			return size() > cacheSize;
+		}
+	});
+
+	/**
+	 * Max number of rendered barcodes kept in memory, 0 disables the cache.
+	 * @param size
+	 */
+	public static void setCacheSize(int size) {
+		if (size < 0)
+			throw new IllegalArgumentException("size must not be negative: " + size);
+		cacheSize = size;
+		if (size == 0)
+			cache.clear();
+	}
 
+	public static int getCacheSize() {
+		return cacheSize;
+	}
+
+	public static void clearCache() {
+		cache.clear();
+	}
 
 	public static BufferedImage getBarcodeImage(int type, Object aText, boolean showText, boolean checkSum)
     {
@@ -55,114 +94,166 @@ public class BarcodeHelper implements BarcodeTypes {
 
     public static BufferedImage getBarcodeImage(int type, Object aText, boolean showText, boolean checkSum, Object applicationIdentifier, int width, int height)
     {
+        return (BufferedImage) getBarcode(false, type, aText, showText, checkSum, applicationIdentifier, width, height);
+    }
+
+	/**
+	 * Same as {@link #getBarcodeImage(int, Object, boolean, boolean, Object, int, int)} but the barcode is drawn
+	 * when the report is exported instead of being rasterized. Exporters like PDF keep the barcode as vector graphics,
+	 * which is sharper and much smaller than an image.
+	 */
+	public static Renderable getBarcodeRenderer(int type, Object aText, boolean showText, boolean checkSum, Object applicationIdentifier, int width, int height)
+	{
+		return (Renderable) getBarcode(true, type, aText, showText, checkSum, applicationIdentifier, width, height);
+	}
+
+	private static Object getBarcode(boolean vector, int type, Object aText, boolean showText, boolean checkSum, Object applicationIdentifier, int width, int height)
+	{
+		String text;
+		if (aText instanceof String)
+			text = ((String) (aText));
+		else text = aText.toString();
+
+		if (applicationIdentifier == null)
+			applicationIdentifier = "";
 
-        String text;
-        if (aText instanceof String)
-        	text = ((String) (aText));
-        else text = aText.toString();
-
-
-        try {
-	        switch (type) {
-			case _2_OF_7:
-				bc = BarcodeFactory.create2of7(text);
-				break;
-			case _3_OF_9:
-				bc = BarcodeFactory.create3of9(text, checkSum);
-				break;
-			case BOOKLAND:
-				bc = BarcodeFactory.createBookland(text);
-				break;
-			case CODABAR:
-				bc = BarcodeFactory.createCodabar(text);
-				break;
-			case CODE_128:
-				bc = BarcodeFactory.createCode128(text);
-				break;
-			case CODE_128A:
-				bc = BarcodeFactory.createCode128A(text);
-				break;
-			case CODE_128B:
-				bc = BarcodeFactory.createCode128B(text);
-				break;
-			case CODE_128C:
-				bc = BarcodeFactory.createCode128B(text);
-				break;
-			case CODE_39:
-				bc = BarcodeFactory.createCode39(text, checkSum);
-				break;
-			case EAN128:
-				bc = BarcodeFactory.createEAN128(text);
-				break;
-			case EAN13:
-				bc = BarcodeFactory.createEAN13(text);
-				break;
-			case GLOBAL_TRADE_IT_NUMBER:
-				bc = BarcodeFactory.createGlobalTradeItemNumber(text);
-				break;
-			case INT_2_OF_5:
-				bc = BarcodeFactory.createInt2of5(text, checkSum);
-				break;
-			case MONARCH:
-				bc = BarcodeFactory.createMonarch(text);
-				break;
-			case NW7:
-				bc = BarcodeFactory.createNW7(text);
-				break;
-			case PDF417:
-				bc = BarcodeFactory.createPDF417(text);
-				break;
-			case SCC14_SHIPPING_CODE:
-				bc = BarcodeFactory.createSCC14ShippingCode(text);
-				break;
-			case SHIPMENT_IDENTIFICATION_NUMBER:
-				bc = BarcodeFactory.createShipmentIdentificationNumber(text);
-				break;
-			case UCCEAN128_00:
-				bc = new UCCEAN128Barcode("00", text, checkSum);
-				break;
-			case STD_2_OF_5:
-				bc = BarcodeFactory.createStd2of5(text, checkSum);
-				break;
-			case UCCEAN128:
-				if (applicationIdentifier == null)
-					applicationIdentifier = "";
-				bc = new UCCEAN128Barcode(applicationIdentifier.toString(), text, checkSum);
-				break;
-			case UPCA:
-				bc = BarcodeFactory.createUPCA(text);
-				break;
-			case USD3:
-				bc = BarcodeFactory.createUSD3(text, checkSum);
-				break;
-			case USD4:
-				bc = BarcodeFactory.createUSD4(text);
-				break;
-			case USPS:
-				bc = BarcodeFactory.createUSPS(text);
-				break;
-			case CODE_39_EXTENDED:
-				bc = new Code39Barcode(text, checkSum, true);
-				break;
-
-			default:
-				break;
-			}
-	        if(width > 0)
-	        	bc.setBarWidth(width);
-	        if(height > 0)
-	        	bc.setBarHeight(height);
-	        bc.setDrawingText(showText);
-//	        bc.setResolution(96);
-	        return BarcodeImageHandler.getImage(bc);
-
-        } catch (Exception e) {
+		BarcodeKey key = new BarcodeKey(vector, type, text, showText, checkSum, applicationIdentifier.toString(), width, height);
+		Object barcode = cacheSize > 0 ? cache.get(key) : null;
+		if (barcode != null)
+			return barcode;
+
+		try {
+			Barcode bc = createBarcode(type, text, checkSum, applicationIdentifier.toString());
+			if(width > 0)
+				bc.setBarWidth(width);
+			if(height > 0)
+				bc.setBarHeight(height);
+			bc.setDrawingText(showText);
+//			bc.setResolution(96);
+			if (vector)
+				barcode = new BarcodeRenderer(bc);
+			else
+				barcode = BarcodeImageHandler.getImage(bc);
+
+		} catch (Exception e) {
 			logger.error("Error generating BarCode," + e.getMessage(),e);
+			return null;
 		}
-		return null;
-    }
 
+		if (cacheSize > 0)
+			cache.put(key, barcode);
+		return barcode;
+	}
+
+	/**
+	 * A new Barcode each time, they are not thread safe.
+	 */
+	private static Barcode createBarcode(int type, String text, boolean checkSum, String applicationIdentifier) throws BarcodeException {
+		switch (type) {
+		case _2_OF_7:
+			return BarcodeFactory.create2of7(text);
+		case _3_OF_9:
+			return BarcodeFactory.create3of9(text, checkSum);
+		case BOOKLAND:
+			return BarcodeFactory.createBookland(text);
+		case CODABAR:
+			return BarcodeFactory.createCodabar(text);
+		case CODE_128:
+			return BarcodeFactory.createCode128(text);
+		case CODE_128A:
+			return BarcodeFactory.createCode128A(text);
+		case CODE_128B:
+			return BarcodeFactory.createCode128B(text);
+		case CODE_128C:
+			return BarcodeFactory.createCode128B(text);
+		case CODE_39:
+			return BarcodeFactory.createCode39(text, checkSum);
+		case EAN128:
+			return BarcodeFactory.createEAN128(text);
+		case EAN13:
+			return BarcodeFactory.createEAN13(text);
+		case GLOBAL_TRADE_IT_NUMBER:
+			return BarcodeFactory.createGlobalTradeItemNumber(text);
+		case INT_2_OF_5:
+			return BarcodeFactory.createInt2of5(text, checkSum);
+		case MONARCH:
+			return BarcodeFactory.createMonarch(text);
+		case NW7:
+			return BarcodeFactory.createNW7(text);
+		case PDF417:
+			return BarcodeFactory.createPDF417(text);
+		case SCC14_SHIPPING_CODE:
+			return BarcodeFactory.createSCC14ShippingCode(text);
+		case SHIPMENT_IDENTIFICATION_NUMBER:
+			return BarcodeFactory.createShipmentIdentificationNumber(text);
+		case UCCEAN128_00:
+			return new UCCEAN128Barcode("00", text, checkSum);
+		case STD_2_OF_5:
+			return BarcodeFactory.createStd2of5(text, checkSum);
+		case UCCEAN128:
+			return new UCCEAN128Barcode(applicationIdentifier, text, checkSum);
+		case UPCA:
+			return BarcodeFactory.createUPCA(text);
+		case USD3:
+			return BarcodeFactory.createUSD3(text, checkSum);
+		case USD4:
+			return BarcodeFactory.createUSD4(text);
+		case USPS:
+			return BarcodeFactory.createUSPS(text);
+		case CODE_39_EXTENDED:
+			return new Code39Barcode(text, checkSum, true);
 
+		default:
+			throw new IllegalArgumentException("Unknown barcode type: " + type);
+		}
+	}
 
+	/**
+	 * Everything that changes the rendered barcode
+	 */
+	private static final class BarcodeKey {
+		private final boolean vector;
+		private final int type;
+		private final String text;
+		private final boolean showText;
+		private final boolean checkSum;
+		private final String applicationIdentifier;
+		private final int width;
+		private final int height;
+
+		BarcodeKey(boolean vector, int type, String text, boolean showText, boolean checkSum, String applicationIdentifier, int width, int height) {
+			this.vector = vector;
+			this.type = type;
+			this.text = text;
+			this.showText = showText;
+			this.checkSum = checkSum;
+			this.applicationIdentifier = applicationIdentifier;
+			this.width = width;
+			this.height = height;
+		}
+
+		public boolean equals(Object o) {
+			if (this == o)
+				return true;
+			if (!(o instanceof BarcodeKey))
+				return false;
+			BarcodeKey other = (BarcodeKey) o;
+			return vector == other.vector && type == other.type && showText == other.showText && checkSum == other.checkSum
+					&& width == other.width && height == other.height
+					&& text.equals(other.text) && applicationIdentifier.equals(other.applicationIdentifier);
+		}
+
+		public int hashCode() {
+			int result = text.hashCode();
+			result = 31 * result + type;
+			result = 31 * result + applicationIdentifier.hashCode();
+			result = 31 * result + (showText ? 1 : 0);
+			result = 31 * result + (checkSum ? 1 : 0);
+			result = 31 * result + (vector ? 1 : 0);
+			result = 31 * result + width;
+			result = 31 * result + height;
+			return result;
+		}
+	}
 
 }
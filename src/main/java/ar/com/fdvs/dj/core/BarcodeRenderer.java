@@ -0,0 +1,82 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.renderers.AbstractRenderToImageAwareRenderer;
+import net.sf.jasperreports.renderers.DimensionRenderable;
+import net.sf.jasperreports.renderers.Graphics2DRenderable;
+import net.sourceforge.barbecue.Barcode;
+import net.sourceforge.barbecue.output.OutputException;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Dimension2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Draws a barcode directly on the exporter's graphics, so exporters that support it (PDF, SVG, etc.) keep it
+ * as vector graphics. Exporters that need an image rasterize it at the element's size.
+ */
+public class BarcodeRenderer extends AbstractRenderToImageAwareRenderer implements Graphics2DRenderable, DimensionRenderable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Barcode barcode;
+	private final int width;
+	private final int height;
+
+	public BarcodeRenderer(Barcode barcode) {
+		this.barcode = barcode;
+		this.width = barcode.getWidth();
+		this.height = barcode.getHeight();
+	}
+
+	public Dimension2D getDimension(JasperReportsContext jasperReportsContext) throws JRException {
+		return new Dimension(width, height);
+	}
+
+	public void render(JasperReportsContext jasperReportsContext, Graphics2D grx, Rectangle2D rectangle) throws JRException {
+		AffineTransform originalTransform = grx.getTransform();
+		try {
+			grx.translate(rectangle.getX(), rectangle.getY());
+			grx.scale(rectangle.getWidth() / width, rectangle.getHeight() / height);
+			//a barcode is a component, drawing it is not thread safe
+			synchronized (barcode) {
+				barcode.draw(grx, 0, 0);
+			}
+		} catch (OutputException e) {
+			throw new JRException("Error drawing barcode: " + e.getMessage(), e);
+		} finally {
+			grx.setTransform(originalTransform);
+		}
+	}
+}
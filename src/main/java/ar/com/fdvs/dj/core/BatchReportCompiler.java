@@ -0,0 +1,245 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import ar.com.fdvs.dj.core.cache.CompiledReport;
+import ar.com.fdvs.dj.core.layout.LayoutManager;
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.util.JdtBatchCompilation;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperReport;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiles many DynamicReports (i.e: a whole catalog at startup) sharing the compiler invocations.<br>
+ * Reports are designed concurrently and, when the JDT compiler is available, the expression classes of
+ * all of them are compiled together (see {@link JdtBatchCompilation}) instead of one compiler run per report
+ * and subreport.<br>
+ * <br>
+ * Usage:
+ * <pre>
+ * BatchReportCompiler batch = new BatchReportCompiler();
+ * batch.add(dr1, new ClassicLayoutManager());
+ * batch.add(dr2, new ClassicLayoutManager(), params);
+ * for (BatchReportCompiler.Result result : batch.compile()) {
+ *     ...
+ * }
+ * </pre>
+ * Each report needs its own LayoutManager instance.
+ */
+public class BatchReportCompiler {
+
+	private static final Log log = LogFactory.getLog(BatchReportCompiler.class);
+
+	public static final int DEFAULT_MAX_THREADS = 32;
+
+	private final int maxThreads;
+
+	private final List<Result> results = new ArrayList<Result>();
+
+	private JdtBatchCompilation lastBatch;
+
+	public BatchReportCompiler() {
+		this(DEFAULT_MAX_THREADS);
+	}
+
+	/**
+	 * @param maxThreads how many reports are designed at the same time, the more reports are waiting to be
+	 *                   compiled when the compiler runs, the fewer times it runs
+	 */
+	public BatchReportCompiler(int maxThreads) {
+		if (maxThreads < 1)
+			throw new IllegalArgumentException("maxThreads must be greater than 0");
+		this.maxThreads = maxThreads;
+	}
+
+	public BatchReportCompiler add(DynamicReport dr, LayoutManager layoutManager) {
+		return add(dr, layoutManager, null);
+	}
+
+	public BatchReportCompiler add(DynamicReport dr, LayoutManager layoutManager, Map<String, Object> parameters) {
+		results.add(new Result(dr, layoutManager, parameters));
+		return this;
+	}
+
+	/**
+	 * Compiles all the added reports. A failing report does not stop the others, check {@link Result#isSuccessful()}.
+	 *
+	 * @return one result per added report, in the same order
+	 */
+	public List<Result> compile() {
+		final JdtBatchCompilation batch = new JdtBatchCompilation();
+		lastBatch = batch;
+		long start = System.currentTimeMillis();
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxThreads, Math.max(1, results.size())), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "dj-batch-compiler-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (final Result result : results) {
+				futures.add(executor.submit(new Runnable() {
+					public void run() {
+						batch.join();
+						try {
+							result.compile();
+						} finally {
+							batch.leave();
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new DJException("Interrupted while compiling reports", e);
+				} catch (ExecutionException e) {
+					throw new DJException("Unexpected error compiling reports: " + e.getCause().getMessage(), e.getCause());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		log.info("Compiled " + results.size() + " reports in " + (System.currentTimeMillis() - start) + " ms, "
+				+ batch.getCompiledUnits() + " units in " + batch.getCompilerInvocations() + " compiler invocations ("
+				+ batch.getCompilationTime() + " ms)");
+		return Collections.unmodifiableList(results);
+	}
+
+	/**
+	 * @return how many times the compiler ran during the last {@link #compile()}
+	 */
+	public int getCompilerInvocations() {
+		return lastBatch == null ? 0 : lastBatch.getCompilerInvocations();
+	}
+
+	/**
+	 * @return time spent inside the compiler during the last {@link #compile()}, in milliseconds
+	 */
+	public long getCompilationTime() {
+		return lastBatch == null ? 0 : lastBatch.getCompilationTime();
+	}
+
+	public static class Result {
+		private final DynamicReport dynamicReport;
+		private final LayoutManager layoutManager;
+		private final Map<String, Object> parameters = new HashMap<String, Object>();
+		//the given parameters, before the generated values are added
+		private final Map<String, Object> defaultParameters;
+		private JasperReport jasperReport;
+		private Exception error;
+		private long elapsedTime;
+
+		Result(DynamicReport dynamicReport, LayoutManager layoutManager, Map<String, Object> parameters) {
+			this.dynamicReport = dynamicReport;
+			this.layoutManager = layoutManager;
+			if (parameters != null)
+				this.parameters.putAll(parameters);
+			this.defaultParameters = CompiledReport.snapshot(this.parameters);
+		}
+
+		void compile() {
+			long start = System.currentTimeMillis();
+			try {
+				jasperReport = DynamicJasperHelper.generateJasperReport(dynamicReport, layoutManager, parameters);
+			} catch (JRException e) {
+				log.warn("Error compiling report " + dynamicReport.getReportName() + ": " + e.getMessage());
+				error = e;
+			} catch (RuntimeException e) {
+				log.warn("Error compiling report " + dynamicReport.getReportName() + ": " + e.getMessage());
+				error = e;
+			}
+			elapsedTime = System.currentTimeMillis() - start;
+		}
+
+		public DynamicReport getDynamicReport() {
+			return dynamicReport;
+		}
+
+		public boolean isSuccessful() {
+			return error == null && jasperReport != null;
+		}
+
+		public JasperReport getJasperReport() {
+			return jasperReport;
+		}
+
+		/**
+		 * @return the parameters map used to generate the report, including the generated values
+		 * needed to fill it
+		 */
+		public Map<String, Object> getParameters() {
+			return parameters;
+		}
+
+		public Exception getError() {
+			return error;
+		}
+
+		/**
+		 * @return design plus compile time, in milliseconds (includes the time waiting for other reports)
+		 */
+		public long getElapsedTime() {
+			return elapsedTime;
+		}
+
+		/**
+		 * @return a report ready to be filled many times
+		 */
+		public PreparedDynamicReport prepare() {
+			if (!isSuccessful())
+				throw new DJException("Report " + dynamicReport.getReportName() + " was not compiled", error);
+			return new PreparedDynamicReport(jasperReport, defaultParameters, CompiledReport.collectGeneratedParameters(defaultParameters, parameters),
+					null, 0, dynamicReport.isUseBeanAccessorDataSource());
+		}
+	}
+}
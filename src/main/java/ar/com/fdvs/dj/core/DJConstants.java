@@ -64,6 +64,9 @@ public interface DJConstants {
 	int DATA_SOURCE_TYPE_MONDRIAN				= 8;
 	int DATA_SOURCE_TYPE_OGNL_VALUE_STACK		= 9;
 	int DATA_SOURCE_TYPE_JRDATASOURCE			= 10;
+	int DATA_SOURCE_TYPE_ITERATOR				= 11; //java.util.Iterator, DJ only
+	int DATA_SOURCE_TYPE_STREAM					= 12; //java.util.stream.Stream, DJ only
+	int DATA_SOURCE_TYPE_PUBLISHER				= 13; //SubscriberDataSource.Publisher, DJ only
 
 	int DATA_SOURCE_TYPE_SQL_CONNECTION			= 100; //This is in DJ only, not in JasperReports
 
@@ -1,5 +1,9 @@
 package ar.com.fdvs.dj.core;
 
+import ar.com.fdvs.dj.core.calculation.GroupTotals;
+import ar.com.fdvs.dj.core.calculation.PreAggregatedTotals;
+import ar.com.fdvs.dj.domain.CustomExpression;
+import ar.com.fdvs.dj.domain.IndexedCustomExpression;
 import net.sf.jasperreports.engine.JRDefaultScriptlet;
 import net.sf.jasperreports.engine.JRParameter;
 import net.sf.jasperreports.engine.JRScriptletException;
@@ -11,7 +15,13 @@ import net.sf.jasperreports.engine.fill.JRFillVariable;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * This class handles parameter passing to custom expressions in runtime (during report fill)
@@ -26,14 +36,59 @@ public class DJDefaultScriptlet extends JRDefaultScriptlet {
 
     private static final Log logger = LogFactory.getLog(DJDefaultScriptlet.class);
 
+    /**
+     * Prefix of the parameter, followed by "_" and the report name, with the names of the
+     * {@link ar.com.fdvs.dj.domain.PureCustomExpression}s invoked from more than one expression of the report
+     */
+    public static final String SHARED_PURE_EXPRESSIONS = "dj_shared_pure_expressions";
+
+    /**
+     * Prefix of the parameter, followed by "_" and the report name, with the names of the
+     * {@link IndexedCustomExpression}s of the report in the order of their slots
+     * (see {@link ar.com.fdvs.dj.util.ExpressionUtils#registerIndexedExpressions})
+     */
+    public static final String INDEXED_EXPRESSIONS = "dj_indexed_expressions";
 
     protected FieldMapWrapper fieldMapWrapper = new FieldMapWrapper();
     protected ParameterMapWrapper parameterMapWrapper = new ParameterMapWrapper();
     protected VariableMapWrapper variableMapWrapper = new VariableMapWrapper();
 
+    /**
+     * Resolved values for each {@link IndexedCustomExpression}, current and previous field values
+     */
+    private final Map<IndexedCustomExpression, IndexedValuesBinding> currentBindings = new IdentityHashMap<IndexedCustomExpression, IndexedValuesBinding>();
+    private final Map<IndexedCustomExpression, IndexedValuesBinding> previousBindings = new IdentityHashMap<IndexedCustomExpression, IndexedValuesBinding>();
+
+    /**
+     * The same bindings, by slot, for the expressions invoked by slot
+     */
+    private IndexedCustomExpression[] slotExpressions = new IndexedCustomExpression[0];
+    private IndexedValuesBinding[] currentSlotBindings = new IndexedValuesBinding[0];
+    private IndexedValuesBinding[] previousSlotBindings = new IndexedValuesBinding[0];
+
+    /**
+     * Last result of each {@link ar.com.fdvs.dj.domain.PureCustomExpression}, for current and previous field values
+     */
+    private final Map<CustomExpression, MemoizedValue> currentMemos = new IdentityHashMap<CustomExpression, MemoizedValue>();
+    private final Map<CustomExpression, MemoizedValue> previousMemos = new IdentityHashMap<CustomExpression, MemoizedValue>();
+    private Set<CustomExpression> sharedPureExpressions = Collections.emptySet();
+    private JRFillField[] fillFields = new JRFillField[0];
+
+    /**
+     * Totals computed before the fill for each {@link PreAggregatedTotals} parameter
+     */
+    private Map<PreAggregatedTotals, GroupTotals> groupTotals = Collections.emptyMap();
+    private String reportName;
+
     public void setData(Map<String, JRFillParameter> parsm, Map<String,JRFillField> fldsm, Map<String,JRFillVariable> varsm, JRFillGroup[] grps) {
         super.setData(parsm, fldsm, varsm, grps);
         putValuesInMap();
+        currentBindings.clear();
+        previousBindings.clear();
+        currentMemos.clear();
+        previousMemos.clear();
+        if (fldsm != null)
+            fillFields = fldsm.values().toArray(new JRFillField[fldsm.size()]);
     }
 
     protected void putValuesInMap() {
@@ -58,11 +113,187 @@ public class DJDefaultScriptlet extends JRDefaultScriptlet {
         return variableMapWrapper;
     }
 
+    /**
+     * Evaluates an {@link IndexedCustomExpression}. The names used by the expression are resolved the first
+     * time, later evaluations only read the values by position.
+     *
+     * @param expression
+     * @param previousFieldValues if true, the expression gets the previous value of the fields (see {@link #getPreviousFields()})
+     * @return
+     */
+    public Object evaluateIndexed(IndexedCustomExpression expression, boolean previousFieldValues) {
+        return expression.evaluate(getBinding(expression, previousFieldValues));
+    }
+
+    /**
+     * Evaluates the {@link IndexedCustomExpression} in the slot given by the layout, its values were resolved
+     * before the first record.
+     *
+     * @param slot
+     * @param previousFieldValues if true, the expression gets the previous value of the fields (see {@link #getPreviousFields()})
+     * @return
+     */
+    public Object evaluateIndexed(int slot, boolean previousFieldValues) {
+        return slotExpressions[slot].evaluate(previousFieldValues ? previousSlotBindings[slot] : currentSlotBindings[slot]);
+    }
+
+    /**
+     * Evaluates a {@link ar.com.fdvs.dj.domain.PureCustomExpression} invoked from more than one expression of the
+     * report once per record. The last result is reused while the REPORT_COUNT passed by the generated expressions
+     * and the values of the fields are the same ones it was computed with, so evaluations made in another phase of
+     * the same record (group footers, estimated values while looking for group breaks) see their own field values.
+     * Expressions invoked from a single place are always evaluated.
+     *
+     * @param expression
+     * @param recordCount the REPORT_COUNT seen by the calling expression, when null the expression is always evaluated
+     * @param previousFieldValues if true, the expression gets the previous value of the fields (see {@link #getPreviousFields()})
+     * @return
+     */
+    public Object evaluateMemoized(CustomExpression expression, Integer recordCount, boolean previousFieldValues) {
+        if (recordCount == null || !sharedPureExpressions.contains(expression))
+            return evaluate(expression, previousFieldValues);
+
+        Map<CustomExpression, MemoizedValue> memos = previousFieldValues ? previousMemos : currentMemos;
+        MemoizedValue memo = memos.get(expression);
+        if (memo == null) {
+            memo = new MemoizedValue(fillFields.length);
+            memos.put(expression, memo);
+        } else if (memo.recordCount == recordCount.intValue() && memo.hasFieldValues(fillFields, previousFieldValues)) {
+            return memo.value;
+        }
+
+        Object value = evaluate(expression, previousFieldValues);
+        memo.recordCount = recordCount.intValue();
+        memo.setFieldValues(fillFields, previousFieldValues);
+        memo.value = value;
+        return value;
+    }
+
+    private Object evaluate(CustomExpression expression, boolean previousFieldValues) {
+        if (expression instanceof IndexedCustomExpression)
+            return evaluateIndexed((IndexedCustomExpression) expression, previousFieldValues);
+        Map fields = previousFieldValues ? getPreviousFields() : getCurrentFields();
+        return expression.evaluate(fields, getCurrentVariables(), getCurrentParams());
+    }
+
+    /**
+     * @param definition a {@link PreAggregatedTotals} parameter of the report
+     * @return the totals computed for it before the first record
+     */
+    public GroupTotals getGroupTotals(PreAggregatedTotals definition) {
+        return groupTotals.get(definition);
+    }
+
+    private IndexedValuesBinding getBinding(IndexedCustomExpression expression, boolean previousFieldValues) {
+        Map<IndexedCustomExpression, IndexedValuesBinding> bindings = previousFieldValues ? previousBindings : currentBindings;
+        IndexedValuesBinding binding = bindings.get(expression);
+        if (binding == null) {
+            binding = new IndexedValuesBinding(expression, reportName, this.fieldsMap, this.variablesMap, this.parametersMap, previousFieldValues);
+            bindings.put(expression, binding);
+        }
+        return binding;
+    }
+
     @Override
     public void beforeReportInit() throws JRScriptletException {
         super.beforeReportInit();
         JasperReport jr = (JasperReport) getParameterValue(JRParameter.JASPER_REPORT);
         variableMapWrapper.setReportName(jr.getName());
         parameterMapWrapper.setReportName(jr.getName());
+        reportName = jr.getName();
+        sharedPureExpressions = findSharedPureExpressions();
+
+        //resolve the indexed expressions once, before the first row
+        resolveSlots();
+        List<PreAggregatedTotals> preAggregatedTotals = new ArrayList<PreAggregatedTotals>();
+        for (JRFillParameter parameter : this.parametersMap.values()) {
+            Object value = parameter.getValue();
+            if (value instanceof IndexedCustomExpression) {
+                getBinding((IndexedCustomExpression) value, false);
+            } else if (value instanceof PreAggregatedTotals) {
+                preAggregatedTotals.add((PreAggregatedTotals) value);
+            }
+        }
+
+        groupTotals = Collections.emptyMap();
+        if (!preAggregatedTotals.isEmpty())
+            groupTotals = findGroupTotals(preAggregatedTotals);
+    }
+
+    private void resolveSlots() throws JRScriptletException {
+        Map parameters = (Map) getParameterValue(JRParameter.REPORT_PARAMETERS_MAP);
+        Object names = parameters == null ? null : parameters.get(INDEXED_EXPRESSIONS + "_" + reportName);
+        int count = names instanceof List ? ((List) names).size() : 0;
+        slotExpressions = new IndexedCustomExpression[count];
+        currentSlotBindings = new IndexedValuesBinding[count];
+        previousSlotBindings = new IndexedValuesBinding[count];
+        for (int slot = 0; slot < count; slot++) {
+            Object name = ((List) names).get(slot);
+            JRFillParameter parameter = this.parametersMap.get(name);
+            if (parameter == null || !(parameter.getValue() instanceof IndexedCustomExpression))
+                throw new JRScriptletException("Indexed custom expression " + name + " is not a parameter of " + reportName);
+            slotExpressions[slot] = (IndexedCustomExpression) parameter.getValue();
+            currentSlotBindings[slot] = getBinding(slotExpressions[slot], false);
+            previousSlotBindings[slot] = getBinding(slotExpressions[slot], true);
+        }
+    }
+
+    private Set<CustomExpression> findSharedPureExpressions() throws JRScriptletException {
+        Map parameters = (Map) getParameterValue(JRParameter.REPORT_PARAMETERS_MAP);
+        Object names = parameters == null ? null : parameters.get(SHARED_PURE_EXPRESSIONS + "_" + reportName);
+        if (!(names instanceof Collection) || ((Collection) names).isEmpty())
+            return Collections.emptySet();
+
+        Set<CustomExpression> shared = Collections.newSetFromMap(new IdentityHashMap<CustomExpression, Boolean>());
+        for (Object name : (Collection) names) {
+            Object expression = parameters.get(name);
+            if (expression instanceof CustomExpression)
+                shared.add((CustomExpression) expression);
+        }
+        return shared;
+    }
+
+    /**
+     * The totals are computed before the fill (see {@link PreAggregatedTotals#addTotals}): JasperReports has already
+     * read the first record when this scriptlet is initialized, so the datasource can't be read from here
+     */
+    private Map<PreAggregatedTotals, GroupTotals> findGroupTotals(List<PreAggregatedTotals> preAggregatedTotals) throws JRScriptletException {
+        Map parameters = (Map) getParameterValue(JRParameter.REPORT_PARAMETERS_MAP);
+        Object totals = parameters == null ? null : parameters.get(PreAggregatedTotals.TOTALS_PARAMETER);
+        if (!(totals instanceof Map) || !((Map) totals).keySet().containsAll(preAggregatedTotals))
+            throw new JRScriptletException("The totals of the pre-aggregated percentages were not computed: the report must be filled by "
+                    + DynamicJasperHelper.class.getSimpleName() + " or " + PreparedDynamicReport.class.getSimpleName()
+                    + " with a rewindable datasource, subreports are not pre-aggregated");
+
+        //noinspection unchecked
+        return (Map<PreAggregatedTotals, GroupTotals>) totals;
+    }
+
+    private static class MemoizedValue {
+        private int recordCount = -1;
+        private final Object[] fieldValues;
+        private Object value;
+
+        private MemoizedValue(int fields) {
+            fieldValues = new Object[fields];
+        }
+
+        private boolean hasFieldValues(JRFillField[] fields, boolean previousFieldValues) {
+            if (fields.length != fieldValues.length)
+                return false;
+            for (int i = 0; i < fields.length; i++) {
+                Object current = previousFieldValues ? fields[i].getOldValue() : fields[i].getValue();
+                if (current != fieldValues[i])
+                    return false;
+            }
+            return true;
+        }
+
+        private void setFieldValues(JRFillField[] fields, boolean previousFieldValues) {
+            if (fields.length != fieldValues.length)
+                return;
+            for (int i = 0; i < fields.length; i++)
+                fieldValues[i] = previousFieldValues ? fields[i].getOldValue() : fields[i].getValue();
+        }
     }
 }
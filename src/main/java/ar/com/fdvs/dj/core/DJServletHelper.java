@@ -18,10 +18,13 @@ import java.util.Map;
 
 public class DJServletHelper {
 
+    private static final int DEFAULT_PAGE_TRESHOLD = 5;
+
     private static final ThreadLocal<Integer> pageTreshold = new ThreadLocal<Integer>();
+    private static final ThreadLocal<Boolean> streaming = new ThreadLocal<Boolean>();
 
     static {
-        pageTreshold.set(5);
+        pageTreshold.set(DEFAULT_PAGE_TRESHOLD);
     }
 
     /**
@@ -34,6 +37,22 @@ public class DJServletHelper {
             pageTreshold.set(treshold);
     }
 
+    /**
+     * When true, reports are exported directly into the response without an intermediate buffer or file
+     * (see {@link ar.com.fdvs.dj.output.StreamingReportWriter}), the page threshold is ignored.
+     * @param stream
+     */
+    public static void setStreaming(boolean stream){
+        streaming.set(stream);
+    }
+
+    private static ReportWriterFactory getReportWriterFactory() {
+        if (Boolean.TRUE.equals(streaming.get()))
+            return ReportWriterFactory.buildStreaming();
+        Integer treshold = pageTreshold.get();
+        return ReportWriterFactory.build(treshold != null ? treshold : DEFAULT_PAGE_TRESHOLD);
+    }
+
     /**
      * Generates the report as HTML and setups everything for a clean response (serving images as well).
      * You have to declare JasperReport servlet in web.xml (net.sf.jasperreports.j2ee.servlets.ImageServlet)
@@ -92,7 +111,7 @@ public class DJServletHelper {
 
         exporterParams.put(JRHtmlExporterParameter.IMAGES_URI, request.getContextPath() + imageServletUrl);
 
-        final ReportWriter reportWriter = ReportWriterFactory.build(pageTreshold.get()).getReportWriter(jasperPrint, DJConstants.FORMAT_HTML, exporterParams);
+        final ReportWriter reportWriter = getReportWriterFactory().getReportWriter(jasperPrint, DJConstants.FORMAT_HTML, exporterParams);
 
         Map imagesMap = new HashMap();
         JRExporter exporter = reportWriter.getExporter();
@@ -131,7 +150,7 @@ public class DJServletHelper {
 
         exporterParams.put(JRHtmlExporterParameter.IMAGES_URI, request.getContextPath() + imageServletUrl);
 
-        final ReportWriter reportWriter = ReportWriterFactory.build(pageTreshold.get()).getReportWriter(jasperPrint, DJConstants.FORMAT_HTML, exporterParams);
+        final ReportWriter reportWriter = getReportWriterFactory().getReportWriter(jasperPrint, DJConstants.FORMAT_HTML, exporterParams);
 
         Map imagesMap = new HashMap();
         JRExporter exporter = reportWriter.getExporter();
@@ -29,22 +29,35 @@
 
 package ar.com.fdvs.dj.core;
 
+import ar.com.fdvs.dj.core.cache.CompiledReport;
+import ar.com.fdvs.dj.core.cache.CompiledReportCache;
+import ar.com.fdvs.dj.core.cache.DynamicReportFingerprint;
+import ar.com.fdvs.dj.core.calculation.PreAggregatedTotals;
 import ar.com.fdvs.dj.core.layout.LayoutManager;
+import ar.com.fdvs.dj.core.metrics.ReportMetrics;
+import ar.com.fdvs.dj.core.metrics.ReportPhase;
+import ar.com.fdvs.dj.core.metrics.RowCountingDataSource;
 import ar.com.fdvs.dj.core.registration.ColumnRegistrationManager;
 import ar.com.fdvs.dj.core.registration.DJGroupRegistrationManager;
 import ar.com.fdvs.dj.core.registration.DJGroupVariableDefRegistrationManager;
 import ar.com.fdvs.dj.core.registration.VariableRegistrationManager;
 import ar.com.fdvs.dj.domain.ColumnProperty;
 import ar.com.fdvs.dj.domain.DJCalculation;
+import ar.com.fdvs.dj.domain.DJVirtualization;
 import ar.com.fdvs.dj.domain.DynamicJasperDesign;
 import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.domain.FrozenDynamicReport;
 import ar.com.fdvs.dj.domain.entities.DJGroup;
+import ar.com.fdvs.dj.domain.entities.DJGroupVariable;
 import ar.com.fdvs.dj.domain.entities.DJGroupVariableDef;
 import ar.com.fdvs.dj.domain.entities.Parameter;
 import ar.com.fdvs.dj.domain.entities.Subreport;
 import ar.com.fdvs.dj.domain.entities.columns.AbstractColumn;
 import ar.com.fdvs.dj.domain.entities.columns.PercentageColumn;
+import ar.com.fdvs.dj.util.BeanAccessorDataSource;
 import ar.com.fdvs.dj.util.DJCompilerFactory;
+import ar.com.fdvs.dj.util.ExpressionUtils;
+import ar.com.fdvs.dj.util.IteratorDataSource;
 import ar.com.fdvs.dj.util.LayoutUtils;
 import net.sf.jasperreports.engine.*;
 import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
@@ -61,6 +74,8 @@ import java.net.URL;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
 
 /**
  * Helper class for running a report and some other DJ related stuff
@@ -73,6 +88,41 @@ public class DynamicJasperHelper {
 
     private static final Random random = new Random(System.currentTimeMillis());
 
+    private static volatile CompiledReportCache compiledReportCache;
+
+    private static volatile ExecutorService subreportsCompilationExecutor;
+
+    /**
+     * Sets the cache for compiled reports. When set, reports that are structurally identical to one
+     * compiled before are not built again (see {@link DynamicReportFingerprint}).<br>
+     * Pass null to disable caching (default).
+     *
+     * @param cache
+     */
+    public static void setCompiledReportCache(CompiledReportCache cache) {
+        compiledReportCache = cache;
+    }
+
+    public static CompiledReportCache getCompiledReportCache() {
+        return compiledReportCache;
+    }
+
+    /**
+     * Sets the executor used to compile the subreports (and concatenated reports) of a report concurrently.
+     * Subreports keep the same names and parameters they get when compiled one after the other, if some of
+     * them fail, a single exception listing all the failures is thrown.<br>
+     * Pass null to compile them sequentially (default).
+     *
+     * @param executor
+     */
+    public static void setSubreportsCompilationExecutor(ExecutorService executor) {
+        subreportsCompilationExecutor = executor;
+    }
+
+    public static ExecutorService getSubreportsCompilationExecutor() {
+        return subreportsCompilationExecutor;
+    }
+
     private static void registerEntities(DynamicJasperDesign jd, DynamicReport dr, LayoutManager layoutManager) {
         ColumnRegistrationManager columnRegistrationManager = new ColumnRegistrationManager(jd, dr, layoutManager);
         columnRegistrationManager.registerEntities(dr.getColumns());
@@ -123,7 +173,16 @@ public class DynamicJasperHelper {
              */
             if (column instanceof PercentageColumn) {
                 PercentageColumn percentageColumn = ((PercentageColumn) column);
+                PreAggregatedTotals totals = null;
+                if (dr.getOptions().isPreAggregatePercentages()) {
+                    totals = percentageColumn.getPreAggregatedTotals(dr.getColumnsGroups());
+                    if (totals != null)
+                        LayoutUtils.registerAndAddParameter(jd, percentageColumn.getPreAggregatedTotalsName(), PreAggregatedTotals.class.getName(), totals);
+                }
                 for (DJGroup djGroup : dr.getColumnsGroups()) {
+                    //with pre-aggregated totals only the group variables of the column divide by the group sum
+                    if (totals != null && !hasVariableOf(djGroup, percentageColumn))
+                        continue;
                     JRDesignGroup jrGroup = LayoutUtils.getJRDesignGroup(jd, layoutManager, djGroup);
                     DJGroupVariableDefRegistrationManager variablesRM = new DJGroupVariableDefRegistrationManager(jd, dr, layoutManager, jrGroup);
                     DJGroupVariableDef variable = new DJGroupVariableDef(percentageColumn.getGroupVariableName(djGroup), percentageColumn.getPercentageColumn(), DJCalculation.SUM);
@@ -136,6 +195,18 @@ public class DynamicJasperHelper {
     }
 
 
+    private static boolean hasVariableOf(DJGroup group, AbstractColumn column) {
+        for (DJGroupVariable variable : group.getHeaderVariables()) {
+            if (variable.getColumnToApplyOperation() == column)
+                return true;
+        }
+        for (DJGroupVariable variable : group.getFooterVariables()) {
+            if (variable.getColumnToApplyOperation() == column)
+                return true;
+        }
+        return false;
+    }
+
     private static void registerOtherFields(DynamicJasperDesign jd, List<ColumnProperty> fields) {
         for (ColumnProperty element : fields) {
             JRDesignField field = new JRDesignField();
@@ -154,6 +225,16 @@ public class DynamicJasperHelper {
 
 
     protected static DynamicJasperDesign generateJasperDesign(DynamicReport dr) throws CoreException {
+        return generateJasperDesign(dr, "r");
+    }
+
+    /**
+     * @param dr
+     * @param namePrefix used to give the design a stable unique name when the report uses deterministic names
+     * @return
+     * @throws CoreException
+     */
+    protected static DynamicJasperDesign generateJasperDesign(DynamicReport dr, String namePrefix) throws CoreException {
         DynamicJasperDesign jd;
         try {
             if (dr.getTemplateFileName() != null) {
@@ -179,7 +260,11 @@ public class DynamicJasperHelper {
             }
 
             //Force a unique name to the report
-            jd.setName("" + jd.getName() + "_" + random.nextInt(10000));
+            jd.setDeterministicNames(dr.isDeterministicNames());
+            if (dr.isDeterministicNames())
+                jd.setName("" + jd.getName() + "_" + namePrefix.replaceAll("\\W", "_"));
+            else
+                jd.setName("" + jd.getName() + "_" + random.nextInt(10000));
 
             log.debug("The name for this report will be: " + jd.getName());
 
@@ -216,15 +301,58 @@ public class DynamicJasperHelper {
     }
 
     public static JasperPrint generateJasperPrint(DynamicReport dr, LayoutManager layoutManager, Collection collection) throws JRException {
-        JRDataSource ds = new JRBeanCollectionDataSource(collection);
+        JRDataSource ds = createCollectionDataSource(dr, collection);
         return generateJasperPrint(dr, layoutManager, ds, new HashMap<String, Object>());
     }
 
+    /**
+     * @return a JRBeanCollectionDataSource, or a {@link BeanAccessorDataSource} if the report opted in for it
+     * (see {@link DynamicReport#isUseBeanAccessorDataSource()})
+     */
+    static JRDataSource createCollectionDataSource(DynamicReport dr, Collection collection) {
+        if (dr.isUseBeanAccessorDataSource())
+            return new BeanAccessorDataSource(collection);
+        return new JRBeanCollectionDataSource(collection);
+    }
+
     public static JasperPrint generateJasperPrint(DynamicReport dr, LayoutManager layoutManager, ResultSet resultSet) throws JRException {
         JRDataSource ds = new JRResultSetDataSource(resultSet);
         return generateJasperPrint(dr, layoutManager, ds, new HashMap<String, Object>());
     }
 
+    /**
+     * Fills the report reading the rows from the iterator as they are needed, the rows don't need to be all in memory.
+     *
+     * @param dr            the DynamicReport
+     * @param layoutManager the object in charge of doing the layout
+     * @param iterator      iterator over the beans of the report
+     * @param _parameters   Map with parameters that the report may need
+     * @return
+     * @throws JRException
+     */
+    public static JasperPrint generateJasperPrint(DynamicReport dr, LayoutManager layoutManager, Iterator<?> iterator, Map<String, Object> _parameters) throws JRException {
+        return generateJasperPrint(dr, layoutManager, new IteratorDataSource<Object>(iterator), _parameters);
+    }
+
+    /**
+     * Fills the report reading the rows from the stream as they are needed. The stream is closed when the fill ends.
+     *
+     * @param dr            the DynamicReport
+     * @param layoutManager the object in charge of doing the layout
+     * @param stream        stream of the beans of the report
+     * @param _parameters   Map with parameters that the report may need
+     * @return
+     * @throws JRException
+     */
+    public static JasperPrint generateJasperPrint(DynamicReport dr, LayoutManager layoutManager, Stream<?> stream, Map<String, Object> _parameters) throws JRException {
+        IteratorDataSource<Object> ds = IteratorDataSource.fromStream(stream);
+        try {
+            return generateJasperPrint(dr, layoutManager, ds, _parameters);
+        } finally {
+            ds.close();
+        }
+    }
+
     /**
      * Compiles and fills the reports design.
      *
@@ -237,11 +365,24 @@ public class DynamicJasperHelper {
      */
     public static JasperPrint generateJasperPrint(DynamicReport dr, LayoutManager layoutManager, JRDataSource ds, Map<String, Object> _parameters) throws JRException {
         log.info("generating JasperPrint");
-        JasperPrint jp;
+        JasperPrint jp = null;
 
+        //the generated values are not written in the caller's map
+        Map<String, Object> params = new HashMap<String, Object>();
+        if (_parameters != null)
+            params.putAll(_parameters);
 
-        JasperReport jr = DynamicJasperHelper.generateJasperReport(dr, layoutManager, _parameters);
-        jp = JasperFillManager.fillReport(jr, _parameters, ds);
+        JasperReport jr = DynamicJasperHelper.generateJasperReport(dr, layoutManager, params);
+        JRVirtualizer virtualizer = installVirtualizer(dr, params);
+        RowCountingDataSource countingDataSource = ReportMetrics.isEnabled() ? RowCountingDataSource.wrap(ds) : null;
+        long start = System.nanoTime();
+        try {
+            Map<String, Object> fillParameters = PreAggregatedTotals.addTotals(jr, params, ds);
+            jp = JasperFillManager.fillReport(jr, fillParameters, countingDataSource != null ? countingDataSource : ds);
+        } finally {
+            ReportVirtualizers.release(virtualizer, params, jp);
+        }
+        ReportMetrics.fillCompleted(jp, ReportMetrics.getReportName(dr), start, countingDataSource != null ? countingDataSource.getRows() : -1);
 
         return jp;
     }
@@ -258,27 +399,23 @@ public class DynamicJasperHelper {
      */
     public static JasperPrint generateJasperPrint(DynamicReport dr, LayoutManager layoutManager, Connection con, Map<String, Object> _parameters) throws JRException {
         log.info("generating JasperPrint");
-        JasperPrint jp;
-
-        if (_parameters == null)
-            _parameters = new HashMap<String, Object>();
+        JasperPrint jp = null;
 
-        visitSubreports(dr, _parameters);
-        compileOrLoadSubreports(dr, _parameters, "r");
-
-        DynamicJasperDesign jd = generateJasperDesign(dr);
+        //the generated values are not written in the caller's map
         Map<String, Object> params = new HashMap<String, Object>();
-        if (!_parameters.isEmpty()) {
-            registerParams(jd, _parameters);
+        if (_parameters != null)
             params.putAll(_parameters);
+
+        JasperReport jr = generateJasperReport(dr, layoutManager, params);
+        PreAggregatedTotals.addTotals(jr, params, null); //the rows are read by JasperReports, they can't be pre-aggregated
+        JRVirtualizer virtualizer = installVirtualizer(dr, params);
+        long start = System.nanoTime();
+        try {
+            jp = JasperFillManager.fillReport(jr, params, con);
+        } finally {
+            ReportVirtualizers.release(virtualizer, params, jp);
         }
-        registerEntities(jd, dr, layoutManager);
-        layoutManager.applyLayout(jd, dr);
-        JRPropertiesUtil.getInstance(DefaultJasperReportsContext.getInstance()).setProperty(JRCompiler.COMPILER_PREFIX, DJCompilerFactory.getCompilerClassName());
-        //JRProperties.setProperty(JRCompiler.COMPILER_PREFIX, DJCompilerFactory.getCompilerClassName());
-        JasperReport jr = JasperCompileManager.compileReport(jd);
-        params.putAll(jd.getParametersWithValues());
-        jp = JasperFillManager.fillReport(jr, params, con);
+        ReportMetrics.fillCompleted(jp, ReportMetrics.getReportName(dr), start, -1);
 
         return jp;
     }
@@ -295,30 +432,112 @@ public class DynamicJasperHelper {
      */
     public static JasperPrint generateJasperPrint(DynamicReport dr, LayoutManager layoutManager, Map<String, Object> _parameters) throws JRException {
         log.info("generating JasperPrint");
-        JasperPrint jp;
-
-        if (_parameters == null)
-            _parameters = new HashMap<String, Object>();
-
-        visitSubreports(dr, _parameters);
-        compileOrLoadSubreports(dr, _parameters, "r");
+        JasperPrint jp = null;
 
-        DynamicJasperDesign jd = generateJasperDesign(dr);
+        //the generated values are not written in the caller's map
         Map<String, Object> params = new HashMap<String, Object>();
-        if (!_parameters.isEmpty()) {
-            registerParams(jd, _parameters);
+        if (_parameters != null)
             params.putAll(_parameters);
+
+        JasperReport jr = generateJasperReport(dr, layoutManager, params);
+        JRVirtualizer virtualizer = installVirtualizer(dr, params);
+        long start = System.nanoTime();
+        try {
+            Object ds = params.get(JRParameter.REPORT_DATA_SOURCE);
+            params = PreAggregatedTotals.addTotals(jr, params, ds instanceof JRDataSource ? (JRDataSource) ds : null);
+            jp = JasperFillManager.fillReport(jr, params);
+        } finally {
+            ReportVirtualizers.release(virtualizer, params, jp);
         }
-        registerEntities(jd, dr, layoutManager);
-        layoutManager.applyLayout(jd, dr);
-        JRPropertiesUtil.getInstance(DefaultJasperReportsContext.getInstance()).setProperty(JRCompiler.COMPILER_PREFIX, DJCompilerFactory.getCompilerClassName());
-        JasperReport jr = JasperCompileManager.compileReport(jd);
-        params.putAll(jd.getParametersWithValues());
-        jp = JasperFillManager.fillReport(jr, params);
+        ReportMetrics.fillCompleted(jp, ReportMetrics.getReportName(dr), start, -1);
 
         return jp;
     }
 
+    /**
+     * If the report options have a {@link ar.com.fdvs.dj.domain.DJVirtualization} and the parameters do not have a
+     * virtualizer yet, creates one for the fill. Subreports (and concatenated reports) share it.
+     */
+    private static JRVirtualizer installVirtualizer(DynamicReport dr, Map<String, Object> _parameters) {
+        DJVirtualization virtualization = dr.getOptions().getVirtualization();
+        if (virtualization == null)
+            return null;
+        return ReportVirtualizers.install(virtualization, virtualization.getPagesInMemory(dr), _parameters);
+    }
+
+    /**
+     * Designs and compiles the report once, the returned object can be filled many times (even concurrently)
+     * without paying the compilation cost again.
+     *
+     * @param dr
+     * @param layoutManager
+     * @return
+     * @throws JRException
+     */
+    public static PreparedDynamicReport prepareReport(DynamicReport dr, LayoutManager layoutManager) throws JRException {
+        return prepareReport(dr, layoutManager, null);
+    }
+
+    /**
+     * Designs and compiles the report once, the returned object can be filled many times (even concurrently)
+     * without paying the compilation cost again.
+     *
+     * @param dr
+     * @param layoutManager
+     * @param _parameters   parameters to register in the report, their values are used as defaults for every fill
+     * @return
+     * @throws JRException
+     */
+    public static PreparedDynamicReport prepareReport(DynamicReport dr, LayoutManager layoutManager, Map<String, Object> _parameters) throws JRException {
+        log.info("preparing DynamicReport");
+        Map<String, Object> params = new HashMap<String, Object>();
+        if (_parameters != null)
+            params.putAll(_parameters);
+        Map<String, Object> defaults = CompiledReport.snapshot(params);
+
+        JasperReport jr = generateJasperReport(dr, layoutManager, params);
+        Map<String, Object> generated = CompiledReport.collectGeneratedParameters(defaults, params);
+        DJVirtualization virtualization = dr.getOptions().getVirtualization();
+        int pagesInMemory = virtualization == null ? 0 : virtualization.getPagesInMemory(dr);
+        return new PreparedDynamicReport(jr, defaults, generated, virtualization, pagesInMemory, dr.isUseBeanAccessorDataSource());
+    }
+
+    /**
+     * Compiles and fills a copy of the frozen report, so the same FrozenDynamicReport can be generated by many
+     * threads at the same time. Each call needs its own LayoutManager.
+     *
+     * @param frozenReport
+     * @param layoutManager
+     * @param ds
+     * @param _parameters
+     * @return
+     * @throws JRException
+     */
+    public static JasperPrint generateJasperPrint(FrozenDynamicReport frozenReport, LayoutManager layoutManager, JRDataSource ds, Map<String, Object> _parameters) throws JRException {
+        return generateJasperPrint(frozenReport.newCopy(), layoutManager, ds, _parameters);
+    }
+
+    /**
+     * For running queries embebed in the report design, see {@link #generateJasperPrint(FrozenDynamicReport, LayoutManager, JRDataSource, Map)}
+     */
+    public static JasperPrint generateJasperPrint(FrozenDynamicReport frozenReport, LayoutManager layoutManager, Connection con, Map<String, Object> _parameters) throws JRException {
+        return generateJasperPrint(frozenReport.newCopy(), layoutManager, con, _parameters);
+    }
+
+    /**
+     * Compiles a copy of the frozen report, see {@link #generateJasperPrint(FrozenDynamicReport, LayoutManager, JRDataSource, Map)}
+     */
+    public static JasperReport generateJasperReport(FrozenDynamicReport frozenReport, LayoutManager layoutManager, Map generatedParams) throws JRException {
+        return generateJasperReport(frozenReport.newCopy(), layoutManager, generatedParams);
+    }
+
+    /**
+     * Prepares a copy of the frozen report, see {@link #generateJasperPrint(FrozenDynamicReport, LayoutManager, JRDataSource, Map)}
+     */
+    public static PreparedDynamicReport prepareReport(FrozenDynamicReport frozenReport, LayoutManager layoutManager, Map<String, Object> _parameters) throws JRException {
+        return prepareReport(frozenReport.newCopy(), layoutManager, _parameters);
+    }
+
     /**
      * Creates a jrxml file
      *
@@ -391,8 +610,22 @@ public class DynamicJasperHelper {
             parentFile.mkdirs();
     }
 
+    /**
+     * Jasper's context is not meant to be modified concurrently. The property is only written when it changes,
+     * and never by the threads compiling subreports in parallel: the thread that started them already set it.
+     */
+    private static void setCompilerProperty() {
+        if (SubreportsCompiler.isCompilingInParallel())
+            return;
+        String compilerClassName = DJCompilerFactory.getCompilerClassName();
+        JRPropertiesUtil properties = JRPropertiesUtil.getInstance(DefaultJasperReportsContext.getInstance());
+        if (!compilerClassName.equals(properties.getProperty(JRCompiler.COMPILER_PREFIX)))
+            properties.setProperty(JRCompiler.COMPILER_PREFIX, compilerClassName);
+    }
+
     protected static void compileOrLoadSubreports(DynamicReport dr, Map<String, Object> _parameters, String namePrefix) throws JRException {
         log.debug("Visiting subreports for " + namePrefix);
+        SubreportsCompiler compiler = new SubreportsCompiler();
         int groupnum = 0;
 
         for (DJGroup group : dr.getColumnsGroups()) {
@@ -405,17 +638,12 @@ public class DynamicJasperHelper {
                 subreport.setName(name);
 
                 if (subreport.getDynamicReport() != null) {
-                    Map<String, Object> originalParameters = _parameters;
+                    Map<String, Object> subreportParameters = _parameters;
                     if (subreport.getParametersExpression() != null) {
                         //noinspection unchecked
-                        _parameters = (Map<String, Object>) originalParameters.get(subreport.getParametersExpression());
+                        subreportParameters = (Map<String, Object>) _parameters.get(subreport.getParametersExpression());
                     }
-
-                    JasperReport jp = generateJasperReport(subreport.getDynamicReport(), subreport.getLayoutManager(), _parameters, name);
-                    _parameters.put(name, jp);
-                    subreport.setReport(jp);
-                    log.debug("Adding Header Subreport " + name + " to parameters map");
-                    _parameters = originalParameters;
+                    compiler.add(subreport, name, subreportParameters, "Header");
                 }
 
             }
@@ -428,27 +656,28 @@ public class DynamicJasperHelper {
                 subreport.setName(name);
 
                 if (subreport.getDynamicReport() != null) {
-                    Map<String, Object> originalParameters = _parameters;
+                    Map<String, Object> subreportParameters = _parameters;
                     if (subreport.getParametersExpression() != null) {
                         //noinspection unchecked
-                        _parameters = (Map<String, Object>) originalParameters.get(subreport.getParametersExpression());
-                        if (_parameters == null) {
-                            _parameters = new HashMap<String, Object>();
-                            originalParameters.put(subreport.getParametersExpression(), _parameters);
+                        subreportParameters = (Map<String, Object>) _parameters.get(subreport.getParametersExpression());
+                        if (subreportParameters == null) {
+                            subreportParameters = new HashMap<String, Object>();
+                            _parameters.put(subreport.getParametersExpression(), subreportParameters);
                         }
                     }
-
-                    JasperReport jp = generateJasperReport(subreport.getDynamicReport(), subreport.getLayoutManager(), _parameters, name);
-                    _parameters.put(name, jp);
-                    subreport.setReport(jp);
-                    log.debug("Adding Footer Subreport " + name + " to parameters map");
-                    _parameters = originalParameters;
+                    compiler.add(subreport, name, subreportParameters, "Footer");
                 }
 
             }
 
         }
 
+        ExecutorService executor = subreportsCompilationExecutor;
+        if (executor != null) //set before the workers start, they only read it
+            setCompilerProperty();
+        compiler.compile(executor);
+        ReportMetrics.subreportsGenerated(ReportMetrics.getReportName(dr), compiler.size());
+
         log.debug("Finished compiling and loading subreports for " + namePrefix);
     }
 
@@ -460,7 +689,17 @@ public class DynamicJasperHelper {
      * @param _parameters
      */
     public static void registerParams(DynamicJasperDesign jd, Map _parameters) {
-        for (Object key : _parameters.keySet()) {
+        Collection keys = _parameters.keySet();
+        if (jd.isDeterministicNames()) {
+            List<String> sortedKeys = new ArrayList<String>();
+            for (Object key : keys) {
+                if (key instanceof String)
+                    sortedKeys.add((String) key);
+            }
+            Collections.sort(sortedKeys);
+            keys = sortedKeys;
+        }
+        for (Object key : keys) {
             if (key instanceof String) {
                 try {
                     Object value = _parameters.get(key);
@@ -509,21 +748,91 @@ public class DynamicJasperHelper {
     @SuppressWarnings("unchecked")
     public static JasperReport generateJasperReport(DynamicReport dr, LayoutManager layoutManager, Map generatedParams, String nameprefix) throws JRException {
         log.info("generating JasperReport with prefix: " + nameprefix);
-        JasperReport jr;
         if (generatedParams == null) {
             log.warn("null parameters map passed to DynamicJasperHelper, you wont be able to retrieve some generated values during the layout process.");
             generatedParams = new HashMap();
         }
 
+        CompiledReportCache cache = compiledReportCache;
+        if (cache == null)
+            return buildJasperReport(dr, layoutManager, generatedParams, nameprefix);
+
+        String key = DynamicReportFingerprint.compute(dr, layoutManager, generatedParams, nameprefix);
+        if (key == null) {
+            log.debug("The report depends on state that can't be fingerprinted, it won't be cached");
+            return buildJasperReport(dr, layoutManager, generatedParams, nameprefix);
+        }
+        CompiledReport compiledReport = cache.get(key);
+        if (compiledReport != null) {
+            log.info("Using cached JasperReport " + compiledReport.getJasperReport().getName() + " for prefix: " + nameprefix);
+            compiledReport.injectParameters(generatedParams);
+            return compiledReport.getJasperReport();
+        }
+
+        Map<String, Object> originalParams = CompiledReport.snapshot(generatedParams);
+        JasperReport jr = buildJasperReport(dr, layoutManager, generatedParams, nameprefix);
+        compiledReport = new CompiledReport(jr, CompiledReport.collectGeneratedParameters(originalParams, generatedParams));
+        cache.put(key, compiledReport);
+
+        //registration and layout may change the DynamicReport, so the same instance can be reused later on
+        String builtKey = DynamicReportFingerprint.compute(dr, layoutManager, originalParams, nameprefix);
+        if (builtKey != null && !builtKey.equals(key))
+            cache.put(builtKey, compiledReport);
+
+        return jr;
+    }
+
+    protected static JasperReport buildJasperReport(DynamicReport dr, LayoutManager layoutManager, Map generatedParams, String nameprefix) throws JRException {
+        JasperReport jr;
+        DynamicJasperDesign jd = buildJasperDesign(dr, layoutManager, generatedParams, nameprefix);
+
+        setCompilerProperty();
+
+        long start = System.nanoTime();
+        jr = JasperCompileManager.compileReport(jd);
+        ReportMetrics.phaseCompleted(ReportMetrics.getReportName(dr), ReportPhase.COMPILE, start);
+        generatedParams.putAll(jd.getParametersWithValues());
+        log.info("Done generating JasperReport for design with name: " + jd.getName());
+        return jr;
+    }
+
+    /**
+     * Designs the report and applies the layout, without compiling it (subreports are compiled though).
+     * <b>generatedParams</b> MUST NOT BE NULL, the values generated during the layout are put in it.
+     *
+     * @param dr
+     * @param layoutManager
+     * @param generatedParams
+     * @return
+     * @throws JRException
+     */
+    public static DynamicJasperDesign generateJasperDesign(DynamicReport dr, LayoutManager layoutManager, Map generatedParams) throws JRException {
+        DynamicJasperDesign jd = buildJasperDesign(dr, layoutManager, generatedParams, "r");
+        //noinspection unchecked
+        generatedParams.putAll(jd.getParametersWithValues());
+        return jd;
+    }
+
+    private static DynamicJasperDesign buildJasperDesign(DynamicReport dr, LayoutManager layoutManager, Map generatedParams, String nameprefix) throws JRException {
+        String reportName = ReportMetrics.getReportName(dr);
         visitSubreports(dr, generatedParams);
+        long start = System.nanoTime();
         compileOrLoadSubreports(dr, generatedParams, nameprefix);
+        ReportMetrics.phaseCompleted(reportName, ReportPhase.SUBREPORTS, start);
         log.debug("Continuing with Jasper Design for " + nameprefix);
 
-        DynamicJasperDesign jd = generateJasperDesign(dr);
+        start = System.nanoTime();
+        DynamicJasperDesign jd = generateJasperDesign(dr, nameprefix);
+        jd.setProperty(ReportMetrics.REPORT_NAME_PROPERTY, reportName);
+        ReportMetrics.phaseCompleted(reportName, ReportPhase.DESIGN, start);
+
+        start = System.nanoTime();
         registerEntities(jd, dr, layoutManager);
 
         registerParams(jd, generatedParams); //if we have parameters from the outside, we register them
+        ReportMetrics.phaseCompleted(reportName, ReportPhase.REGISTER_ENTITIES, start);
 
+        start = System.nanoTime();
         if (dr.getJasperDesignDecorator()!=null){
             dr.getJasperDesignDecorator().beforeLayout(jd,generatedParams);
         }
@@ -533,13 +842,14 @@ public class DynamicJasperHelper {
         if (dr.getJasperDesignDecorator()!=null){
             dr.getJasperDesignDecorator().afterLayout(jd,generatedParams);
         }
+        ExpressionUtils.registerSharedPureExpressions(jd);
+        ExpressionUtils.registerIndexedExpressions(jd);
+        ReportMetrics.phaseCompleted(reportName, ReportPhase.LAYOUT, start);
 
-        JRPropertiesUtil.getInstance(DefaultJasperReportsContext.getInstance()).setProperty(JRCompiler.COMPILER_PREFIX, DJCompilerFactory.getCompilerClassName());
+        if (jd.isDeterministicNames())
+            LayoutUtils.setDeterministicUUIDs(jd);
 
-        jr = JasperCompileManager.compileReport(jd);
-        generatedParams.putAll(jd.getParametersWithValues());
-        log.info("Done generating JasperReport for design with name: " + jd.getName());
-        return jr;
+        return jd;
     }
 
      /**
@@ -574,6 +884,10 @@ public class DynamicJasperHelper {
 
     protected static void visitSubreport(DynamicReport parentDr, Subreport subreport) {
         DynamicReport childDr = subreport.getDynamicReport();
+        if (parentDr.isDeterministicNames())
+            childDr.setDeterministicNames(true);
+        if (parentDr.isUseBeanAccessorDataSource())
+            childDr.setUseBeanAccessorDataSource(true);
         if (subreport.isFitToParentPrintableArea()) {
             childDr.getOptions().setPage(parentDr.getOptions().getPage());
             childDr.getOptions().setLeftMargin(parentDr.getOptions().getLeftMargin());
@@ -10,6 +10,7 @@ import java.util.Set;
 public class FieldMapWrapper implements Map {
 
     protected Map<String,JRFillField> map;
+    private Map previousValues;
 
     public FieldMapWrapper(Map<String,JRFillField> map) {
         this.map = map;
@@ -81,11 +82,17 @@ public class FieldMapWrapper implements Map {
 
     public void setMap(Map<String,JRFillField> fldsm) {
         this.map = fldsm;
+        this.previousValues = null;
     }
 
 
+    /**
+     * The returned map always reads the fields of this wrapper, so the same instance is reused
+     */
     public Map getPreviousValues() {
-        return new PreviousValuesMap(this);
+        if (previousValues == null)
+            previousValues = new PreviousValuesMap(this);
+        return previousValues;
     }
 
     class PreviousValuesMap extends FieldMapWrapper {
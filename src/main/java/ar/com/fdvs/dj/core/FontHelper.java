@@ -33,10 +33,18 @@ import ar.com.fdvs.dj.domain.constants.Font;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Measures text for the layout managers.<br>
+ * Font metrics are cached by font name, style and size (see {@link Font#getStandardFontname()}). The cached metrics
+ * are immutable (they measure with their own FontRenderContext), so they can be shared by many threads
+ * designing reports at the same time.
+ */
 public class FontHelper {
 
-	private static Graphics graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).getGraphics();
+	private static final ConcurrentMap<String, FontMetrics> metrics = new ConcurrentHashMap<String, FontMetrics>();
 
 	/**
 	 * Calculates the minium height needed for the specified font and size.
@@ -61,9 +69,28 @@ public class FontHelper {
 	 * @return
 	 */
 	private static FontMetrics getFontMetric(Font font) {
-		java.awt.Font awtFont = java.awt.Font.decode(font.getStandardFontname());
+		String key = font.getStandardFontname();
+		FontMetrics fm = metrics.get(key);
+		if (fm == null) {
+			fm = createFontMetrics(java.awt.Font.decode(key));
+			FontMetrics previous = metrics.putIfAbsent(key, fm);
+			if (previous != null)
+				fm = previous;
+		}
+		return fm;
+	}
 
-        return graphics.getFontMetrics(awtFont);
+	/**
+	 * A Graphics is not thread safe, a new one is used for each font.
+	 * The metrics keep the Graphics defaults: no antialiasing and integer metrics.
+	 */
+	private static FontMetrics createFontMetrics(java.awt.Font awtFont) {
+		Graphics graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).getGraphics();
+		try {
+			return graphics.getFontMetrics(awtFont);
+		} finally {
+			graphics.dispose();
+		}
 	}
 
 
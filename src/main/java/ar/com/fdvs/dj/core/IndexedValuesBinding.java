@@ -0,0 +1,110 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import ar.com.fdvs.dj.domain.IndexedCustomExpression;
+import ar.com.fdvs.dj.domain.IndexedValues;
+import net.sf.jasperreports.engine.fill.JRFillField;
+import net.sf.jasperreports.engine.fill.JRFillParameter;
+import net.sf.jasperreports.engine.fill.JRFillVariable;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Map;
+
+/**
+ * The fields, variables and parameters used by an {@link IndexedCustomExpression}, already resolved
+ * for the report being filled. Names not found in the report are logged once and evaluate to null.
+ */
+class IndexedValuesBinding implements IndexedValues {
+
+	private static final Log log = LogFactory.getLog(IndexedValuesBinding.class);
+
+	private final JRFillField[] fields;
+	private final JRFillVariable[] variables;
+	private final JRFillParameter[] parameters;
+	private final boolean previousFieldValues;
+
+	IndexedValuesBinding(IndexedCustomExpression expression, String reportName, Map<String, JRFillField> fieldsMap,
+						 Map<String, JRFillVariable> variablesMap, Map<String, JRFillParameter> parametersMap, boolean previousFieldValues) {
+		this.previousFieldValues = previousFieldValues;
+
+		String[] names = expression.getFieldNames();
+		fields = new JRFillField[names.length];
+		for (int i = 0; i < names.length; i++) {
+			fields[i] = fieldsMap.get(names[i]);
+			if (fields[i] == null)
+				log.warn("Field \"" + names[i] + "\" used by " + expression.getClass().getName() + " is not present in the report");
+		}
+
+		names = expression.getVariableNames();
+		variables = new JRFillVariable[names.length];
+		for (int i = 0; i < names.length; i++) {
+			variables[i] = lookup(variablesMap, reportName, names[i]);
+			if (variables[i] == null)
+				log.warn("Variable \"" + names[i] + "\" used by " + expression.getClass().getName() + " is not present in the report");
+		}
+
+		names = expression.getParameterNames();
+		parameters = new JRFillParameter[names.length];
+		for (int i = 0; i < names.length; i++) {
+			parameters[i] = lookup(parametersMap, reportName, names[i]);
+			if (parameters[i] == null)
+				log.warn("Parameter \"" + names[i] + "\" used by " + expression.getClass().getName() + " is not present in the report");
+		}
+	}
+
+	/**
+	 * Same lookup as {@link VariableMapWrapper} and {@link ParameterMapWrapper}
+	 */
+	private static <T> T lookup(Map<String, T> map, String reportName, String name) {
+		T value = map.get(name);
+		if (value == null)
+			value = map.get(reportName + "_" + name);
+		return value;
+	}
+
+	public Object getField(int index) {
+		JRFillField field = fields[index];
+		if (field == null)
+			return null;
+		return previousFieldValues ? field.getOldValue() : field.getValue();
+	}
+
+	public Object getVariable(int index) {
+		JRFillVariable variable = variables[index];
+		return variable == null ? null : variable.getValue();
+	}
+
+	public Object getParameter(int index) {
+		JRFillParameter parameter = parameters[index];
+		return parameter == null ? null : parameter.getValue();
+	}
+}
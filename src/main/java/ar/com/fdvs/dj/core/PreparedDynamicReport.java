@@ -0,0 +1,219 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import ar.com.fdvs.dj.core.cache.CompiledReport;
+import ar.com.fdvs.dj.core.calculation.PreAggregatedTotals;
+import ar.com.fdvs.dj.core.metrics.ReportMetrics;
+import ar.com.fdvs.dj.core.metrics.RowCountingDataSource;
+import ar.com.fdvs.dj.domain.DJVirtualization;
+import ar.com.fdvs.dj.util.BeanAccessorDataSource;
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JRVirtualizer;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A DynamicReport already designed and compiled, ready to be filled as many times as needed.<br>
+ * Use {@link DynamicJasperHelper#prepareReport(ar.com.fdvs.dj.domain.DynamicReport, ar.com.fdvs.dj.core.layout.LayoutManager)}
+ * to create it. Instances are immutable and can be filled concurrently from many threads, as long as the
+ * custom expressions used by the report do not keep state between evaluations.<br>
+ * <br>
+ * Usage:
+ * <pre>
+ * PreparedDynamicReport prepared = DynamicJasperHelper.prepareReport(dr, new ClassicLayoutManager());
+ * for (Customer customer : customers) {
+ *     JasperPrint jp = prepared.fill(customer.getInvoices());
+ *     ...
+ * }
+ * </pre>
+ */
+public class PreparedDynamicReport {
+
+	private static final Log log = LogFactory.getLog(PreparedDynamicReport.class);
+
+	private final CompiledReport compiledReport;
+	private final Map<String, Object> defaultParameters;
+	private final DJVirtualization virtualization;
+	private final int pagesInMemory;
+	private final boolean useBeanAccessorDataSource;
+
+	/**
+	 * @param jasperReport
+	 * @param defaultParameters   the parameters given when the report was generated, each fill may replace them
+	 * @param generatedParameters the values generated for the report (see {@link CompiledReport#collectGeneratedParameters(Map, Map)})
+	 */
+	public PreparedDynamicReport(JasperReport jasperReport, Map<String, Object> defaultParameters, Map<String, Object> generatedParameters) {
+		this(jasperReport, defaultParameters, generatedParameters, null, 0);
+	}
+
+	/**
+	 * @param jasperReport
+	 * @param defaultParameters   the parameters given when the report was generated, each fill may replace them
+	 * @param generatedParameters the values generated for the report (see {@link CompiledReport#collectGeneratedParameters(Map, Map)})
+	 * @param virtualization      virtualization used on each fill, may be null
+	 * @param pagesInMemory       pages kept in memory by the virtualizer
+	 */
+	public PreparedDynamicReport(JasperReport jasperReport, Map<String, Object> defaultParameters, Map<String, Object> generatedParameters, DJVirtualization virtualization, int pagesInMemory) {
+		this(jasperReport, defaultParameters, generatedParameters, virtualization, pagesInMemory, false);
+	}
+
+	/**
+	 * @param jasperReport
+	 * @param defaultParameters         the parameters given when the report was generated, each fill may replace them
+	 * @param generatedParameters       the values generated for the report (see {@link CompiledReport#collectGeneratedParameters(Map, Map)})
+	 * @param virtualization            virtualization used on each fill, may be null
+	 * @param pagesInMemory             pages kept in memory by the virtualizer
+	 * @param useBeanAccessorDataSource if true, collections are filled with a {@link BeanAccessorDataSource}
+	 *                                  instead of a JRBeanCollectionDataSource
+	 */
+	public PreparedDynamicReport(JasperReport jasperReport, Map<String, Object> defaultParameters, Map<String, Object> generatedParameters, DJVirtualization virtualization, int pagesInMemory, boolean useBeanAccessorDataSource) {
+		this.compiledReport = new CompiledReport(jasperReport, generatedParameters);
+		this.defaultParameters = defaultParameters == null ? new HashMap<String, Object>() : new HashMap<String, Object>(defaultParameters);
+		this.virtualization = virtualization;
+		this.pagesInMemory = pagesInMemory;
+		this.useBeanAccessorDataSource = useBeanAccessorDataSource;
+	}
+
+	public JasperReport getJasperReport() {
+		return compiledReport.getJasperReport();
+	}
+
+	/**
+	 * @return the values each fill starts with: the parameters given when the report was prepared plus the values
+	 * DJ generated for the report parameters (custom expressions, formatters, subreports, etc.)
+	 */
+	public Map<String, Object> getParameters() {
+		return compiledReport.createFillParameters(defaultParameters);
+	}
+
+	/**
+	 * The name the fills of this report are measured with, see {@link ReportMetrics}
+	 */
+	public String getReportName() {
+		return ReportMetrics.getReportName(getJasperReport(), getJasperReport().getName());
+	}
+
+	/**
+	 * Creates the parameters map for a fill: the default values given when the report was prepared, the given
+	 * ones and finally the generated ones, which cannot be replaced
+	 */
+	protected Map<String, Object> createFillParameters(Map<String, Object> parameters) {
+		Map<String, Object> given = new HashMap<String, Object>(defaultParameters);
+		if (parameters != null)
+			given.putAll(parameters);
+		return compiledReport.createFillParameters(given);
+	}
+
+	public JasperPrint fill(JRDataSource ds, Map<String, Object> parameters) throws JRException {
+		log.debug("filling prepared report " + getJasperReport().getName());
+		Map<String, Object> fillParameters = createFillParameters(parameters);
+		JRVirtualizer virtualizer = ReportVirtualizers.install(virtualization, pagesInMemory, fillParameters);
+		RowCountingDataSource countingDataSource = ReportMetrics.isEnabled() ? RowCountingDataSource.wrap(ds) : null;
+		long start = System.nanoTime();
+		JasperPrint jasperPrint = null;
+		try {
+			fillParameters = PreAggregatedTotals.addTotals(getJasperReport(), fillParameters, ds);
+			jasperPrint = JasperFillManager.fillReport(getJasperReport(), fillParameters, countingDataSource != null ? countingDataSource : ds);
+		} finally {
+			ReportVirtualizers.release(virtualizer, fillParameters, jasperPrint);
+		}
+		ReportMetrics.fillCompleted(jasperPrint, getReportName(), start, countingDataSource != null ? countingDataSource.getRows() : -1);
+		return jasperPrint;
+	}
+
+	public JasperPrint fill(JRDataSource ds) throws JRException {
+		return fill(ds, null);
+	}
+
+	/**
+	 * For reports that run the query embedded in their design
+	 */
+	public JasperPrint fill(Connection con, Map<String, Object> parameters) throws JRException {
+		log.debug("filling prepared report " + getJasperReport().getName());
+		Map<String, Object> fillParameters = createFillParameters(parameters);
+		PreAggregatedTotals.addTotals(getJasperReport(), fillParameters, null); //the rows are read by JasperReports, they can't be pre-aggregated
+		JRVirtualizer virtualizer = ReportVirtualizers.install(virtualization, pagesInMemory, fillParameters);
+		long start = System.nanoTime();
+		JasperPrint jasperPrint = null;
+		try {
+			jasperPrint = JasperFillManager.fillReport(getJasperReport(), fillParameters, con);
+		} finally {
+			ReportVirtualizers.release(virtualizer, fillParameters, jasperPrint);
+		}
+		ReportMetrics.fillCompleted(jasperPrint, getReportName(), start, -1);
+		return jasperPrint;
+	}
+
+	public JasperPrint fill(Collection collection, Map<String, Object> parameters) throws JRException {
+		return fill(createDataSource(collection), parameters);
+	}
+
+	public JasperPrint fill(Collection collection) throws JRException {
+		return fill(createDataSource(collection), null);
+	}
+
+	private JRDataSource createDataSource(Collection collection) {
+		if (useBeanAccessorDataSource)
+			return new BeanAccessorDataSource(collection, getJasperReport().getFields());
+		return new JRBeanCollectionDataSource(collection);
+	}
+
+	/**
+	 * For reports whose datasource is passed as parameter
+	 */
+	public JasperPrint fill(Map<String, Object> parameters) throws JRException {
+		log.debug("filling prepared report " + getJasperReport().getName());
+		Map<String, Object> fillParameters = createFillParameters(parameters);
+		JRVirtualizer virtualizer = ReportVirtualizers.install(virtualization, pagesInMemory, fillParameters);
+		long start = System.nanoTime();
+		JasperPrint jasperPrint = null;
+		try {
+			Object ds = fillParameters.get(JRParameter.REPORT_DATA_SOURCE);
+			fillParameters = PreAggregatedTotals.addTotals(getJasperReport(), fillParameters, ds instanceof JRDataSource ? (JRDataSource) ds : null);
+			jasperPrint = JasperFillManager.fillReport(getJasperReport(), fillParameters);
+		} finally {
+			ReportVirtualizers.release(virtualizer, fillParameters, jasperPrint);
+		}
+		ReportMetrics.fillCompleted(jasperPrint, getReportName(), start, -1);
+		return jasperPrint;
+	}
+}
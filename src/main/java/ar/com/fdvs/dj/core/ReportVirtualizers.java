@@ -0,0 +1,159 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import ar.com.fdvs.dj.domain.DJVirtualization;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JRVirtualizer;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.fill.JRFileVirtualizer;
+import net.sf.jasperreports.engine.fill.JRGzipVirtualizer;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.util.JRSwapFile;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates the virtualizer configured with {@link DJVirtualization} and puts it in the fill parameters.<br>
+ * <br>
+ * After the fill the virtualizer keeps serving the pages of the JasperPrint, so it lives as long as the print: it is
+ * cleaned up (i.e. its swap file is deleted) by {@link #cleanup(JasperPrint)} once the print has been exported, or
+ * when a later fill finds that the print was garbage collected.
+ */
+public class ReportVirtualizers {
+
+	private static final Log log = LogFactory.getLog(ReportVirtualizers.class);
+
+	private static final int SWAP_BLOCK_SIZE = 4096;
+	private static final int SWAP_MIN_GROW_COUNT = 256;
+
+	private static final ReferenceQueue<JasperPrint> collectedPrints = new ReferenceQueue<JasperPrint>();
+	private static final Map<JasperPrint, PrintVirtualizer> printVirtualizers = Collections.synchronizedMap(new WeakHashMap<JasperPrint, PrintVirtualizer>());
+	private static final Set<PrintVirtualizer> pending = Collections.newSetFromMap(new ConcurrentHashMap<PrintVirtualizer, Boolean>());
+
+	private ReportVirtualizers() {
+	}
+
+	/**
+	 * Releases the virtualizer DJ created for the print, its pages can't be read afterwards. Does nothing if the
+	 * print was not virtualized by DJ.
+	 * @param jasperPrint a print generated by DynamicJasperHelper or PreparedDynamicReport, already exported
+	 */
+	public static void cleanup(JasperPrint jasperPrint) {
+		PrintVirtualizer printVirtualizer = printVirtualizers.remove(jasperPrint);
+		if (printVirtualizer != null)
+			printVirtualizer.cleanup();
+	}
+
+	static JRVirtualizer create(DJVirtualization virtualization, int pagesInMemory) {
+		log.debug("creating " + virtualization.getType() + " virtualizer, keeping " + pagesInMemory + " pages in memory");
+		switch (virtualization.getType()) {
+			case FILE:
+				return new JRFileVirtualizer(pagesInMemory, virtualization.getDirectory());
+			case GZIP:
+				return new JRGzipVirtualizer(pagesInMemory);
+			case OFF_HEAP:
+				return new DirectBufferVirtualizer(pagesInMemory);
+			case SWAP_FILE:
+			default:
+				JRSwapFile swapFile = new JRSwapFile(virtualization.getDirectory(), SWAP_BLOCK_SIZE, SWAP_MIN_GROW_COUNT);
+				return new JRSwapFileVirtualizer(pagesInMemory, swapFile, true);
+		}
+	}
+
+	/**
+	 * Puts a new virtualizer in the parameters, unless there is no virtualization configured or the
+	 * caller already provided one.
+	 * @param parameters the parameters of the fill, not null
+	 * @return the virtualizer created, null if none
+	 */
+	static JRVirtualizer install(DJVirtualization virtualization, int pagesInMemory, Map<String, Object> parameters) {
+		cleanupCollected();
+		if (virtualization == null || parameters.get(JRParameter.REPORT_VIRTUALIZER) != null)
+			return null;
+		JRVirtualizer virtualizer = create(virtualization, pagesInMemory);
+		parameters.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
+		return virtualizer;
+	}
+
+	/**
+	 * After the fill: the virtualizer keeps serving the pages of the JasperPrint, read only, until the print is
+	 * cleaned up. If the fill failed it is cleaned up right away.
+	 * @param jasperPrint the print filled, null if the fill failed
+	 */
+	static void release(JRVirtualizer virtualizer, Map<String, Object> parameters, JasperPrint jasperPrint) {
+		if (virtualizer == null)
+			return;
+		parameters.remove(JRParameter.REPORT_VIRTUALIZER);
+		if (jasperPrint == null) {
+			virtualizer.cleanup();
+			return;
+		}
+		virtualizer.setReadOnly(true);
+		PrintVirtualizer printVirtualizer = new PrintVirtualizer(jasperPrint, virtualizer);
+		pending.add(printVirtualizer);
+		printVirtualizers.put(jasperPrint, printVirtualizer);
+	}
+
+	private static void cleanupCollected() {
+		Reference<? extends JasperPrint> collected;
+		while ((collected = collectedPrints.poll()) != null) {
+			((PrintVirtualizer) collected).cleanup();
+		}
+	}
+
+	/**
+	 * Kept in {@link #pending} until cleaned up, so it is enqueued when the print is collected
+	 */
+	private static class PrintVirtualizer extends WeakReference<JasperPrint> {
+		private final JRVirtualizer virtualizer;
+
+		PrintVirtualizer(JasperPrint jasperPrint, JRVirtualizer virtualizer) {
+			super(jasperPrint, collectedPrints);
+			this.virtualizer = virtualizer;
+		}
+
+		void cleanup() {
+			if (pending.remove(this)) {
+				log.debug("cleaning up virtualizer " + virtualizer);
+				virtualizer.cleanup();
+			}
+		}
+	}
+}
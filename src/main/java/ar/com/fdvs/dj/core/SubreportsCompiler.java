@@ -0,0 +1,348 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import ar.com.fdvs.dj.core.cache.CompiledReport;
+import ar.com.fdvs.dj.core.layout.LayoutManager;
+import ar.com.fdvs.dj.domain.AutoText;
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.domain.DynamicReportOptions;
+import ar.com.fdvs.dj.domain.Style;
+import ar.com.fdvs.dj.domain.entities.DJGroup;
+import ar.com.fdvs.dj.domain.entities.DJGroupVariable;
+import ar.com.fdvs.dj.domain.entities.Subreport;
+import ar.com.fdvs.dj.domain.entities.columns.AbstractColumn;
+import ar.com.fdvs.dj.domain.entities.columns.ExpressionColumn;
+import ar.com.fdvs.dj.domain.entities.columns.PropertyColumn;
+import ar.com.fdvs.dj.domain.entities.conditionalStyle.ConditionalStyle;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperReport;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Generates the JasperReports for the subreports (and concatenated reports) of a report, one after the
+ * other or concurrently when an executor is given.<br>
+ * <br>
+ * When compiled concurrently, every subreport is generated over its own copy of the parameters map and the
+ * generated values are then merged back in the order the subreports were added. Unlike the sequential path,
+ * a subreport does not see the values generated for the ones added before it: subreports are only compiled
+ * concurrently when they share none of the objects the generation modifies (see {@link #areIndependent()}).
+ * Only the first level of subreports is compiled concurrently, nested subreports are compiled by the same
+ * thread that compiles their parent.
+ */
+class SubreportsCompiler {
+
+	private static final Log log = LogFactory.getLog(SubreportsCompiler.class);
+
+	private static final ThreadLocal<Boolean> compilingInParallel = new ThreadLocal<Boolean>();
+
+	private final List<SubreportCompilation> compilations = new ArrayList<SubreportCompilation>();
+
+	/**
+	 * @param subreport
+	 * @param name       the name already given to the subreport
+	 * @param parameters the map where the subreport and its generated values must end up
+	 * @param type       "Header" or "Footer", for logging purposes
+	 * @throws JRException if the subreport pre-aggregates its percentages, its datasource is not known before the fill
+	 */
+	void add(Subreport subreport, String name, Map<String, Object> parameters, String type) throws JRException {
+		if (subreport.getDynamicReport().getOptions().isPreAggregatePercentages())
+			throw new JRException("Subreports can't pre-aggregate their percentages: " + name);
+		compilations.add(new SubreportCompilation(subreport, name, parameters, type));
+	}
+
+	int size() {
+		return compilations.size();
+	}
+
+	/**
+	 * @return true if the current thread is compiling a subreport concurrently with others
+	 */
+	static boolean isCompilingInParallel() {
+		return Boolean.TRUE.equals(compilingInParallel.get());
+	}
+
+	void compile(ExecutorService executor) throws JRException {
+		if (executor == null || compilations.size() < 2 || isCompilingInParallel() || !areIndependent()) {
+			for (SubreportCompilation compilation : compilations) {
+				compilation.compile();
+			}
+		} else {
+			compileInParallel(executor);
+		}
+	}
+
+	private void compileInParallel(ExecutorService executor) throws JRException {
+		log.debug("Compiling " + compilations.size() + " subreports concurrently");
+		List<Future<CompiledReport>> futures = new ArrayList<Future<CompiledReport>>(compilations.size());
+		for (final SubreportCompilation compilation : compilations) {
+			//snapshots are taken here, the shared maps are only touched by this thread
+			final Map<String, Object> before = CompiledReport.snapshot(compilation.parameters);
+			final Map<String, Object> workingCopy = CompiledReport.snapshot(compilation.parameters);
+			futures.add(executor.submit(new Callable<CompiledReport>() {
+				public CompiledReport call() throws Exception {
+					compilingInParallel.set(Boolean.TRUE);
+					try {
+						Subreport subreport = compilation.subreport;
+						JasperReport jr = DynamicJasperHelper.generateJasperReport(subreport.getDynamicReport(), subreport.getLayoutManager(), workingCopy, compilation.name);
+						return new CompiledReport(jr, CompiledReport.collectGeneratedParameters(before, workingCopy));
+					} finally {
+						compilingInParallel.remove();
+					}
+				}
+			}));
+		}
+
+		List<String> failed = new ArrayList<String>();
+		Throwable firstError = null;
+		List<Throwable> otherErrors = new ArrayList<Throwable>();
+		for (int i = 0; i < compilations.size(); i++) {
+			SubreportCompilation compilation = compilations.get(i);
+			try {
+				CompiledReport compiledReport = futures.get(i).get();
+				compiledReport.injectParameters(compilation.parameters);
+				compilation.register(compiledReport.getJasperReport());
+			} catch (ExecutionException e) {
+				failed.add(compilation.name + ": " + e.getCause().getMessage());
+				if (firstError == null)
+					firstError = e.getCause();
+				else
+					otherErrors.add(e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for (Future<CompiledReport> future : futures) {
+					future.cancel(true);
+				}
+				throw new JRException("Interrupted while compiling subreports", e);
+			}
+		}
+
+		if (firstError != null) {
+			JRException exception = new JRException("Error compiling " + failed.size() + " subreport(s): " + failed, firstError);
+			for (Throwable error : otherErrors) {
+				exception.addSuppressed(error);
+			}
+			throw exception;
+		}
+	}
+
+	/**
+	 * Subreports sharing a DynamicReport, a LayoutManager, a Style, a Font, a column, a group, a field, a variable
+	 * or an expression instance (at any level) cannot be compiled concurrently since all of them are modified or
+	 * registered during the generation (i.e: styles and columns are given a name, fonts get the report encoding,
+	 * group variables get the generated names). Styles are often shared, or even static constants.
+	 */
+	private boolean areIndependent() {
+		Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		for (SubreportCompilation compilation : compilations) {
+			if (compilation.parameters == null)
+				return false;
+			Set<Object> own = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+			collectMutableObjects(compilation.subreport, own);
+			for (Object o : own) {
+				if (!seen.add(o)) {
+					log.debug("Subreport " + compilation.name + " shares objects with another subreport, compiling sequentially");
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static void collectMutableObjects(Subreport subreport, Set<Object> objects) {
+		DynamicReport dr = subreport.getDynamicReport();
+		LayoutManager layoutManager = subreport.getLayoutManager();
+		if (layoutManager != null)
+			objects.add(layoutManager);
+		if (dr == null || !objects.add(dr))
+			return;
+		Set<Style> styles = Collections.newSetFromMap(new IdentityHashMap<Style, Boolean>());
+		collectStyles(dr, styles);
+		for (Style style : styles) {
+			objects.add(style);
+			//the font is only modified to set the report encoding, most styles share the same static font
+			if (dr.getDefaultEncoding() != null && style.getFont() != null)
+				objects.add(style.getFont());
+		}
+		collectEntities(dr, objects);
+		for (DJGroup group : dr.getColumnsGroups()) {
+			for (Subreport child : group.getHeaderSubreports()) {
+				collectMutableObjects(child, objects);
+			}
+			for (Subreport child : group.getFooterSubreports()) {
+				collectMutableObjects(child, objects);
+			}
+		}
+	}
+
+	private static void collectEntities(DynamicReport dr, Set<Object> objects) {
+		for (AbstractColumn column : dr.getColumns()) {
+			collectColumn(column, objects);
+		}
+		for (DJGroup group : dr.getColumnsGroups()) {
+			objects.add(group);
+			collectColumn(group.getColumnToGroupBy(), objects);
+			addAll(group.getHeaderVariables(), objects);
+			addAll(group.getFooterVariables(), objects);
+			addAll(group.getVariables(), objects);
+			for (DJGroupVariable variable : group.getHeaderVariables()) {
+				addIfNotNull(variable.getValueExpression(), objects);
+				addIfNotNull(variable.getLabel(), objects);
+			}
+			for (DJGroupVariable variable : group.getFooterVariables()) {
+				addIfNotNull(variable.getValueExpression(), objects);
+				addIfNotNull(variable.getLabel(), objects);
+			}
+			addIfNotNull(group.getFooterLabel(), objects);
+		}
+		addAll(dr.getFields(), objects);
+		addAll(dr.getVariables(), objects);
+		addAll(dr.getCharts(), objects);
+	}
+
+	private static void collectColumn(AbstractColumn column, Set<Object> objects) {
+		if (column == null || !objects.add(column))
+			return;
+		if (column instanceof PropertyColumn) {
+			PropertyColumn propertyColumn = (PropertyColumn) column;
+			addIfNotNull(propertyColumn.getColumnProperty(), objects);
+			addIfNotNull(propertyColumn.getExpressionToGroupBy(), objects);
+		}
+		if (column instanceof ExpressionColumn) {
+			ExpressionColumn expressionColumn = (ExpressionColumn) column;
+			addIfNotNull(expressionColumn.getExpression(), objects);
+			if (expressionColumn.getColumns() != null)
+				addAll(expressionColumn.getColumns(), objects);
+		}
+		if (column.getConditionalStyles() != null)
+			addAll(column.getConditionalStyles(), objects);
+	}
+
+	private static void addAll(Collection<?> collection, Set<Object> objects) {
+		if (collection == null)
+			return;
+		for (Object o : collection) {
+			addIfNotNull(o, objects);
+		}
+	}
+
+	private static void addIfNotNull(Object o, Set<Object> objects) {
+		if (o != null)
+			objects.add(o);
+	}
+
+	private static void collectStyles(DynamicReport dr, Set<Style> styles) {
+		DynamicReportOptions options = dr.getOptions();
+		addStyle(dr.getTitleStyle(), styles);
+		addStyle(dr.getSubtitleStyle(), styles);
+		addStyle(dr.getWhenNoDataStyle(), styles);
+		addStyle(options.getDefaultDetailStyle(), styles);
+		addStyle(options.getDefaultHeaderStyle(), styles);
+		addStyle(options.getDefaultFooterStyle(), styles);
+		addStyle(options.getDefaultGroupHeaderStyle(), styles);
+		addStyle(options.getDefaultGroupFooterStyle(), styles);
+		addStyle(options.getOddRowBackgroundStyle(), styles);
+		for (Style style : dr.getStyles().values()) {
+			addStyle(style, styles);
+		}
+		for (AbstractColumn column : dr.getColumns()) {
+			addStyle(column.getStyle(), styles);
+			addStyle(column.getHeaderStyle(), styles);
+			if (column.getConditionalStyles() != null) {
+				for (ConditionalStyle conditionalStyle : column.getConditionalStyles()) {
+					addStyle(conditionalStyle.getStyle(), styles);
+				}
+			}
+		}
+		for (DJGroup group : dr.getColumnsGroups()) {
+			addStyle(group.getDefaulHeaderVariableStyle(), styles);
+			addStyle(group.getDefaulFooterVariableStyle(), styles);
+			addStyle(group.getDefaultColumnHeaederStyle(), styles);
+			if (group.getFooterLabel() != null)
+				addStyle(group.getFooterLabel().getStyle(), styles);
+			addStyles(group.getHeaderVariables(), styles);
+			addStyles(group.getFooterVariables(), styles);
+		}
+		for (AutoText autoText : dr.getAutoTexts()) {
+			addStyle(autoText.getStyle(), styles);
+		}
+	}
+
+	private static void addStyles(List<DJGroupVariable> variables, Set<Style> styles) {
+		for (DJGroupVariable variable : variables) {
+			addStyle(variable.getStyle(), styles);
+			if (variable.getLabel() != null)
+				addStyle(variable.getLabel().getStyle(), styles);
+		}
+	}
+
+	private static void addStyle(Style style, Set<Style> styles) {
+		if (style != null)
+			styles.add(style);
+	}
+
+	private static class SubreportCompilation {
+		private final Subreport subreport;
+		private final String name;
+		private final Map<String, Object> parameters;
+		private final String type;
+
+		SubreportCompilation(Subreport subreport, String name, Map<String, Object> parameters, String type) {
+			this.subreport = subreport;
+			this.name = name;
+			this.parameters = parameters;
+			this.type = type;
+		}
+
+		void compile() throws JRException {
+			JasperReport jr = DynamicJasperHelper.generateJasperReport(subreport.getDynamicReport(), subreport.getLayoutManager(), parameters, name);
+			register(jr);
+		}
+
+		void register(JasperReport jr) {
+			parameters.put(name, jr);
+			subreport.setReport(jr);
+			log.debug("Adding " + type + " Subreport " + name + " to parameters map");
+		}
+	}
+}
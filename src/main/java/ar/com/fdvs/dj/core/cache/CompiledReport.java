@@ -0,0 +1,204 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.cache;
+
+import ar.com.fdvs.dj.domain.entities.Entity;
+import net.sf.jasperreports.engine.JasperReport;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compiled JasperReport together with the parameters DJ generated while building it
+ * (custom expressions, formatters, compiled subreports, resource bundle, etc.).<br>
+ * Those values are not part of the compiled report, they must be present in the parameters
+ * map at fill time, that's why they travel along with it.
+ */
+public class CompiledReport {
+
+	private final JasperReport jasperReport;
+
+	private final Map<String, Object> generatedParameters;
+
+	public CompiledReport(JasperReport jasperReport, Map<String, Object> generatedParameters) {
+		this.jasperReport = jasperReport;
+		this.generatedParameters = Collections.unmodifiableMap(new HashMap<String, Object>(generatedParameters));
+	}
+
+	public JasperReport getJasperReport() {
+		return jasperReport;
+	}
+
+	public Map<String, Object> getGeneratedParameters() {
+		return generatedParameters;
+	}
+
+	/**
+	 * Puts the generated parameters in the map that will be used to fill the report. Maps created during the
+	 * report generation (i.e: subreports parameters maps) are copied so they are never shared between fills.
+	 *
+	 * @param parameters the parameters map passed to DynamicJasperHelper
+	 */
+	@SuppressWarnings("unchecked")
+	public void injectParameters(Map parameters) {
+		injectParameters(generatedParameters, parameters);
+	}
+
+	/**
+	 * Creates the parameters map for a fill: the given values plus the generated ones. The generated values
+	 * are put last, so a given parameter cannot replace the expressions, formatters or subreports the report
+	 * relies on. Neither the given map nor its nested maps are modified.
+	 *
+	 * @param parameters the values for this fill, may be null
+	 * @return
+	 */
+	public Map<String, Object> createFillParameters(Map<String, Object> parameters) {
+		Map<String, Object> fillParameters = new HashMap<String, Object>();
+		if (parameters != null) {
+			fillParameters.putAll(parameters);
+			copyNestedMaps(generatedParameters, fillParameters);
+		}
+		injectParameters(generatedParameters, fillParameters);
+		return fillParameters;
+	}
+
+	/**
+	 * The generated values of subreports are injected in the maps given for them, those maps are replaced by copies
+	 */
+	@SuppressWarnings("unchecked")
+	private static void copyNestedMaps(Map<String, Object> source, Map<String, Object> target) {
+		for (Map.Entry<String, Object> entry : source.entrySet()) {
+			Object existing = target.get(entry.getKey());
+			if (entry.getValue() instanceof NestedParameters && existing instanceof Map) {
+				Map<String, Object> copy = new HashMap<String, Object>((Map<String, Object>) existing);
+				copyNestedMaps(((NestedParameters) entry.getValue()).getParameters(), copy);
+				target.put(entry.getKey(), copy);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void injectParameters(Map<String, Object> source, Map target) {
+		for (Map.Entry<String, Object> entry : source.entrySet()) {
+			Object value = entry.getValue();
+			if (value instanceof NestedParameters) {
+				Object existing = target.get(entry.getKey());
+				Map nested;
+				if (existing instanceof Map) {
+					nested = (Map) existing;
+				} else {
+					nested = new HashMap<String, Object>();
+					target.put(entry.getKey(), nested);
+				}
+				injectParameters(((NestedParameters) value).getParameters(), nested);
+			} else if (value instanceof Map) {
+				target.put(entry.getKey(), new HashMap<String, Object>((Map<String, Object>) value));
+			} else {
+				target.put(entry.getKey(), value);
+			}
+		}
+	}
+
+	/**
+	 * Takes a copy of the parameters map before the report is generated, so the generated values can be
+	 * told apart afterwards (see {@link #collectGeneratedParameters(Map, Map)}).
+	 *
+	 * @param parameters
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static Map<String, Object> snapshot(Map parameters) {
+		Map<String, Object> snapshot = new HashMap<String, Object>();
+		for (Object o : parameters.entrySet()) {
+			Map.Entry entry = (Map.Entry) o;
+			if (!(entry.getKey() instanceof String))
+				continue;
+			Object value = entry.getValue();
+			if (value instanceof Map)
+				value = snapshot((Map) value);
+			snapshot.put((String) entry.getKey(), value);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Returns the entries that were added (or replaced) in the parameters map during the report generation.
+	 * Maps that existed before and received new entries (i.e: a subreport parameters map) are returned as
+	 * nested differences.
+	 *
+	 * @param before a snapshot taken with {@link #snapshot(Map)}
+	 * @param after  the parameters map after the report generation
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static Map<String, Object> collectGeneratedParameters(Map<String, Object> before, Map after) {
+		Map<String, Object> generated = new HashMap<String, Object>();
+		for (Object o : after.entrySet()) {
+			Map.Entry entry = (Map.Entry) o;
+			if (!(entry.getKey() instanceof String))
+				continue;
+			String key = (String) entry.getKey();
+			Object value = entry.getValue();
+			if (!before.containsKey(key)) {
+				generated.put(key, value);
+				continue;
+			}
+			Object previous = before.get(key);
+			if (previous instanceof Map && value instanceof Map) {
+				Map<String, Object> nested = collectGeneratedParameters((Map<String, Object>) previous, (Map) value);
+				if (!nested.isEmpty())
+					generated.put(key, new NestedParameters(nested));
+			} else if (previous != value) {
+				generated.put(key, value);
+			}
+		}
+		return generated;
+	}
+
+	/**
+	 * Entries generated inside a parameters map that was provided by the user
+	 */
+	static class NestedParameters implements Serializable {
+
+		private static final long serialVersionUID = Entity.SERIAL_VERSION_UID;
+
+		private final Map<String, Object> parameters;
+
+		NestedParameters(Map<String, Object> parameters) {
+			this.parameters = parameters;
+		}
+
+		Map<String, Object> getParameters() {
+			return parameters;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.cache;
+
+/**
+ * A cache of already compiled reports. When one is set in {@link ar.com.fdvs.dj.core.DynamicJasperHelper},
+ * it is consulted before building and compiling a DynamicReport, so reports that are structurally identical
+ * to one compiled before skip the design, layout and compile stages.<br>
+ * <br>
+ * Keys are the fingerprints produced by {@link DynamicReportFingerprint}. Implementations must be thread safe.
+ *
+ * @see LRUCompiledReportCache
+ */
+public interface CompiledReportCache {
+
+	/**
+	 * @param key the report fingerprint
+	 * @return the cached report, or null if there is none for the given key
+	 */
+	CompiledReport get(String key);
+
+	void put(String key, CompiledReport compiledReport);
+
+	void clear();
+
+	int size();
+
+	long getHitCount();
+
+	long getMissCount();
+
+	long getEvictionCount();
+
+}
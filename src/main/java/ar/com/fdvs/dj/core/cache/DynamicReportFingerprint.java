@@ -0,0 +1,437 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.cache;
+
+import ar.com.fdvs.dj.core.layout.LayoutManager;
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.domain.entities.Subreport;
+import net.sf.jasperreports.engine.JRExpression;
+import net.sf.jasperreports.engine.JasperReport;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.DateFormatSymbols;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TimeZone;
+
+/**
+ * Computes a structural fingerprint of a {@link DynamicReport}: two reports that would produce the same
+ * compiled JasperReport have the same fingerprint, no matter if they are the same instance or not.<br>
+ * <br>
+ * The object graph is walked by reflection. DynamicJasper domain objects, user custom expressions and
+ * formatters are compared by their class and their non transient state, including the values captured by
+ * anonymous, local and lambda classes, while other objects (i.e: a user provided JasperReport) are compared by
+ * identity.<br>
+ * A report is only cached if that state is all its behaviour depends on: inner, anonymous and local classes of
+ * the application that hold their enclosing instance may behave differently with the same state, so reports
+ * that have them get no fingerprint (see {@link #compute}). Declare those classes static, or in a static
+ * method, for their reports to be cached.<br>
+ * <br>
+ * Fingerprints of reports with objects compared by identity, or with lambdas (whose class names are given
+ * at runtime), are only valid in the running JVM: they start with {@link #NON_PORTABLE_PREFIX}, see
+ * {@link #isPortable(String)}.
+ */
+public class DynamicReportFingerprint {
+
+	private static final String DJ_PACKAGE = "ar.com.fdvs.dj.";
+
+	/**
+	 * Prefix of the fingerprints that can't be compared with the ones computed by another JVM
+	 */
+	public static final String NON_PORTABLE_PREFIX = "~";
+
+	/**
+	 * Random property name given by the ColumnBuilder to expression columns, replaced during registration
+	 */
+	private static final String PLACEHOLDER_PROPERTY = "__name_to_be_replaced_in_registration_manager_";
+
+	/**
+	 * How deep the state of non DynamicJasper objects (custom expressions, formatters, etc.) is inspected
+	 */
+	private static final int MAX_FOREIGN_DEPTH = 8;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * A ClassValue, so the cached fields do not keep the classes (and their class loaders) alive
+	 */
+	private static final ClassValue<List<Field>> FIELDS_CACHE = new ClassValue<List<Field>>() {
+		protected List<Field> computeValue(Class<?> type) {
+			return findFields(type);
+		}
+	};
+
+	/**
+	 * Whether instances of the class hold their enclosing instance (this$0)
+	 */
+	private static final ClassValue<Boolean> ENCLOSING_INSTANCE = new ClassValue<Boolean>() {
+		protected Boolean computeValue(Class<?> type) {
+			for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+				for (Field field : c.getDeclaredFields()) {
+					if (field.isSynthetic() && field.getName().startsWith("this$"))
+						return Boolean.TRUE;
+				}
+			}
+			return Boolean.FALSE;
+		}
+	};
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final StringBuilder buffer = new StringBuilder(4096);
+
+	private final Map<Object, Integer> visited = new IdentityHashMap<Object, Integer>();
+
+	private boolean portable = true;
+
+	private boolean cacheable = true;
+
+	private DynamicReportFingerprint() {
+	}
+
+	/**
+	 * @param dr
+	 * @param layoutManager
+	 * @param parameters    only the keys and the value classes are taken into account
+	 * @param namePrefix
+	 * @return an hex encoded SHA-256 of the report structure, prefixed with {@link #NON_PORTABLE_PREFIX} if it is only
+	 * valid in this JVM, or null if the report must not be cached
+	 */
+	public static String compute(DynamicReport dr, LayoutManager layoutManager, Map<?, ?> parameters, String namePrefix) {
+		DynamicReportFingerprint fingerprint = new DynamicReportFingerprint();
+		fingerprint.append("prefix", namePrefix);
+		fingerprint.append("lm", layoutManager == null ? null : layoutManager.getClass().getName());
+		fingerprint.appendParameterTypes(parameters);
+		fingerprint.write(dr, 0);
+		if (!fingerprint.cacheable)
+			return null;
+		String digest = fingerprint.digest();
+		return fingerprint.portable ? digest : NON_PORTABLE_PREFIX + digest;
+	}
+
+	/**
+	 * @return true if the fingerprint identifies the same report structure in any JVM, so it can be persisted
+	 */
+	public static boolean isPortable(String fingerprint) {
+		return !fingerprint.startsWith(NON_PORTABLE_PREFIX);
+	}
+
+	private void appendParameterTypes(Map<?, ?> parameters) {
+		buffer.append("params{");
+		if (parameters != null) {
+			List<String> entries = new ArrayList<String>();
+			for (Map.Entry<?, ?> entry : parameters.entrySet()) {
+				Object value = entry.getValue();
+				entries.add(entry.getKey() + "=" + (value == null ? "null" : value.getClass().getName()));
+			}
+			Collections.sort(entries);
+			for (String entry : entries) {
+				buffer.append(entry).append(';');
+			}
+		}
+		buffer.append('}');
+	}
+
+	private void append(String name, String value) {
+		buffer.append(name).append('=').append(value).append(';');
+	}
+
+	private void write(Object o, int foreignDepth) {
+		if (o == null) {
+			buffer.append('N');
+			return;
+		}
+		Class<?> clazz = o.getClass();
+		if (o instanceof String) {
+			String s = (String) o;
+			if (s.startsWith(PLACEHOLDER_PROPERTY))
+				s = PLACEHOLDER_PROPERTY;
+			buffer.append('S').append(s.length()).append(':').append(s);
+		} else if (o instanceof Number || o instanceof Boolean || o instanceof Character) {
+			buffer.append(clazz.getSimpleName()).append(':').append(o).append(';');
+		} else if (o instanceof Enum) {
+			buffer.append('E').append(((Enum<?>) o).getDeclaringClass().getName()).append('.').append(((Enum<?>) o).name()).append(';');
+		} else if (o instanceof Class) {
+			buffer.append('C').append(((Class<?>) o).getName()).append(';');
+		} else if (o instanceof Locale || o instanceof TimeZone) {
+			buffer.append(clazz.getSimpleName()).append(':').append(o instanceof TimeZone ? ((TimeZone) o).getID() : o).append(';');
+		} else if (o instanceof Color) {
+			buffer.append("Color:").append(((Color) o).getRGB()).append(';');
+		} else if (o instanceof Font) {
+			buffer.append("Font:").append(o).append(';');
+		} else if (o instanceof Date) {
+			buffer.append("Date:").append(((Date) o).getTime()).append(';');
+		} else if (o instanceof LayoutManager) {
+			buffer.append("LM:").append(clazz.getName()).append(';');
+		} else if (o instanceof JRExpression) {
+			buffer.append("JRE:");
+			write(((JRExpression) o).getText(), foreignDepth);
+		} else if (o instanceof JasperReport) {
+			writeIdentity(o);
+		} else if (o instanceof DecimalFormat) {
+			DecimalFormat df = (DecimalFormat) o;
+			DecimalFormatSymbols symbols = df.getDecimalFormatSymbols();
+			buffer.append("DF:").append(df.toPattern()).append(';').append(symbols.getDecimalSeparator())
+					.append(symbols.getGroupingSeparator()).append(symbols.getMinusSign()).append(symbols.getPercent())
+					.append(symbols.getCurrencySymbol()).append(';');
+		} else if (o instanceof SimpleDateFormat) {
+			SimpleDateFormat sdf = (SimpleDateFormat) o;
+			DateFormatSymbols symbols = sdf.getDateFormatSymbols();
+			buffer.append("SDF:").append(sdf.toPattern()).append(';').append(sdf.getTimeZone().getID()).append(';');
+			write(symbols.getMonths(), foreignDepth);
+			write(symbols.getShortMonths(), foreignDepth);
+			write(symbols.getWeekdays(), foreignDepth);
+			write(symbols.getAmPmStrings(), foreignDepth);
+		} else if (!enter(o)) {
+			return;
+		} else if (clazz.isArray()) {
+			int length = Array.getLength(o);
+			buffer.append('[').append(clazz.getComponentType().getName()).append(length).append(':');
+			for (int i = 0; i < length; i++) {
+				write(Array.get(o, i), foreignDepth);
+			}
+			buffer.append(']');
+		} else if (o instanceof Map) {
+			buffer.append("M{");
+			Map<?, ?> map = (Map<?, ?>) o;
+			if (map instanceof SortedMap || map instanceof LinkedHashMap) {
+				for (Map.Entry<?, ?> entry : map.entrySet()) {
+					write(entry.getKey(), foreignDepth);
+					write(entry.getValue(), foreignDepth);
+				}
+			} else {
+				List<String> tokens = new ArrayList<String>(map.size());
+				for (Map.Entry<?, ?> entry : map.entrySet()) {
+					tokens.add(token(entry.getKey(), foreignDepth) + "=" + token(entry.getValue(), foreignDepth));
+				}
+				Collections.sort(tokens);
+				for (String token : tokens) {
+					buffer.append(token);
+				}
+			}
+			buffer.append('}');
+		} else if (o instanceof Collection) {
+			Collection<?> collection = (Collection<?>) o;
+			if (o instanceof Set && !(o instanceof SortedSet || o instanceof LinkedHashSet)) {
+				List<String> tokens = new ArrayList<String>(collection.size());
+				for (Object element : collection) {
+					tokens.add(token(element, foreignDepth));
+				}
+				Collections.sort(tokens);
+				buffer.append("U(");
+				for (String token : tokens) {
+					buffer.append(token);
+				}
+			} else {
+				buffer.append("L(");
+				for (Object element : collection) {
+					write(element, foreignDepth);
+				}
+			}
+			buffer.append(')');
+		} else if (clazz.getName().startsWith(DJ_PACKAGE)) {
+			writeFields(o, foreignDepth);
+		} else if (clazz.getName().startsWith("java.") || clazz.getName().startsWith("javax.") || foreignDepth >= MAX_FOREIGN_DEPTH) {
+			writeIdentity(o);
+		} else {
+			writeFields(o, foreignDepth + 1);
+		}
+	}
+
+	/**
+	 * Registers the object as visited, if it was already visited a back reference is written instead
+	 *
+	 * @return true if the object state must be written
+	 */
+	private boolean enter(Object o) {
+		Integer index = visited.get(o);
+		if (index != null) {
+			buffer.append("@ref").append(index).append(';');
+			return false;
+		}
+		visited.put(o, visited.size());
+		return true;
+	}
+
+	private void writeIdentity(Object o) {
+		portable = false;
+		buffer.append("ID:").append(o.getClass().getName()).append('@').append(IdentityIds.get(o)).append(';');
+	}
+
+	private String token(Object o, int foreignDepth) {
+		int start = buffer.length();
+		write(o, foreignDepth);
+		String token = buffer.substring(start);
+		buffer.setLength(start);
+		return token;
+	}
+
+	private void writeFields(Object o, int foreignDepth) {
+		Class<?> clazz = o.getClass();
+		if (clazz.isSynthetic() || clazz.getName().contains("$$Lambda"))
+			portable = false; //lambda class names are given at runtime
+		if (foreignDepth > 0 && ENCLOSING_INSTANCE.get(clazz))
+			cacheable = false;
+		buffer.append("O:").append(clazz.getName()).append('{');
+		try {
+			boolean isDynamicSubreport = o instanceof Subreport && ((Subreport) o).getDynamicReport() != null;
+			for (Field field : getFields(clazz)) {
+				if (isDynamicSubreport && ("report".equals(field.getName()) || "name".equals(field.getName())))
+					continue; //Both are set during the generation of the parent report
+				buffer.append(field.getName()).append('=');
+				write(field.get(o), foreignDepth);
+			}
+		} catch (RuntimeException e) {
+			writeIdentity(o);
+		} catch (IllegalAccessException e) {
+			writeIdentity(o);
+		}
+		buffer.append('}');
+	}
+
+	private static List<Field> getFields(Class<?> clazz) {
+		return FIELDS_CACHE.get(clazz);
+	}
+
+	/**
+	 * The instance fields, the synthetic ones included only if they hold captured values (val$x) of anonymous and
+	 * local classes. The enclosing instance (this$0) is not part of the state.
+	 */
+	private static List<Field> findFields(Class<?> clazz) {
+		List<Field> fields = new ArrayList<Field>();
+		for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+			Field[] declared = c.getDeclaredFields();
+			List<Field> own = new ArrayList<Field>(declared.length);
+			for (Field field : declared) {
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers))
+					continue;
+				if (field.isSynthetic() && !field.getName().startsWith("val$"))
+					continue;
+				field.setAccessible(true);
+				own.add(field);
+			}
+			Collections.sort(own, new Comparator<Field>() {
+				public int compare(Field f1, Field f2) {
+					return f1.getName().compareTo(f2.getName());
+				}
+			});
+			fields.addAll(own);
+		}
+		return Collections.unmodifiableList(fields);
+	}
+
+	private String digest() {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			byte[] hash = md.digest(buffer.toString().getBytes(UTF8));
+			char[] hex = new char[hash.length * 2];
+			for (int i = 0; i < hash.length; i++) {
+				hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+				hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+			}
+			return new String(hex);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	/**
+	 * Unique ids for the objects compared by identity (identity hash codes may collide). The objects are weakly
+	 * referenced, ids are never reused.
+	 */
+	private static final class IdentityIds {
+
+		private static final Map<IdentityReference, Long> IDS = new HashMap<IdentityReference, Long>();
+		private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<Object>();
+		private static long nextId = 0;
+
+		static synchronized long get(Object o) {
+			for (Reference<?> cleared = QUEUE.poll(); cleared != null; cleared = QUEUE.poll()) {
+				IDS.remove(cleared);
+			}
+			Long id = IDS.get(new IdentityReference(o, null));
+			if (id == null) {
+				id = nextId++;
+				IDS.put(new IdentityReference(o, QUEUE), id);
+			}
+			return id;
+		}
+	}
+
+	private static final class IdentityReference extends WeakReference<Object> {
+
+		private final int hash;
+
+		IdentityReference(Object referent, ReferenceQueue<Object> queue) {
+			super(referent, queue);
+			this.hash = System.identityHashCode(referent);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof IdentityReference))
+				return false;
+			Object referent = get();
+			return referent != null && referent == ((IdentityReference) obj).get();
+		}
+	}
+}
@@ -0,0 +1,592 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.cache;
+
+import ar.com.fdvs.dj.core.DynamicJasperHelper;
+import ar.com.fdvs.dj.domain.entities.Entity;
+import ar.com.fdvs.dj.util.DJCompilerFactory;
+import net.sf.jasperreports.engine.JRConstants;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSaver;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * {@link CompiledReportCache} that also keeps the compiled reports in a directory, so they survive a restart
+ * of the application.<br>
+ * <br>
+ * Each report is saved in its own file, together with the parameters generated while building it. The file
+ * is named after the fingerprint and a version salt made of the store format, DynamicJasper, JasperReports,
+ * the report compiler, the Java version and an optional application version. When any of them changes the
+ * stored reports are discarded the first time the directory is opened. Reports whose generated parameters are not serializable (i.e: a DJValueFormatter
+ * that does not implement Serializable) or whose fingerprint is only valid in the running JVM (see
+ * {@link DynamicReportFingerprint#isPortable(String)}) are only kept in memory.<br>
+ * The keys of the stored reports are listed in an index file that is memory mapped when the cache is
+ * created, so a lookup for a report that was never stored does not touch the disk. No more than
+ * <code>maxStoredEntries</code> reports are kept in the directory, the least recently used is removed first.<br>
+ * Recently used reports are also kept in memory (see {@link LRUCompiledReportCache}). Call
+ * {@link #warmUp()} at startup to load the stored reports in the background.
+ */
+public class FileCompiledReportCache implements CompiledReportCache {
+
+	private static final Log log = LogFactory.getLog(FileCompiledReportCache.class);
+
+	public static final String INDEX_FILE_NAME = "dj-compiled-reports.idx";
+	public static final String REPORT_FILE_EXTENSION = ".djcr";
+
+	public static final int DEFAULT_MAX_STORED_ENTRIES = 1000;
+
+	/**
+	 * Changes when the layout of the index or the stored files changes
+	 */
+	private static final String FORMAT_VERSION = "2";
+
+	/**
+	 * file keys and the salt are hex encoded SHA-256, each index record is the key plus a new line.
+	 * The first record of the index is the salt
+	 */
+	private static final int KEY_LENGTH = 64;
+	private static final int RECORD_LENGTH = KEY_LENGTH + 1;
+
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	private final File directory;
+
+	private final File indexFile;
+
+	private final LRUCompiledReportCache memory;
+
+	private final int maxStoredEntries;
+
+	private final String salt;
+
+	//file keys of the stored reports, the least recently used first
+	private final Set<String> storedKeys = new LinkedHashSet<String>();
+
+	//file keys of the reports being written, so the same report is written by only one thread
+	private final Set<String> writingKeys = new HashSet<String>();
+
+	//<file key, lock>, so a report is read by only one thread and reading it does not block other lookups
+	private final ConcurrentHashMap<String, Object> loadLocks = new ConcurrentHashMap<String, Object>();
+
+	private long hitCount = 0;
+	private long missCount = 0;
+
+	public FileCompiledReportCache(File directory) {
+		this(directory, LRUCompiledReportCache.DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param directory        where the compiled reports are stored, it is created if it does not exist
+	 * @param maxMemoryEntries how many reports are also kept in memory
+	 */
+	public FileCompiledReportCache(File directory, int maxMemoryEntries) {
+		this(directory, maxMemoryEntries, DEFAULT_MAX_STORED_ENTRIES, null);
+	}
+
+	/**
+	 * @param directory          where the compiled reports are stored, it is created if it does not exist
+	 * @param maxMemoryEntries   how many reports are also kept in memory
+	 * @param maxStoredEntries   how many reports are kept in the directory
+	 * @param applicationVersion if not null, it is part of the version salt. Useful when the application
+	 *                           ships its own expressions or formatters, whose code is not part of the fingerprint
+	 */
+	public FileCompiledReportCache(File directory, int maxMemoryEntries, int maxStoredEntries, String applicationVersion) {
+		if (maxStoredEntries < 1)
+			throw new IllegalArgumentException("maxStoredEntries must be greater than 0");
+		this.directory = directory;
+		this.indexFile = new File(directory, INDEX_FILE_NAME);
+		this.memory = new LRUCompiledReportCache(maxMemoryEntries);
+		this.maxStoredEntries = maxStoredEntries;
+		this.salt = sha256(FORMAT_VERSION
+				+ "|" + getImplementationVersion(DynamicJasperHelper.class)
+				+ "|" + getImplementationVersion(JasperReport.class) + "/" + JRConstants.SERIAL_VERSION_UID
+				+ "|" + DJCompilerFactory.getCompilerClassName()
+				+ "|" + System.getProperty("java.specification.version")
+				+ "|" + applicationVersion);
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IllegalArgumentException("Cannot create compiled reports directory: " + directory.getAbsolutePath());
+		readIndex();
+	}
+
+	private static String getImplementationVersion(Class<?> clazz) {
+		Package pkg = clazz.getPackage();
+		return pkg == null ? null : pkg.getImplementationVersion();
+	}
+
+	private void readIndex() {
+		if (!indexFile.exists())
+			return;
+
+		List<String> keys = new ArrayList<String>();
+		String indexSalt = null;
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(indexFile, "r");
+			FileChannel channel = raf.getChannel();
+			long records = channel.size() / RECORD_LENGTH;
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, records * RECORD_LENGTH);
+			byte[] record = new byte[KEY_LENGTH];
+			for (long i = 0; i < records; i++) {
+				buffer.get(record);
+				buffer.get(); //new line
+				String key = new String(record, ASCII);
+				if (i == 0)
+					indexSalt = key;
+				else
+					keys.add(key);
+			}
+		} catch (IOException e) {
+			log.warn("Could not read compiled reports index " + indexFile.getAbsolutePath() + ", starting empty: " + e.getMessage());
+			return;
+		} finally {
+			close(raf);
+		}
+
+		if (!salt.equals(indexSalt)) {
+			log.info("Compiled reports at " + directory.getAbsolutePath() + " were stored by another version, discarding them");
+			for (String key : keys) {
+				getReportFile(key).delete();
+			}
+			if (indexSalt != null)
+				getReportFile(indexSalt).delete(); //the first record was a report in the previous format
+			indexFile.delete();
+			return;
+		}
+
+		for (String key : keys) {
+			if (getReportFile(key).exists())
+				storedKeys.add(key);
+		}
+		log.info("Compiled reports store at " + directory.getAbsolutePath() + " has " + storedKeys.size() + " reports");
+	}
+
+	/**
+	 * @param key the report fingerprint
+	 * @return the name of the stored report, without extension
+	 */
+	private String getFileKey(String key) {
+		return sha256(salt + ":" + key);
+	}
+
+	private File getReportFile(String fileKey) {
+		return new File(directory, fileKey + REPORT_FILE_EXTENSION);
+	}
+
+	public CompiledReport get(String key) {
+		CompiledReport compiledReport = memory.get(key);
+		if (compiledReport == null && DynamicReportFingerprint.isPortable(key))
+			compiledReport = loadOnce(key, getFileKey(key));
+
+		synchronized (this) {
+			if (compiledReport == null)
+				missCount++;
+			else
+				hitCount++;
+		}
+		return compiledReport;
+	}
+
+	/**
+	 * Reads the stored report outside the cache monitor. Concurrent lookups of the same report wait for the
+	 * first one instead of reading the file again.
+	 *
+	 * @return the report, or null if it is not stored
+	 */
+	private CompiledReport loadOnce(String key, String fileKey) {
+		synchronized (this) {
+			if (!storedKeys.remove(fileKey))
+				return null;
+			storedKeys.add(fileKey); //most recently used
+		}
+
+		Object lock = new Object();
+		Object existing = loadLocks.putIfAbsent(fileKey, lock);
+		if (existing != null)
+			lock = existing;
+		synchronized (lock) {
+			try {
+				CompiledReport loaded = key == null ? null : memory.get(key); //by another thread while this one was waiting
+				if (loaded != null)
+					return loaded;
+				return load(key, fileKey);
+			} finally {
+				loadLocks.remove(fileKey, lock);
+			}
+		}
+	}
+
+	/**
+	 * @param key the expected fingerprint, or null to accept the one in the file
+	 */
+	private CompiledReport load(String key, String fileKey) {
+		File file = getReportFile(fileKey);
+		try {
+			StoredReport stored = (StoredReport) JRLoader.loadObject(file);
+			if (key != null && !key.equals(stored.key)) {
+				log.warn("Compiled report " + file.getAbsolutePath() + " belongs to another fingerprint, it will be compiled again");
+				discard(fileKey);
+				return null;
+			}
+			CompiledReport compiledReport = new CompiledReport(stored.jasperReport, fromStorable(stored.generatedParameters));
+			memory.put(stored.key, compiledReport);
+			return compiledReport;
+		} catch (JRException e) {
+			log.warn("Could not load compiled report " + file.getAbsolutePath() + ", it will be compiled again: " + e.getMessage());
+			discard(fileKey);
+			return null;
+		} catch (ClassCastException e) {
+			log.warn("Unexpected content in " + file.getAbsolutePath() + ", it will be compiled again");
+			discard(fileKey);
+			return null;
+		}
+	}
+
+	private synchronized void discard(String fileKey) {
+		storedKeys.remove(fileKey);
+	}
+
+	public void put(String key, CompiledReport compiledReport) {
+		memory.put(key, compiledReport);
+
+		if (!DynamicReportFingerprint.isPortable(key)) {
+			log.debug("Fingerprint of " + compiledReport.getJasperReport().getName() + " is only valid in this JVM, keeping it only in memory");
+			return;
+		}
+
+		String fileKey = getFileKey(key);
+		synchronized (this) {
+			if (storedKeys.contains(fileKey) || !writingKeys.add(fileKey))
+				return;
+		}
+
+		//written outside the cache monitor, lookups of other reports don't wait for it
+		File file = getReportFile(fileKey);
+		File tmp = new File(directory, fileKey + ".tmp");
+		boolean written = false;
+		try {
+			JRSaver.saveObject(new StoredReport(key, compiledReport.getJasperReport(), toStorable(compiledReport.getGeneratedParameters())), tmp);
+			if (!tmp.renameTo(file)) {
+				file.delete();
+				if (!tmp.renameTo(file))
+					throw new IOException("cannot rename " + tmp.getName() + " to " + file.getName());
+			}
+			written = true;
+		} catch (JRException e) {
+			if (e.getCause() instanceof NotSerializableException)
+				log.debug("Generated parameters for " + compiledReport.getJasperReport().getName() + " are not serializable, keeping it only in memory");
+			else
+				log.warn("Could not store compiled report " + file.getAbsolutePath() + ": " + e.getMessage());
+		} catch (IOException e) {
+			log.warn("Could not store compiled report " + file.getAbsolutePath() + ": " + e.getMessage());
+		} finally {
+			if (!written)
+				tmp.delete();
+		}
+
+		synchronized (this) {
+			writingKeys.remove(fileKey);
+			if (!written)
+				return;
+			storedKeys.add(fileKey);
+			try {
+				if (storedKeys.size() > maxStoredEntries)
+					evict();
+				else
+					appendToIndex(fileKey);
+			} catch (IOException e) {
+				log.warn("Could not update the index of the compiled reports store " + indexFile.getAbsolutePath() + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private void appendToIndex(String fileKey) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			long position = channel.size() - channel.size() % RECORD_LENGTH; //overwrites a truncated record, if any
+			if (position == 0)
+				position = write(channel, salt, position);
+			write(channel, fileKey, position);
+		} finally {
+			close(raf);
+		}
+	}
+
+	private static long write(FileChannel channel, String key, long position) throws IOException {
+		if (key.length() != KEY_LENGTH)
+			throw new IOException("unexpected key length: " + key);
+		ByteBuffer record = ByteBuffer.allocate(RECORD_LENGTH);
+		record.put(key.getBytes(ASCII)).put((byte) '\n').flip();
+		while (record.hasRemaining()) {
+			position += channel.write(record, position);
+		}
+		return position;
+	}
+
+	/**
+	 * Removes the least recently used reports until there are no more than maxStoredEntries, the index is
+	 * written again (not appended) as it must not list them anymore
+	 */
+	private void evict() throws IOException {
+		for (Iterator<String> iterator = storedKeys.iterator(); iterator.hasNext() && storedKeys.size() > maxStoredEntries; ) {
+			String fileKey = iterator.next();
+			iterator.remove();
+			getReportFile(fileKey).delete();
+		}
+
+		File tmp = new File(directory, INDEX_FILE_NAME + ".tmp");
+		RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			channel.truncate(0);
+			long position = write(channel, salt, 0);
+			for (String fileKey : storedKeys) {
+				position = write(channel, fileKey, position);
+			}
+		} finally {
+			close(raf);
+		}
+		if (!tmp.renameTo(indexFile)) {
+			indexFile.delete();
+			if (!tmp.renameTo(indexFile))
+				throw new IOException("cannot rename " + tmp.getName() + " to " + indexFile.getName());
+		}
+	}
+
+	/**
+	 * Resource bundles are not serializable, they are replaced by a reference and loaded again when the report is read
+	 */
+	private static HashMap<String, Object> toStorable(Map<String, Object> parameters) {
+		HashMap<String, Object> storable = new HashMap<String, Object>();
+		Object reportLocale = parameters.get(JRParameter.REPORT_LOCALE);
+		for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+			Object value = entry.getValue();
+			if (value instanceof ResourceBundle && ((ResourceBundle) value).getBaseBundleName() != null) {
+				ResourceBundle bundle = (ResourceBundle) value;
+				//the locale the bundle was requested for, the bundle locale may be a fallback
+				Locale locale = reportLocale instanceof Locale ? (Locale) reportLocale : bundle.getLocale();
+				value = new BundleReference(bundle.getBaseBundleName(), locale);
+			} else if (value instanceof CompiledReport.NestedParameters) {
+				value = new CompiledReport.NestedParameters(toStorable(((CompiledReport.NestedParameters) value).getParameters()));
+			}
+			storable.put(entry.getKey(), value);
+		}
+		return storable;
+	}
+
+	private static Map<String, Object> fromStorable(Map<String, Object> storable) {
+		Map<String, Object> parameters = new HashMap<String, Object>();
+		for (Map.Entry<String, Object> entry : storable.entrySet()) {
+			Object value = entry.getValue();
+			if (value instanceof BundleReference) {
+				BundleReference reference = (BundleReference) value;
+				value = ResourceBundle.getBundle(reference.baseName, reference.locale);
+			} else if (value instanceof CompiledReport.NestedParameters) {
+				value = new CompiledReport.NestedParameters(fromStorable(((CompiledReport.NestedParameters) value).getParameters()));
+			}
+			parameters.put(entry.getKey(), value);
+		}
+		return parameters;
+	}
+
+	private static String sha256(String s) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(s.getBytes(Charset.forName("UTF-8")));
+			StringBuilder hex = new StringBuilder(hash.length * 2);
+			for (byte b : hash) {
+				hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	/**
+	 * Loads the stored reports in memory using a background thread
+	 *
+	 * @return the number of reports loaded
+	 */
+	public Future<Integer> warmUp() {
+		ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "dj-compiled-reports-warm-up");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			return warmUp(executor);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Loads the most recently used stored reports in memory using the given executor. No more reports than
+	 * the memory capacity are loaded.
+	 *
+	 * @param executor
+	 * @return the number of reports loaded
+	 */
+	public Future<Integer> warmUp(ExecutorService executor) {
+		return executor.submit(new Callable<Integer>() {
+			public Integer call() {
+				List<String> fileKeys;
+				synchronized (FileCompiledReportCache.this) {
+					fileKeys = new ArrayList<String>(storedKeys);
+				}
+				int loaded = 0;
+				//the most recently used are at the end, they are loaded keeping their order
+				for (String fileKey : fileKeys.subList(Math.max(0, fileKeys.size() - memory.getMaxEntries()), fileKeys.size())) {
+					if (loadOnce(null, fileKey) != null)
+						loaded++;
+				}
+				log.info("Warmed up " + loaded + " compiled reports from " + directory.getAbsolutePath());
+				return loaded;
+			}
+		});
+	}
+
+	public synchronized void clear() {
+		memory.clear();
+		for (String key : storedKeys) {
+			getReportFile(key).delete();
+		}
+		storedKeys.clear();
+		indexFile.delete();
+	}
+
+	/**
+	 * @return the number of reports saved in the store directory
+	 */
+	public synchronized int size() {
+		return storedKeys.size();
+	}
+
+	public int getMaxStoredEntries() {
+		return maxStoredEntries;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public long getEvictionCount() {
+		return memory.getEvictionCount();
+	}
+
+	private static void close(RandomAccessFile raf) {
+		if (raf == null)
+			return;
+		try {
+			raf.close();
+		} catch (IOException e) {
+			log.debug("Error closing " + e.getMessage());
+		}
+	}
+
+	static class BundleReference implements Serializable {
+
+		private static final long serialVersionUID = Entity.SERIAL_VERSION_UID;
+
+		private final String baseName;
+
+		private final Locale locale;
+
+		BundleReference(String baseName, Locale locale) {
+			this.baseName = baseName;
+			this.locale = locale;
+		}
+	}
+
+	/**
+	 * What is actually written to disk
+	 */
+	static class StoredReport implements Serializable {
+
+		private static final long serialVersionUID = Entity.SERIAL_VERSION_UID;
+
+		/**
+		 * the fingerprint, the file is named after a hash of it
+		 */
+		private final String key;
+
+		private final JasperReport jasperReport;
+
+		private final HashMap<String, Object> generatedParameters;
+
+		StoredReport(String key, JasperReport jasperReport, HashMap<String, Object> generatedParameters) {
+			this.key = key;
+			this.jasperReport = jasperReport;
+			this.generatedParameters = generatedParameters;
+		}
+	}
+}
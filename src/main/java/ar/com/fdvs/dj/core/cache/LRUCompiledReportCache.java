@@ -0,0 +1,121 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, thread safe {@link CompiledReportCache}. When the maximum number of entries is reached, the least
+ * recently used report is evicted.
+ */
+public class LRUCompiledReportCache implements CompiledReportCache {
+
+	private static final Log log = LogFactory.getLog(LRUCompiledReportCache.class);
+
+	public static final int DEFAULT_MAX_ENTRIES = 100;
+
+	private final int maxEntries;
+
+	private final Map<String, CompiledReport> entries;
+
+	private long hitCount = 0;
+	private long missCount = 0;
+	private long evictionCount = 0;
+
+	public LRUCompiledReportCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	public LRUCompiledReportCache(int maxEntries) {
+		if (maxEntries < 1)
+			throw new IllegalArgumentException("maxEntries must be greater than 0");
+		this.maxEntries = maxEntries;
+		this.entries = new LinkedHashMap<String, CompiledReport>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CompiledReport> eldest) {
+				if (size() > LRUCompiledReportCache.this.maxEntries) {
+					evictionCount++;
+					log.debug("Evicting compiled report with key " + eldest.getKey());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public synchronized CompiledReport get(String key) {
+		CompiledReport compiledReport = entries.get(key);
+		if (compiledReport == null)
+			missCount++;
+		else
+			hitCount++;
+		return compiledReport;
+	}
+
+	public synchronized void put(String key, CompiledReport compiledReport) {
+		entries.put(key, compiledReport);
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "LRUCompiledReportCache[size=" + entries.size() + ", maxEntries=" + maxEntries + ", hits=" + hitCount
+				+ ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.calculation;
+
+import net.sf.jasperreports.engine.fill.AbstractValueProvider;
+import net.sf.jasperreports.engine.fill.JRCalculable;
+import net.sf.jasperreports.engine.fill.JRIncrementer;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Exact sum for BigDecimal variables. While every value is integral the total is kept in a long, the result is the
+ * same BigDecimal (value and scale) that {@link BigDecimal#add(BigDecimal)} would give.
+ * Values with decimals, or a total that does not fit a long, switch to BigDecimal arithmetic.
+ */
+class BigDecimalSumIncrementer implements JRIncrementer {
+
+	private static final int MAX_LONG_PRECISION = 18;
+
+	private long total;
+	//true when total holds the value of lastResult
+	private boolean exact;
+	private Object lastResult;
+
+	public Object increment(JRCalculable calculable, Object expressionValue, AbstractValueProvider valueProvider) {
+		BigDecimal value = (BigDecimal) calculable.getIncrementedValue();
+		Number newValue = (Number) expressionValue;
+
+		if (newValue == null) {
+			if (calculable.isInitialized())
+				return null;
+			return value;
+		}
+
+		boolean restart = value == null || calculable.isInitialized();
+		boolean estimation = valueProvider == AbstractValueProvider.getEstimatedValueProvider();
+
+		if (isIntegral(newValue)) {
+			boolean hasBase = true;
+			long base = 0L;
+			if (restart)
+				base = 0L;
+			else if (exact && value == lastResult)
+				base = total;
+			else if (fitsLong(value))
+				base = value.longValue();
+			else
+				hasBase = false;
+
+			if (hasBase) {
+				long addend = newValue.longValue();
+				long sum = base + addend;
+				//overflow when both operands have a sign different from the result's
+				if (((base ^ sum) & (addend ^ sum)) >= 0) {
+					BigDecimal result = BigDecimal.valueOf(sum);
+					if (!estimation) {
+						total = sum;
+						exact = true;
+						lastResult = result;
+					}
+					return result;
+				}
+			}
+		}
+
+		BigDecimal result = (restart ? BigDecimal.ZERO : value).add(toBigDecimal(newValue));
+		if (!estimation) {
+			exact = false;
+			lastResult = result;
+		}
+		return result;
+	}
+
+	public boolean ignoresNullValues() {
+		return false;
+	}
+
+	private static boolean isIntegral(Number number) {
+		if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte)
+			return true;
+		return number instanceof BigDecimal && fitsLong((BigDecimal) number);
+	}
+
+	private static boolean fitsLong(BigDecimal number) {
+		return number.scale() == 0 && number.precision() <= MAX_LONG_PRECISION;
+	}
+
+	private static BigDecimal toBigDecimal(Number number) {
+		if (number instanceof BigDecimal)
+			return (BigDecimal) number;
+		if (number instanceof BigInteger)
+			return new BigDecimal((BigInteger) number);
+		if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte)
+			return BigDecimal.valueOf(number.longValue());
+		//same as JasperReports' BigDecimal incrementer
+		return (BigDecimal) number;
+	}
+}
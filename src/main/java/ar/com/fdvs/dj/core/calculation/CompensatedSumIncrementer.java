@@ -0,0 +1,102 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.calculation;
+
+import net.sf.jasperreports.engine.fill.AbstractValueProvider;
+import net.sf.jasperreports.engine.fill.JRCalculable;
+import net.sf.jasperreports.engine.fill.JRIncrementer;
+
+/**
+ * Kahan-Neumaier compensated sum for Double and Float variables.<br>
+ * <br>
+ * The total and its compensation are kept in primitive fields while the variable holds the last value this
+ * incrementer returned. If the variable was set to something else (it was reset, or an estimated value was
+ * calculated), the sum continues from the variable's value, so the result is never wrong, just not compensated
+ * for the rows before.
+ */
+class CompensatedSumIncrementer implements JRIncrementer {
+
+	private final boolean floatResult;
+
+	private double sum;
+	private double compensation;
+	private Object lastResult;
+
+	CompensatedSumIncrementer(boolean floatResult) {
+		this.floatResult = floatResult;
+	}
+
+	public Object increment(JRCalculable calculable, Object expressionValue, AbstractValueProvider valueProvider) {
+		Number value = (Number) calculable.getIncrementedValue();
+		Number newValue = (Number) expressionValue;
+
+		if (newValue == null) {
+			if (calculable.isInitialized())
+				return null;
+			return value;
+		}
+
+		double s;
+		double c;
+		if (value == null || calculable.isInitialized()) {
+			s = 0d;
+			c = 0d;
+		} else if (value == lastResult) {
+			s = sum;
+			c = compensation;
+		} else {
+			s = value.doubleValue();
+			c = 0d;
+		}
+
+		double v = newValue.doubleValue();
+		double t = s + v;
+		if (Double.isInfinite(t) || Double.isNaN(t))
+			c = 0d;
+		else if (Math.abs(s) >= Math.abs(v))
+			c += (s - t) + v;
+		else
+			c += (v - t) + s;
+
+		Number result = floatResult ? (Number) Float.valueOf((float) (t + c)) : Double.valueOf(t + c);
+
+		//estimations are discarded by the fill, the accumulator must not move
+		if (valueProvider != AbstractValueProvider.getEstimatedValueProvider()) {
+			sum = t;
+			compensation = c;
+			lastResult = result;
+		}
+		return result;
+	}
+
+	public boolean ignoresNullValues() {
+		return false;
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.calculation;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Sums of a numeric column by group, kept in an open addressing hash table: the keys (the values of the
+ * group columns, outermost first) in an array, the sums in primitive arrays, so there is no entry or boxed
+ * sum per group.<br>
+ * The sums are accumulated as the SUM variables of the report do for the value class of the column: compensated
+ * sums for Double and Float (see {@link PrimitiveIncrementerFactory}), a long for Long, Integer, Short and Byte, and
+ * exact BigDecimal arithmetic for BigDecimal and BigInteger.<br>
+ * Groups are keyed by their values, not by their occurrence: if the data is not sorted by the groups, the records
+ * of every run of the same values are summed together, while the groups of the report start again on each run.<br>
+ * Filled by {@link PreAggregatedTotals} before the report fill, read by the percentage cells of each record.
+ */
+public class GroupTotals {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private static final int DOUBLE = 0;
+	private static final int FLOAT = 1;
+	private static final int LONG = 2;
+	private static final int DECIMAL = 3;
+
+	private final int kind;
+
+	private Object[][] keys = new Object[INITIAL_CAPACITY][];
+	private int[] hashes = new int[INITIAL_CAPACITY];
+	private double[] sums;
+	private double[] compensations;
+	private long[] longs;
+	private BigDecimal[] decimals;
+	private int size;
+
+	/**
+	 * Totals of Double values
+	 */
+	public GroupTotals() {
+		this(Double.class);
+	}
+
+	/**
+	 * @param valueClass the class of the values summed
+	 */
+	public GroupTotals(Class<?> valueClass) {
+		if (Float.class.equals(valueClass))
+			kind = FLOAT;
+		else if (Long.class.equals(valueClass) || Integer.class.equals(valueClass) || Short.class.equals(valueClass) || Byte.class.equals(valueClass))
+			kind = LONG;
+		else if (BigDecimal.class.equals(valueClass) || BigInteger.class.equals(valueClass))
+			kind = DECIMAL;
+		else
+			kind = DOUBLE;
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Adds the value to the total of the group, the key is copied the first time the group is seen
+	 */
+	public void add(Object[] groupValues, Number value) {
+		int hash = hash(groupValues);
+		int slot = find(groupValues, hash);
+		if (keys[slot] == null) {
+			keys[slot] = groupValues.clone();
+			hashes[slot] = hash;
+			if (++size * 4 > keys.length * 3)
+				resize();
+			slot = find(groupValues, hash);
+		}
+
+		switch (kind) {
+			case LONG:
+				longs[slot] += value.longValue();
+				break;
+			case DECIMAL:
+				BigDecimal decimal = toBigDecimal(value);
+				decimals[slot] = decimals[slot] == null ? decimal : decimals[slot].add(decimal);
+				break;
+			default:
+				//Kahan-Neumaier, as CompensatedSumIncrementer
+				double s = sums[slot];
+				double v = value.doubleValue();
+				double t = s + v;
+				if (Double.isInfinite(t) || Double.isNaN(t))
+					compensations[slot] = 0d;
+				else if (Math.abs(s) >= Math.abs(v))
+					compensations[slot] += (s - t) + v;
+				else
+					compensations[slot] += (v - t) + s;
+				sums[slot] = t;
+		}
+	}
+
+	/**
+	 * @return the total of the group, NaN if no record belongs to it
+	 */
+	public double getTotal(Object[] groupValues) {
+		Number sum = getSum(groupValues);
+		return sum == null ? Double.NaN : sum.doubleValue();
+	}
+
+	/**
+	 * @return the total of the group as the SUM of the report would have it (Double, Float, Long or BigDecimal),
+	 * null if no record belongs to it
+	 */
+	public Number getSum(Object[] groupValues) {
+		int slot = find(groupValues, hash(groupValues));
+		if (keys[slot] == null)
+			return null;
+		switch (kind) {
+			case LONG:
+				return Long.valueOf(longs[slot]);
+			case DECIMAL:
+				return decimals[slot];
+			case FLOAT:
+				return Float.valueOf((float) (sums[slot] + compensations[slot]));
+			default:
+				return Double.valueOf(sums[slot] + compensations[slot]);
+		}
+	}
+
+	/**
+	 * @return the number of groups
+	 */
+	public int size() {
+		return size;
+	}
+
+	private int find(Object[] groupValues, int hash) {
+		int mask = keys.length - 1;
+		int slot = hash & mask;
+		while (keys[slot] != null && (hashes[slot] != hash || !Arrays.equals(keys[slot], groupValues)))
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void allocate(int capacity) {
+		switch (kind) {
+			case LONG:
+				longs = new long[capacity];
+				break;
+			case DECIMAL:
+				decimals = new BigDecimal[capacity];
+				break;
+			default:
+				sums = new double[capacity];
+				compensations = new double[capacity];
+		}
+	}
+
+	private void resize() {
+		Object[][] oldKeys = keys;
+		int[] oldHashes = hashes;
+		double[] oldSums = sums;
+		double[] oldCompensations = compensations;
+		long[] oldLongs = longs;
+		BigDecimal[] oldDecimals = decimals;
+		keys = new Object[oldKeys.length * 2][];
+		hashes = new int[keys.length];
+		allocate(keys.length);
+
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] == null)
+				continue;
+			int slot = oldHashes[i] & mask;
+			while (keys[slot] != null)
+				slot = (slot + 1) & mask;
+			keys[slot] = oldKeys[i];
+			hashes[slot] = oldHashes[i];
+			switch (kind) {
+				case LONG:
+					longs[slot] = oldLongs[i];
+					break;
+				case DECIMAL:
+					decimals[slot] = oldDecimals[i];
+					break;
+				default:
+					sums[slot] = oldSums[i];
+					compensations[slot] = oldCompensations[i];
+			}
+		}
+	}
+
+	private static BigDecimal toBigDecimal(Number value) {
+		if (value instanceof BigDecimal)
+			return (BigDecimal) value;
+		if (value instanceof BigInteger)
+			return new BigDecimal((BigInteger) value);
+		if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+			return BigDecimal.valueOf(value.longValue());
+		return new BigDecimal(value.toString());
+	}
+
+	private static int hash(Object[] groupValues) {
+		int hash = Arrays.hashCode(groupValues);
+		return hash ^ (hash >>> 16);
+	}
+}
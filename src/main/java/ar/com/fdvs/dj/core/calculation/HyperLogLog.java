@@ -0,0 +1,190 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.calculation;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * HyperLogLog sketch: estimates the number of distinct values seen using 2<sup>precision</sup> one byte
+ * registers, no matter how many values are offered. The standard error is about
+ * <code>1.04 / sqrt(2<sup>precision</sup>)</code>, i.e. 1.6% with precision 12 (4KB).<br>
+ * <br>
+ * The sum of the registers' harmonic terms is maintained on every change, so {@link #estimate()} is O(1).
+ * Values are hashed to 64 bits; numbers, strings and dates are hashed from their content, other objects
+ * from their hashCode.
+ */
+public class HyperLogLog {
+
+	public static final int MIN_PRECISION = 4;
+	public static final int MAX_PRECISION = 18;
+
+	private final int precision;
+	private final byte[] registers;
+
+	private double inverseSum;
+	private int zeros;
+
+	public HyperLogLog(int precision) {
+		if (precision < MIN_PRECISION || precision > MAX_PRECISION)
+			throw new IllegalArgumentException("HyperLogLog precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION + ": " + precision);
+		this.precision = precision;
+		this.registers = new byte[1 << precision];
+		clear();
+	}
+
+	/**
+	 * @return the standard error of the estimations of a sketch with the given precision
+	 */
+	public static double getRelativeError(int precision) {
+		return 1.04d / Math.sqrt(1 << precision);
+	}
+
+	/**
+	 * @return the smallest precision whose standard error is not greater than the given one
+	 */
+	public static int getPrecision(double relativeError) {
+		for (int p = MIN_PRECISION; p < MAX_PRECISION; p++) {
+			if (getRelativeError(p) <= relativeError)
+				return p;
+		}
+		return MAX_PRECISION;
+	}
+
+	/**
+	 * @return true if the estimation changed
+	 */
+	public boolean offer(Object value) {
+		if (value == null)
+			return false;
+		long hash = hash(value);
+		int index = index(hash);
+		int rank = rank(hash);
+		int current = registers[index];
+		if (rank <= current)
+			return false;
+
+		registers[index] = (byte) rank;
+		inverseSum += Math.scalb(1d, -rank) - Math.scalb(1d, -current);
+		if (current == 0)
+			zeros--;
+		return true;
+	}
+
+	public long estimate() {
+		return estimate(inverseSum, zeros);
+	}
+
+	/**
+	 * @return what {@link #estimate()} would return after offering the value, without changing the sketch
+	 */
+	public long estimateWith(Object value) {
+		if (value == null)
+			return estimate();
+		long hash = hash(value);
+		int rank = rank(hash);
+		int current = registers[index(hash)];
+		if (rank <= current)
+			return estimate();
+		return estimate(inverseSum + Math.scalb(1d, -rank) - Math.scalb(1d, -current), current == 0 ? zeros - 1 : zeros);
+	}
+
+	public void clear() {
+		Arrays.fill(registers, (byte) 0);
+		inverseSum = registers.length;
+		zeros = registers.length;
+	}
+
+	public int getPrecision() {
+		return precision;
+	}
+
+	private long estimate(double sum, int zeroRegisters) {
+		int m = registers.length;
+		double estimation = alpha(m) * m * m / sum;
+		//small cardinalities: linear counting over the empty registers is far more accurate
+		if (estimation <= 2.5d * m && zeroRegisters > 0)
+			estimation = m * Math.log((double) m / zeroRegisters);
+		return Math.round(estimation);
+	}
+
+	private int index(long hash) {
+		return (int) (hash >>> (64 - precision));
+	}
+
+	private int rank(long hash) {
+		//the guard bit bounds the rank when the remaining bits are all zeros
+		return Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+	}
+
+	private static double alpha(int m) {
+		switch (m) {
+			case 16: return 0.673d;
+			case 32: return 0.697d;
+			case 64: return 0.709d;
+			default: return 0.7213d / (1d + 1.079d / m);
+		}
+	}
+
+	static long hash(Object value) {
+		long h;
+		if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+			h = ((Number) value).longValue();
+		else if (value instanceof Double || value instanceof Float)
+			h = Double.doubleToLongBits(((Number) value).doubleValue());
+		else if (value instanceof String) {
+			String s = (String) value;
+			h = 1125899906842597L;
+			for (int i = 0; i < s.length(); i++)
+				h = 31 * h + s.charAt(i);
+		}
+		else if (value instanceof Date)
+			h = ((Date) value).getTime();
+		else if (value instanceof BigDecimal || value instanceof BigInteger)
+			h = ((long) value.hashCode() << 32) ^ ((Number) value).longValue();
+		else
+			h = value.hashCode();
+		return mix(h);
+	}
+
+	/**
+	 * MurmurHash3 finalizer, spreads the bits of the value over the whole long
+	 */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.calculation;
+
+import net.sf.jasperreports.engine.fill.AbstractValueProvider;
+import net.sf.jasperreports.engine.fill.JRCalculable;
+import net.sf.jasperreports.engine.fill.JRIncrementer;
+
+/**
+ * Approximate distinct count over a {@link HyperLogLog} sketch. The sketch is cleared when the variable is
+ * reset, the variable value is the Long estimation.
+ */
+class HyperLogLogIncrementer implements JRIncrementer {
+
+	private final HyperLogLog sketch;
+	private Long lastResult;
+
+	HyperLogLogIncrementer(int precision) {
+		this.sketch = new HyperLogLog(precision);
+	}
+
+	public Object increment(JRCalculable calculable, Object expressionValue, AbstractValueProvider valueProvider) {
+		if (valueProvider == AbstractValueProvider.getEstimatedValueProvider()) {
+			if (calculable.isInitialized())
+				return Long.valueOf(expressionValue == null ? 0L : 1L);
+			return Long.valueOf(sketch.estimateWith(expressionValue));
+		}
+
+		if (calculable.isInitialized()) {
+			sketch.clear();
+			lastResult = null;
+		}
+
+		if (!sketch.offer(expressionValue) && lastResult != null)
+			return lastResult;
+
+		lastResult = Long.valueOf(sketch.estimate());
+		return lastResult;
+	}
+
+	public boolean ignoresNullValues() {
+		return false;
+	}
+}
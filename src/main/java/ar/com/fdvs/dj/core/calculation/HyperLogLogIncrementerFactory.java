@@ -0,0 +1,109 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.calculation;
+
+import net.sf.jasperreports.engine.fill.JRIncrementer;
+import net.sf.jasperreports.engine.fill.JRIncrementerFactory;
+
+/**
+ * Incrementer factories for {@link ar.com.fdvs.dj.domain.DJCalculation#APPROXIMATE_DISTINCT_COUNT} and
+ * {@link ar.com.fdvs.dj.domain.DJCalculation#approximateDistinctCount(double)}.<br>
+ * <br>
+ * JasperReports instantiates incrementer factories by class, so each supported {@link HyperLogLog} precision
+ * has its own factory. The incrementers use the same memory whatever the number of rows and distinct values.
+ */
+public abstract class HyperLogLogIncrementerFactory implements JRIncrementerFactory {
+
+	private static final int MAX_PRECISION = 16;
+
+	private static final Class[] FACTORIES = {
+		Precision8.class, Precision10.class, Precision12.class, Precision14.class, Precision16.class
+	};
+
+	private final int precision;
+
+	protected HyperLogLogIncrementerFactory(int precision) {
+		this.precision = precision;
+	}
+
+	public JRIncrementer getIncrementer(byte calculation) {
+		return new HyperLogLogIncrementer(precision);
+	}
+
+	public int getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * @param relativeError the standard error accepted, i.e. 0.01 for 1%
+	 * @return the factory of the smallest sketch with an error not greater than the given one, precisions go
+	 * from 8 (6.5%, 256 bytes) to 16 (0.4%, 64KB)
+	 * @throws IllegalArgumentException if the error is smaller than the one of the largest sketch
+	 */
+	@SuppressWarnings("unchecked")
+	public static Class<? extends HyperLogLogIncrementerFactory> getFactoryClass(double relativeError) {
+		if (relativeError < HyperLogLog.getRelativeError(MAX_PRECISION))
+			throw new IllegalArgumentException("Relative error " + relativeError + " not supported, the smallest is "
+					+ HyperLogLog.getRelativeError(MAX_PRECISION) + " (precision " + MAX_PRECISION + ")");
+		int precision = HyperLogLog.getPrecision(relativeError);
+		int index = Math.max(0, (precision - 7) / 2);
+		return FACTORIES[index];
+	}
+
+	public static class Precision8 extends HyperLogLogIncrementerFactory {
+		public Precision8() {
+			super(8);
+		}
+	}
+
+	public static class Precision10 extends HyperLogLogIncrementerFactory {
+		public Precision10() {
+			super(10);
+		}
+	}
+
+	public static class Precision12 extends HyperLogLogIncrementerFactory {
+		public Precision12() {
+			super(12);
+		}
+	}
+
+	public static class Precision14 extends HyperLogLogIncrementerFactory {
+		public Precision14() {
+			super(14);
+		}
+	}
+
+	public static class Precision16 extends HyperLogLogIncrementerFactory {
+		public Precision16() {
+			super(16);
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.calculation;
+
+import ar.com.fdvs.dj.domain.entities.Entity;
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JRRewindableDataSource;
+import net.sf.jasperreports.engine.JasperReport;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Definition of the group totals of a percentage column that are computed before the fill, with a first pass over
+ * a rewindable datasource: the fields of the groups (outermost first) and the field summed.<br>
+ * The report has an instance of this class as parameter. The totals are computed by {@link #addTotals} when
+ * DynamicJasperHelper or PreparedDynamicReport hand the datasource to JasperReports, which reads the first record
+ * before the scriptlet is initialized, and are passed to the fill as the {@link #TOTALS_PARAMETER} parameter (see
+ * {@link ar.com.fdvs.dj.core.DJDefaultScriptlet#getGroupTotals(PreAggregatedTotals)}), so the same report can be
+ * filled concurrently.
+ */
+public class PreAggregatedTotals implements Serializable {
+
+	private static final long serialVersionUID = Entity.SERIAL_VERSION_UID;
+
+	/**
+	 * Parameter with the totals computed for a fill, a Map from each definition to its {@link GroupTotals}
+	 */
+	public static final String TOTALS_PARAMETER = "dj_pre_aggregated_totals";
+
+	private final String[] groupFields;
+	private final String valueField;
+
+	public PreAggregatedTotals(String[] groupFields, String valueField) {
+		this.groupFields = groupFields.clone();
+		this.valueField = valueField;
+	}
+
+	public String[] getGroupFields() {
+		return groupFields.clone();
+	}
+
+	public String getValueField() {
+		return valueField;
+	}
+
+	/**
+	 * Computes the totals of the definitions the report has as parameters, with a first pass over the datasource,
+	 * which is then rewound. Must be called before the datasource is given to JasperReports.
+	 *
+	 * @param report
+	 * @param parameters the parameters of the fill
+	 * @param dataSource
+	 * @return the parameters as they are if the report has no definition, otherwise a copy with the totals
+	 * @throws JRException if the datasource is null (the report is filled from a connection), can't be rewound or read
+	 */
+	public static Map<String, Object> addTotals(JasperReport report, Map<String, Object> parameters, JRDataSource dataSource) throws JRException {
+		List<PreAggregatedTotals> definitions = new ArrayList<PreAggregatedTotals>();
+		if (parameters != null && report.getParameters() != null) {
+			for (JRParameter parameter : report.getParameters()) {
+				Object value = parameters.get(parameter.getName());
+				if (value instanceof PreAggregatedTotals)
+					definitions.add((PreAggregatedTotals) value);
+			}
+		}
+		if (definitions.isEmpty())
+			return parameters;
+
+		if (dataSource == null)
+			throw new JRException("Pre-aggregated percentages need a rewindable datasource (" + JRRewindableDataSource.class.getName() + "), the report can't be filled from a connection");
+		if (!(dataSource instanceof JRRewindableDataSource))
+			throw new JRException("Pre-aggregated percentages need a rewindable datasource (" + JRRewindableDataSource.class.getName() + "), got: " + (dataSource == null ? null : dataSource.getClass().getName()));
+
+		Map<String, JRField> fields = new HashMap<String, JRField>();
+		if (report.getFields() != null) {
+			for (JRField field : report.getFields())
+				fields.put(field.getName(), field);
+		}
+
+		Map<String, Object> fillParameters = new HashMap<String, Object>(parameters);
+		fillParameters.put(TOTALS_PARAMETER, compute((JRRewindableDataSource) dataSource, fields, definitions));
+		return fillParameters;
+	}
+
+	/**
+	 * Reads the whole datasource once, computing the totals of every definition, and rewinds it. Null values are
+	 * skipped, as the SUM of JasperReports does. The totals are accumulated in the value class of the summed field
+	 * (see {@link GroupTotals}).
+	 *
+	 * @param dataSource
+	 * @param fields the fields of the report, by name
+	 * @param definitions
+	 * @return the totals of each definition
+	 * @throws JRException if a field is missing or the datasource can't be read
+	 */
+	public static Map<PreAggregatedTotals, GroupTotals> compute(JRRewindableDataSource dataSource, Map<String, ? extends JRField> fields, Collection<PreAggregatedTotals> definitions) throws JRException {
+		int count = definitions.size();
+		PreAggregatedTotals[] definitionsArray = definitions.toArray(new PreAggregatedTotals[count]);
+		GroupTotals[] totals = new GroupTotals[count];
+		JRField[][] groupFields = new JRField[count][];
+		JRField[] valueFields = new JRField[count];
+		Object[][] groupValues = new Object[count][];
+		for (int i = 0; i < count; i++) {
+			PreAggregatedTotals definition = definitionsArray[i];
+			valueFields[i] = getField(fields, definition.valueField);
+			totals[i] = new GroupTotals(valueFields[i].getValueClass());
+			groupFields[i] = new JRField[definition.groupFields.length];
+			for (int j = 0; j < groupFields[i].length; j++)
+				groupFields[i][j] = getField(fields, definition.groupFields[j]);
+			groupValues[i] = new Object[groupFields[i].length];
+		}
+
+		while (dataSource.next()) {
+			for (int i = 0; i < count; i++) {
+				Object value = dataSource.getFieldValue(valueFields[i]);
+				if (!(value instanceof Number))
+					continue;
+				readGroupValues(dataSource, groupFields[i], groupValues[i]);
+				totals[i].add(groupValues[i], (Number) value);
+			}
+		}
+		dataSource.moveFirst();
+
+		Map<PreAggregatedTotals, GroupTotals> result = new IdentityHashMap<PreAggregatedTotals, GroupTotals>();
+		for (int i = 0; i < count; i++)
+			result.put(definitionsArray[i], totals[i]);
+		return result;
+	}
+
+	private static void readGroupValues(JRDataSource dataSource, JRField[] groupFields, Object[] groupValues) throws JRException {
+		for (int j = 0; j < groupFields.length; j++)
+			groupValues[j] = dataSource.getFieldValue(groupFields[j]);
+	}
+
+	private static JRField getField(Map<String, ? extends JRField> fields, String name) throws JRException {
+		JRField field = fields.get(name);
+		if (field == null)
+			throw new JRException("Field not found for the pre-aggregated totals: " + name);
+		return field;
+	}
+}
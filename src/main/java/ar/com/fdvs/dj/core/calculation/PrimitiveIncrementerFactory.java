@@ -0,0 +1,131 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.calculation;
+
+import net.sf.jasperreports.engine.fill.JRDefaultIncrementerFactory;
+import net.sf.jasperreports.engine.fill.JRIncrementer;
+import net.sf.jasperreports.engine.fill.JRIncrementerFactory;
+import net.sf.jasperreports.engine.type.CalculationEnum;
+
+import java.math.BigDecimal;
+
+/**
+ * Incrementer factories for SUM variables that keep the running total in primitive fields of the incrementer,
+ * instead of recomputing it from the boxed value of the variable on every row.<br>
+ * <br>
+ * JasperReports asks the factory for an incrementer once per variable, so each variable gets its own
+ * accumulator. Other calculations are delegated to the JasperReports default factory.<br>
+ * DJ selects the factory from the value class of the variable (see {@link #getFactoryClass(String)}):
+ * <ul>
+ * <li>Double and Float: compensated (Kahan-Neumaier) sums, the total does not drift with millions of rows</li>
+ * <li>BigDecimal: exact sums of integral values are done over a long, falling back to BigDecimal arithmetic
+ * when a value has decimals or the long would overflow</li>
+ * </ul>
+ * Long, Integer and Short sums are left to JasperReports, whose incrementers already add over a primitive long.
+ * The variable value has to be an instance of its value class, so a new box is still created on every row.
+ */
+public abstract class PrimitiveIncrementerFactory implements JRIncrementerFactory {
+
+	private static volatile boolean enabled = true;
+
+	private final Class<?> valueClass;
+
+	protected PrimitiveIncrementerFactory(Class<?> valueClass) {
+		this.valueClass = valueClass;
+	}
+
+	public JRIncrementer getIncrementer(byte calculation) {
+		if (calculation == CalculationEnum.SUM.getValue())
+			return createSumIncrementer();
+		return JRDefaultIncrementerFactory.getFactory(valueClass).getIncrementer(calculation);
+	}
+
+	/**
+	 * @return a new incrementer, it holds the accumulator of a single variable
+	 */
+	protected abstract JRIncrementer createSumIncrementer();
+
+	/**
+	 * @param valueClassName the value class of a SUM variable
+	 * @return the factory to use for the variable, null if JasperReports' default is fine (or the factories are disabled)
+	 */
+	public static Class<? extends PrimitiveIncrementerFactory> getFactoryClass(String valueClassName) {
+		if (!enabled || valueClassName == null)
+			return null;
+		if (Double.class.getName().equals(valueClassName))
+			return DoubleIncrementerFactory.class;
+		if (Float.class.getName().equals(valueClassName))
+			return FloatIncrementerFactory.class;
+		if (BigDecimal.class.getName().equals(valueClassName))
+			return BigDecimalIncrementerFactory.class;
+		return null;
+	}
+
+	/**
+	 * When disabled, reports designed afterwards use JasperReports' default incrementers. Enabled by default.
+	 */
+	public static void setEnabled(boolean enabled) {
+		PrimitiveIncrementerFactory.enabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static class DoubleIncrementerFactory extends PrimitiveIncrementerFactory {
+		public DoubleIncrementerFactory() {
+			super(Double.class);
+		}
+
+		protected JRIncrementer createSumIncrementer() {
+			return new CompensatedSumIncrementer(false);
+		}
+	}
+
+	public static class FloatIncrementerFactory extends PrimitiveIncrementerFactory {
+		public FloatIncrementerFactory() {
+			super(Float.class);
+		}
+
+		protected JRIncrementer createSumIncrementer() {
+			return new CompensatedSumIncrementer(true);
+		}
+	}
+
+	public static class BigDecimalIncrementerFactory extends PrimitiveIncrementerFactory {
+		public BigDecimalIncrementerFactory() {
+			super(BigDecimal.class);
+		}
+
+		protected JRIncrementer createSumIncrementer() {
+			return new BigDecimalSumIncrementer();
+		}
+	}
+}
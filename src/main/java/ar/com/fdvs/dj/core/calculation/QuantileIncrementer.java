@@ -0,0 +1,100 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.calculation;
+
+import net.sf.jasperreports.engine.fill.AbstractValueProvider;
+import net.sf.jasperreports.engine.fill.JRCalculable;
+import net.sf.jasperreports.engine.fill.JRIncrementer;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Quantile of the values of a variable over a {@link TDigest}. The digest is cleared when the variable is reset.
+ * The result has the class of the incoming values (as AVERAGE does), integral classes are rounded.<br>
+ * Estimated values don't include the value being estimated.
+ */
+class QuantileIncrementer implements JRIncrementer {
+
+	private final double quantile;
+	private final TDigest digest;
+
+	QuantileIncrementer(double quantile, double compression) {
+		this.quantile = quantile;
+		this.digest = new TDigest(compression);
+	}
+
+	public Object increment(JRCalculable calculable, Object expressionValue, AbstractValueProvider valueProvider) {
+		Number value = (Number) expressionValue;
+
+		if (valueProvider == AbstractValueProvider.getEstimatedValueProvider()) {
+			if (calculable.isInitialized() || digest.getCount() == 0)
+				return value;
+			if (value == null)
+				return valueProvider.getValue(calculable);
+			return toValueClass(digest.quantile(quantile), value);
+		}
+
+		if (calculable.isInitialized())
+			digest.clear();
+
+		if (value == null)
+			return calculable.getIncrementedValue();
+
+		digest.add(value.doubleValue());
+		if (digest.getCount() == 0) //NaN
+			return calculable.getIncrementedValue();
+		return toValueClass(digest.quantile(quantile), value);
+	}
+
+	public boolean ignoresNullValues() {
+		return false;
+	}
+
+	static Number toValueClass(double result, Number sample) {
+		if (sample instanceof Double)
+			return Double.valueOf(result);
+		if (sample instanceof Float)
+			return Float.valueOf((float) result);
+		if (sample instanceof Long)
+			return Long.valueOf(Math.round(result));
+		if (sample instanceof Integer)
+			return Integer.valueOf((int) Math.round(result));
+		if (sample instanceof Short)
+			return Short.valueOf((short) Math.round(result));
+		if (sample instanceof Byte)
+			return Byte.valueOf((byte) Math.round(result));
+		if (sample instanceof BigDecimal)
+			return BigDecimal.valueOf(result);
+		if (sample instanceof BigInteger)
+			return BigInteger.valueOf(Math.round(result));
+		return Double.valueOf(result);
+	}
+}
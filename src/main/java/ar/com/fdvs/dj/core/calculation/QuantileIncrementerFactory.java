@@ -0,0 +1,81 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.calculation;
+
+import net.sf.jasperreports.engine.fill.JRIncrementer;
+import net.sf.jasperreports.engine.fill.JRIncrementerFactory;
+
+/**
+ * Incrementer factories for the quantile calculations ({@link ar.com.fdvs.dj.domain.DJCalculation#MEDIAN},
+ * {@link ar.com.fdvs.dj.domain.DJCalculation#PERCENTILE_90}, etc.).<br>
+ * <br>
+ * JasperReports instantiates incrementer factories by class, so each quantile has its own factory. Every variable
+ * keeps a {@link TDigest} with the default compression, the memory is bounded whatever the number of rows.
+ */
+public abstract class QuantileIncrementerFactory implements JRIncrementerFactory {
+
+	private final double quantile;
+
+	protected QuantileIncrementerFactory(double quantile) {
+		this.quantile = quantile;
+	}
+
+	public JRIncrementer getIncrementer(byte calculation) {
+		return new QuantileIncrementer(quantile, TDigest.DEFAULT_COMPRESSION);
+	}
+
+	public double getQuantile() {
+		return quantile;
+	}
+
+	public static class Median extends QuantileIncrementerFactory {
+		public Median() {
+			super(0.5d);
+		}
+	}
+
+	public static class Percentile90 extends QuantileIncrementerFactory {
+		public Percentile90() {
+			super(0.9d);
+		}
+	}
+
+	public static class Percentile95 extends QuantileIncrementerFactory {
+		public Percentile95() {
+			super(0.95d);
+		}
+	}
+
+	public static class Percentile99 extends QuantileIncrementerFactory {
+		public Percentile99() {
+			super(0.99d);
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.calculation;
+
+import java.util.Arrays;
+
+/**
+ * Streaming quantile estimation with a merging t-digest (Dunning): values are clustered in centroids (mean and
+ * weight) kept sorted by mean, centroids near the tails are kept small so extreme quantiles stay accurate. Memory is
+ * bounded by the compression, it does not grow with the number of values.<br>
+ * <br>
+ * Values are buffered and merged with the centroids in batches: the buffer is sorted and a single pass over both
+ * merges each value or centroid into the previous centroid while the size limit of the k<sub>1</sub> scale allows it.
+ * The scale used spans 2 * compression, and two consecutive centroids are left unmerged only if together they span
+ * more than about 1, so a merge leaves at most about 4 * compression centroids (2.5 * compression for usual data)
+ * no matter how many values were added.<br>
+ * A compression of 100 gives errors well below 1% of the quantile for most distributions.
+ */
+public class TDigest {
+
+	public static final double DEFAULT_COMPRESSION = 100d;
+
+	private final double compression;
+
+	//centroids and buffered values share the capacity, a merge leaves room for at least 2 * compression values
+	private double[] means;
+	private double[] weights;
+	private double[] mergedMeans;
+	private double[] mergedWeights;
+	private final double[] buffer;
+
+	private int size;
+	private int buffered;
+	private double total;
+	private double min;
+	private double max;
+
+	public TDigest() {
+		this(DEFAULT_COMPRESSION);
+	}
+
+	public TDigest(double compression) {
+		if (compression < 10)
+			throw new IllegalArgumentException("t-digest compression must be at least 10: " + compression);
+		this.compression = compression;
+		int capacity = (int) Math.ceil(6 * compression) + 2;
+		this.means = new double[capacity];
+		this.weights = new double[capacity];
+		this.mergedMeans = new double[capacity];
+		this.mergedWeights = new double[capacity];
+		this.buffer = new double[capacity];
+		clear();
+	}
+
+	/**
+	 * Adds a value, NaN is ignored
+	 */
+	public void add(double value) {
+		if (Double.isNaN(value))
+			return;
+
+		if (value < min)
+			min = value;
+		if (value > max)
+			max = value;
+		total++;
+
+		if (size + buffered == buffer.length) {
+			flush();
+			if (size == buffer.length) {
+				//only if the values defeat the size limits, the memory bound is kept at the cost of accuracy
+				int position = upperBound(value);
+				mergeInto(position == size ? position - 1 : position, value);
+				return;
+			}
+		}
+		buffer[buffered++] = value;
+	}
+
+	/**
+	 * Merges the buffered values first
+	 *
+	 * @param q quantile, between 0 and 1
+	 * @return the estimated value at the quantile, NaN if nothing was added
+	 */
+	public double quantile(double q) {
+		if (q < 0 || q > 1)
+			throw new IllegalArgumentException("quantile must be between 0 and 1: " + q);
+		flush();
+		if (size == 0)
+			return Double.NaN;
+		if (size == 1)
+			return means[0];
+
+		double index = q * total;
+		double center = weights[0] / 2;
+		if (index < center)
+			return min + (means[0] - min) * index / center;
+
+		for (int i = 0; i < size - 1; i++) {
+			double next = center + (weights[i] + weights[i + 1]) / 2;
+			if (index <= next)
+				return means[i] + (means[i + 1] - means[i]) * (index - center) / (next - center);
+			center = next;
+		}
+
+		int last = size - 1;
+		return Math.min(max, means[last] + (max - means[last]) * (index - center) / (weights[last] / 2));
+	}
+
+	public long getCount() {
+		return (long) total;
+	}
+
+	/**
+	 * Merges the buffered values first
+	 */
+	public int getCentroidCount() {
+		flush();
+		return size;
+	}
+
+	public void clear() {
+		size = 0;
+		buffered = 0;
+		total = 0d;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Maximum weight of a centroid at the given quantile, the width of 1 in the k<sub>1</sub> scale
+	 * (2 compression / &pi; asin(2q - 1)): &pi; n sqrt(q (1 - q)) / (2 compression)
+	 */
+	private double sizeLimit(double q) {
+		return Math.PI * total * Math.sqrt(q * (1 - q)) / (2 * compression);
+	}
+
+	/**
+	 * Merges the sorted buffer and the centroids in a single pass
+	 */
+	private void flush() {
+		if (buffered == 0)
+			return;
+		Arrays.sort(buffer, 0, buffered);
+
+		int i = 0;
+		int j = 0;
+		int last = -1;
+		double before = 0d;
+		while (i < size || j < buffered) {
+			double mean;
+			double weight;
+			if (j == buffered || (i < size && means[i] <= buffer[j])) {
+				mean = means[i];
+				weight = weights[i++];
+			} else {
+				mean = buffer[j++];
+				weight = 1d;
+			}
+
+			if (last >= 0) {
+				double proposed = mergedWeights[last] + weight;
+				if (proposed <= sizeLimit((before + proposed / 2) / total)) {
+					mergedMeans[last] += (mean - mergedMeans[last]) * weight / proposed;
+					mergedWeights[last] = proposed;
+					continue;
+				}
+				before += mergedWeights[last];
+			}
+			last++;
+			mergedMeans[last] = mean;
+			mergedWeights[last] = weight;
+		}
+
+		double[] swap = means;
+		means = mergedMeans;
+		mergedMeans = swap;
+		swap = weights;
+		weights = mergedWeights;
+		mergedWeights = swap;
+		size = last + 1;
+		buffered = 0;
+	}
+
+	private int upperBound(double value) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (means[mid] <= value)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * The new mean stays between the neighbours of the centroid, so the order is kept
+	 */
+	private void mergeInto(int centroid, double value) {
+		weights[centroid]++;
+		means[centroid] += (value - means[centroid]) / weights[centroid];
+	}
+}
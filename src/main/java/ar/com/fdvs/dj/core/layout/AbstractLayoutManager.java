@@ -30,6 +30,7 @@
 package ar.com.fdvs.dj.core.layout;
 
 import ar.com.fdvs.dj.core.DJException;
+import ar.com.fdvs.dj.core.calculation.PreAggregatedTotals;
 import ar.com.fdvs.dj.domain.DJChart;
 import ar.com.fdvs.dj.domain.DJChartOptions;
 import ar.com.fdvs.dj.domain.DJCrosstab;
@@ -49,6 +50,8 @@ import ar.com.fdvs.dj.domain.entities.columns.ImageColumn;
 import ar.com.fdvs.dj.domain.entities.columns.PercentageColumn;
 import ar.com.fdvs.dj.domain.entities.columns.PropertyColumn;
 import ar.com.fdvs.dj.domain.entities.conditionalStyle.ConditionalStyle;
+import ar.com.fdvs.dj.domain.entities.conditionalStyle.RangeTableCondition;
+import ar.com.fdvs.dj.domain.entities.conditionalStyle.StyleRangeTable;
 import ar.com.fdvs.dj.util.ExpressionUtils;
 import ar.com.fdvs.dj.util.HyperLinkUtil;
 import ar.com.fdvs.dj.util.LayoutUtils;
@@ -87,6 +90,7 @@ import net.sf.jasperreports.engine.type.ResetTypeEnum;
 import net.sf.jasperreports.engine.type.ScaleImageEnum;
 import net.sf.jasperreports.engine.type.StretchTypeEnum;
 import net.sf.jasperreports.engine.util.JRExpressionUtil;
+import net.sf.jasperreports.renderers.Renderable;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import javax.imageio.ImageIO;
@@ -97,9 +101,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Date;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -135,6 +140,16 @@ public abstract class AbstractLayoutManager implements LayoutManager {
      */
     protected final List<JRGroup> realGroups = new ArrayList<JRGroup>();
 
+    /**
+     * Identity indexes over the groups and columns, built in {@link #startLayout()}. They replace the scans of the
+     * groups and columns lists done for every column, which made the layout of wide reports quadratic.
+     */
+    private final Map<DJGroup, JRDesignGroup> jrGroupsByDJGroup = new IdentityHashMap<DJGroup, JRDesignGroup>();
+    private final Map<JRGroup, JRDesignGroup> parentGroups = new IdentityHashMap<JRGroup, JRDesignGroup>();
+    private final Map<AbstractColumn, DJGroup> groupsByColumn = new IdentityHashMap<AbstractColumn, DJGroup>();
+    private final Map<AbstractColumn, Integer> columnIndexes = new IdentityHashMap<AbstractColumn, Integer>();
+    private boolean indexesBuilt = false;
+
     public Map<String, JRStyle> getReportStyles() {
         return reportStyles;
     }
@@ -296,6 +311,37 @@ public abstract class AbstractLayoutManager implements LayoutManager {
     protected void startLayout() {
         setColumnsFinalWidth();
         realGroups.addAll(getDesign().getGroupsList()); //Hold the original groups
+        buildIndexes();
+    }
+
+    protected void buildIndexes() {
+        jrGroupsByDJGroup.clear();
+        parentGroups.clear();
+        groupsByColumn.clear();
+        columnIndexes.clear();
+
+        for (int i = 0; i < realGroups.size(); i++) {
+            JRGroup group = realGroups.get(i);
+            if (!parentGroups.containsKey(group))
+                parentGroups.put(group, (JRDesignGroup) realGroups.get(i > 0 ? i - 1 : i));
+        }
+
+        List<DJGroup> columnsGroups = getReport().getColumnsGroups();
+        for (int i = 0; i < columnsGroups.size(); i++) {
+            DJGroup group = columnsGroups.get(i);
+            if (i < realGroups.size() && !jrGroupsByDJGroup.containsKey(group))
+                jrGroupsByDJGroup.put(group, (JRDesignGroup) realGroups.get(i));
+            AbstractColumn column = group.getColumnToGroupBy();
+            if (column != null && !groupsByColumn.containsKey(column))
+                groupsByColumn.put(column, group);
+        }
+
+        List<AbstractColumn> columns = getReport().getColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            if (!columnIndexes.containsKey(columns.get(i)))
+                columnIndexes.put(columns.get(i), i);
+        }
+        indexesBuilt = true;
     }
 
     protected void endLayout() {
@@ -370,7 +416,7 @@ public abstract class AbstractLayoutManager implements LayoutManager {
 
     protected String createUniqueStyleName() {
         synchronized (this) {
-            String tryName = "dj_style_" + Math.random() + "_"; //FIX for issue 3002761 @SF tracker
+            String tryName = createUniqueName("dj_style_", "_"); //FIX for issue 3002761 @SF tracker
             if (design.getStylesMap().get(tryName) != null) {
                 return createUniqueStyleName();
             }
@@ -378,6 +424,15 @@ public abstract class AbstractLayoutManager implements LayoutManager {
         }
     }
 
+    /**
+     * Sequential if the report uses deterministic names, random otherwise
+     *
+     * @see DynamicJasperDesign#createUniqueName(String, String)
+     */
+    protected String createUniqueName(String prefix, String suffix) {
+        return ((DynamicJasperDesign) getDesign()).createUniqueName(prefix, suffix);
+    }
+
     /**
      * For each column, puts the elements in the detail band
      */
@@ -416,10 +471,11 @@ public abstract class AbstractLayoutManager implements LayoutManager {
                 } else {
                     applicationIdentifier = "\"\"";
                 }
-                imageExp.setText("ar.com.fdvs.dj.core.BarcodeHelper.getBarcodeImage(" + barcodeColumn.getBarcodeType() + ", " + column.getTextForExpression() + ", " + barcodeColumn.isShowText() + ", " + barcodeColumn.isCheckSum() + ", " + applicationIdentifier + ",0,0 )");
+                String barcodeMethod = barcodeColumn.isVectorRendering() ? "getBarcodeRenderer" : "getBarcodeImage";
+                imageExp.setText("ar.com.fdvs.dj.core.BarcodeHelper." + barcodeMethod + "(" + barcodeColumn.getBarcodeType() + ", " + column.getTextForExpression() + ", " + barcodeColumn.isShowText() + ", " + barcodeColumn.isCheckSum() + ", " + applicationIdentifier + ",0,0 )");
 
 
-                imageExp.setValueClass(Image.class);
+                imageExp.setValueClass(barcodeColumn.isVectorRendering() ? Renderable.class : Image.class);
                 image.setExpression(imageExp);
                 image.setHeight(getReport().getOptions().getDetailHeight());
                 image.setWidth(column.getWidth());
@@ -429,7 +485,7 @@ public abstract class AbstractLayoutManager implements LayoutManager {
                 image.setOnErrorType(OnErrorTypeEnum.ICON); //FIXME should we provide control of this to the user?
 
                 if (column.getLink() != null) {
-                    String name = "column_" + getReport().getColumns().indexOf(column);
+                    String name = "column_" + getColumnIndex(column);
                     HyperLinkUtil.applyHyperLinkToElement((DynamicJasperDesign) getDesign(), column.getLink(), image, name);
                 }
 
@@ -456,7 +512,7 @@ public abstract class AbstractLayoutManager implements LayoutManager {
                 applyStyleToElement(column.getStyle(), image);
 
                 if (column.getLink() != null) {
-                    String name = "column_" + getReport().getColumns().indexOf(column);
+                    String name = "column_" + getColumnIndex(column);
                     HyperLinkUtil.applyHyperLinkToElement((DynamicJasperDesign) getDesign(), column.getLink(), image, name);
                 }
 
@@ -470,7 +526,7 @@ public abstract class AbstractLayoutManager implements LayoutManager {
                     JRDesignTextField textField = generateTextFieldFromColumn(column, getReport().getOptions().getDetailHeight(), null);
 
                     if (column.getLink() != null) {
-                        String name = getDesign().getName() + "_column_" + getReport().getColumns().indexOf(column);
+                        String name = getDesign().getName() + "_column_" + getColumnIndex(column);
                         HyperLinkUtil.applyHyperLinkToElement((DynamicJasperDesign) getDesign(), column.getLink(), textField, name);
                     }
 
@@ -824,14 +880,19 @@ public abstract class AbstractLayoutManager implements LayoutManager {
         if (col instanceof PercentageColumn) {
             PercentageColumn pcol = (PercentageColumn) col;
 
-            if (group == null) { //we are in the detail band
-                DJGroup innerMostGroup = columnsGroups.get(columnsGroups.size() - 1);
-                exp.setText(pcol.getTextForExpression(innerMostGroup));
+            PreAggregatedTotals totals = group == null && getReport().getOptions().isPreAggregatePercentages() ? pcol.getPreAggregatedTotals(columnsGroups) : null;
+            if (totals != null) { //detail band, the totals are computed before the fill
+                exp.setText(pcol.getPreAggregatedTextForExpression(totals));
             } else {
-                exp.setText(pcol.getTextForExpression(group));
-            }
+                if (group == null) { //we are in the detail band
+                    DJGroup innerMostGroup = columnsGroups.get(columnsGroups.size() - 1);
+                    exp.setText(pcol.getTextForExpression(innerMostGroup));
+                } else {
+                    exp.setText(pcol.getTextForExpression(group));
+                }
 
-            textField.setEvaluationTime(EvaluationTimeEnum.AUTO);
+                textField.setEvaluationTime(EvaluationTimeEnum.AUTO);
+            }
         } else {
             exp.setText(col.getTextForExpression());
 
@@ -915,6 +976,40 @@ public abstract class AbstractLayoutManager implements LayoutManager {
         return textField;
     }
 
+    /**
+     * Registers, once per column, the table as a parameter and a variable holding the index of the range matching
+     * the value of the current record. The conditional styles of the ranges compare that index, so the table is
+     * searched once per record instead of once per range.
+     *
+     * @return the name of the variable
+     */
+    private String getRangeTableVariable(StyleRangeTable table, AbstractColumn column, Map<StyleRangeTable, String> rangeTableVariables) {
+        String varName = rangeTableVariables.get(table);
+        if (varName != null)
+            return varName;
+
+        String name = column.getName() + "_range_table_" + rangeTableVariables.size();
+        LayoutUtils.registerAndAddParameter((DynamicJasperDesign) getDesign(), name, StyleRangeTable.class.getName(), table);
+
+        JRDesignExpression expression = new JRDesignExpression();
+        expression.setValueClass(Integer.class);
+        expression.setText("java.lang.Integer.valueOf(((" + StyleRangeTable.class.getName() + ")$P{" + name + "}).indexOf(" + column.getTextForExpression() + "))");
+
+        JRDesignVariable var = new JRDesignVariable();
+        var.setName(name + "_index");
+        var.setValueClass(Integer.class);
+        var.setCalculation(CalculationEnum.NOTHING);
+        var.setExpression(expression);
+        try {
+            getDesign().addVariable(var);
+        } catch (JRException e) {
+            throw new LayoutException(e.getMessage(), e);
+        }
+
+        rangeTableVariables.put(table, var.getName());
+        return var.getName();
+    }
+
     /**
      * set up properly the final JRStyle of the column element (for detail band) upon condition style and odd-background
      *
@@ -943,11 +1038,22 @@ public abstract class AbstractLayoutManager implements LayoutManager {
         if (Utils.isEmpty(column.getConditionalStyles()))
             return;
 
+        Map<StyleRangeTable, String> rangeTableVariables = new IdentityHashMap<StyleRangeTable, String>();
         for (ConditionalStyle condition : column.getConditionalStyles()) {
+            JRDesignExpression expressionForConditionalStyle;
+            if (condition.getCondition() instanceof RangeTableCondition) {
+                RangeTableCondition rangeCondition = (RangeTableCondition) condition.getCondition();
+                String varName = getRangeTableVariable(rangeCondition.getTable(), column, rangeTableVariables);
+                expressionForConditionalStyle = new JRDesignExpression();
+                expressionForConditionalStyle.setValueClass(Boolean.class);
+                expressionForConditionalStyle.setText("java.lang.Boolean.valueOf($V{" + varName + "} != null && $V{" + varName + "}.intValue() == " + rangeCondition.getIndex() + ")");
+            } else {
+                expressionForConditionalStyle = ExpressionUtils.getExpressionForConditionalStyle(condition, column.getTextForExpression());
+            }
+
             if (getReport().getOptions().isPrintBackgroundOnOddRows()
                     && Transparency.TRANSPARENT == condition.getStyle().getTransparency()) { //condition style + odd row (only if conditional style's background is transparent)
 
-                JRDesignExpression expressionForConditionalStyle = ExpressionUtils.getExpressionForConditionalStyle(condition, column.getTextForExpression());
                 String expStr = JRExpressionUtil.getExpressionText(expressionForConditionalStyle);
 
                 //ODD
@@ -974,9 +1080,8 @@ public abstract class AbstractLayoutManager implements LayoutManager {
                 jrstyle.addConditionalStyle(condStyleEven);
 
             } else { //No odd row, just the conditional style
-                JRDesignExpression expression = ExpressionUtils.getExpressionForConditionalStyle(condition, column.getTextForExpression());
                 JRDesignConditionalStyle condStyle = makeConditionalStyle(condition.getStyle());
-                condStyle.setConditionExpression(expression);
+                condStyle.setConditionExpression(expressionForConditionalStyle);
                 jrstyle.addConditionalStyle(condStyle);
             }
         }
@@ -1022,7 +1127,7 @@ public abstract class AbstractLayoutManager implements LayoutManager {
      */
     protected void layoutCharts() {
         //Pre-sort charts by group column
-        Map<DJGroup, List<DJChart>> mmap = new HashMap<>();
+        Map<DJGroup, List<DJChart>> mmap = new LinkedHashMap<>();
         for (DJChart djChart : getReport().getCharts()) {
             mmap.computeIfAbsent(djChart.getColumnsGroup(), (key)-> new ArrayList<>()).add(djChart);
         }
@@ -1042,7 +1147,7 @@ public abstract class AbstractLayoutManager implements LayoutManager {
         }
 
         //Pre-sort charts by group column
-        Map<PropertyColumn, List<ar.com.fdvs.dj.domain.chart.DJChart>> mmap2 = new HashMap<>();
+        Map<PropertyColumn, List<ar.com.fdvs.dj.domain.chart.DJChart>> mmap2 = new LinkedHashMap<>();
         for (ar.com.fdvs.dj.domain.chart.DJChart djChart : getReport().getNewCharts()) {
             mmap2.computeIfAbsent(djChart.getDataset().getColumnsGroup(), (key)->new ArrayList<>()).add(djChart);
         }
@@ -1053,7 +1158,7 @@ public abstract class AbstractLayoutManager implements LayoutManager {
             //Reverse iteration of the charts to meet insertion order
             for (int i = l.size(); i > 0; i--) {
                 ar.com.fdvs.dj.domain.chart.DJChart djChart = l.get(i - 1);
-                String name = "chart_" + (i - 1) + new Date().getTime();
+                String name = createUniqueName("chart_" + (i - 1) + "_", "");
                 JRDesignChart chart = createChart(djChart, name);
 
                 if (djChart.getLink() != null)
@@ -1358,6 +1463,10 @@ public abstract class AbstractLayoutManager implements LayoutManager {
      * @return The parent group of the given one. If the given one is the first one, it returns the same group
      */
     protected JRDesignGroup getParent(JRDesignGroup group) {
+        if (indexesBuilt) {
+            JRDesignGroup parent = parentGroups.get(group);
+            return parent != null ? parent : group;
+        }
         int index = realGroups.indexOf(group);
         return (index > 0) ? (JRDesignGroup) realGroups.get(index - 1) : group;
     }
@@ -1369,12 +1478,19 @@ public abstract class AbstractLayoutManager implements LayoutManager {
      * @return
      */
     protected JRDesignGroup getJRGroupFromDJGroup(DJGroup group) {
+        if (indexesBuilt) {
+            JRDesignGroup jrGroup = jrGroupsByDJGroup.get(group);
+            if (jrGroup != null)
+                return jrGroup;
+        }
         int index = getReport().getColumnsGroups().indexOf(group);
         return (JRDesignGroup) realGroups.get(index);
     }
 
 
     protected DJGroup getDJGroup(AbstractColumn col) {
+        if (indexesBuilt)
+            return groupsByColumn.get(col);
         for (DJGroup group : getReport().getColumnsGroups()) {
             if (group.getColumnToGroupBy().equals(col))
                 return group;
@@ -1382,6 +1498,18 @@ public abstract class AbstractLayoutManager implements LayoutManager {
         return null;
     }
 
+    /**
+     * @param column
+     * @return the position of the column in the report, -1 if it is not one of the report's columns
+     */
+    protected int getColumnIndex(AbstractColumn column) {
+        if (indexesBuilt) {
+            Integer index = columnIndexes.get(column);
+            return index != null ? index : -1;
+        }
+        return getReport().getColumns().indexOf(column);
+    }
+
 
     protected JasperDesign getDesign() {
         return design;
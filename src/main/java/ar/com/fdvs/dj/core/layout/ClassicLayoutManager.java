@@ -86,6 +86,7 @@ import org.apache.commons.logging.LogFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -110,11 +111,15 @@ public class ClassicLayoutManager extends AbstractLayoutManager {
 
 	protected final Map<String, Object> referencesMap = new HashMap<String, Object>();
 
+	//position of each visible column, built on first use in every layout
+	private Map<AbstractColumn, Integer> visibleColumnIndexes;
+
 	public Map<String, Object> getReferencesMap() {
 		return referencesMap;
 	}
 
 	protected void startLayout() {
+		visibleColumnIndexes = null;
 		super.startLayout();
 		generateTitleBand();
 		generateHeaderBand();
@@ -238,6 +243,23 @@ public class ClassicLayoutManager extends AbstractLayoutManager {
 		return visibleColums;
 	}
 
+	/**
+	 * @param column
+	 * @return the position of the column in {@link #getVisibleColumns()}, -1 if it is hidden
+	 */
+	protected int getVisibleColumnIndex(AbstractColumn column) {
+		if (visibleColumnIndexes == null) {
+			visibleColumnIndexes = new IdentityHashMap<AbstractColumn, Integer>();
+			List<AbstractColumn> visibleColumns = getVisibleColumns();
+			for (int i = 0; i < visibleColumns.size(); i++) {
+				if (!visibleColumnIndexes.containsKey(visibleColumns.get(i)))
+					visibleColumnIndexes.put(visibleColumns.get(i), i);
+			}
+		}
+		Integer index = visibleColumnIndexes.get(column);
+		return index != null ? index : -1;
+	}
+
 	/**
 	 * Create the image elements for the banners tha goes into the
 	 * title and header bands depending on the case
@@ -764,7 +786,7 @@ public class ClassicLayoutManager extends AbstractLayoutManager {
 				JRDesignExpression connectionExpression = ExpressionUtils.getConnectionExpression(sr.getDatasource());
 				subreport.setConnectionExpression(connectionExpression);
 			} else {
-				JRDesignExpression dataSourceExpression = ExpressionUtils.getDataSourceExpression(sr.getDatasource());
+				JRDesignExpression dataSourceExpression = ExpressionUtils.getDataSourceExpression(sr.getDatasource(), getReport().isUseBeanAccessorDataSource());
 				subreport.setDataSourceExpression(dataSourceExpression);
 			}
 
@@ -1077,7 +1099,7 @@ public class ClassicLayoutManager extends AbstractLayoutManager {
 			else
 				setTextAndClassToExpression(expression,var,col,variableName);
 
-			if (var.getOperation() != DJCalculation.COUNT && var.getOperation() != DJCalculation.DISTINCT_COUNT )
+			if (var.getOperation() == null || !var.getOperation().isCount())
 				textField.setPattern(col.getPattern());
 
 			if (col instanceof PercentageColumn) {
@@ -1107,7 +1129,7 @@ public class ClassicLayoutManager extends AbstractLayoutManager {
 			textField.setWidth(col.getWidth());
 
 
-			textField.setKey("variable_for_column_"+ getVisibleColumns().indexOf(col) + "_in_group_" + getDesign().getGroupsList().indexOf(jgroup));
+			textField.setKey("variable_for_column_"+ getVisibleColumnIndex(col) + "_in_group_" + getDesign().getGroupsList().indexOf(jgroup));
 
 
 			//Assign the style to the element.
@@ -40,7 +40,6 @@ import net.sf.jasperreports.engine.type.EvaluationTimeEnum;
 import net.sf.jasperreports.engine.type.HorizontalTextAlignEnum;
 import net.sf.jasperreports.engine.type.PositionTypeEnum;
 
-import java.util.Random;
 
 /**
  * @author msimone
@@ -50,7 +49,6 @@ public class CommonExpressionsHelper {
     private static final String KEY_autotext_page = "autotext.page";
     private static final String KEY_autotext_of = "autotext.of";
     private static final String KEY_autotext_created_on = "autotext.created_on";
-    private static final Random random = new Random();
 
     /**
      * @param yOffset
@@ -287,8 +285,7 @@ public class CommonExpressionsHelper {
      * @param autoText
      */
     private static JRDesignExpression getPrintWhenExpression(DynamicJasperDesign design, AutoText autoText) {
-        long random_ = Math.abs(random.nextLong());
-        String name = "autotext_" + random_ + "_printWhenExpression";
+        String name = design.createUniqueName("autotext_", "_printWhenExpression");
         return ExpressionUtils.createAndRegisterExpression(design, name, autoText.getPrintWhenExpression());
     }
 
@@ -60,7 +60,6 @@ import java.util.*;
 public class Dj2JrCrosstabBuilder {
 
 	private static final Log log = LogFactory.getLog(Dj2JrCrosstabBuilder.class);
-	private static final Random random = new Random();
 
 	private JasperDesign design;
 	private JRDesignCrosstab jrcross;
@@ -343,10 +342,11 @@ public class Dj2JrCrosstabBuilder {
 //		}
 
 		jrcross.setDataset(dataset);
-		String dsName = "crosstabDataSource_" + Math.abs(random.nextLong());
+		DynamicJasperDesign djdesign = (DynamicJasperDesign) design;
+		String dsName = djdesign.createUniqueName("crosstabDataSource_", "");
 
 		while (design.getDatasetMap().containsKey(dsName)){
-			dsName = "crosstabDataSource_" + Math.abs(random.nextLong());
+			dsName = djdesign.createUniqueName("crosstabDataSource_", "");
 		}
 
 		datasetRun.setDatasetName(dsName);
@@ -362,6 +362,19 @@ public class Dj2JrCrosstabBuilder {
 			}
 	}
 
+	/**
+	 * Comparators are registered as parameters, another crosstab in the same report may use
+	 * a comparator of the same class for the same property
+	 */
+	private String createComparatorParameterName(DynamicJasperDesign djdesign, Comparator comparator, String property) {
+		String name = ExpressionUtils.createParameterName("crosstab_column_comparator", comparator, property);
+		String base = name;
+		while (djdesign.getParametersMap().containsKey(name)) {
+			name = djdesign.createUniqueName(base + "_", "");
+		}
+		return name;
+	}
+
 	/**
 	 * The way to create the cells is like this:<br><br>
 	 *
@@ -713,6 +726,8 @@ public class Dj2JrCrosstabBuilder {
 			JRDesignCrosstabMeasure measure = new JRDesignCrosstabMeasure();
 
 			measure.setName(meausrePrefix + djmeasure.getProperty().getProperty()); //makes the measure.name unique in this crosstab
+			if (djmeasure.getOperation().getIncrementerFactoryClass() != null) //crosstab totals need incrementers that can be combined
+				throw new EntitiesRegistrationException("Approximate calculations can't be used in crosstab measures: " + djmeasure.getProperty().getProperty());
 			measure.setCalculation(CalculationEnum.getByValue( djmeasure.getOperation().getValue() ));
 			measure.setValueClassName(djmeasure.getProperty().getValueClassName());
 			JRDesignExpression valueExp = new JRDesignExpression();
@@ -812,7 +827,7 @@ public class Dj2JrCrosstabBuilder {
 
 			Comparator comparator = crosstabRow.getComparator();
 			if (comparator != null){
-				final String comparatorParamName = ExpressionUtils.createParameterName("crosstab_column_comparator", comparator, crosstabRow.getProperty().getProperty());
+				final String comparatorParamName = createComparatorParameterName(djdesign, comparator, crosstabRow.getProperty().getProperty());
 				LayoutUtils.registerAndAddParameter(djdesign, comparatorParamName, Comparator.class.getName(), comparator);
 				JRDesignExpression comparatorExpression = ExpressionUtils.createExpression("$P{"+comparatorParamName+"}", Comparator.class.getName());
 				rowBucket.setComparatorExpression(comparatorExpression);
@@ -908,7 +923,7 @@ public class Dj2JrCrosstabBuilder {
 			JRDesignCrosstabBucket bucket = new JRDesignCrosstabBucket();
 
 			if (crosstabColumn.getComparator() != null){
-				final String comparatorParamName = ExpressionUtils.createParameterName("crosstab_column_comparator", crosstabColumn.getComparator(), crosstabColumn.getProperty().getProperty());
+				final String comparatorParamName = createComparatorParameterName(djdesign, crosstabColumn.getComparator(), crosstabColumn.getProperty().getProperty());
 				LayoutUtils.registerAndAddParameter(djdesign, comparatorParamName, Comparator.class.getName(), crosstabColumn.getComparator());
 				JRDesignExpression comparatorExpression = ExpressionUtils.createExpression("$P{"+comparatorParamName+"}", Comparator.class.getName());
 				bucket.setComparatorExpression(comparatorExpression);
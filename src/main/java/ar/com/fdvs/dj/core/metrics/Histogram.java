@@ -0,0 +1,152 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of non negative long values, with a fixed memory footprint (less than 8KB) whatever the
+ * number of values recorded.<br>
+ * <br>
+ * Values are counted in log-linear buckets: every power of two is split in {@value #SUB_BUCKETS} buckets, so
+ * percentiles are reported with a relative error below 1/{@value #SUB_BUCKETS}. Values below {@value #SUB_BUCKETS}
+ * are exact. Negative values are recorded as 0.
+ */
+public class Histogram {
+
+	static final int SUB_BUCKET_BITS = 4;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BUCKET_BITS);
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		counts.incrementAndGet(bucketOf(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+
+		long current = min.get();
+		while (value < current && !min.compareAndSet(current, value))
+			current = min.get();
+		current = max.get();
+		while (value > current && !max.compareAndSet(current, value))
+			current = max.get();
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getSum() {
+		return sum.get();
+	}
+
+	/**
+	 * @return the smallest value recorded, 0 if none
+	 */
+	public long getMin() {
+		return count.get() == 0 ? 0 : min.get();
+	}
+
+	/**
+	 * @return the biggest value recorded, 0 if none
+	 */
+	public long getMax() {
+		return count.get() == 0 ? 0 : max.get();
+	}
+
+	public double getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : (double) sum.get() / n;
+	}
+
+	/**
+	 * @param percentile between 0 and 100, i.e. 50 for the median, 99 for p99
+	 * @return a value such that (approximately) the given percentage of the recorded values are less or equal to it,
+	 * 0 if nothing was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100)
+			throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++)
+			total += counts.get(i);
+		if (total == 0)
+			return 0;
+
+		long target = Math.max(1, (long) Math.ceil(percentile / 100d * total));
+		long accumulated = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			accumulated += counts.get(i);
+			if (accumulated >= target)
+				return Math.max(getMin(), Math.min(upperBoundOf(i), getMax()));
+		}
+		return getMax();
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+		count.set(0);
+		sum.set(0);
+		min.set(Long.MAX_VALUE);
+		max.set(Long.MIN_VALUE);
+	}
+
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int msb = 63 - Long.numberOfLeadingZeros(value);
+		int shift = msb - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+		return SUB_BUCKETS * (shift + 1) + subBucket;
+	}
+
+	static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+		int shift = bucket / SUB_BUCKETS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		long upper = ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+		return upper < 0 ? Long.MAX_VALUE : upper;
+	}
+
+	public String toString() {
+		return "count=" + getCount() + ", min=" + getMin() + ", p50=" + getValueAtPercentile(50)
+				+ ", p99=" + getValueAtPercentile(99) + ", max=" + getMax();
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps a {@link Histogram} per report and measurement in memory, so percentiles (p50, p99, etc.) of every
+ * phase can be queried per report, i.e. to be published periodically to a monitoring system.<br>
+ * <br>
+ * Memory usage is fixed per report name (a few tens of KB), it does not grow with the number of runs.
+ */
+public class HistogramReportMetricsListener implements ReportMetricsListener {
+
+	private final ConcurrentMap<String, ReportHistograms> reports = new ConcurrentHashMap<String, ReportHistograms>();
+
+	public void phaseCompleted(String reportName, ReportPhase phase, long durationNanos) {
+		histogramsFor(reportName).phases.get(phase).record(durationNanos);
+	}
+
+	public void reportFilled(String reportName, long rows, int pages) {
+		ReportHistograms histograms = histogramsFor(reportName);
+		if (rows >= 0)
+			histograms.rows.record(rows);
+		histograms.pages.record(pages);
+	}
+
+	public void subreportsGenerated(String reportName, int subreports) {
+		histogramsFor(reportName).subreports.record(subreports);
+	}
+
+	public void reportExported(String reportName, long bytes) {
+		histogramsFor(reportName).exportedBytes.record(bytes);
+	}
+
+	/**
+	 * @return the names of the reports measured so far, sorted
+	 */
+	public Set<String> getReportNames() {
+		return Collections.unmodifiableSet(new TreeSet<String>(reports.keySet()));
+	}
+
+	/**
+	 * @param reportName
+	 * @param phase
+	 * @return durations in nanoseconds, null if the report was never measured
+	 */
+	public Histogram getPhaseDurations(String reportName, ReportPhase phase) {
+		ReportHistograms histograms = reports.get(reportName);
+		return histograms == null ? null : histograms.phases.get(phase);
+	}
+
+	public Histogram getRowsFilled(String reportName) {
+		ReportHistograms histograms = reports.get(reportName);
+		return histograms == null ? null : histograms.rows;
+	}
+
+	public Histogram getPagesFilled(String reportName) {
+		ReportHistograms histograms = reports.get(reportName);
+		return histograms == null ? null : histograms.pages;
+	}
+
+	public Histogram getSubreportsGenerated(String reportName) {
+		ReportHistograms histograms = reports.get(reportName);
+		return histograms == null ? null : histograms.subreports;
+	}
+
+	public Histogram getExportedBytes(String reportName) {
+		ReportHistograms histograms = reports.get(reportName);
+		return histograms == null ? null : histograms.exportedBytes;
+	}
+
+	public void clear() {
+		reports.clear();
+	}
+
+	private ReportHistograms histogramsFor(String reportName) {
+		ReportHistograms histograms = reports.get(reportName);
+		if (histograms == null) {
+			ReportHistograms created = new ReportHistograms();
+			histograms = reports.putIfAbsent(reportName, created);
+			if (histograms == null)
+				histograms = created;
+		}
+		return histograms;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (String reportName : getReportNames()) {
+			ReportHistograms histograms = reports.get(reportName);
+			sb.append(reportName).append(":\n");
+			for (Map.Entry<ReportPhase, Histogram> entry : histograms.phases.entrySet()) {
+				if (entry.getValue().getCount() > 0)
+					sb.append("  ").append(entry.getKey()).append(" (ns): ").append(entry.getValue()).append("\n");
+			}
+			sb.append("  rows: ").append(histograms.rows).append("\n");
+			sb.append("  pages: ").append(histograms.pages).append("\n");
+			sb.append("  subreports: ").append(histograms.subreports).append("\n");
+			sb.append("  exported bytes: ").append(histograms.exportedBytes).append("\n");
+		}
+		return sb.toString();
+	}
+
+	private static class ReportHistograms {
+		//fully populated on creation and never modified, so it can be read concurrently
+		private final Map<ReportPhase, Histogram> phases = new EnumMap<ReportPhase, Histogram>(ReportPhase.class);
+		private final Histogram rows = new Histogram();
+		private final Histogram pages = new Histogram();
+		private final Histogram subreports = new Histogram();
+		private final Histogram exportedBytes = new Histogram();
+
+		ReportHistograms() {
+			for (ReportPhase phase : ReportPhase.values())
+				phases.put(phase, new Histogram());
+		}
+	}
+}
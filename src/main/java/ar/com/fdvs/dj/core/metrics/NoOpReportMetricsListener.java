@@ -0,0 +1,53 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.metrics;
+
+/**
+ * Discards every measurement, this is the default listener. While it is set, DJ does not even take the measurements.
+ */
+public final class NoOpReportMetricsListener implements ReportMetricsListener {
+
+	public static final NoOpReportMetricsListener INSTANCE = new NoOpReportMetricsListener();
+
+	private NoOpReportMetricsListener() {
+	}
+
+	public void phaseCompleted(String reportName, ReportPhase phase, long durationNanos) {
+	}
+
+	public void reportFilled(String reportName, long rows, int pages) {
+	}
+
+	public void subreportsGenerated(String reportName, int subreports) {
+	}
+
+	public void reportExported(String reportName, long bytes) {
+	}
+}
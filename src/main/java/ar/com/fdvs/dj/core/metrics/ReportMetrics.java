@@ -0,0 +1,162 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.metrics;
+
+import ar.com.fdvs.dj.domain.DynamicReport;
+import net.sf.jasperreports.engine.JRPropertiesHolder;
+import net.sf.jasperreports.engine.JasperPrint;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Holds the {@link ReportMetricsListener} in use and forwards measurements to it. A failing listener is logged,
+ * it never breaks the report being generated.
+ */
+public final class ReportMetrics {
+
+	private static final Log log = LogFactory.getLog(ReportMetrics.class);
+
+	/**
+	 * Property set in the generated designs (and the filled JasperPrints) with the name used to tag the measurements
+	 */
+	public static final String REPORT_NAME_PROPERTY = "ar.com.fdvs.dj.metrics.reportName";
+
+	private static final String DEFAULT_REPORT_NAME = "DJR";
+
+	private static volatile ReportMetricsListener listener = NoOpReportMetricsListener.INSTANCE;
+
+	private ReportMetrics() {
+	}
+
+	/**
+	 * @param reportMetricsListener null to go back to the {@link NoOpReportMetricsListener}
+	 */
+	public static void setListener(ReportMetricsListener reportMetricsListener) {
+		listener = reportMetricsListener == null ? NoOpReportMetricsListener.INSTANCE : reportMetricsListener;
+	}
+
+	public static ReportMetricsListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * @return false while the no-op listener is set, callers can skip taking measurements
+	 */
+	public static boolean isEnabled() {
+		return listener != NoOpReportMetricsListener.INSTANCE;
+	}
+
+	/**
+	 * The name used to tag the measurements of a report
+	 * @param dr
+	 * @return
+	 */
+	public static String getReportName(DynamicReport dr) {
+		if (dr.getReportName() != null)
+			return dr.getReportName();
+		if (dr.getTemplateFileName() != null)
+			return dr.getTemplateFileName();
+		return DEFAULT_REPORT_NAME;
+	}
+
+	/**
+	 * The name used to tag the measurements of a compiled report or a JasperPrint
+	 * @param holder
+	 * @param defaultName used if the holder has no {@link #REPORT_NAME_PROPERTY}
+	 * @return
+	 */
+	public static String getReportName(JRPropertiesHolder holder, String defaultName) {
+		String name = holder.hasProperties() ? holder.getPropertiesMap().getProperty(REPORT_NAME_PROPERTY) : null;
+		return name != null ? name : defaultName;
+	}
+
+	/**
+	 * @param reportName
+	 * @param phase
+	 * @param startNanos value of {@link System#nanoTime()} when the phase started
+	 */
+	public static void phaseCompleted(String reportName, ReportPhase phase, long startNanos) {
+		ReportMetricsListener current = listener;
+		if (current == NoOpReportMetricsListener.INSTANCE)
+			return;
+		try {
+			current.phaseCompleted(reportName, phase, System.nanoTime() - startNanos);
+		} catch (RuntimeException e) {
+			log.warn("Error in ReportMetricsListener: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reports the fill phase and its results, and tags the JasperPrint with the report name so its export can
+	 * be reported under the same name.
+	 * @param jasperPrint
+	 * @param reportName
+	 * @param startNanos value of {@link System#nanoTime()} when the fill started
+	 * @param rows rows read, -1 if unknown
+	 */
+	public static void fillCompleted(JasperPrint jasperPrint, String reportName, long startNanos, long rows) {
+		jasperPrint.setProperty(REPORT_NAME_PROPERTY, reportName);
+		phaseCompleted(reportName, ReportPhase.FILL, startNanos);
+		reportFilled(reportName, rows, jasperPrint.getPages().size());
+	}
+
+	public static void reportFilled(String reportName, long rows, int pages) {
+		ReportMetricsListener current = listener;
+		if (current == NoOpReportMetricsListener.INSTANCE)
+			return;
+		try {
+			current.reportFilled(reportName, rows, pages);
+		} catch (RuntimeException e) {
+			log.warn("Error in ReportMetricsListener: " + e.getMessage(), e);
+		}
+	}
+
+	public static void subreportsGenerated(String reportName, int subreports) {
+		ReportMetricsListener current = listener;
+		if (current == NoOpReportMetricsListener.INSTANCE)
+			return;
+		try {
+			current.subreportsGenerated(reportName, subreports);
+		} catch (RuntimeException e) {
+			log.warn("Error in ReportMetricsListener: " + e.getMessage(), e);
+		}
+	}
+
+	public static void reportExported(String reportName, long bytes) {
+		ReportMetricsListener current = listener;
+		if (current == NoOpReportMetricsListener.INSTANCE)
+			return;
+		try {
+			current.reportExported(reportName, bytes);
+		} catch (RuntimeException e) {
+			log.warn("Error in ReportMetricsListener: " + e.getMessage(), e);
+		}
+	}
+}
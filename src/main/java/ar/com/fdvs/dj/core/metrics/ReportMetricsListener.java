@@ -0,0 +1,69 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.metrics;
+
+/**
+ * Receives measurements of the report pipeline. Set it with {@link ReportMetrics#setListener(ReportMetricsListener)}.<br>
+ * <br>
+ * Every measurement is tagged with the report name: the name of the DynamicReport (or its template file) without the
+ * suffix DJ appends to make design names unique, so all the runs of the same report end up together.<br>
+ * Implementations must be thread safe and fast, they are called from the threads generating the reports.
+ *
+ * @see HistogramReportMetricsListener
+ */
+public interface ReportMetricsListener {
+
+	/**
+	 * @param reportName
+	 * @param phase
+	 * @param durationNanos
+	 */
+	void phaseCompleted(String reportName, ReportPhase phase, long durationNanos);
+
+	/**
+	 * @param reportName
+	 * @param rows  rows read from the datasource, -1 when unknown (i.e. filled from a Connection or a datasource parameter)
+	 * @param pages pages of the resulting JasperPrint
+	 */
+	void reportFilled(String reportName, long rows, int pages);
+
+	/**
+	 * @param reportName
+	 * @param subreports number of subreports generated for the report (only direct children)
+	 */
+	void subreportsGenerated(String reportName, int subreports);
+
+	/**
+	 * @param reportName
+	 * @param bytes size of the exported document
+	 */
+	void reportExported(String reportName, long bytes);
+
+}
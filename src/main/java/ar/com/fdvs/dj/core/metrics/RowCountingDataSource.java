@@ -0,0 +1,91 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.metrics;
+
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JRRewindableDataSource;
+
+/**
+ * Counts the rows read from the wrapped datasource.
+ */
+public class RowCountingDataSource implements JRDataSource {
+
+	private final JRDataSource dataSource;
+	private long rows;
+
+	public RowCountingDataSource(JRDataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	/**
+	 * @return a counting datasource that can be rewound if the given one can (the count starts again)
+	 */
+	public static RowCountingDataSource wrap(JRDataSource dataSource) {
+		if (dataSource instanceof JRRewindableDataSource)
+			return new Rewindable((JRRewindableDataSource) dataSource);
+		return new RowCountingDataSource(dataSource);
+	}
+
+	public boolean next() throws JRException {
+		boolean next = dataSource.next();
+		if (next)
+			rows++;
+		return next;
+	}
+
+	public Object getFieldValue(JRField jrField) throws JRException {
+		return dataSource.getFieldValue(jrField);
+	}
+
+	public long getRows() {
+		return rows;
+	}
+
+	protected void resetRows() {
+		rows = 0;
+	}
+
+	private static class Rewindable extends RowCountingDataSource implements JRRewindableDataSource {
+
+		private final JRRewindableDataSource rewindableDataSource;
+
+		Rewindable(JRRewindableDataSource dataSource) {
+			super(dataSource);
+			this.rewindableDataSource = dataSource;
+		}
+
+		public void moveFirst() throws JRException {
+			rewindableDataSource.moveFirst();
+			resetRows();
+		}
+	}
+}
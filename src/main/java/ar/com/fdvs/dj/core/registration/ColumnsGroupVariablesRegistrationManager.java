@@ -29,6 +29,7 @@
 
 package ar.com.fdvs.dj.core.registration;
 
+import ar.com.fdvs.dj.core.calculation.PrimitiveIncrementerFactory;
 import ar.com.fdvs.dj.core.layout.LayoutManager;
 import ar.com.fdvs.dj.domain.DJCalculation;
 import ar.com.fdvs.dj.domain.DJValueFormatter;
@@ -193,6 +194,10 @@ public class ColumnsGroupVariablesRegistrationManager extends AbstractEntityRegi
 		}
 
 		Class incrementerFactoryClass = groupVariable.getIncrementerFactoryClass();
+		if (incrementerFactoryClass == null)
+			incrementerFactoryClass = op.getIncrementerFactoryClass();
+		if (incrementerFactoryClass == null && op == DJCalculation.SUM)
+			incrementerFactoryClass = PrimitiveIncrementerFactory.getFactoryClass(valueClassName);
 		if (incrementerFactoryClass != null) {
 			variable.setIncrementerFactoryClass(incrementerFactoryClass);
 		}
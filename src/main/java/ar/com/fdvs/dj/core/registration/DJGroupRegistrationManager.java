@@ -120,6 +120,7 @@ public class DJGroupRegistrationManager extends AbstractEntityRegistrationManage
 		group.setName(djgroup.getName());
 		
 		getLayoutManager().getReferencesMap().put(group.getName(), djgroup);
+		getDjd().registerGroupName(djgroup, group.getName());
 
 		group.setCountVariable(new JRDesignVariable());
 
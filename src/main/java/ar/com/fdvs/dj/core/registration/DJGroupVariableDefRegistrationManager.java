@@ -29,6 +29,7 @@
 
 package ar.com.fdvs.dj.core.registration;
 
+import ar.com.fdvs.dj.core.calculation.PrimitiveIncrementerFactory;
 import ar.com.fdvs.dj.core.layout.LayoutManager;
 import ar.com.fdvs.dj.domain.ColumnProperty;
 import ar.com.fdvs.dj.domain.DJCalculation;
@@ -140,6 +141,12 @@ public class DJGroupVariableDefRegistrationManager extends AbstractEntityRegistr
 		initialExp.setValueClassName(valueClassName);
 		variable.setInitialValueExpression(initialExp);
 
+		Class incrementerFactoryClass = op.getIncrementerFactoryClass();
+		if (incrementerFactoryClass == null && op == DJCalculation.SUM)
+			incrementerFactoryClass = PrimitiveIncrementerFactory.getFactoryClass(valueClassName);
+		if (incrementerFactoryClass != null)
+			variable.setIncrementerFactoryClass(incrementerFactoryClass);
+
 		return variable;
 	}
 
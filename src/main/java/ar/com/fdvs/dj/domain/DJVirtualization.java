@@ -0,0 +1,142 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.domain;
+
+import ar.com.fdvs.dj.domain.entities.Entity;
+
+/**
+ * Configures the virtualization of the filled report: pages that exceed the memory budget are moved out of the
+ * heap while the report is filled (and brought back when needed by the exporters), so very big reports can be
+ * generated with a bounded amount of memory.<br>
+ * The budget is given in bytes, it is turned into a number of pages using the page and detail sizes of the
+ * report and {@link #getEstimatedBytesPerElement()}.<br>
+ * <br>
+ * Subreports and concatenated reports use the virtualizer of the main report.<br>
+ * The virtualizer keeps the pages of the filled report until
+ * {@link ar.com.fdvs.dj.core.ReportVirtualizers#cleanup(net.sf.jasperreports.engine.JasperPrint)} is called
+ * once it has been exported (or until the report is garbage collected).
+ */
+public class DJVirtualization extends DJBaseElement {
+
+	private static final long serialVersionUID = Entity.SERIAL_VERSION_UID;
+
+	public enum Type {
+		/** Each page is written to its own file */
+		FILE,
+		/** Pages are written to a single swap file */
+		SWAP_FILE,
+		/** Pages are kept in memory, compressed */
+		GZIP,
+		/** Pages are kept serialized in direct buffers, outside the java heap */
+		OFF_HEAP
+	}
+
+	public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+	/**
+	 * Rough size of a filled text element (the element, its template reference and its value)
+	 */
+	public static final int DEFAULT_BYTES_PER_ELEMENT = 512;
+
+	private Type type = Type.SWAP_FILE;
+	private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+	private String directory = System.getProperty("java.io.tmpdir");
+	private int estimatedBytesPerElement = DEFAULT_BYTES_PER_ELEMENT;
+
+	public DJVirtualization() {
+	}
+
+	public DJVirtualization(Type type, long memoryBudget) {
+		setType(type);
+		setMemoryBudget(memoryBudget);
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public void setType(Type type) {
+		if (type == null)
+			throw new IllegalArgumentException("type must not be null");
+		this.type = type;
+	}
+
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * @param memoryBudget bytes of filled pages to keep in the heap
+	 */
+	public void setMemoryBudget(long memoryBudget) {
+		if (memoryBudget <= 0)
+			throw new IllegalArgumentException("memoryBudget must be positive: " + memoryBudget);
+		this.memoryBudget = memoryBudget;
+	}
+
+	public String getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Where FILE and SWAP_FILE virtualizers write, the temporary directory by default
+	 * @param directory
+	 */
+	public void setDirectory(String directory) {
+		this.directory = directory;
+	}
+
+	public int getEstimatedBytesPerElement() {
+		return estimatedBytesPerElement;
+	}
+
+	public void setEstimatedBytesPerElement(int estimatedBytesPerElement) {
+		if (estimatedBytesPerElement <= 0)
+			throw new IllegalArgumentException("estimatedBytesPerElement must be positive: " + estimatedBytesPerElement);
+		this.estimatedBytesPerElement = estimatedBytesPerElement;
+	}
+
+	/**
+	 * Number of filled pages that fit in the memory budget for the given report. Each page is estimated as
+	 * full of detail rows, with one element per visible column.
+	 * @param report
+	 * @return at least 1
+	 */
+	public int getPagesInMemory(DynamicReport report) {
+		DynamicReportOptions options = report.getOptions();
+		int detailHeight = Math.max(1, options.getDetailHeight());
+		int printableHeight = options.getPage().getHeight() - options.getTopMargin() - options.getBottomMargin();
+		int rowsPerPage = Math.max(1, printableHeight / detailHeight) * Math.max(1, options.getColumnsPerPage());
+		int columns = Math.max(1, report.getColumns().size());
+
+		long bytesPerPage = (long) rowsPerPage * columns * estimatedBytesPerElement;
+		return (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / bytesPerPage));
+	}
+}
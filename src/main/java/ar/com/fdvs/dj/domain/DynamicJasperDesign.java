@@ -29,9 +29,14 @@
 
 package ar.com.fdvs.dj.domain;
 
+import ar.com.fdvs.dj.domain.entities.DJGroup;
 import ar.com.fdvs.dj.domain.entities.Entity;
 import net.sf.jasperreports.engine.design.JasperDesign;
 
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
 import java.util.TreeMap;
 
 /**
@@ -41,9 +46,23 @@ import java.util.TreeMap;
 public class DynamicJasperDesign extends JasperDesign {
 
 	private static final long serialVersionUID = Entity.SERIAL_VERSION_UID;
+
+	private static final Random random = new Random();
+
 	//<String paramName, CustomExpression expression>
 	private TreeMap<String, Object> parametersWithValues = new TreeMap<String, Object>(); //There should not be "non serializable objects here"
 
+	/**
+	 * When true, {@link #createUniqueName(String, String)} returns sequential names
+	 */
+	private boolean deterministicNames = false;
+
+	//<String prefix, Integer last sequence used>
+	private final Map<String, Integer> nameSequences = new HashMap<String, Integer>();
+
+	//<DJGroup, String name of its JRDesignGroup>, by identity. Only needed while the design is being built
+	private transient Map<DJGroup, String> groupNames;
+
 	public DynamicJasperDesign() {
 	}
 
@@ -55,6 +74,60 @@ public class DynamicJasperDesign extends JasperDesign {
 		this.parametersWithValues = parametersWithValues;
 	}
 
+	public boolean isDeterministicNames() {
+		return deterministicNames;
+	}
+
+	public void setDeterministicNames(boolean deterministicNames) {
+		this.deterministicNames = deterministicNames;
+	}
+
+	/**
+	 * Creates a name for a generated element (style, parameter, dataset, etc.). If the design uses
+	 * deterministic names, the name is made of the given prefix, the name of this design and a sequence
+	 * scoped to this design, otherwise a random number is used.<br>
+	 * The design name is part of the name because styles are shared between a report and its subreports:
+	 * a style named while laying out a subreport must not clash with the ones of the parent report.<br>
+	 * It is up to the caller to check the name is not already used by the design.
+	 *
+	 * @param prefix
+	 * @param suffix
+	 * @return
+	 */
+	public String createUniqueName(String prefix, String suffix) {
+		if (!deterministicNames)
+			return prefix + Math.abs(random.nextLong()) + suffix;
+
+		synchronized (nameSequences) {
+			Integer last = nameSequences.get(prefix);
+			int next = last == null ? 0 : last + 1;
+			nameSequences.put(prefix, next);
+			String scope = getName() == null ? "" : getName().replaceAll("\\W", "_") + "_";
+			return prefix + scope + next + suffix;
+		}
+	}
+
+	/**
+	 * Remembers the name of the JRDesignGroup created for a DJGroup, so it can be found without
+	 * going through all the groups (see {@link ar.com.fdvs.dj.util.LayoutUtils#getJRDesignGroup})
+	 *
+	 * @param djGroup
+	 * @param groupName
+	 */
+	public void registerGroupName(DJGroup djGroup, String groupName) {
+		if (groupNames == null)
+			groupNames = new IdentityHashMap<DJGroup, String>();
+		groupNames.put(djGroup, groupName);
+	}
+
+	/**
+	 * @param djGroup
+	 * @return the name of the JRDesignGroup registered for the DJGroup, null if unknown
+	 */
+	public String getGroupName(DJGroup djGroup) {
+		return groupNames == null ? null : groupNames.get(djGroup);
+	}
+
 	public int getNumberOfRegisteredParameters() {
 		int result = 0;
 		if (getParametersWithValues()!=null) {
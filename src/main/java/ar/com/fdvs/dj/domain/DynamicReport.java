@@ -123,6 +123,18 @@ public class DynamicReport extends DJBaseElement {
 
 	private boolean allowDetailSplit = true;
 
+	/**
+	 * When true, all the names generated during the report creation (design, styles, parameters, datasets, etc.)
+	 * are sequential instead of random, so the same report always produces the same JRXML
+	 */
+	private boolean deterministicNames = false;
+
+	/**
+	 * When true, collections (given to the helper or used as subreport data sources) are read with
+	 * {@link ar.com.fdvs.dj.util.BeanAccessorDataSource} instead of JRBeanCollectionDataSource
+	 */
+	private boolean useBeanAccessorDataSource = false;
+
 	/**
 	 * Defines the behaviour when the datasource is empty.
 	 * Valid values are:
@@ -375,6 +387,22 @@ public class DynamicReport extends DJBaseElement {
 		this.allowDetailSplit = allowDetailSplit;
 	}
 
+	public boolean isDeterministicNames() {
+		return deterministicNames;
+	}
+
+	public void setDeterministicNames(boolean deterministicNames) {
+		this.deterministicNames = deterministicNames;
+	}
+
+	public boolean isUseBeanAccessorDataSource() {
+		return useBeanAccessorDataSource;
+	}
+
+	public void setUseBeanAccessorDataSource(boolean useBeanAccessorDataSource) {
+		this.useBeanAccessorDataSource = useBeanAccessorDataSource;
+	}
+
    public boolean isTemplateImportDatasets() {
 		return templateImportDatasets;
 	}
@@ -503,4 +531,13 @@ public class DynamicReport extends DJBaseElement {
 	public List<DJCrosstab> getSummaryCrosstabs() {
 		return summaryCrosstabs;
 	}
+
+	/**
+	 * Takes an immutable snapshot of this report, that can be generated by many threads at the same time.
+	 * See {@link FrozenDynamicReport}
+	 * @return
+	 */
+	public FrozenDynamicReport freeze() {
+		return new FrozenDynamicReport(this);
+	}
 }
\ No newline at end of file
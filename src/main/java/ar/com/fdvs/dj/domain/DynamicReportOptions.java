@@ -92,6 +92,16 @@ public class DynamicReportOptions extends DJBaseElement {
 	 */
 	private boolean ignorePagination =  false;
 
+	/**
+	 * When set, the filled pages above the memory budget are moved out of the heap
+	 */
+	private DJVirtualization virtualization = null;
+
+	/**
+	 * When true, the group totals of the percentage columns are computed in a first pass over the datasource
+	 */
+	private boolean preAggregatePercentages = false;
+
 	private Style defaultHeaderStyle = new Style("defaultHeaderStyle");
 	private Style defaultDetailStyle = new Style("defaultDetailStyle");
 	private Style defaultFooterStyle = new Style("defaultFooterStyle");
@@ -363,6 +373,22 @@ public class DynamicReportOptions extends DJBaseElement {
 		this.ignorePagination = ignorePagination;
 	}
 
+	public DJVirtualization getVirtualization() {
+		return virtualization;
+	}
+
+	public void setVirtualization(DJVirtualization virtualization) {
+		this.virtualization = virtualization;
+	}
+
+	public boolean isPreAggregatePercentages() {
+		return preAggregatePercentages;
+	}
+
+	public void setPreAggregatePercentages(boolean preAggregatePercentages) {
+		this.preAggregatePercentages = preAggregatePercentages;
+	}
+
 	public int getHeaderVariablesHeight() {
 		return headerVariablesHeight;
 	}
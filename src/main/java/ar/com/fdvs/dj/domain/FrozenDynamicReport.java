@@ -0,0 +1,215 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.domain;
+
+import ar.com.fdvs.dj.core.DJException;
+import ar.com.fdvs.dj.core.layout.LayoutManager;
+import ar.com.fdvs.dj.domain.entities.Entity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of a {@link DynamicReport}, safe to share between threads.<br>
+ * <br>
+ * Generating a report changes the DynamicReport (subreport names, options of child reports, registered
+ * columns, etc.), so the same instance can not be generated by two threads at the same time. A frozen
+ * report is never generated directly: every generation works on a private copy, see {@link #newCopy()}.
+ * The overloads of {@link ar.com.fdvs.dj.core.DynamicJasperHelper} that take a FrozenDynamicReport do it
+ * automatically.<br>
+ * <br>
+ * The report is serialized when frozen, later changes to the original DynamicReport are not seen by the snapshot.
+ * Objects of the report that are not Serializable (i.e. a {@link ar.com.fdvs.dj.core.JasperDesignDecorator})
+ * are shared by all the copies, so they must be thread safe. The layout managers of the subreports are the
+ * exception: every copy gets new ones, created with their no-args constructor.
+ */
+public final class FrozenDynamicReport {
+
+	private final byte[] snapshot;
+	private final List<Object> sharedObjects;
+	private final String reportName;
+
+	/**
+	 * @param dynamicReport
+	 * @throws DJException if the report can not be copied
+	 */
+	public FrozenDynamicReport(DynamicReport dynamicReport) {
+		if (dynamicReport == null)
+			throw new IllegalArgumentException("dynamicReport must not be null");
+		this.reportName = dynamicReport.getReportName();
+		List<Object> shared = new ArrayList<Object>();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			SnapshotOutputStream out = new SnapshotOutputStream(bytes, shared);
+			out.writeObject(dynamicReport);
+			out.close();
+		} catch (IOException e) {
+			throw new DJException("Could not freeze the report " + reportName + ": " + e.getMessage(), e);
+		}
+		this.snapshot = bytes.toByteArray();
+		this.sharedObjects = Collections.unmodifiableList(shared);
+	}
+
+	/**
+	 * @return a new DynamicReport equal to the frozen one, for a single generation
+	 */
+	public DynamicReport newCopy() {
+		try {
+			SnapshotInputStream in = new SnapshotInputStream(new ByteArrayInputStream(snapshot), sharedObjects);
+			DynamicReport copy = (DynamicReport) in.readObject();
+			in.close();
+			return copy;
+		} catch (IOException e) {
+			throw new DJException("Could not copy the frozen report " + reportName + ": " + e.getMessage(), e);
+		} catch (ClassNotFoundException e) {
+			throw new DJException("Could not copy the frozen report " + reportName + ": " + e.getMessage(), e);
+		}
+	}
+
+	public String getReportName() {
+		return reportName;
+	}
+
+	/**
+	 * @return size in bytes of the snapshot
+	 */
+	public int getSize() {
+		return snapshot.length;
+	}
+
+	/**
+	 * Stands for a LayoutManager, which are stateful
+	 */
+	private static class LayoutManagerPlaceholder implements Serializable {
+		private static final long serialVersionUID = Entity.SERIAL_VERSION_UID;
+
+		private final Class<?> layoutManagerClass;
+
+		LayoutManagerPlaceholder(Class<?> layoutManagerClass) {
+			this.layoutManagerClass = layoutManagerClass;
+		}
+	}
+
+	/**
+	 * Stands for a non serializable object, shared by all the copies
+	 */
+	private static class SharedObjectPlaceholder implements Serializable {
+		private static final long serialVersionUID = Entity.SERIAL_VERSION_UID;
+
+		private final int index;
+
+		SharedObjectPlaceholder(int index) {
+			this.index = index;
+		}
+	}
+
+	private static class SnapshotOutputStream extends ObjectOutputStream {
+		private final List<Object> sharedObjects;
+		private final Map<Object, Integer> indexes = new IdentityHashMap<Object, Integer>();
+
+		SnapshotOutputStream(OutputStream out, List<Object> sharedObjects) throws IOException {
+			super(out);
+			this.sharedObjects = sharedObjects;
+			enableReplaceObject(true);
+		}
+
+		protected Object replaceObject(Object obj) throws IOException {
+			if (obj instanceof LayoutManager) {
+				try {
+					obj.getClass().getConstructor();
+				} catch (NoSuchMethodException e) {
+					throw new DJException("The layout manager " + obj.getClass().getName() + " needs a public no-args constructor to be frozen");
+				}
+				return new LayoutManagerPlaceholder(obj.getClass());
+			}
+			if (obj instanceof Serializable)
+				return obj;
+
+			Integer index = indexes.get(obj);
+			if (index == null) {
+				index = sharedObjects.size();
+				sharedObjects.add(obj);
+				indexes.put(obj, index);
+			}
+			return new SharedObjectPlaceholder(index);
+		}
+	}
+
+	private static class SnapshotInputStream extends ObjectInputStream {
+		private final List<Object> sharedObjects;
+
+		SnapshotInputStream(InputStream in, List<Object> sharedObjects) throws IOException {
+			super(in);
+			this.sharedObjects = sharedObjects;
+			enableResolveObject(true);
+		}
+
+		protected Object resolveObject(Object obj) throws IOException {
+			if (obj instanceof SharedObjectPlaceholder)
+				return sharedObjects.get(((SharedObjectPlaceholder) obj).index);
+			if (obj instanceof LayoutManagerPlaceholder) {
+				Class<?> layoutManagerClass = ((LayoutManagerPlaceholder) obj).layoutManagerClass;
+				try {
+					return layoutManagerClass.getConstructor().newInstance();
+				} catch (Exception e) {
+					throw new DJException("Could not create the layout manager " + layoutManagerClass.getName(), e);
+				}
+			}
+			return obj;
+		}
+
+		/**
+		 * Classes of the application (i.e. custom expressions) may not be visible from the DJ class loader
+		 */
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+			if (contextClassLoader != null) {
+				try {
+					return Class.forName(desc.getName(), false, contextClassLoader);
+				} catch (ClassNotFoundException e) {
+					//try the DJ class loader
+				}
+			}
+			return super.resolveClass(desc);
+		}
+	}
+}
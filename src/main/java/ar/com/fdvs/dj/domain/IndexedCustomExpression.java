@@ -0,0 +1,55 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.domain;
+
+/**
+ * A {@link CustomExpression} that declares up front the fields, variables and parameters it reads.<br>
+ * The names are resolved only once, when the report is initialized, and the values are then read by position
+ * from an {@link IndexedValues}, avoiding the map wrappers and name lookups made on every evaluation of a
+ * regular CustomExpression.<br>
+ * <br>
+ * The position of a value is its index in the array returned by {@link #getFieldNames()}, {@link #getVariableNames()}
+ * or {@link #getParameterNames()}. The arrays must not change once the report is generated.<br>
+ * <br>
+ * {@link ar.com.fdvs.dj.domain.customexpression.AbstractIndexedCustomExpression} implements the map based
+ * {@link #evaluate(java.util.Map, java.util.Map, java.util.Map)} on top of {@link #evaluate(IndexedValues)} for the
+ * places where the report still evaluates expressions with maps.
+ */
+public interface IndexedCustomExpression extends CustomExpression {
+
+	String[] getFieldNames();
+
+	String[] getVariableNames();
+
+	String[] getParameterNames();
+
+	Object evaluate(IndexedValues values);
+
+}
@@ -0,0 +1,48 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.domain;
+
+/**
+ * Marks a {@link CustomExpression} as pure: within a record its result depends only on the values it reads,
+ * evaluating it twice gives the same result and has no side effects.<br>
+ * <br>
+ * DJ often invokes the same expression from several places (the column, the group it defines, the variables
+ * and conditional styles over the column, chart series). When a pure expression is invoked from more than one
+ * place its result is reused while the record and the values of the fields are the same, see
+ * {@link ar.com.fdvs.dj.core.DJDefaultScriptlet#evaluateMemoized}. Expressions invoked from a single place
+ * are evaluated as usual.<br>
+ * <br>
+ * Only the fields are compared: don't mark expressions that read variables calculated with the record (counts,
+ * sums, group variables) or that keep state of their own.<br>
+ * It can be combined with {@link IndexedCustomExpression}.
+ */
+public interface PureCustomExpression extends CustomExpression {
+
+}
@@ -114,6 +114,7 @@ public class ColumnBuilder {
 	private String applicationIdentifier;
 	private boolean showText = false;
 	private boolean checkSum = false;
+	private boolean vectorRendering = false;
 
 	/**
 	 * @deprecated use getNew()
@@ -168,6 +169,7 @@ public class ColumnBuilder {
 		column.setBarcodeType(barcodeType);
 		column.setShowText(showText);
 		column.setCheckSum(checkSum);
+		column.setVectorRendering(vectorRendering);
 		return column;
 	}
 
@@ -437,6 +439,17 @@ public class ColumnBuilder {
 		return this;
 	}
 
+	/**
+	 * Barcodes are drawn when the report is exported instead of being included as images.
+	 * Exporters like PDF keep them as vector graphics, sharper and much smaller.
+	 * @param vectorRendering
+	 * @return
+	 */
+	public ColumnBuilder setVectorRendering(boolean vectorRendering) {
+		this.vectorRendering = vectorRendering;
+		return this;
+	}
+
 
 	/**
 	 * Only used when barcode type is UCCEAN128
@@ -41,6 +41,7 @@ import ar.com.fdvs.dj.domain.DJChart;
 import ar.com.fdvs.dj.domain.DJCrosstab;
 import ar.com.fdvs.dj.domain.DJQuery;
 import ar.com.fdvs.dj.domain.DJValueFormatter;
+import ar.com.fdvs.dj.domain.DJVirtualization;
 import ar.com.fdvs.dj.domain.DJWaterMark;
 import ar.com.fdvs.dj.domain.DynamicReport;
 import ar.com.fdvs.dj.domain.DynamicReportOptions;
@@ -317,6 +318,9 @@ public class DynamicReportBuilder {
             built = true;
         }
 
+        if (options.isPreAggregatePercentages() && report.getQuery() != null)
+            throw new DJBuilderException("Pre-aggregated percentages need a rewindable datasource, they can't be used with a query");
+
         report.setOptions(options);
         if (!globalVariablesGroup.getFooterVariables().isEmpty() || !globalVariablesGroup.getHeaderVariables().isEmpty() || !globalVariablesGroup.getVariables().isEmpty() || hasPercentageColumn()) {
             report.getColumnsGroups().add(0, globalVariablesGroup);
@@ -553,6 +557,45 @@ public class DynamicReportBuilder {
         return this;
     }
 
+    /**
+     * Filled pages exceeding the memory budget are moved out of the heap (to disk, compressed or to direct memory,
+     * depending on the type). Used by {@link ar.com.fdvs.dj.core.DynamicJasperHelper} when filling the report.
+     *
+     * @param virtualization
+     * @return
+     */
+    public DynamicReportBuilder setVirtualization(DJVirtualization virtualization) {
+        options.setVirtualization(virtualization);
+        return this;
+    }
+
+    /**
+     * @param type
+     * @param memoryBudget bytes of filled pages to keep in the heap
+     * @return
+     * @see #setVirtualization(DJVirtualization)
+     */
+    public DynamicReportBuilder setVirtualization(DJVirtualization.Type type, long memoryBudget) {
+        options.setVirtualization(new DJVirtualization(type, memoryBudget));
+        return this;
+    }
+
+    /**
+     * When TRUE, the group totals the percentage columns divide by are computed in a first pass over the datasource,
+     * so the percentages of the detail band are evaluated with their record instead of being delayed until the group
+     * ends. The datasource given to DynamicJasperHelper or PreparedDynamicReport must be rewindable (collections
+     * and arrays of beans or maps) and the data sorted by the groups: the totals are kept by group value, so unsorted
+     * records of a group are summed together. Only applies to percentage columns over a field, grouped by fields.
+     * Reports with a query, subreports and reports filled from a Connection can't use it. Default is FALSE
+     *
+     * @param bool
+     * @return
+     */
+    public DynamicReportBuilder setPreAggregatePercentages(boolean bool) {
+        options.setPreAggregatePercentages(bool);
+        return this;
+    }
+
     public DynamicReportBuilder setUseFullPageWidth(boolean useFullwidth) {
         options.setUseFullPageWidth(useFullwidth);
         return this;
@@ -1570,6 +1613,34 @@ public class DynamicReportBuilder {
         return this;
     }
 
+    /**
+     * If true, the names DJ generates for the design, styles, parameters, datasets, etc. are sequential
+     * instead of random. Two builds of the same report will produce the same JRXML.<br>
+     * Subreports inherit this setting.
+     *
+     * @param deterministicNames
+     * @return A Dynamic Report Builder
+     */
+    public DynamicReportBuilder setDeterministicNames(boolean deterministicNames) {
+        this.report.setDeterministicNames(deterministicNames);
+        return this;
+    }
+
+    /**
+     * If true, bean collections are read with {@link ar.com.fdvs.dj.util.BeanAccessorDataSource}, which binds
+     * a getter per field instead of going through commons-beanutils on every row. Unlike
+     * JRBeanCollectionDataSource it does not implement getRecordCount(), cloneDataSource() or getData().<br>
+     * It applies to the Collection methods of DynamicJasperHelper, PreparedDynamicReport and
+     * AsyncReportService and to subreports whose data source type is a collection. Subreports inherit this setting.
+     *
+     * @param useBeanAccessorDataSource
+     * @return A Dynamic Report Builder
+     */
+    public DynamicReportBuilder setUseBeanAccessorDataSource(boolean useBeanAccessorDataSource) {
+        this.report.setUseBeanAccessorDataSource(useBeanAccessorDataSource);
+        return this;
+    }
+
     /**
      * Adds a property to report design, this properties are mostly used by
      * exporters to know if any specific configuration is needed
@@ -1,9 +1,54 @@
 package ar.com.fdvs.dj.domain.constants;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 
 public class BaseDomainConstant implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Constants are compared by identity, so a deserialized one (i.e. in a copy of a frozen report) is replaced
+	 * by the static instance with the same values. Classes the application can instantiate are left as they are.
+	 */
+	protected Object readResolve() throws ObjectStreamException {
+		Class<?> clazz = getClass();
+		for (Constructor<?> constructor : clazz.getDeclaredConstructors()) {
+			if (Modifier.isPublic(constructor.getModifiers()))
+				return this;
+		}
+
+		try {
+			for (Field field : clazz.getDeclaredFields()) {
+				if (!Modifier.isStatic(field.getModifiers()) || field.getType() != clazz)
+					continue;
+				field.setAccessible(true);
+				Object constant = field.get(null);
+				if (constant != null && hasSameValues(constant))
+					return constant;
+			}
+		} catch (IllegalAccessException e) {
+			//keep the deserialized instance
+		}
+		return this;
+	}
+
+	private boolean hasSameValues(Object constant) throws IllegalAccessException {
+		for (Class<?> clazz = getClass(); clazz != BaseDomainConstant.class; clazz = clazz.getSuperclass()) {
+			for (Field field : clazz.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers()))
+					continue;
+				field.setAccessible(true);
+				Object value = field.get(this);
+				Object constantValue = field.get(constant);
+				if (value == null ? constantValue != null : !value.equals(constantValue))
+					return false;
+			}
+		}
+		return true;
+	}
+
 }
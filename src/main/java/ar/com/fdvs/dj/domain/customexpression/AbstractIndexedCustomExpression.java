@@ -0,0 +1,89 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.domain.customexpression;
+
+import ar.com.fdvs.dj.domain.IndexedCustomExpression;
+import ar.com.fdvs.dj.domain.IndexedValues;
+
+import java.util.Map;
+
+/**
+ * Base class for {@link IndexedCustomExpression}. Subclasses only implement {@link #evaluate(IndexedValues)},
+ * when the expression is evaluated with maps the values are looked up by name.
+ */
+public abstract class AbstractIndexedCustomExpression implements IndexedCustomExpression {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String[] NONE = new String[0];
+
+	private final String[] fieldNames;
+	private final String[] variableNames;
+	private final String[] parameterNames;
+
+	public AbstractIndexedCustomExpression(String... fieldNames) {
+		this(fieldNames, NONE, NONE);
+	}
+
+	public AbstractIndexedCustomExpression(String[] fieldNames, String[] variableNames, String[] parameterNames) {
+		this.fieldNames = fieldNames != null ? fieldNames.clone() : NONE;
+		this.variableNames = variableNames != null ? variableNames.clone() : NONE;
+		this.parameterNames = parameterNames != null ? parameterNames.clone() : NONE;
+	}
+
+	public String[] getFieldNames() {
+		return fieldNames.clone();
+	}
+
+	public String[] getVariableNames() {
+		return variableNames.clone();
+	}
+
+	public String[] getParameterNames() {
+		return parameterNames.clone();
+	}
+
+	public Object evaluate(final Map fields, final Map variables, final Map parameters) {
+		return evaluate(new IndexedValues() {
+			public Object getField(int index) {
+				return fields.get(fieldNames[index]);
+			}
+
+			public Object getVariable(int index) {
+				return variables.get(variableNames[index]);
+			}
+
+			public Object getParameter(int index) {
+				return parameters.get(parameterNames[index]);
+			}
+		});
+	}
+
+}
@@ -41,6 +41,7 @@ public class BarCodeColumn extends ImageColumn implements BarcodeTypes {
 	private boolean checkSum = false;
 	private String applicationIdentifier = null;
 	private boolean haltWhenException = false;
+	private boolean vectorRendering = false;
 
 	public boolean isHaltWhenException() {
 		return haltWhenException;
@@ -82,4 +83,16 @@ public class BarCodeColumn extends ImageColumn implements BarcodeTypes {
 		this.checkSum = checkSum;
 	}
 
+	public boolean isVectorRendering() {
+		return vectorRendering;
+	}
+
+	/**
+	 * When true the barcode is drawn by a {@link ar.com.fdvs.dj.core.BarcodeRenderer} instead of being rasterized
+	 * @param vectorRendering
+	 */
+	public void setVectorRendering(boolean vectorRendering) {
+		this.vectorRendering = vectorRendering;
+	}
+
 }
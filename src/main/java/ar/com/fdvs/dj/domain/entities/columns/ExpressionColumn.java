@@ -129,7 +129,7 @@ public class ExpressionColumn extends SimpleColumn {
 	}
 	
 	public String getVariableClassName(DJCalculation op) {
-		if (op == DJCalculation.COUNT || op == DJCalculation.DISTINCT_COUNT)
+		if (op.isCount())
 			return Long.class.getName();
 		
 		if (expressionForCalculation != null)
@@ -143,11 +143,11 @@ public class ExpressionColumn extends SimpleColumn {
 	}	
 	
 	public String getInitialExpression(DJCalculation op) {
-		if (op == DJCalculation.COUNT  || op == DJCalculation.DISTINCT_COUNT)
-			return "new java.lang.Long(\"0\")";
+		if (op.isCount())
+			return ExpressionUtils.getZeroExpression(Long.class.getName());
 		else if (op == DJCalculation.SUM) {
 			
-			return "new " + getVariableClassName(op) +"(\"0\")";
+			return ExpressionUtils.getZeroExpression(getVariableClassName(op));
 		}
 		else return null;
 	}
@@ -32,6 +32,7 @@ package ar.com.fdvs.dj.domain.entities.columns;
 import ar.com.fdvs.dj.domain.ColumnOperation;
 import ar.com.fdvs.dj.domain.DJCalculation;
 import ar.com.fdvs.dj.domain.entities.Entity;
+import ar.com.fdvs.dj.util.ExpressionUtils;
 
 import java.util.Iterator;
 import java.util.List;
@@ -86,13 +87,13 @@ public class OperationColumn extends AbstractColumn {
 	}
 
 	public String getVariableClassName(DJCalculation op) {
-		if (op == DJCalculation.COUNT || op == DJCalculation.DISTINCT_COUNT )
+		if (op.isCount())
 			return Long.class.getName();
 		else return Number.class.getName();
 	}
 
 	public String getInitialExpression(DJCalculation op) {
-		return "new java.lang.Long(\"0\")";
+		return ExpressionUtils.getZeroExpression(Long.class.getName());
 	}
 
 }
@@ -1,9 +1,14 @@
 package ar.com.fdvs.dj.domain.entities.columns;
 
 import ar.com.fdvs.dj.core.CoreException;
+import ar.com.fdvs.dj.core.DJDefaultScriptlet;
+import ar.com.fdvs.dj.core.calculation.PreAggregatedTotals;
 import ar.com.fdvs.dj.domain.DJCalculation;
 import ar.com.fdvs.dj.domain.entities.DJGroup;
 import ar.com.fdvs.dj.domain.entities.Entity;
+import ar.com.fdvs.dj.util.ExpressionUtils;
+
+import java.util.List;
 
 /**
  * This column shows a percentage relative to another column.
@@ -23,6 +28,54 @@ public class PercentageColumn extends AbstractColumn {
 		return "new Double((" + getPercentageColumn().getTextForExpression() + ").doubleValue() / $V{" + getReportName() + "_" + getGroupVariableName(group) + "}.doubleValue())";
 	}	
 
+	/**
+	 * The definition of the totals of the innermost group, to compute them before the fill.
+	 * @param groups the groups of the report, outermost first
+	 * @return null if the column or a group is not a plain field, they can only be totaled by the report
+	 */
+	public PreAggregatedTotals getPreAggregatedTotals(List<DJGroup> groups) {
+		if (groups.isEmpty() || !isField(getPercentageColumn()))
+			return null;
+
+		String[] groupFields = new String[groups.size()];
+		for (int i = 0; i < groupFields.length; i++) {
+			PropertyColumn column = groups.get(i).getColumnToGroupBy();
+			if (column == null || column.getExpressionToGroupBy() != null || !isField(column))
+				return null;
+			groupFields[i] = column.getColumnProperty().getProperty();
+		}
+		return new PreAggregatedTotals(groupFields, getPercentageColumn().getColumnProperty().getProperty());
+	}
+
+	/**
+	 * Name of the {@link PreAggregatedTotals} parameter
+	 */
+	public String getPreAggregatedTotalsName() {
+		return getName() + "_percentage_totals";
+	}
+
+	/**
+	 * The formula for the percentage when the totals are computed before the fill: the total of the record's group
+	 * is looked up in the {@link ar.com.fdvs.dj.core.calculation.GroupTotals}, so the cell is evaluated with the record.
+	 * @param totals
+	 * @return
+	 */
+	public String getPreAggregatedTextForExpression(PreAggregatedTotals totals) {
+		StringBuilder groupValues = new StringBuilder();
+		for (String field : totals.getGroupFields()) {
+			if (groupValues.length() > 0)
+				groupValues.append(", ");
+			groupValues.append("$F{").append(field).append("}");
+		}
+		return "new Double((" + getPercentageColumn().getTextForExpression() + ").doubleValue() / ((" + DJDefaultScriptlet.class.getName() + ")$P{REPORT_SCRIPTLET})"
+				+ ".getGroupTotals((" + PreAggregatedTotals.class.getName() + ")$P{" + getPreAggregatedTotalsName() + "}).getTotal(new java.lang.Object[]{" + groupValues + "}))";
+	}
+
+	private static boolean isField(PropertyColumn column) {
+		return column.getColumnProperty() != null
+				&& ("$F{" + column.getColumnProperty().getProperty() + "}").equals(column.getTextForExpression());
+	}
+
 	/**
 	 * Returns the formula for the percentage
 	 * @param group
@@ -42,14 +95,14 @@ public class PercentageColumn extends AbstractColumn {
 	}
 
 	public String getVariableClassName(DJCalculation op) {
-		if (op == DJCalculation.COUNT || op == DJCalculation.DISTINCT_COUNT)
+		if (op.isCount())
 			return Long.class.getName();
 		else
 			return Number.class.getName();
 	}
 
 	public String getInitialExpression(DJCalculation op) {
-		return "new java.lang.Long(\"0\")";
+		return ExpressionUtils.getZeroExpression(Long.class.getName());
 	}
 
 	/**
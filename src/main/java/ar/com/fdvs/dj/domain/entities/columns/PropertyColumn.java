@@ -33,6 +33,7 @@ import ar.com.fdvs.dj.domain.ColumnProperty;
 import ar.com.fdvs.dj.domain.CustomExpression;
 import ar.com.fdvs.dj.domain.DJCalculation;
 import ar.com.fdvs.dj.domain.entities.Entity;
+import ar.com.fdvs.dj.util.ExpressionUtils;
 
 /**
  * Basic abstract column type representing a property from the obtained <br>
@@ -82,17 +83,17 @@ public abstract class PropertyColumn extends AbstractColumn {
 	}
 
 	public String getVariableClassName(DJCalculation op) {
-		if (op == DJCalculation.COUNT || op == DJCalculation.DISTINCT_COUNT)
+		if (op.isCount())
 			return Long.class.getName();
 		else
 			return getColumnProperty().getValueClassName();
 	}
 
 	public String getInitialExpression(DJCalculation op) {
-		if (op == DJCalculation.COUNT  || op == DJCalculation.DISTINCT_COUNT)
-			return "new java.lang.Long(\"0\")";
+		if (op.isCount())
+			return ExpressionUtils.getZeroExpression(Long.class.getName());
 		else if (op == DJCalculation.SUM)
-			return "new " + getColumnProperty().getValueClassName()+"(\"0\")";
+			return ExpressionUtils.getZeroExpression(getColumnProperty().getValueClassName());
 		else return null;
 	}
 
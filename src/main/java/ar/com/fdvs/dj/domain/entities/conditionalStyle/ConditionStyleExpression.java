@@ -21,5 +21,16 @@ public abstract class ConditionStyleExpression  implements CustomExpression, Ser
 		return currentValue;
 	}
 
+	/**
+	 * Optional inlined form of the condition: a Java expression, over the text of the value, that the report evaluates
+	 * directly instead of invoking this object through the parameters map. Only conditions whose result depends on the
+	 * value alone can provide it.
+	 * @param valueText expression of the value the condition is applied to
+	 * @return the Boolean expression text, null (the default) if the condition must be invoked
+	 */
+	public String getInlineText(String valueText) {
+		return null;
+	}
+
 
 }
@@ -0,0 +1,79 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.domain.entities.conditionalStyle;
+
+/**
+ * Static predicates used by the inlined conditional style expressions (see
+ * {@link ConditionStyleExpression#getInlineText(String)}). The bounds are constants in the generated code, the
+ * value is evaluated once and compared without going through the parameters map.<br>
+ * They return null when the value is null or not a number, as the conditions do.
+ */
+public final class InlineConditions {
+
+	private InlineConditions() {
+	}
+
+	/**
+	 * @return value &lt; bound
+	 */
+	public static Boolean lessThan(Object value, double bound) {
+		if (!(value instanceof Number))
+			return null;
+		return ((Number) value).doubleValue() < bound ? Boolean.TRUE : Boolean.FALSE;
+	}
+
+	/**
+	 * @return from &lt;= value &lt; to
+	 */
+	public static Boolean between(Object value, double from, double to) {
+		if (!(value instanceof Number))
+			return null;
+		double number = ((Number) value).doubleValue();
+		return from <= number && number < to ? Boolean.TRUE : Boolean.FALSE;
+	}
+
+	/**
+	 * @return value &gt;= bound
+	 */
+	public static Boolean atLeast(Object value, double bound) {
+		if (!(value instanceof Number))
+			return null;
+		return ((Number) value).doubleValue() >= bound ? Boolean.TRUE : Boolean.FALSE;
+	}
+
+	/**
+	 * @return the Java literal of the bound, null if it can't be written as one (NaN or infinite)
+	 */
+	static String literal(Double bound) {
+		if (bound == null || bound.isNaN() || bound.isInfinite())
+			return null;
+		return bound.toString() + "d";
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.domain.entities.conditionalStyle;
+
+import ar.com.fdvs.dj.domain.entities.Entity;
+
+import java.util.Map;
+
+/**
+ * True when the value falls in one range of a {@link StyleRangeTable}. Created by
+ * {@link StyleRangeTable#getConditionalStyles()}.
+ */
+public class RangeTableCondition extends ConditionStyleExpression {
+
+	private static final long serialVersionUID = Entity.SERIAL_VERSION_UID;
+
+	private final StyleRangeTable table;
+	private final int index;
+
+	public RangeTableCondition(StyleRangeTable table, int index) {
+		this.table = table;
+		this.index = index;
+	}
+
+	public Object evaluate(Map fields, Map variables, Map parameters) {
+		Object value = getCurrentValue();
+		if (value == null)
+			return null;
+		return table.indexOf(value) == index;
+	}
+
+	public String getClassName() {
+		return Boolean.class.getName();
+	}
+
+	public StyleRangeTable getTable() {
+		return table;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+}
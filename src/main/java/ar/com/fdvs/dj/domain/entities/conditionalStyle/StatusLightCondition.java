@@ -78,4 +78,24 @@ public class StatusLightCondition extends ConditionStyleExpression implements Cu
 		return Boolean.class.getName();
 	}
 
+	/**
+	 * The comparisons of {@link #evaluate(Map, Map, Map)} with the bounds as constants. Subclasses may change
+	 * evaluate, so they are invoked as usual.
+	 */
+	public String getInlineText(String valueText) {
+		if (getClass() != StatusLightCondition.class)
+			return null;
+
+		String minText = InlineConditions.literal(min);
+		String maxText = InlineConditions.literal(max);
+		String helper = InlineConditions.class.getName();
+		if (mode == 0 && minText != null)
+			return helper + ".lessThan(" + valueText + ", " + minText + ")";
+		if (mode == 1 && minText != null && maxText != null)
+			return helper + ".between(" + valueText + ", " + minText + ", " + maxText + ")";
+		if (mode == 2 && maxText != null)
+			return helper + ".atLeast(" + valueText + ", " + maxText + ")";
+		return null;
+	}
+
 }
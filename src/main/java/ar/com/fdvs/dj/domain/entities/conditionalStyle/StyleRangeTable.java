@@ -0,0 +1,125 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.domain.entities.conditionalStyle;
+
+import ar.com.fdvs.dj.domain.Style;
+import ar.com.fdvs.dj.domain.entities.Entity;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Contiguous numeric ranges, each with its style: a range starts at its lower bound and ends where the next one
+ * begins, the last one is unbounded. Values below the first bound, null or NaN get no style.<br>
+ * <br>
+ * The ranges are added to a column with {@link #getConditionalStyles()}. For detail columns the layout evaluates
+ * the table once per record, one binary search, and every conditional style just compares the index of the
+ * matching range; other places evaluate each {@link RangeTableCondition} on its own.
+ * <pre>
+ * StyleRangeTable table = new StyleRangeTable()
+ * 		.addRange(0d, redStyle)
+ * 		.addRange(50d, yellowStyle)
+ * 		.addRange(80d, greenStyle);
+ * columnBuilder.addConditionalStyles(table.getConditionalStyles());
+ * </pre>
+ */
+public class StyleRangeTable implements Serializable {
+
+	private static final long serialVersionUID = Entity.SERIAL_VERSION_UID;
+
+	private double[] bounds = new double[0];
+	private Style[] styles = new Style[0];
+
+	/**
+	 * @param from lower bound (inclusive) of the range
+	 * @param style style of the values from the bound up to the next one
+	 */
+	public StyleRangeTable addRange(double from, Style style) {
+		if (Double.isNaN(from))
+			throw new IllegalArgumentException("range bound must be a number");
+		if (style == null)
+			throw new IllegalArgumentException("style must not be null");
+
+		int position = Arrays.binarySearch(bounds, from);
+		if (position >= 0)
+			throw new IllegalArgumentException("there is already a range starting at " + from);
+		position = -position - 1;
+
+		double[] newBounds = new double[bounds.length + 1];
+		Style[] newStyles = new Style[styles.length + 1];
+		System.arraycopy(bounds, 0, newBounds, 0, position);
+		System.arraycopy(styles, 0, newStyles, 0, position);
+		newBounds[position] = from;
+		newStyles[position] = style;
+		System.arraycopy(bounds, position, newBounds, position + 1, bounds.length - position);
+		System.arraycopy(styles, position, newStyles, position + 1, styles.length - position);
+		bounds = newBounds;
+		styles = newStyles;
+		return this;
+	}
+
+	/**
+	 * @return the index of the range containing the value, -1 if none does
+	 */
+	public int indexOf(Object value) {
+		if (!(value instanceof Number))
+			return -1;
+		double number = ((Number) value).doubleValue();
+		if (Double.isNaN(number))
+			return -1;
+		int position = Arrays.binarySearch(bounds, number);
+		return position >= 0 ? position : -position - 2;
+	}
+
+	public int size() {
+		return bounds.length;
+	}
+
+	public double getBound(int index) {
+		return bounds[index];
+	}
+
+	public Style getStyle(int index) {
+		return styles[index];
+	}
+
+	/**
+	 * @return one conditional style per range, in ascending order. A new list (and new conditional styles) on every call,
+	 * each column needs its own
+	 */
+	public List<ConditionalStyle> getConditionalStyles() {
+		List<ConditionalStyle> conditionalStyles = new ArrayList<ConditionalStyle>(bounds.length);
+		for (int i = 0; i < bounds.length; i++)
+			conditionalStyles.add(new ConditionalStyle(new RangeTableCondition(this, i), styles[i]));
+		return conditionalStyles;
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.output;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reusable byte buffers for the report writers, so each export does not allocate (and the GC does not collect)
+ * its own copy buffers. At most {@link #MAX_POOLED_BUFFERS} idle buffers are kept.
+ */
+final class BufferPool {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    static final int MAX_POOLED_BUFFERS = 32;
+
+    private static final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<byte[]>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+
+    private BufferPool() {
+    }
+
+    static byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        if (buffer == null)
+            return new byte[BUFFER_SIZE];
+        pooled.decrementAndGet();
+        return buffer;
+    }
+
+    static void release(byte[] buffer) {
+        if (buffer == null || buffer.length != BUFFER_SIZE)
+            return;
+        if (pooled.incrementAndGet() > MAX_POOLED_BUFFERS) {
+            pooled.decrementAndGet();
+            return;
+        }
+        buffers.offer(buffer);
+    }
+}
@@ -60,9 +60,11 @@ public class FileReportWriter extends ReportWriter {
         final File file = File.createTempFile("djreport", ".tmp");
         try {
             exporter.setParameter(JRExporterParameter.OUTPUT_FILE, file);
+            final long start = System.nanoTime();
             exporter.exportReport();
+            exportCompleted(start, file.length());
             _response.setContentLength((int)file.length());
-            copyStreams(new FileInputStream(file), _response.getOutputStream());
+            transferFile(file, _response.getOutputStream());
         } finally {
             LOGGER.info("deleting " + file.getAbsolutePath());
             file.delete();
@@ -76,7 +78,9 @@ public class FileReportWriter extends ReportWriter {
 
         file.deleteOnExit();
         exporter.setParameter(JRExporterParameter.OUTPUT_FILE, file);
+        final long start = System.nanoTime();
         exporter.exportReport();
+        exportCompleted(start, file.length());
 
         return new FileInputStream(file);
     }
@@ -59,7 +59,9 @@ public class MemoryReportWriter extends ReportWriter {
         LOGGER.info("entering MemoryReportWriter.writeTo(HttpServletResponse)");
         final ByteArrayOutputStream stream = new ByteArrayOutputStream();
         exporter.setParameter(JRExporterParameter.OUTPUT_STREAM, stream);
+        final long start = System.nanoTime();
         exporter.exportReport();
+        exportCompleted(start, stream.size());
         _response.setContentLength(stream.size());
         copyStreams(new ByteArrayInputStream(stream.toByteArray()), _response.getOutputStream());
     }
@@ -69,7 +71,9 @@ public class MemoryReportWriter extends ReportWriter {
         LOGGER.info("entering MemoryReportWriter.write()");
         final ByteArrayOutputStream stream = new ByteArrayOutputStream();
         exporter.setParameter(JRExporterParameter.OUTPUT_STREAM, stream);
+        final long start = System.nanoTime();
         exporter.exportReport();
+        exportCompleted(start, stream.size());
 
         return new ByteArrayInputStream(stream.toByteArray());
     }
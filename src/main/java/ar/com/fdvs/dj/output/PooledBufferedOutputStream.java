@@ -0,0 +1,108 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Buffered stream that takes its buffer from the {@link BufferPool} and gives it back when closed.
+ * Closing it does not close the underlying stream, the owner of the stream is responsible for it.
+ */
+class PooledBufferedOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private byte[] buffer = BufferPool.acquire();
+    private int count;
+    private long bytesWritten;
+
+    PooledBufferedOutputStream(OutputStream out) {
+        this.out = out;
+    }
+
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (count == buffer.length)
+            flushBuffer();
+        buffer[count++] = (byte) b;
+        bytesWritten++;
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        bytesWritten += len;
+        if (len >= buffer.length) {
+            //big writes go straight through
+            flushBuffer();
+            out.write(b, off, len);
+            return;
+        }
+        if (len > buffer.length - count)
+            flushBuffer();
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    public void flush() throws IOException {
+        ensureOpen();
+        flushBuffer();
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        if (buffer == null)
+            return;
+        try {
+            flush();
+        } finally {
+            BufferPool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    /**
+     * @return bytes written to this stream so far, including the ones still in the buffer
+     */
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (buffer == null)
+            throw new IOException("Stream closed");
+    }
+}
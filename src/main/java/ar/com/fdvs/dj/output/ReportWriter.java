@@ -29,12 +29,16 @@
 
 package ar.com.fdvs.dj.output;
 
+import ar.com.fdvs.dj.core.metrics.ReportMetrics;
+import ar.com.fdvs.dj.core.metrics.ReportPhase;
 import net.sf.jasperreports.engine.JRException;
 import net.sf.jasperreports.engine.JRExporter;
 import net.sf.jasperreports.engine.JRExporterParameter;
 import net.sf.jasperreports.engine.JasperPrint;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -63,6 +67,19 @@ public abstract class ReportWriter {
 
     public abstract void writeTo(HttpServletResponse _response) throws IOException, JRException;
 
+    /**
+     * Reports the export to the {@link ReportMetrics} listener
+     * @param _startNanos value of {@link System#nanoTime()} when the export started
+     * @param _bytes size of the exported document
+     */
+    protected void exportCompleted(final long _startNanos, final long _bytes) {
+        if (!ReportMetrics.isEnabled())
+            return;
+        final String reportName = ReportMetrics.getReportName(jasperPrint, jasperPrint.getName());
+        ReportMetrics.phaseCompleted(reportName, ReportPhase.EXPORT, _startNanos);
+        ReportMetrics.reportExported(reportName, _bytes);
+    }
+
     public abstract InputStream write() throws IOException, JRException;
 
     public static void copyStreams(final InputStream _inputStream, final OutputStream _ouputStream) throws IOException {
@@ -78,4 +95,26 @@ public abstract class ReportWriter {
             _inputStream.close();
         }
     }
+
+    /**
+     * Sends the whole file to the stream through a buffer of the {@link BufferPool}. The stream is closed at the end.
+     * @param _file
+     * @param _ouputStream
+     * @throws IOException
+     */
+    public static void transferFile(final File _file, final OutputStream _ouputStream) throws IOException {
+        final FileInputStream input = new FileInputStream(_file);
+        final byte[] buffer = BufferPool.acquire();
+        try {
+            int c;
+            while ((c = input.read(buffer)) != -1) {
+                _ouputStream.write(buffer, 0, c);
+            }
+        } finally {
+            BufferPool.release(buffer);
+            _ouputStream.flush();
+            _ouputStream.close();
+            input.close();
+        }
+    }
 }
@@ -44,6 +44,8 @@ public class ReportWriterFactory {
 
     private int PAGES_THRESHHOLD = 2;
 
+    private boolean streaming = false;
+
     private static final ReportWriterFactory INSTANCE = new ReportWriterFactory();
 
     public ReportWriterFactory(){
@@ -55,7 +57,8 @@ public class ReportWriterFactory {
     }
 
     /**
-     * Returns a ReportWriter that which will use memory or a file depending on the parameter PAGES_THRESHOLD
+     * Returns a ReportWriter that which will use memory or a file depending on the parameter PAGES_THRESHOLD,
+     * or a {@link StreamingReportWriter} if this factory was created with {@link #buildStreaming()}
      * @param _jasperPrint
      * @param _format
      * @param _parameters
@@ -65,6 +68,9 @@ public class ReportWriterFactory {
         final JRExporter exporter = FormatInfoRegistry.getInstance().getExporter(_format);
         exporter.setParameters(_parameters);
 
+        if (streaming)
+            return new StreamingReportWriter(_jasperPrint, exporter);
+
         if (_jasperPrint.getPages().size() > PAGES_THRESHHOLD) {
             return new FileReportWriter(_jasperPrint, exporter);
         } else {
@@ -86,4 +92,18 @@ public class ReportWriterFactory {
     public static ReportWriterFactory build(int pagesThreshold) {
         return new ReportWriterFactory(pagesThreshold);
     }
+
+    /**
+     * The ReportWriters created export directly to the destination, see {@link StreamingReportWriter}
+     * @return
+     */
+    public static ReportWriterFactory buildStreaming() {
+        ReportWriterFactory factory = new ReportWriterFactory();
+        factory.streaming = true;
+        return factory;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
 }
@@ -0,0 +1,147 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.output;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRExporter;
+import net.sf.jasperreports.engine.JRExporterParameter;
+import net.sf.jasperreports.engine.JasperPrint;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Exports the report directly into the destination stream, the first bytes reach the client while the rest
+ * of the document is still being exported, and memory usage does not depend on the size of the report.<br>
+ * The content length is not known in advance, so it is not set in the response (the servlet container will use
+ * chunked encoding).<br>
+ * Only {@link #write()}, which must return an InputStream, exports to a temporary file. The file is deleted when
+ * the returned stream is closed.
+ */
+public class StreamingReportWriter extends ReportWriter {
+
+    private static final Log LOGGER = LogFactory.getLog(StreamingReportWriter.class);
+
+    public StreamingReportWriter(final JasperPrint _jasperPrint, final JRExporter _exporter) {
+        super(_jasperPrint, _exporter);
+    }
+
+    public void writeTo(final HttpServletResponse _response) throws IOException, JRException {
+        LOGGER.info("entering StreamingReportWriter.writeTo(HttpServletResponse)");
+        final OutputStream output = _response.getOutputStream();
+        try {
+            writeTo(output);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Exports the report into the stream, the stream is flushed but not closed
+     * @param _output
+     * @throws IOException
+     * @throws JRException
+     */
+    public void writeTo(final OutputStream _output) throws IOException, JRException {
+        final PooledBufferedOutputStream stream = new PooledBufferedOutputStream(_output);
+        final long start = System.nanoTime();
+        try {
+            exporter.setParameter(JRExporterParameter.OUTPUT_STREAM, stream);
+            exporter.exportReport();
+        } finally {
+            stream.close();
+        }
+        exportCompleted(start, stream.getBytesWritten());
+    }
+
+    /**
+     * Exports the report into the channel, the channel is not closed
+     * @param _channel
+     * @throws IOException
+     * @throws JRException
+     */
+    public void writeTo(final WritableByteChannel _channel) throws IOException, JRException {
+        writeTo(Channels.newOutputStream(_channel));
+    }
+
+    @Override
+    public InputStream write() throws IOException, JRException {
+        LOGGER.info("entering StreamingReportWriter.write()");
+        final File file = File.createTempFile("djreport", ".tmp");
+        boolean exported = false;
+        try {
+            final FileOutputStream output = new FileOutputStream(file);
+            try {
+                writeTo(output);
+            } finally {
+                output.close();
+            }
+            exported = true;
+            return new TemporaryFileInputStream(file);
+        } finally {
+            if (!exported)
+                file.delete();
+        }
+    }
+
+    /**
+     * Deletes the file once it has been read
+     */
+    private static class TemporaryFileInputStream extends FileInputStream {
+
+        private final File file;
+
+        TemporaryFileInputStream(File file) throws IOException {
+            super(file);
+            this.file = file;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (file.exists() && !file.delete()) {
+                    LOGGER.warn("could not delete " + file.getAbsolutePath());
+                    file.deleteOnExit();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.util;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JRRewindableDataSource;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Drop-in replacement for {@link net.sf.jasperreports.engine.data.JRBeanCollectionDataSource} for large fills.<br>
+ * <br>
+ * JRBeanCollectionDataSource goes through commons-beanutils introspection for every field of every row. This data
+ * source binds a {@link PropertyAccessor} per field (nested properties like <code>customer.address.city</code>
+ * included) the first time the field is read for a given bean class, and from then on reads the field through it.
+ * The fields can be bound in advance by passing the fields of the report. The fill reads the fields in the same order
+ * on every row, so after the first row each read is matched by its position instead of being looked up.<br>
+ * <br>
+ * Like JRBeanCollectionDataSource, it uses the field description as the property if present, "_THIS" is the bean
+ * itself, and a null value in the middle of a nested property makes the field null. It is not a subclass of it and
+ * has no getRecordCount(), cloneDataSource() or getData(), so DJ only uses it for reports that ask for it (see
+ * {@link ar.com.fdvs.dj.domain.builders.DynamicReportBuilder#setUseBeanAccessorDataSource(boolean)}).
+ */
+public class BeanAccessorDataSource implements JRRewindableDataSource {
+
+	private final Collection<?> data;
+	private Iterator<?> iterator;
+	private Object current;
+
+	private final Map<String, FieldReader> readersByProperty = new HashMap<String, FieldReader>();
+	//the fill passes its own JRField instances, not the ones of the report, so fields are matched by name
+	private final Map<String, FieldReader> readersByName = new HashMap<String, FieldReader>();
+
+	//the fields as read in the first row, the fill passes the same instances in the same order on every row
+	private JRField[] orderedFields = new JRField[16];
+	private FieldReader[] orderedReaders = new FieldReader[16];
+	private int orderedCount;
+	private int position;
+
+	public BeanAccessorDataSource(Collection<?> data) {
+		this(data, null);
+	}
+
+	/**
+	 * @param data
+	 * @param fields the fields of the report (i.e. {@link net.sf.jasperreports.engine.JasperReport#getFields()}), may be null
+	 */
+	public BeanAccessorDataSource(Collection<?> data, JRField[] fields) {
+		this.data = data;
+		if (data != null)
+			this.iterator = data.iterator();
+		if (fields != null) {
+			for (JRField field : fields)
+				getReader(field);
+		}
+	}
+
+	public boolean next() {
+		if (iterator == null || !iterator.hasNext())
+			return false;
+		current = iterator.next();
+		position = 0;
+		return true;
+	}
+
+	public Object getFieldValue(JRField jrField) throws JRException {
+		int i = position++;
+		if (i < orderedCount && orderedFields[i] == jrField)
+			return orderedReaders[i].read(current);
+
+		FieldReader reader = getReader(jrField);
+		if (i == orderedCount) {
+			if (i == orderedFields.length) {
+				orderedFields = Arrays.copyOf(orderedFields, i * 2);
+				orderedReaders = Arrays.copyOf(orderedReaders, i * 2);
+			}
+			orderedFields[i] = jrField;
+			orderedReaders[i] = reader;
+			orderedCount++;
+		}
+		return reader.read(current);
+	}
+
+	public void moveFirst() {
+		if (data != null) {
+			iterator = data.iterator();
+			current = null;
+			position = 0;
+		}
+	}
+
+	/**
+	 * @return the number of distinct properties read from the beans
+	 */
+	public int getBoundFieldCount() {
+		return readersByProperty.size();
+	}
+
+	private FieldReader getReader(JRField jrField) {
+		FieldReader reader = readersByName.get(jrField.getName());
+		if (reader != null)
+			return reader;
+
+		String property = BeanFields.getPropertyName(jrField);
+		reader = readersByProperty.get(property);
+		if (reader == null) {
+			reader = new FieldReader(property);
+			readersByProperty.put(property, reader);
+		}
+		readersByName.put(jrField.getName(), reader);
+		return reader;
+	}
+
+	/**
+	 * The data source is used by a single fill thread, no synchronization needed
+	 */
+	private static final class FieldReader {
+		private final String property;
+		private final boolean currentBean;
+		private Class<?> beanClass;
+		private PropertyAccessor accessor;
+
+		FieldReader(String property) {
+			this.property = property;
+			this.currentBean = BeanFields.CURRENT_BEAN_MAPPING.equals(property);
+		}
+
+		Object read(Object bean) throws JRException {
+			if (bean == null || currentBean)
+				return bean;
+			if (bean.getClass() != beanClass) {
+				accessor = PropertyAccessor.getAccessor(bean.getClass(), property);
+				beanClass = bean.getClass();
+			}
+			return BeanFields.getValue(bean, accessor);
+		}
+	}
+}
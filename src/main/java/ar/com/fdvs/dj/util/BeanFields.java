@@ -0,0 +1,82 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.util;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import org.apache.commons.beanutils.NestedNullException;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Reads field values from beans the same way {@link net.sf.jasperreports.engine.data.JRBeanCollectionDataSource}
+ * does: using the field description if present, or the field name otherwise. "_THIS" stands for the bean itself.
+ * A null value in the middle of a nested property makes the field null.
+ */
+final class BeanFields {
+
+	static final String CURRENT_BEAN_MAPPING = "_THIS";
+
+	private BeanFields() {
+	}
+
+	static Object getFieldValue(Object bean, JRField jrField) throws JRException {
+		if (bean == null)
+			return null;
+
+		String property = getPropertyName(jrField);
+		if (CURRENT_BEAN_MAPPING.equals(property))
+			return bean;
+
+		return getValue(bean, PropertyAccessor.getAccessor(bean.getClass(), property));
+	}
+
+	static String getPropertyName(JRField jrField) {
+		String property = jrField.getDescription();
+		if (property == null || property.length() == 0)
+			property = jrField.getName();
+		return property;
+	}
+
+	static Object getValue(Object bean, PropertyAccessor accessor) throws JRException {
+		String property = accessor.getPropertyName();
+		try {
+			return accessor.getValue(bean);
+		} catch (NestedNullException e) {
+			return null;
+		} catch (IllegalAccessException e) {
+			throw new JRException("Error retrieving field value from bean : " + property, e);
+		} catch (InvocationTargetException e) {
+			throw new JRException("Error retrieving field value from bean : " + property, e);
+		} catch (NoSuchMethodException e) {
+			throw new JRException("Error retrieving field value from bean : " + property, e);
+		}
+	}
+}
@@ -29,10 +29,13 @@
 
 package ar.com.fdvs.dj.util;
 
+import net.sf.jasperreports.engine.JRException;
 import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.design.JRCompilationUnit;
 import net.sf.jasperreports.engine.design.JRJdtCompiler;
 import net.sf.jasperreports.engine.util.JRClassLoader;
 
+import java.io.File;
 import java.util.Map;
 
 /**
@@ -59,6 +62,21 @@ public class DJJRJdtCompiler extends JRJdtCompiler {
         return settings;
     }
 
+    /**
+     * When the current thread is part of a {@link JdtBatchCompilation}, the units are compiled along with
+     * the ones of the other reports in the batch
+     */
+    protected String compileUnits(JRCompilationUnit[] units, String classpath, File tempDirFile) throws JRException {
+        JdtBatchCompilation batch = JdtBatchCompilation.current();
+        if (batch == null)
+            return super.compileUnits(units, classpath, tempDirFile);
+        return batch.compile(this, units, classpath, tempDirFile);
+    }
+
+    String compileUnitsNow(JRCompilationUnit[] units, String classpath, File tempDirFile) throws JRException {
+        return super.compileUnits(units, classpath, tempDirFile);
+    }
+
     public static boolean isValid() {
         try {
             return JRClassLoader.loadClassForName("org.eclipse.jdt.internal.compiler.Compiler") != null;
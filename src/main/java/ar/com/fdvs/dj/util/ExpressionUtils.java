@@ -38,7 +38,10 @@ import ar.com.fdvs.dj.domain.entities.Subreport;
 import ar.com.fdvs.dj.domain.entities.SubreportParameter;
 import ar.com.fdvs.dj.domain.entities.conditionalStyle.ConditionStyleExpression;
 import ar.com.fdvs.dj.domain.entities.conditionalStyle.ConditionalStyle;
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
 import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRExpression;
+import net.sf.jasperreports.engine.JRExpressionCollector;
 import net.sf.jasperreports.engine.JRParameter;
 import net.sf.jasperreports.engine.JRResultSetDataSource;
 import net.sf.jasperreports.engine.JRVariable;
@@ -49,14 +52,29 @@ import net.sf.jasperreports.engine.design.JRDesignField;
 import net.sf.jasperreports.engine.design.JRDesignParameter;
 import net.sf.jasperreports.engine.design.JasperDesign;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.ResultSet;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class ExpressionUtils {
 
     private static final String REPORT_PARAMETERS_MAP = "$P{REPORT_PARAMETERS_MAP}";
 
+    private static final Pattern MEMOIZED_INVOCATION = Pattern.compile("\\.evaluateMemoized\\(\\([\\w.$]+\\)\\$P\\{"
+            + JRParameter.REPORT_PARAMETERS_MAP + "\\}\\.get\\(\"([^\"]+)\"\\)");
+
+    private static final Pattern INDEXED_INVOCATION = Pattern.compile("\\.evaluateIndexed\\(\\("
+            + Pattern.quote(IndexedCustomExpression.class.getName()) + "\\)\\$P\\{([^}]+)\\}");
+
     /**
      * Returns an expression that points to a java.util.Map object with the parameters to
      * be used during the subreport fill time.
@@ -99,10 +117,21 @@ public class ExpressionUtils {
      * @return
      */
     public static JRDesignExpression getDataSourceExpression(DJDataSource ds) {
+        return getDataSourceExpression(ds, false);
+    }
+
+    /**
+     * Returns the expression string required
+     *
+     * @param ds
+     * @param useBeanAccessorDataSource if true, collections are read with {@link BeanAccessorDataSource}
+     * @return
+     */
+    public static JRDesignExpression getDataSourceExpression(DJDataSource ds, boolean useBeanAccessorDataSource) {
         JRDesignExpression exp = new JRDesignExpression();
         exp.setValueClass(JRDataSource.class);
 
-        String dsType = getDataSourceTypeStr(ds.getDataSourceType());
+        String dsType = getDataSourceTypeStr(ds.getDataSourceType(), useBeanAccessorDataSource);
         String expText = null;
         if (ds.getDataSourceOrigin() == DJConstants.DATA_SOURCE_ORIGIN_FIELD) {
             expText = dsType + "$F{" + ds.getDataSourceExpression() + "})";
@@ -146,9 +175,15 @@ public class ExpressionUtils {
     }
 
     protected static String getDataSourceTypeStr(int datasourceType) {
+        return getDataSourceTypeStr(datasourceType, false);
+    }
+
+    protected static String getDataSourceTypeStr(int datasourceType, boolean useBeanAccessorDataSource) {
         //TODO Complete all other possible types
         String dsType = "(";
-        if (DJConstants.DATA_SOURCE_TYPE_COLLECTION == datasourceType) {
+        if (DJConstants.DATA_SOURCE_TYPE_COLLECTION == datasourceType && useBeanAccessorDataSource) {
+            dsType = "new " + BeanAccessorDataSource.class.getName() + "((java.util.Collection)";
+        } else if (DJConstants.DATA_SOURCE_TYPE_COLLECTION == datasourceType) {
             dsType = "new " + JRBeanCollectionDataSource.class.getName() + "((java.util.Collection)";
         } else if (DJConstants.DATA_SOURCE_TYPE_ARRAY == datasourceType) {
             dsType = "new " + JRBeanArrayDataSource.class.getName() + "((Object[])";
@@ -158,6 +193,12 @@ public class ExpressionUtils {
             dsType = "((" + JRDataSource.class.getName() + ")";
         } else if (DJConstants.DATA_SOURCE_TYPE_SQL_CONNECTION == datasourceType) {
             dsType = "((" + Connection.class.getName() + ")";
+        } else if (DJConstants.DATA_SOURCE_TYPE_ITERATOR == datasourceType) {
+            dsType = "new " + IteratorDataSource.class.getName() + "((java.util.Iterator)";
+        } else if (DJConstants.DATA_SOURCE_TYPE_STREAM == datasourceType) {
+            dsType = IteratorDataSource.class.getName() + ".fromStream((java.util.stream.Stream)";
+        } else if (DJConstants.DATA_SOURCE_TYPE_PUBLISHER == datasourceType) {
+            dsType = SubscriberDataSource.class.getName() + ".subscribe((" + SubscriberDataSource.Publisher.class.getCanonicalName() + ")";
         }
         return dsType;
     }
@@ -278,8 +319,20 @@ public class ExpressionUtils {
     }
 
 
+    /**
+     * Creates a parameter name from the object's toString(). When the object does not override toString(),
+     * only its class name is used (the identity hash code would change from one run to the other), so the
+     * preffix must be enough to make the name unique.
+     *
+     * @param preffix
+     * @param obj
+     * @return
+     */
     public static String createParameterName(String preffix, Object obj) {
-        String name = obj.toString().substring(obj.toString().lastIndexOf(".") + 1).replaceAll("[\\$@]", "_");
+        String text = obj.toString();
+        if (text.equals(obj.getClass().getName() + "@" + Integer.toHexString(obj.hashCode())))
+            text = obj.getClass().getName();
+        String name = text.substring(text.lastIndexOf(".") + 1).replaceAll("[\\$@]", "_");
         return preffix + name;
     }
 
@@ -290,7 +343,10 @@ public class ExpressionUtils {
 
     /**
      * If you register a CustomExpression with the name "customExpName", then this will create the text needed
-     * to invoke it in a JRDesignExpression
+     * to invoke it in a JRDesignExpression.<br>
+     * {@link IndexedCustomExpression}s are read directly from the "customExpName" parameter, so they must be registered
+     * as a report parameter (see {@link #createAndRegisterExpression(DynamicJasperDesign, String, CustomExpression)})<br>
+     * {@link PureCustomExpression}s are evaluated through the scriptlet, at most once per record.
      *
      * @param customExpName
      * @param usePreviousFieldValues
@@ -316,6 +372,16 @@ public class ExpressionUtils {
             }
             stringExpression = "$" + symbol + "{" + varexp.getVariableName() + "}";
 
+        } else if (customExpression instanceof PureCustomExpression) {
+            //evaluated once per record when more than one expression invokes it
+            stringExpression = "((" + DJDefaultScriptlet.class.getName() + ")$P{REPORT_SCRIPTLET}).evaluateMemoized(("
+                    + CustomExpression.class.getName() + ")$P{REPORT_PARAMETERS_MAP}.get(\"" + customExpName + "\"), $V{"
+                    + JRVariable.REPORT_COUNT + "}, " + usePreviousFieldValues + ")";
+        } else if (customExpression instanceof IndexedCustomExpression) {
+            //the expression is read from its own parameter and evaluated with values resolved once per fill,
+            //registerIndexedExpressions replaces the parameter by the slot of its resolved values
+            stringExpression = "((" + DJDefaultScriptlet.class.getName() + ")$P{REPORT_SCRIPTLET}).evaluateIndexed(("
+                    + IndexedCustomExpression.class.getName() + ")$P{" + customExpName + "}, " + usePreviousFieldValues + ")";
         } else {
             String fieldsMap = "((" + DJDefaultScriptlet.class.getName() + ")$P{REPORT_SCRIPTLET}).getCurrentFields()";
             if (usePreviousFieldValues) {
@@ -364,7 +430,7 @@ public class ExpressionUtils {
     }
 
     public static String getValueClassNameForOperation(DJCalculation calc, ColumnProperty prop) {
-        if (calc == DJCalculation.COUNT || calc == DJCalculation.DISTINCT_COUNT)
+        if (calc.isCount())
             return Number.class.getName();
         else
             return prop.getValueClassName();
@@ -372,16 +438,116 @@ public class ExpressionUtils {
     }
 
     public static String getInitialValueExpressionForOperation(DJCalculation calc, ColumnProperty prop) {
-        if (calc == DJCalculation.COUNT || calc == DJCalculation.DISTINCT_COUNT)
-            return "new java.lang.Long(\"0\")";
+        if (calc.isCount())
+            return getZeroExpression(Long.class.getName());
         else if (calc == DJCalculation.SUM)
-            return "new " + prop.getValueClassName() + "(\"0\")";
+            return getZeroExpression(prop.getValueClassName());
         else return null;
 
     }
 
+    /**
+     * Expression for the zero of a numeric class, used as initial value of the variables.<br>
+     * It is evaluated every time the variable is reset, so the usual classes use cached constants
+     * instead of parsing a String.
+     *
+     * @param className
+     * @return
+     */
+    public static String getZeroExpression(String className) {
+        if (Long.class.getName().equals(className))
+            return "java.lang.Long.valueOf(0L)";
+        if (Integer.class.getName().equals(className))
+            return "java.lang.Integer.valueOf(0)";
+        if (Short.class.getName().equals(className))
+            return "java.lang.Short.valueOf((short) 0)";
+        if (Double.class.getName().equals(className))
+            return "java.lang.Double.valueOf(0d)";
+        if (Float.class.getName().equals(className))
+            return "java.lang.Float.valueOf(0f)";
+        if (BigDecimal.class.getName().equals(className))
+            return "java.math.BigDecimal.ZERO";
+        if (BigInteger.class.getName().equals(className))
+            return "java.math.BigInteger.ZERO";
+        return "new " + className + "(\"0\")";
+    }
+
+
+    /**
+     * Registers, as the {@link DJDefaultScriptlet#SHARED_PURE_EXPRESSIONS} parameter of the report, the names of the
+     * {@link PureCustomExpression}s invoked by more than one expression of the design. Only those are worth
+     * memoizing, an expression invoked from a single place is evaluated once per record anyway.
+     *
+     * @param jd the design, once the layout was applied
+     */
+    public static void registerSharedPureExpressions(DynamicJasperDesign jd) {
+        Map<Object, Integer> invocations = new IdentityHashMap<Object, Integer>();
+        Map<String, Object> names = new HashMap<String, Object>();
+        for (JRExpression expression : JRExpressionCollector.collector(DefaultJasperReportsContext.getInstance(), jd).getExpressions()) {
+            String text = expression.getText();
+            if (text == null || !text.contains("evaluateMemoized"))
+                continue;
+            Matcher matcher = MEMOIZED_INVOCATION.matcher(text);
+            while (matcher.find()) {
+                Object pure = jd.getParametersWithValues().get(matcher.group(1));
+                if (pure == null)
+                    continue;
+                Integer count = invocations.get(pure);
+                invocations.put(pure, count == null ? 1 : count + 1);
+                names.put(matcher.group(1), pure);
+            }
+        }
+
+        HashSet<String> shared = new HashSet<String>();
+        for (Map.Entry<String, Object> entry : names.entrySet()) {
+            if (invocations.get(entry.getValue()) > 1)
+                shared.add(entry.getKey());
+        }
+        jd.getParametersWithValues().put(DJDefaultScriptlet.SHARED_PURE_EXPRESSIONS + "_" + jd.getName(), shared);
+    }
+
+    /**
+     * Gives each {@link IndexedCustomExpression} invoked by the design a slot, and replaces the parameter passed to
+     * {@link DJDefaultScriptlet#evaluateIndexed(int, boolean)} by it. The names of the expressions are registered, in
+     * slot order, as the {@link DJDefaultScriptlet#INDEXED_EXPRESSIONS} parameter of the report, so the scriptlet
+     * resolves their values once, before the first record.
+     *
+     * @param jd the design, once the layout was applied
+     */
+    public static void registerIndexedExpressions(DynamicJasperDesign jd) {
+        Map<String, Integer> slots = new HashMap<String, Integer>();
+        ArrayList<String> names = new ArrayList<String>();
+        for (JRExpression expression : JRExpressionCollector.collector(DefaultJasperReportsContext.getInstance(), jd).getExpressions()) {
+            String text = expression.getText();
+            if (text == null || !text.contains("evaluateIndexed") || !(expression instanceof JRDesignExpression))
+                continue;
+            Matcher matcher = INDEXED_INVOCATION.matcher(text);
+            StringBuffer slotted = new StringBuffer(text.length());
+            while (matcher.find()) {
+                String name = matcher.group(1);
+                Integer slot = slots.get(name);
+                if (slot == null) {
+                    slot = names.size();
+                    slots.put(name, slot);
+                    names.add(name);
+                }
+                matcher.appendReplacement(slotted, ".evaluateIndexed(" + slot);
+            }
+            matcher.appendTail(slotted);
+            ((JRDesignExpression) expression).setText(slotted.toString());
+        }
+        jd.getParametersWithValues().put(DJDefaultScriptlet.INDEXED_EXPRESSIONS + "_" + jd.getName(), names);
+    }
 
     public static JRDesignExpression getExpressionForConditionalStyle(ConditionalStyle condition, String columExpression) {
+        String inlineText = condition.getCondition().getInlineText(columExpression);
+        if (inlineText != null) {
+            JRDesignExpression expression = new JRDesignExpression();
+            expression.setValueClass(Boolean.class);
+            expression.setText(inlineText);
+            return expression;
+        }
+
         String fieldsMap = "((" + DJDefaultScriptlet.class.getName() + ")$P{REPORT_SCRIPTLET}).getCurrentFields()";
         String parametersMap = "((" + DJDefaultScriptlet.class.getName() + ")$P{REPORT_SCRIPTLET}).getCurrentParams()";
         String variablesMap = "((" + DJDefaultScriptlet.class.getName() + ")$P{REPORT_SCRIPTLET}).getCurrentVariables()";
@@ -0,0 +1,337 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.util;
+
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts the rows given by an iterator and exposes the result as a {@link JRDataSource}, without holding
+ * all the rows in memory at once.<br>
+ * <br>
+ * Rows are read in chunks of at most <code>maxRowsInMemory</code>, each chunk is sorted (see {@link SortUtils})
+ * and, if there is more than one, written to a temporary file. The sorted runs are then merged while the report
+ * iterates the data source. When all the rows fit in a single chunk nothing is written to disk.<br>
+ * Rows written to disk must be {@link java.io.Serializable}.<br>
+ * <br>
+ * Field values are read from the current row the same way {@link net.sf.jasperreports.engine.data.JRBeanCollectionDataSource}
+ * does: using the field description if present, or the field name otherwise.<br>
+ * <br>
+ * Temporary files are removed when the data source is exhausted or closed, always close it after the fill.
+ */
+public class ExternalMergeSortDataSource<T> implements JRDataSource, Closeable {
+
+	private static final Log log = LogFactory.getLog(ExternalMergeSortDataSource.class);
+
+	public static final int DEFAULT_MAX_ROWS_IN_MEMORY = 100000;
+
+	/**
+	 * Max number of runs merged at once, if there are more, they are merged in several passes
+	 */
+	public static final int MAX_MERGE_WIDTH = 64;
+
+	/**
+	 * Object streams keep a reference to every object written until they are reset
+	 */
+	private static final int RESET_INTERVAL = 1024;
+
+	private final Iterator<? extends T> rows;
+	private final List<SortInfo> sortInfo;
+	private final int maxRowsInMemory;
+	private final File tempDirectory;
+
+	private final List<File> runFiles = new ArrayList<File>();
+	private Iterator<T> sorted;
+	private T current;
+	private boolean closed;
+
+	public ExternalMergeSortDataSource(Iterator<? extends T> rows, List<SortInfo> sortInfo) {
+		this(rows, sortInfo, DEFAULT_MAX_ROWS_IN_MEMORY, null);
+	}
+
+	/**
+	 * @param rows the rows to sort, they are consumed on the first call to {@link #next()}
+	 * @param sortInfo
+	 * @param maxRowsInMemory max number of rows sorted in memory at once
+	 * @param tempDirectory where the sorted runs are written, null for the default temporary directory
+	 */
+	public ExternalMergeSortDataSource(Iterator<? extends T> rows, List<SortInfo> sortInfo, int maxRowsInMemory, File tempDirectory) {
+		if (maxRowsInMemory < 1)
+			throw new IllegalArgumentException("maxRowsInMemory must be positive: " + maxRowsInMemory);
+		this.rows = rows;
+		this.sortInfo = sortInfo;
+		this.maxRowsInMemory = maxRowsInMemory;
+		this.tempDirectory = tempDirectory;
+	}
+
+	public boolean next() throws JRException {
+		if (closed)
+			return false;
+
+		try {
+			if (sorted == null)
+				sorted = sort();
+
+			if (sorted.hasNext()) {
+				current = sorted.next();
+				return true;
+			}
+		} catch (IOException e) {
+			close();
+			throw new JRException("Error sorting data source: " + e.getMessage(), e);
+		} catch (SortException e) {
+			close();
+			throw new JRException("Error sorting data source: " + e.getCause().getMessage(), e.getCause());
+		}
+
+		close();
+		return false;
+	}
+
+	public Object getFieldValue(JRField jrField) throws JRException {
+		return BeanFields.getFieldValue(current, jrField);
+	}
+
+	/**
+	 * @return the number of sorted runs written to disk, 0 if all the rows were sorted in memory
+	 */
+	public int getSpilledRunCount() {
+		return runFiles.size();
+	}
+
+	/**
+	 * Releases the open run files and deletes them
+	 */
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		current = null;
+		if (sorted instanceof RunMerger)
+			((RunMerger) sorted).close();
+		for (File file : runFiles) {
+			if (file.exists() && !file.delete()) {
+				log.warn("Could not delete temporary sort file " + file.getAbsolutePath());
+				file.deleteOnExit();
+			}
+		}
+	}
+
+	private Iterator<T> sort() throws IOException {
+		List<T> chunk = new ArrayList<T>(Math.min(maxRowsInMemory, 1024));
+		while (rows.hasNext()) {
+			chunk.add(rows.next());
+			if (chunk.size() == maxRowsInMemory && rows.hasNext()) {
+				writeRun(SortUtils.sort(chunk, sortInfo));
+				chunk.clear();
+			}
+		}
+
+		if (runFiles.isEmpty())
+			return SortUtils.sort(chunk, sortInfo).iterator();
+
+		if (!chunk.isEmpty())
+			writeRun(SortUtils.sort(chunk, sortInfo));
+		chunk = null;
+
+		log.debug("Merging " + runFiles.size() + " sorted runs");
+		List<File> pending = new ArrayList<File>(runFiles);
+		while (pending.size() > MAX_MERGE_WIDTH) {
+			//consecutive runs are merged together, so rows with equal keys keep their original order
+			List<File> merged = new ArrayList<File>();
+			for (int start = 0; start < pending.size(); start += MAX_MERGE_WIDTH) {
+				List<File> group = pending.subList(start, Math.min(start + MAX_MERGE_WIDTH, pending.size()));
+				if (group.size() == 1) {
+					merged.add(group.get(0));
+					continue;
+				}
+				RunMerger merger = new RunMerger(group);
+				try {
+					merged.add(writeRun(merger));
+				} finally {
+					merger.close();
+				}
+				for (File file : group) {
+					file.delete();
+				}
+			}
+			pending = merged;
+		}
+		return new RunMerger(pending);
+	}
+
+	private File writeRun(Iterable<T> sortedRows) throws IOException {
+		return writeRun(sortedRows.iterator());
+	}
+
+	private File writeRun(Iterator<T> sortedRows) throws IOException {
+		File file = File.createTempFile("dj-sort-", ".run", tempDirectory);
+		runFiles.add(file);
+		ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+		try {
+			int count = 0;
+			while (sortedRows.hasNext()) {
+				out.writeObject(sortedRows.next());
+				if (++count % RESET_INTERVAL == 0)
+					out.reset();
+			}
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Unchecked wrapper, so merge errors can go through {@link Iterator#next()}
+	 */
+	private static class SortException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		SortException(Exception cause) {
+			super(cause);
+		}
+	}
+
+	/**
+	 * A sorted run being read, the next row and its keys are read ahead
+	 */
+	private class RunReader {
+		private final int index;
+		private final ObjectInputStream in;
+		private T row;
+		private Object[] keys;
+
+		RunReader(int index, File file) throws IOException {
+			this.index = index;
+			this.in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+		}
+
+		@SuppressWarnings("unchecked")
+		boolean advance(MultiPropertyComparator<T> mpc) throws IOException {
+			try {
+				row = (T) in.readObject();
+			} catch (EOFException e) {
+				row = null;
+				keys = null;
+				return false;
+			} catch (ClassNotFoundException e) {
+				throw new IOException("Could not read back sorted row: " + e.getMessage(), e);
+			}
+			keys = mpc.getSortKeys(row);
+			return true;
+		}
+
+		void close() {
+			try {
+				in.close();
+			} catch (IOException e) {
+				log.debug("Error closing sorted run: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * k-way merge of sorted runs. Ties are resolved by run order so the merge is stable.
+	 */
+	private class RunMerger implements Iterator<T> {
+		private final MultiPropertyComparator<T> mpc = new MultiPropertyComparator<T>(sortInfo);
+		private final PriorityQueue<RunReader> queue;
+		private final List<RunReader> readers = new ArrayList<RunReader>();
+
+		RunMerger(List<File> files) throws IOException {
+			queue = new PriorityQueue<RunReader>(Math.max(1, files.size()), new Comparator<RunReader>() {
+				public int compare(RunReader r1, RunReader r2) {
+					int result = mpc.compareSortKeys(r1.keys, r2.keys);
+					return result != 0 ? result : r1.index - r2.index;
+				}
+			});
+			try {
+				for (int i = 0; i < files.size(); i++) {
+					RunReader reader = new RunReader(i, files.get(i));
+					readers.add(reader);
+					if (reader.advance(mpc))
+						queue.add(reader);
+				}
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+		}
+
+		public boolean hasNext() {
+			return !queue.isEmpty();
+		}
+
+		public T next() {
+			RunReader reader = queue.poll();
+			if (reader == null)
+				throw new NoSuchElementException();
+			T row = reader.row;
+			try {
+				if (reader.advance(mpc))
+					queue.add(reader);
+			} catch (IOException e) {
+				throw new SortException(e);
+			}
+			return row;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		void close() {
+			for (RunReader reader : readers) {
+				reader.close();
+			}
+			queue.clear();
+		}
+	}
+}
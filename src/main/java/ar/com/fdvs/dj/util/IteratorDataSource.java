@@ -0,0 +1,114 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.util;
+
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.stream.BaseStream;
+import java.util.stream.Stream;
+
+/**
+ * A bean data source that reads the rows from an {@link Iterator} or a {@link Stream} as the report needs them,
+ * so the rows never have to be all in memory (i.e. an iterator over the pages of a repository query).<br>
+ * <br>
+ * Field values are read like {@link net.sf.jasperreports.engine.data.JRBeanCollectionDataSource} does. The
+ * data source can be iterated only once. A stream is closed when it is exhausted or when the data source is closed.
+ */
+public class IteratorDataSource<T> implements JRDataSource, Closeable {
+
+	private final Iterator<? extends T> iterator;
+	private final BaseStream<?, ?> stream;
+
+	private T current;
+	private long rowCount;
+	private boolean closed;
+
+	public IteratorDataSource(Iterator<? extends T> iterator) {
+		this(iterator, null);
+	}
+
+	private IteratorDataSource(Iterator<? extends T> iterator, BaseStream<?, ?> stream) {
+		if (iterator == null)
+			throw new IllegalArgumentException("iterator must not be null");
+		this.iterator = iterator;
+		this.stream = stream;
+	}
+
+	/**
+	 * @param stream closed when the rows are exhausted or the data source is closed
+	 * @return a data source reading the elements of the stream
+	 */
+	public static <T> IteratorDataSource<T> fromStream(Stream<? extends T> stream) {
+		if (stream == null)
+			throw new IllegalArgumentException("stream must not be null");
+		return new IteratorDataSource<T>(stream.iterator(), stream);
+	}
+
+	public boolean next() throws JRException {
+		if (closed)
+			return false;
+		try {
+			if (iterator.hasNext()) {
+				current = iterator.next();
+				rowCount++;
+				return true;
+			}
+		} catch (RuntimeException e) {
+			close();
+			throw new JRException("Error reading the rows: " + e.getMessage(), e);
+		}
+		close();
+		return false;
+	}
+
+	public Object getFieldValue(JRField jrField) throws JRException {
+		return BeanFields.getFieldValue(current, jrField);
+	}
+
+	/**
+	 * @return rows read so far
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		current = null;
+		if (stream != null)
+			stream.close();
+	}
+}
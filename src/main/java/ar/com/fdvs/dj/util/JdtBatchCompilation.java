@@ -0,0 +1,230 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.util;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.design.JRCompilationUnit;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Groups the compilation units of many reports compiled concurrently into a single JDT invocation.<br>
+ * <br>
+ * Every thread compiling a report joins the batch. When such a thread asks {@link DJJRJdtCompiler} to compile
+ * its units, it waits until every other thread in the batch is also waiting (or done). At that point all the
+ * pending units are compiled together and the threads are released. A report with subreports takes one round
+ * per nesting level, so the number of compiler invocations is bound by the subreport depth, not by the number
+ * of reports.<br>
+ * If the batch fails, the units of each report are compiled again on their own so every report gets its own
+ * errors.
+ */
+public class JdtBatchCompilation {
+
+	private static final Log log = LogFactory.getLog(JdtBatchCompilation.class);
+
+	private static final ThreadLocal<JdtBatchCompilation> current = new ThreadLocal<JdtBatchCompilation>();
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition released = lock.newCondition();
+
+	private final List<Pending> pending = new ArrayList<Pending>();
+
+	private int running = 0;
+	private boolean compiling = false;
+
+	private int compilerInvocations = 0;
+	private int compiledUnits = 0;
+	private long compilationNanos = 0;
+
+	/**
+	 * @return the batch the current thread belongs to, or null
+	 */
+	public static JdtBatchCompilation current() {
+		return current.get();
+	}
+
+	/**
+	 * The current thread will compile its reports as part of this batch until {@link #leave()} is called
+	 */
+	public void join() {
+		lock.lock();
+		try {
+			running++;
+			current.set(this);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void leave() {
+		lock.lock();
+		try {
+			running--;
+			current.remove();
+			released.signalAll(); //the ones waiting may be all that is left
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Called by the compiler instead of compiling the units right away
+	 *
+	 * @return the compilation errors for the given units, null if there were none
+	 */
+	String compile(DJJRJdtCompiler compiler, JRCompilationUnit[] units, String classpath, File tempDirFile) throws JRException {
+		Pending own = new Pending(units);
+		lock.lock();
+		try {
+			pending.add(own);
+			while (!own.done) {
+				if (!compiling && pending.size() == running) {
+					List<Pending> batch = new ArrayList<Pending>(pending);
+					pending.clear();
+					compiling = true;
+					lock.unlock();
+					try {
+						compileBatch(compiler, batch, classpath, tempDirFile);
+					} finally {
+						lock.lock();
+						compiling = false;
+						released.signalAll();
+					}
+				} else {
+					released.awaitUninterruptibly();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		if (own.exception != null)
+			throw own.exception;
+		return own.errors;
+	}
+
+	private void compileBatch(DJJRJdtCompiler compiler, List<Pending> batch, String classpath, File tempDirFile) {
+		List<JRCompilationUnit> all = new ArrayList<JRCompilationUnit>();
+		for (Pending p : batch) {
+			for (JRCompilationUnit unit : p.units) {
+				all.add(unit);
+			}
+		}
+		log.debug("Compiling " + all.size() + " units of " + batch.size() + " reports in one go");
+
+		long start = System.nanoTime();
+		int invocations = 1;
+		try {
+			String errors = compiler.compileUnitsNow(all.toArray(new JRCompilationUnit[all.size()]), classpath, tempDirFile);
+			if (errors == null || batch.size() == 1) {
+				for (Pending p : batch) {
+					p.errors = errors;
+				}
+			} else {
+				log.debug("Batch compilation failed, compiling each report on its own to find out which ones have errors");
+				for (Pending p : batch) {
+					invocations++;
+					try {
+						p.errors = compiler.compileUnitsNow(p.units, classpath, tempDirFile);
+					} catch (JRException e) {
+						p.exception = e;
+					}
+				}
+			}
+		} catch (JRException e) {
+			for (Pending p : batch) {
+				p.exception = e;
+			}
+		} catch (RuntimeException e) {
+			for (Pending p : batch) {
+				p.exception = new JRException(e.getMessage(), e);
+			}
+		} finally {
+			lock.lock();
+			try {
+				compilerInvocations += invocations;
+				compiledUnits += all.size();
+				compilationNanos += System.nanoTime() - start;
+				for (Pending p : batch) {
+					p.done = true;
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	public int getCompilerInvocations() {
+		lock.lock();
+		try {
+			return compilerInvocations;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getCompiledUnits() {
+		lock.lock();
+		try {
+			return compiledUnits;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return time spent inside the compiler, in milliseconds
+	 */
+	public long getCompilationTime() {
+		lock.lock();
+		try {
+			return compilationNanos / 1000000;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static class Pending {
+		private final JRCompilationUnit[] units;
+		private String errors;
+		private JRException exception;
+		private boolean done = false;
+
+		Pending(JRCompilationUnit[] units) {
+			this.units = units;
+		}
+	}
+}
@@ -6,22 +6,24 @@ import ar.com.fdvs.dj.core.registration.EntitiesRegistrationException;
 import ar.com.fdvs.dj.domain.CustomExpression;
 import ar.com.fdvs.dj.domain.DynamicJasperDesign;
 import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.domain.IndexedCustomExpression;
 import ar.com.fdvs.dj.domain.constants.Border;
 import ar.com.fdvs.dj.domain.entities.DJGroup;
-import net.sf.jasperreports.engine.JRBand;
-import net.sf.jasperreports.engine.JRChild;
-import net.sf.jasperreports.engine.JRDefaultStyleProvider;
-import net.sf.jasperreports.engine.JRException;
-import net.sf.jasperreports.engine.JRPen;
+import net.sf.jasperreports.engine.*;
 import net.sf.jasperreports.engine.design.*;
 import net.sf.jasperreports.engine.type.LineStyleEnum;
 import net.sf.jasperreports.engine.type.SplitTypeEnum;
+import net.sf.jasperreports.engine.util.JRElementsVisitor;
+import net.sf.jasperreports.engine.util.JRVisitorSupport;
+import net.sf.jasperreports.crosstabs.JRCrosstab;
 import org.apache.commons.beanutils.BeanUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.lang.reflect.Constructor;
+import java.nio.charset.Charset;
 import java.util.Map;
+import java.util.UUID;
 
 public class LayoutUtils {
 	
@@ -100,7 +102,9 @@ public class LayoutUtils {
 		if (customExpression == null){
 			return;
 		}
-		registerAndAddParameter(design, name, customExpression.getClass().getName(), customExpression);
+		//indexed expressions are read with $P{}, their class may not be usable from the generated code
+		String className = customExpression instanceof IndexedCustomExpression ? IndexedCustomExpression.class.getName() : customExpression.getClass().getName();
+		registerAndAddParameter(design, name, className, customExpression);
 	}
 
 	public static void registerAndAddParameter(DynamicJasperDesign design,String name, String classname, Object value) {
@@ -125,6 +129,10 @@ public class LayoutUtils {
 	 */
 	public static JRDesignGroup getJRDesignGroup(DynamicJasperDesign jd, LayoutManager layoutManager, DJGroup group) {
 		Map references = layoutManager.getReferencesMap();
+		String registeredName = jd.getGroupName(group);
+		if (registeredName != null && references.get(registeredName) == group) {
+			return (JRDesignGroup) jd.getGroupsMap().get(registeredName);
+		}
 		for (Object o : references.keySet()) {
 			String groupName = (String) o;
 			DJGroup djGroup = (DJGroup) references.get(groupName);
@@ -188,4 +196,41 @@ public class LayoutUtils {
         pen.setLineColor(border.getColor());
 
     }
+
+	/**
+	 * JasperReports gives a random UUID to every element and dataset. This replaces them with
+	 * UUIDs derived from the design name and the position of the element, so the same report
+	 * always produces the same JRXML.
+	 * @param design
+	 */
+	public static void setDeterministicUUIDs(final JasperDesign design) {
+		final Charset utf8 = Charset.forName("UTF-8");
+		design.setUUID(UUID.nameUUIDFromBytes((design.getName() + "_report").getBytes(utf8)));
+		for (JRDataset dataset : design.getDatasetsList()) {
+			((JRDesignDataset) dataset).setUUID(UUID.nameUUIDFromBytes((design.getName() + "_dataset_" + dataset.getName()).getBytes(utf8)));
+		}
+
+		JRElementsVisitor.visitReport(design, new JRVisitorSupport() {
+			private int index = 0;
+
+			private void setUUID(JRElement element) {
+				if (element instanceof JRDesignElement)
+					((JRDesignElement) element).setUUID(UUID.nameUUIDFromBytes((design.getName() + "_element_" + index++).getBytes(utf8)));
+			}
+
+			public void visitBreak(JRBreak breakElement) { setUUID(breakElement); }
+			public void visitChart(JRChart chart) { setUUID(chart); }
+			public void visitCrosstab(JRCrosstab crosstab) { setUUID(crosstab); }
+			public void visitEllipse(JREllipse ellipse) { setUUID(ellipse); }
+			public void visitFrame(JRFrame frame) { setUUID(frame); }
+			public void visitImage(JRImage image) { setUUID(image); }
+			public void visitLine(JRLine line) { setUUID(line); }
+			public void visitRectangle(JRRectangle rectangle) { setUUID(rectangle); }
+			public void visitStaticText(JRStaticText staticText) { setUUID(staticText); }
+			public void visitSubreport(JRSubreport subreport) { setUUID(subreport); }
+			public void visitTextField(JRTextField textField) { setUUID(textField); }
+			public void visitComponentElement(JRComponentElement componentElement) { setUUID(componentElement); }
+			public void visitGenericElement(JRGenericElement element) { setUUID(element); }
+		});
+	}
 }
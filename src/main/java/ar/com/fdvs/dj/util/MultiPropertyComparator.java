@@ -29,7 +29,6 @@
 
 package ar.com.fdvs.dj.util;
 
-import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -46,14 +45,25 @@ public class MultiPropertyComparator<T> implements Comparator<T> {
 
     private static final Log LOGGER = LogFactory.getLog(MultiPropertyComparator.class);
 
+    /**
+     * Marks a sort key that could not be read, it is considered equal to any other value
+     */
+    private static final Object UNREADABLE = new Object();
+
     private final List info;
 
+    /**
+     * Last accessor used for each sort key, most collections have a single bean class
+     */
+    private final ResolvedAccessor[] accessors;
+
     /**
      * 
      * @param _info List<SortInfo>
      */
     public MultiPropertyComparator(final List _info) {
         info = _info;
+        accessors = new ResolvedAccessor[_info.size()];
     }
 
     @Override
@@ -62,9 +72,8 @@ public class MultiPropertyComparator<T> implements Comparator<T> {
         for (int i = 0; result == 0 && i < info.size(); i++) {
             final SortInfo sortInfo = (SortInfo)info.get(i);
             try {
-                final String propertyName = sortInfo.getPropertyName();
-                final Comparable value1 = getValue(o1, propertyName);
-                final Comparable value2 = getValue(o2, propertyName);
+                final Comparable value1 = getValue(o1, i);
+                final Comparable value2 = getValue(o2, i);
                 result = compare(value1, value2) * (sortInfo.isAscending() ? 1 : -1);
             } catch (IllegalAccessException ex) {
                 LOGGER.warn(ex);
@@ -77,8 +86,54 @@ public class MultiPropertyComparator<T> implements Comparator<T> {
         return result;
     }
 
-    private static Comparable getValue(final Object _object, final String _field) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
-        final Object value = PropertyUtils.getProperty(_object, _field);
+    /**
+     * Reads all the sort keys of the object at once, so they can be compared many times with
+     * {@link #compareSortKeys(Object[], Object[])} without reading the properties again.
+     *
+     * @param o
+     * @return
+     */
+    public Object[] getSortKeys(T o) {
+        final Object[] keys = new Object[info.size()];
+        for (int i = 0; i < keys.length; i++) {
+            try {
+                keys[i] = getValue(o, i);
+            } catch (IllegalAccessException ex) {
+                LOGGER.warn(ex);
+                keys[i] = UNREADABLE;
+            } catch (InvocationTargetException ex) {
+                LOGGER.warn(ex);
+                keys[i] = UNREADABLE;
+            } catch (NoSuchMethodException ex) {
+                LOGGER.warn(ex);
+                keys[i] = UNREADABLE;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Same result as {@link #compare(Object, Object)} but over keys obtained with {@link #getSortKeys(Object)}
+     */
+    public int compareSortKeys(final Object[] keys1, final Object[] keys2) {
+        int result = 0;
+        for (int i = 0; result == 0 && i < info.size(); i++) {
+            if (keys1[i] == UNREADABLE || keys2[i] == UNREADABLE)
+                continue;
+            final SortInfo sortInfo = (SortInfo)info.get(i);
+            result = compare((Comparable) keys1[i], (Comparable) keys2[i]) * (sortInfo.isAscending() ? 1 : -1);
+        }
+        return result;
+    }
+
+    private Comparable getValue(final Object _object, final int index) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+        ResolvedAccessor resolved = accessors[index];
+        if (resolved == null || resolved.beanClass != _object.getClass()) {
+            final String propertyName = ((SortInfo) info.get(index)).getPropertyName();
+            resolved = new ResolvedAccessor(_object.getClass(), PropertyAccessor.getAccessor(_object.getClass(), propertyName));
+            accessors[index] = resolved;
+        }
+        final Object value = resolved.accessor.getValue(_object);
         if (value == null)
         	return null;
         
@@ -102,4 +157,17 @@ public class MultiPropertyComparator<T> implements Comparator<T> {
             return _value1.compareTo(_value2);
         }
     }
+
+    /**
+     * Immutable, so it can be shared between threads without synchronization
+     */
+    private static final class ResolvedAccessor {
+        private final Class<?> beanClass;
+        private final PropertyAccessor accessor;
+
+        ResolvedAccessor(Class<?> beanClass, PropertyAccessor accessor) {
+            this.beanClass = beanClass;
+            this.accessor = accessor;
+        }
+    }
 }
@@ -0,0 +1,299 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.util;
+
+import org.apache.commons.beanutils.MethodUtils;
+import org.apache.commons.beanutils.NestedNullException;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Reads a bean property without going through commons-beanutils introspection on every call.<br>
+ * The getter is resolved once per bean class and property, and invoked through a generated
+ * {@link Function} (or a {@link MethodHandle} when the bean class is not visible from DJ's class loader).
+ * Nested properties (<code>customer.address.city</code>) are read with one accessor per step.
+ * Indexed and mapped properties fall back to {@link PropertyUtils}.
+ */
+public abstract class PropertyAccessor {
+
+	private static final Log log = LogFactory.getLog(PropertyAccessor.class);
+
+	/**
+	 * The accessors are kept by the bean class itself, so they do not prevent its class loader (i.e: a
+	 * redeployed web application) from being collected
+	 */
+	private static final ClassValue<Map<String, PropertyAccessor>> ACCESSORS = new ClassValue<Map<String, PropertyAccessor>>() {
+		protected Map<String, PropertyAccessor> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<String, PropertyAccessor>();
+		}
+	};
+
+	protected final String propertyName;
+
+	protected PropertyAccessor(String propertyName) {
+		this.propertyName = propertyName;
+	}
+
+	public String getPropertyName() {
+		return propertyName;
+	}
+
+	/**
+	 * Same contract as {@link PropertyUtils#getProperty(Object, String)}
+	 */
+	public abstract Object getValue(Object bean) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException;
+
+	/**
+	 * @param beanClass
+	 * @param propertyName
+	 * @return the (cached) accessor for the property in the given class
+	 */
+	public static PropertyAccessor getAccessor(Class<?> beanClass, String propertyName) {
+		Map<String, PropertyAccessor> byProperty = ACCESSORS.get(beanClass);
+		PropertyAccessor accessor = byProperty.get(propertyName);
+		if (accessor == null) {
+			accessor = createAccessor(beanClass, propertyName);
+			byProperty.put(propertyName, accessor);
+		}
+		return accessor;
+	}
+
+	/**
+	 * Convenience method, resolves the accessor for the bean's class
+	 */
+	public static Object getProperty(Object bean, String propertyName) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+		if (bean == null)
+			throw new IllegalArgumentException("No bean specified");
+		return getAccessor(bean.getClass(), propertyName).getValue(bean);
+	}
+
+	private static PropertyAccessor createAccessor(Class<?> beanClass, String propertyName) {
+		if (Map.class.isAssignableFrom(beanClass))
+			return new MapAccessor(propertyName);
+
+		if (propertyName.indexOf('[') >= 0 || propertyName.indexOf('(') >= 0)
+			return new BeanUtilsAccessor(propertyName);
+
+		if (propertyName.indexOf('.') >= 0) {
+			String[] path = propertyName.split("\\.", -1);
+			for (String step : path) {
+				if (step.length() == 0)
+					return new BeanUtilsAccessor(propertyName);
+			}
+			return new NestedAccessor(propertyName, path);
+		}
+
+		Method readMethod = findReadMethod(beanClass, propertyName);
+		if (readMethod == null)
+			return new BeanUtilsAccessor(propertyName); //it will fail the same way it always did
+
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			MethodHandle handle = lookup.unreflect(readMethod);
+			if (isVisible(readMethod.getDeclaringClass()))
+				return new FunctionAccessor(propertyName, readMethod.getDeclaringClass(), createFunction(lookup, handle, readMethod));
+			return new MethodHandleAccessor(propertyName, readMethod.getDeclaringClass(), handle.asType(MethodType.methodType(Object.class, Object.class)));
+		} catch (Throwable e) {
+			log.debug("Could not create a direct accessor for " + beanClass.getName() + "." + propertyName + ", using reflection: " + e.getMessage());
+			return new BeanUtilsAccessor(propertyName);
+		}
+	}
+
+	private static Method findReadMethod(Class<?> beanClass, String propertyName) {
+		try {
+			BeanInfo beanInfo = Introspector.getBeanInfo(beanClass);
+			for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+				if (propertyName.equals(descriptor.getName()) && descriptor.getReadMethod() != null) {
+					//a public method declared in a non public class must be invoked through a public type
+					return MethodUtils.getAccessibleMethod(beanClass, descriptor.getReadMethod());
+				}
+			}
+		} catch (IntrospectionException e) {
+			log.debug(e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Generated classes are defined in DJ's class loader, they can only link against classes visible from it
+	 */
+	private static boolean isVisible(Class<?> clazz) {
+		try {
+			return Class.forName(clazz.getName(), false, PropertyAccessor.class.getClassLoader()) == clazz;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Function<Object, Object> createFunction(MethodHandles.Lookup lookup, MethodHandle handle, Method readMethod) throws Throwable {
+		MethodType instantiated = MethodType.methodType(MethodType.methodType(readMethod.getReturnType()).wrap().returnType(), readMethod.getDeclaringClass());
+		CallSite site = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+				MethodType.methodType(Object.class, Object.class), handle, instantiated);
+		return (Function<Object, Object>) site.getTarget().invokeExact();
+	}
+
+	/**
+	 * The bean is checked before the getter is invoked, so an exception thrown by the getter (a ClassCastException
+	 * included) is reported as such, wrapped in an {@link InvocationTargetException} as {@link PropertyUtils} does
+	 */
+	private static void checkBean(Object bean, Class<?> type, String propertyName) {
+		if (bean == null)
+			throw new IllegalArgumentException("No bean specified");
+		if (!type.isInstance(bean))
+			throw new IllegalArgumentException("Bean of class " + bean.getClass().getName() + " has no property " + propertyName);
+	}
+
+	private static class FunctionAccessor extends PropertyAccessor {
+		private final Class<?> type;
+		private final Function<Object, Object> function;
+
+		FunctionAccessor(String propertyName, Class<?> type, Function<Object, Object> function) {
+			super(propertyName);
+			this.type = type;
+			this.function = function;
+		}
+
+		public Object getValue(Object bean) throws InvocationTargetException {
+			checkBean(bean, type, propertyName);
+			try {
+				return function.apply(bean);
+			} catch (RuntimeException e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+	}
+
+	private static class MethodHandleAccessor extends PropertyAccessor {
+		private final Class<?> type;
+		private final MethodHandle handle;
+
+		MethodHandleAccessor(String propertyName, Class<?> type, MethodHandle handle) {
+			super(propertyName);
+			this.type = type;
+			this.handle = handle;
+		}
+
+		public Object getValue(Object bean) throws InvocationTargetException {
+			checkBean(bean, type, propertyName);
+			try {
+				return handle.invokeExact(bean);
+			} catch (Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+	}
+
+	private static class MapAccessor extends PropertyAccessor {
+		MapAccessor(String propertyName) {
+			super(propertyName);
+		}
+
+		public Object getValue(Object bean) {
+			return ((Map<?, ?>) bean).get(propertyName);
+		}
+	}
+
+	/**
+	 * Each step is resolved for the class of the value it gets, so it also works when the nested values are subclasses
+	 * or their classes change from one bean to another.<br>
+	 * A null value in the middle of the path throws a {@link NestedNullException}, as {@link PropertyUtils} does.
+	 */
+	private static class NestedAccessor extends PropertyAccessor {
+		private final String[] path;
+		//racy on purpose: the entries are immutable and any of them is a valid resolution
+		private final ResolvedStep[] steps;
+
+		NestedAccessor(String propertyName, String[] path) {
+			super(propertyName);
+			this.path = path;
+			this.steps = new ResolvedStep[path.length];
+		}
+
+		public Object getValue(Object bean) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+			Object value = bean;
+			for (int i = 0; i < path.length; i++) {
+				if (value == null) {
+					throw new NestedNullException("Null property value for '" + getPath(i) + "' on bean class '" + bean.getClass() + "'");
+				}
+				ResolvedStep step = steps[i];
+				if (step == null || step.beanClass != value.getClass()) {
+					step = new ResolvedStep(value.getClass(), getAccessor(value.getClass(), path[i]));
+					steps[i] = step;
+				}
+				value = step.accessor.getValue(value);
+			}
+			return value;
+		}
+
+		private String getPath(int length) {
+			StringBuilder sb = new StringBuilder(path[0]);
+			for (int i = 1; i < length; i++)
+				sb.append('.').append(path[i]);
+			return sb.toString();
+		}
+	}
+
+	private static final class ResolvedStep {
+		private final Class<?> beanClass;
+		private final PropertyAccessor accessor;
+
+		ResolvedStep(Class<?> beanClass, PropertyAccessor accessor) {
+			this.beanClass = beanClass;
+			this.accessor = accessor;
+		}
+	}
+
+	private static class BeanUtilsAccessor extends PropertyAccessor {
+		BeanUtilsAccessor(String propertyName) {
+			super(propertyName);
+		}
+
+		public Object getValue(Object bean) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+			return PropertyUtils.getProperty(bean, propertyName);
+		}
+	}
+}
@@ -37,42 +37,99 @@ import ar.com.fdvs.dj.domain.entities.columns.ImageColumn;
 import ar.com.fdvs.dj.domain.entities.columns.PropertyColumn;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 
+/**
+ * Sorts collections of beans before passing them to a report.<br>
+ * Sort keys are read only once per element (decorate-sort-undecorate), the collection is then sorted
+ * by the already read keys, large collections are sorted in parallel (see {@link #setParallelThreshold(int)}).<br>
+ * For data that doesn't fit in memory see {@link #sortToDataSource(Iterator, List, int)}
+ */
 public class SortUtils {
 
+	/**
+	 * Collections with at least this number of elements are sorted in parallel
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 10000;
+
+	private static volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+	/**
+	 * Collections with at least this number of elements are sorted using all the available cores
+	 * ({@link Arrays#parallelSort(Object[], Comparator)}). Use {@link Integer#MAX_VALUE} to always sort in
+	 * the calling thread.
+	 * @param threshold
+	 */
+	public static void setParallelThreshold(int threshold) {
+		if (threshold < 1)
+			throw new IllegalArgumentException("threshold must be positive: " + threshold);
+		parallelThreshold = threshold;
+	}
+
+	public static int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
 	public static <T> List<T> sortCollection(Collection<T> dummyCollection, List columns) {
-        ArrayList<T> l = new ArrayList<T>(dummyCollection);
-        ArrayList<SortInfo> info = new ArrayList<SortInfo>();
-        for (Object object : columns) {
-            if (object instanceof String) {
-                info.add(new SortInfo((String) object, true));
-            } else if (object instanceof ExpressionColumn || object instanceof ImageColumn) {
-                //do nothing with expression columns
-            } else if (object instanceof PropertyColumn) {
-                info.add(new SortInfo(((PropertyColumn) object).getColumnProperty().getProperty(), true));
-            }
-        }
-        MultiPropertyComparator<T> mpc = new MultiPropertyComparator<T>(info);
-        Collections.sort(l, mpc);
-        return l;
+        return sort(dummyCollection, getSortInfo(columns));
     }
 	
 	public static <T> List<T> sortCollection(Collection<T> dummyCollection, String[] properties) {
-		ArrayList<T> l = new ArrayList<T>(dummyCollection);
-		ArrayList<SortInfo> info = new ArrayList<SortInfo>();
-        for (String property : properties) {
-            info.add(new SortInfo(property, true));
-        }
-        MultiPropertyComparator<T> mpc = new MultiPropertyComparator<T>(info);
-		Collections.sort(l, mpc);
-		return l;
+		return sort(dummyCollection, getSortInfo(properties));
 	}
 	
 	public static <T> List<T> sortCollection(Collection<T> dummyCollection, DJCrosstab crosstab) {
-		ArrayList<T> l = new ArrayList<T>(dummyCollection);
+		return sort(dummyCollection, getSortInfo(crosstab));
+	}
+
+	/**
+	 * Same order as {@link #sortCollection(Collection, List)}, but for data that may not fit in memory:
+	 * at most <code>maxRowsInMemory</code> rows are sorted at once, the sorted runs are written to temporary files and
+	 * merged while the report is filled. See {@link ExternalMergeSortDataSource}
+	 * @param rows
+	 * @param columns
+	 * @param maxRowsInMemory
+	 * @return a data source that must be closed after the report is filled
+	 */
+	public static <T> ExternalMergeSortDataSource<T> sortToDataSource(Iterator<? extends T> rows, List columns, int maxRowsInMemory) {
+		return new ExternalMergeSortDataSource<T>(rows, getSortInfo(columns), maxRowsInMemory, null);
+	}
+
+	public static <T> ExternalMergeSortDataSource<T> sortToDataSource(Iterator<? extends T> rows, String[] properties, int maxRowsInMemory) {
+		return new ExternalMergeSortDataSource<T>(rows, getSortInfo(properties), maxRowsInMemory, null);
+	}
+
+	public static <T> ExternalMergeSortDataSource<T> sortToDataSource(Iterator<? extends T> rows, DJCrosstab crosstab, int maxRowsInMemory) {
+		return new ExternalMergeSortDataSource<T>(rows, getSortInfo(crosstab), maxRowsInMemory, null);
+	}
+
+	private static List<SortInfo> getSortInfo(List columns) {
+		ArrayList<SortInfo> info = new ArrayList<SortInfo>();
+		for (Object object : columns) {
+			if (object instanceof String) {
+				info.add(new SortInfo((String) object, true));
+			} else if (object instanceof ExpressionColumn || object instanceof ImageColumn) {
+				//do nothing with expression columns
+			} else if (object instanceof PropertyColumn) {
+				info.add(new SortInfo(((PropertyColumn) object).getColumnProperty().getProperty(), true));
+			}
+		}
+		return info;
+	}
+
+	private static List<SortInfo> getSortInfo(String[] properties) {
+		ArrayList<SortInfo> info = new ArrayList<SortInfo>();
+		for (String property : properties) {
+			info.add(new SortInfo(property, true));
+		}
+		return info;
+	}
+
+	private static List<SortInfo> getSortInfo(DJCrosstab crosstab) {
 		ArrayList<SortInfo> info = new ArrayList<SortInfo>();
 		for (DJCrosstabRow row : crosstab.getRows()) {
 			info.add(new SortInfo(row.getProperty().getProperty(), true));
@@ -80,11 +137,41 @@ public class SortUtils {
 
 		for (DJCrosstabColumn col : crosstab.getColumns()) {
 			info.add(new SortInfo(col.getProperty().getProperty(), true));
+		}
+		return info;
+	}
 
+	/**
+	 * Sorts a copy of the collection. The sort keys of each element are read once, and the
+	 * sort is stable, so the result is the same as sorting with a {@link MultiPropertyComparator}.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> List<T> sort(Collection<T> collection, List<SortInfo> info) {
+		final MultiPropertyComparator<T> mpc = new MultiPropertyComparator<T>(info);
+		final Object[][] decorated = new Object[collection.size()][];
+		int i = 0;
+		for (T element : collection) {
+			final Object[] keys = mpc.getSortKeys(element);
+			final Object[] entry = Arrays.copyOf(keys, keys.length + 1);
+			entry[keys.length] = element;
+			decorated[i++] = entry;
 		}
 
-        MultiPropertyComparator<T> mpc = new MultiPropertyComparator<T>(info);
-		Collections.sort(l, mpc);
+		final int keyCount = info.size();
+		final Comparator<Object[]> comparator = new Comparator<Object[]>() {
+			public int compare(Object[] e1, Object[] e2) {
+				return mpc.compareSortKeys(e1, e2);
+			}
+		};
+		if (decorated.length >= parallelThreshold)
+			Arrays.parallelSort(decorated, comparator);
+		else
+			Arrays.sort(decorated, comparator);
+
+		ArrayList<T> l = new ArrayList<T>(decorated.length);
+		for (Object[] entry : decorated) {
+			l.add((T) entry[keyCount]);
+		}
 		return l;
 	}
 
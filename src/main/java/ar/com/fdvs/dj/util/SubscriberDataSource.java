@@ -0,0 +1,243 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.util;
+
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+
+/**
+ * A bean data source fed by a producer that pushes the rows (i.e. a reactive publisher) while the report is
+ * being filled in another thread. At most <code>prefetch</code> rows are held in memory.<br>
+ * <br>
+ * It follows the reactive streams subscriber contract ({@link #onSubscribe(Subscription)}, {@link #onNext(Object)},
+ * {@link #onError(Throwable)}, {@link #onComplete()}), with its own {@link Subscription} interface because DJ still
+ * runs on Java 8, where java.util.concurrent.Flow does not exist. Adapting a Flow.Publisher takes a few lines:
+ * <pre>
+ * publisher.subscribe(new Flow.Subscriber&lt;Product&gt;() {
+ *     public void onSubscribe(final Flow.Subscription s) {
+ *         ds.onSubscribe(new SubscriberDataSource.Subscription() {
+ *             public void request(long n) { s.request(n); }
+ *             public void cancel() { s.cancel(); }
+ *         });
+ *     }
+ *     public void onNext(Product item) { ds.onNext(item); }
+ *     public void onError(Throwable t) { ds.onError(t); }
+ *     public void onComplete() { ds.onComplete(); }
+ * });
+ * </pre>
+ * Backpressure: with a subscription, rows are requested in batches as the report consumes them and the demand
+ * never exceeds the free space of the buffer. Producers without a subscription are blocked in {@link #onNext(Object)}
+ * while the buffer is full.<br>
+ * <br>
+ * Errors signaled by the producer are thrown by {@link #next()} after the rows received before them. Closing the
+ * data source (or interrupting the filling thread) cancels the subscription.
+ */
+public class SubscriberDataSource<T> implements JRDataSource, Closeable {
+
+	public static final int DEFAULT_PREFETCH = 256;
+
+	private static final Object NULL_ROW = new Object();
+
+	/**
+	 * Same as java.util.concurrent.Flow.Subscription
+	 */
+	public interface Subscription {
+		void request(long n);
+
+		void cancel();
+	}
+
+	/**
+	 * A source of rows that pushes them to a subscriber, like java.util.concurrent.Flow.Publisher
+	 */
+	public interface Publisher<T> {
+		void subscribe(SubscriberDataSource<T> subscriber);
+	}
+
+	private final int prefetch;
+	private final int replenishThreshold;
+
+	private final Object lock = new Object();
+	//guarded by lock
+	private final ArrayDeque<Object> buffer;
+	private Subscription subscription;
+	private int consumedSinceRequest;
+	private boolean completed;
+	private Throwable error;
+	private boolean cancelled;
+
+	private T current;
+
+	public SubscriberDataSource() {
+		this(DEFAULT_PREFETCH);
+	}
+
+	/**
+	 * @param prefetch maximum number of rows buffered
+	 */
+	public SubscriberDataSource(int prefetch) {
+		if (prefetch < 1)
+			throw new IllegalArgumentException("prefetch must be positive: " + prefetch);
+		this.prefetch = prefetch;
+		this.replenishThreshold = Math.max(1, prefetch - (prefetch >> 2));
+		this.buffer = new ArrayDeque<Object>(prefetch);
+	}
+
+	/**
+	 * Creates a data source with the {@link #DEFAULT_PREFETCH} and subscribes it to the publisher
+	 */
+	public static <T> SubscriberDataSource<T> subscribe(Publisher<T> publisher) {
+		SubscriberDataSource<T> dataSource = new SubscriberDataSource<T>();
+		publisher.subscribe(dataSource);
+		return dataSource;
+	}
+
+	public void onSubscribe(Subscription subscription) {
+		boolean accepted;
+		synchronized (lock) {
+			accepted = this.subscription == null && !cancelled;
+			if (accepted)
+				this.subscription = subscription;
+		}
+		if (accepted)
+			subscription.request(prefetch);
+		else
+			subscription.cancel();
+	}
+
+	/**
+	 * Adds a row, blocks while the buffer is full. Rows received after the data source was closed are discarded.
+	 * @param row
+	 */
+	public void onNext(T row) {
+		synchronized (lock) {
+			while (buffer.size() >= prefetch && !cancelled) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			if (cancelled)
+				return;
+			buffer.add(row == null ? NULL_ROW : row);
+			lock.notifyAll();
+		}
+	}
+
+	public void onError(Throwable throwable) {
+		synchronized (lock) {
+			if (completed)
+				return;
+			error = throwable;
+			completed = true;
+			lock.notifyAll();
+		}
+	}
+
+	public void onComplete() {
+		synchronized (lock) {
+			completed = true;
+			lock.notifyAll();
+		}
+	}
+
+	public boolean next() throws JRException {
+		Object row;
+		long toRequest = 0;
+		Subscription currentSubscription;
+		synchronized (lock) {
+			while (buffer.isEmpty() && !completed && !cancelled) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					close();
+					throw new JRException("Interrupted while waiting for rows", e);
+				}
+			}
+			if (buffer.isEmpty()) {
+				current = null;
+				if (error != null && !cancelled)
+					throw new JRException("Error producing the rows: " + error.getMessage(), error);
+				return false;
+			}
+			row = buffer.poll();
+			lock.notifyAll();
+			if (++consumedSinceRequest >= replenishThreshold) {
+				toRequest = consumedSinceRequest;
+				consumedSinceRequest = 0;
+			}
+			currentSubscription = subscription;
+		}
+		if (toRequest > 0 && currentSubscription != null)
+			currentSubscription.request(toRequest);
+
+		//noinspection unchecked
+		current = row == NULL_ROW ? null : (T) row;
+		return true;
+	}
+
+	public Object getFieldValue(JRField jrField) throws JRException {
+		return BeanFields.getFieldValue(current, jrField);
+	}
+
+	/**
+	 * @return rows received and not read yet
+	 */
+	public int getBufferedCount() {
+		synchronized (lock) {
+			return buffer.size();
+		}
+	}
+
+	/**
+	 * Discards the buffered rows and cancels the subscription
+	 */
+	public void close() {
+		Subscription toCancel;
+		synchronized (lock) {
+			if (cancelled)
+				return;
+			cancelled = true;
+			buffer.clear();
+			current = null;
+			toCancel = completed ? null : subscription;
+			lock.notifyAll();
+		}
+		if (toCancel != null)
+			toCancel.cancel();
+	}
+}
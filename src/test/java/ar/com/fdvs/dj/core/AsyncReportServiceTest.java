@@ -0,0 +1,159 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.test.FastReportTest;
+import ar.com.fdvs.dj.test.TestRepositoryProducts;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.JasperPrint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncReportServiceTest extends TestCase {
+
+    private AsyncReportService service;
+
+    protected void setUp() throws Exception {
+        service = new AsyncReportService();
+    }
+
+    protected void tearDown() throws Exception {
+        service.shutdown();
+    }
+
+    public void testGenerateJasperPrint() throws Exception {
+        CompletableFuture<JasperPrint> future = service.generateJasperPrint("tenant", new FastReportTest().buildReport(),
+                new ClassicLayoutManager(), TestRepositoryProducts.getDummyCollection(), null);
+        JasperPrint jp = future.get(60, TimeUnit.SECONDS);
+        Assert.assertFalse(jp.getPages().isEmpty());
+        Assert.assertEquals(1, service.getCompletedCount());
+    }
+
+    public void testTenantLimits() throws Exception {
+        service.setMaxConcurrent(1);
+        service.setMaxConcurrent("big", 2);
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Integer>> futures = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(service.submit("small", waitFor(release, i)));
+            futures.add(service.submit("big", waitFor(release, i)));
+        }
+
+        Assert.assertEquals(1, service.getRunningCount("small"));
+        Assert.assertEquals(2, service.getQueuedCount("small"));
+        Assert.assertEquals(2, service.getRunningCount("big"));
+        Assert.assertEquals(1, service.getQueuedCount("big"));
+        Assert.assertEquals(3, service.getQueuedCount());
+        Assert.assertEquals(Integer.valueOf(2), service.getQueueDepths().get("small"));
+
+        release.countDown();
+        for (int i = 0; i < futures.size(); i++)
+            Assert.assertEquals(Integer.valueOf(i / 2), futures.get(i).get(10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(0, service.getRunningCount());
+        Assert.assertEquals(0, service.getQueuedCount());
+        Assert.assertTrue(service.getQueueDepths().isEmpty());
+    }
+
+    public void testCancelInterruptsRunningReport() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<Object> future = service.submit("tenant", new Callable<Object>() {
+            public Object call() throws Exception {
+                started.countDown();
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+                return null;
+            }
+        });
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        future.cancel(true);
+        Assert.assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        try {
+            future.get();
+            fail("cancelled");
+        } catch (CancellationException e) {
+            //expected
+        }
+        Assert.assertEquals(1, service.getCancelledCount());
+    }
+
+    public void testCancelQueuedReport() throws Exception {
+        service.setMaxConcurrent(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> running = service.submit("tenant", waitFor(release, 1));
+        CompletableFuture<Integer> queued = service.submit("tenant", waitFor(release, 2));
+        Assert.assertEquals(1, service.getQueuedCount("tenant"));
+
+        queued.cancel(true);
+        Assert.assertEquals(0, service.getQueuedCount("tenant"));
+
+        release.countDown();
+        Assert.assertEquals(Integer.valueOf(1), running.get(10, TimeUnit.SECONDS));
+        Assert.assertTrue(queued.isCancelled());
+    }
+
+    public void testFailure() throws Exception {
+        CompletableFuture<Object> future = service.submit(null, new Callable<Object>() {
+            public Object call() throws Exception {
+                throw new IllegalStateException("broken");
+            }
+        });
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("failed");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertEquals(1, service.getFailedCount());
+    }
+
+    private static Callable<Integer> waitFor(final CountDownLatch latch, final int result) {
+        return new Callable<Integer>() {
+            public Integer call() throws Exception {
+                latch.await();
+                return result;
+            }
+        };
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.renderers.Renderable;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BarcodeHelperTest extends TestCase {
+
+    protected void setUp() throws Exception {
+        BarcodeHelper.clearCache();
+    }
+
+    public void testRepeatedCodesAreCached() {
+        BufferedImage image = BarcodeHelper.getBarcodeImage(BarcodeTypes.CODE_128, "12345", true, false);
+        Assert.assertNotNull(image);
+        Assert.assertSame(image, BarcodeHelper.getBarcodeImage(BarcodeTypes.CODE_128, "12345", true, false));
+        Assert.assertNotSame(image, BarcodeHelper.getBarcodeImage(BarcodeTypes.CODE_128, "12345", false, false));
+        Assert.assertNotSame(image, BarcodeHelper.getBarcodeImage(BarcodeTypes.CODE_128, "12346", true, false));
+
+        int cacheSize = BarcodeHelper.getCacheSize();
+        try {
+            BarcodeHelper.setCacheSize(0);
+            Assert.assertNotSame(BarcodeHelper.getBarcodeImage(BarcodeTypes.CODE_128, "12345", true, false),
+                    BarcodeHelper.getBarcodeImage(BarcodeTypes.CODE_128, "12345", true, false));
+        } finally {
+            BarcodeHelper.setCacheSize(cacheSize);
+        }
+    }
+
+    public void testVectorRenderer() {
+        Renderable renderer = BarcodeHelper.getBarcodeRenderer(BarcodeTypes.CODE_128, "12345", true, false, "", 0, 0);
+        Assert.assertTrue(renderer instanceof BarcodeRenderer);
+        Assert.assertNull(BarcodeHelper.getBarcodeRenderer(-1, "12345", true, false, "", 0, 0));
+    }
+
+    public void testConcurrentRendering() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<BufferedImage>> images = new ArrayList<Future<BufferedImage>>();
+            for (int i = 0; i < 40; i++) {
+                final String code = String.valueOf(1000 + i % 10);
+                images.add(executor.submit(new Callable<BufferedImage>() {
+                    public BufferedImage call() {
+                        return BarcodeHelper.getBarcodeImage(BarcodeTypes.CODE_128, code, true, false);
+                    }
+                }));
+            }
+            for (Future<BufferedImage> image : images) {
+                Assert.assertNotNull(image.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
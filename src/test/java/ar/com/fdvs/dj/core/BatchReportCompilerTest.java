@@ -0,0 +1,58 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.test.FastReportTest;
+import ar.com.fdvs.dj.test.TestRepositoryProducts;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.util.List;
+
+public class BatchReportCompilerTest extends TestCase {
+
+    public void testCompileCatalog() throws Exception {
+        BatchReportCompiler batch = new BatchReportCompiler();
+        int reports = 5;
+        for (int i = 0; i < reports; i++) {
+            batch.add(new FastReportTest().buildReport(), new ClassicLayoutManager());
+        }
+
+        List<BatchReportCompiler.Result> results = batch.compile();
+
+        Assert.assertEquals(reports, results.size());
+        for (BatchReportCompiler.Result result : results) {
+            Assert.assertTrue(String.valueOf(result.getError()), result.isSuccessful());
+            Assert.assertFalse(result.prepare().fill(TestRepositoryProducts.getDummyCollection()).getPages().isEmpty());
+        }
+        Assert.assertTrue(batch.getCompilerInvocations() <= reports);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.domain.DJCalculation;
+import ar.com.fdvs.dj.domain.DJValueFormatter;
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.domain.Style;
+import ar.com.fdvs.dj.domain.builders.FastReportBuilder;
+import ar.com.fdvs.dj.domain.builders.SubReportBuilder;
+import ar.com.fdvs.dj.domain.constants.Font;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.JRStyle;
+import net.sf.jasperreports.engine.JasperReport;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class DeterministicNamesTest extends TestCase {
+
+    private DynamicReport buildReport(boolean deterministic) throws Exception {
+        FastReportBuilder drb = new FastReportBuilder();
+        drb.addColumn("State", "state", String.class.getName(), 30)
+                .addColumn("Branch", "branch", String.class.getName(), 30)
+                .addColumn("Quantity", "quantity", Long.class.getName(), 60, true)
+                .addGroups(1)
+                .setTitle("Sales")
+                .setDefaultStyles(new Style(), new Style(), new Style(), new Style())
+                .setDeterministicNames(deterministic);
+
+        drb.addGlobalFooterVariable(drb.getColumn(2), DJCalculation.COUNT, null, new DJValueFormatter() {
+            public String getClassName() {
+                return String.class.getName();
+            }
+
+            public Object evaluate(Object value, Map fields, Map variables, Map parameters) {
+                return value + " items";
+            }
+        });
+        return drb.build();
+    }
+
+    public void testSameReportProducesSameJRXML() throws Exception {
+        String jrxml1 = DynamicJasperHelper.generateJRXML(buildReport(true), new ClassicLayoutManager(), new HashMap(), null);
+        String jrxml2 = DynamicJasperHelper.generateJRXML(buildReport(true), new ClassicLayoutManager(), new HashMap(), null);
+        Assert.assertEquals(jrxml1, jrxml2);
+    }
+
+    public void testRandomNamesByDefault() throws Exception {
+        String jrxml1 = DynamicJasperHelper.generateJRXML(buildReport(false), new ClassicLayoutManager(), new HashMap(), null);
+        String jrxml2 = DynamicJasperHelper.generateJRXML(buildReport(false), new ClassicLayoutManager(), new HashMap(), null);
+        Assert.assertFalse(jrxml1.equals(jrxml2));
+    }
+
+    private Style createStyle(int fontSize) {
+        Style style = new Style();
+        style.setFont(new Font(fontSize, Font._FONT_ARIAL, false));
+        return style;
+    }
+
+    /**
+     * The subreport is laid out before its parent. A style shared by both is named while laying out the
+     * subreport, that name must not be given to another style of the parent
+     */
+    public void testStyleSharedWithSubreport() throws Exception {
+        Style shared = createStyle(17);
+
+        DynamicReport subreport = new FastReportBuilder()
+                .addColumn("Name", "name", String.class.getName(), 100)
+                .addColumn("Amount", "amount", Float.class.getName(), 50)
+                .setTitle("Statistics")
+                .setDefaultStyles(createStyle(8), createStyle(9), createStyle(10), shared)
+                .build();
+
+        FastReportBuilder drb = new FastReportBuilder();
+        drb.addColumn("State", "state", String.class.getName(), 30)
+                .addColumn("Quantity", "quantity", Long.class.getName(), 60, true)
+                .addGroups(1)
+                .setTitle("Sales")
+                .setSubtitle("Sales by state")
+                .setDefaultStyles(createStyle(11), createStyle(12), createStyle(13), shared)
+                .setDeterministicNames(true);
+        drb.addField("statistics", List.class.getName());
+        drb.addSubreportInGroupFooter(1, new SubReportBuilder()
+                .setDynamicReport(subreport, new ClassicLayoutManager())
+                .setDataSource(DJConstants.DATA_SOURCE_ORIGIN_FIELD, DJConstants.DATA_SOURCE_TYPE_COLLECTION, "statistics")
+                .build());
+
+        JasperReport jr = DynamicJasperHelper.generateJasperReport(drb.build(), new ClassicLayoutManager(), new HashMap());
+
+        Assert.assertNotNull(shared.getName());
+        JRStyle sharedStyle = null;
+        for (JRStyle style : jr.getStyles()) {
+            if (shared.getName().equals(style.getName()))
+                sharedStyle = style;
+        }
+        Assert.assertNotNull(sharedStyle);
+        Assert.assertEquals(Float.valueOf(17), sharedStyle.getOwnFontsize());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import ar.com.fdvs.dj.domain.constants.Font;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class FontHelperTest extends TestCase {
+
+    private static final String[] TEXTS = {"Ale Gomez", "Harry Potter 7", "Baseball Stadium", "W"};
+
+    public void testWidths() {
+        for (String text : TEXTS) {
+            Assert.assertEquals(FontHelper.getWidthFor(Font.ARIAL_MEDIUM, text), FontHelper.getWidthFor(Font.ARIAL_MEDIUM, text));
+        }
+        Assert.assertTrue(FontHelper.getWidthFor(Font.ARIAL_BIG_BOLD, "Ale Gomez") > FontHelper.getWidthFor(Font.ARIAL_SMALL, "Ale Gomez"));
+    }
+
+    public void testConcurrentMeasuring() throws Exception {
+        final int[] expected = getWidths(Font.VERDANA_MEDIUM);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<int[]>> results = new ArrayList<Future<int[]>>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(new Callable<int[]>() {
+                    public int[] call() {
+                        FontHelper.getHeightFor(Font.VERDANA_MEDIUM);
+                        return getWidths(Font.VERDANA_MEDIUM);
+                    }
+                }));
+            }
+            for (Future<int[]> result : results) {
+                Assert.assertTrue(Arrays.equals(expected, result.get()));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static int[] getWidths(Font font) {
+        int[] widths = new int[TEXTS.length];
+        for (int i = 0; i < TEXTS.length; i++) {
+            widths[i] = FontHelper.getWidthFor(font, TEXTS[i]);
+        }
+        return widths;
+    }
+}
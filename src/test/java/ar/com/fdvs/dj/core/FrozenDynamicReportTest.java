@@ -0,0 +1,180 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.domain.DJCalculation;
+import ar.com.fdvs.dj.domain.DJGroupLabel;
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.domain.FrozenDynamicReport;
+import ar.com.fdvs.dj.domain.Style;
+import ar.com.fdvs.dj.domain.builders.ColumnBuilder;
+import ar.com.fdvs.dj.domain.builders.DynamicReportBuilder;
+import ar.com.fdvs.dj.domain.builders.GroupBuilder;
+import ar.com.fdvs.dj.domain.constants.LabelPosition;
+import ar.com.fdvs.dj.domain.constants.Transparency;
+import ar.com.fdvs.dj.domain.entities.DJGroup;
+import ar.com.fdvs.dj.domain.entities.DJGroupVariable;
+import ar.com.fdvs.dj.domain.entities.Subreport;
+import ar.com.fdvs.dj.domain.entities.columns.AbstractColumn;
+import ar.com.fdvs.dj.domain.entities.columns.PropertyColumn;
+import ar.com.fdvs.dj.test.FastReportTest;
+import ar.com.fdvs.dj.test.TestRepositoryProducts;
+import ar.com.fdvs.dj.test.subreport.SubReportBuilderTest;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.JRPrintElement;
+import net.sf.jasperreports.engine.JRPrintPage;
+import net.sf.jasperreports.engine.JRPrintText;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class FrozenDynamicReportTest extends TestCase {
+
+    public void testCopiesAreIndependent() throws Exception {
+        DynamicReport dr = new FastReportTest().buildReport();
+        FrozenDynamicReport frozen = dr.freeze();
+
+        DynamicReport copy1 = frozen.newCopy();
+        DynamicReport copy2 = frozen.newCopy();
+        Assert.assertNotSame(copy1, copy2);
+        Assert.assertNotSame(copy1.getOptions(), copy2.getOptions());
+        Assert.assertEquals(dr.getColumns().size(), copy1.getColumns().size());
+        Assert.assertEquals(dr.getTitle(), copy1.getTitle());
+
+        //later changes do not reach the snapshot
+        dr.setTitle("changed");
+        Assert.assertFalse("changed".equals(frozen.newCopy().getTitle()));
+    }
+
+    public void testGenerationDoesNotChangeTheDefinition() throws Exception {
+        SubReportBuilderTest test = new SubReportBuilderTest();
+        DynamicReport dr = test.buildReport();
+        Subreport subreport = findFooterSubreport(dr);
+        Assert.assertNull(subreport.getName());
+
+        FrozenDynamicReport frozen = dr.freeze();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> params = new HashMap<String, Object>(test.getParams());
+        JasperPrint jp = DynamicJasperHelper.generateJasperPrint(frozen, new ClassicLayoutManager(),
+                new JRBeanCollectionDataSource(TestRepositoryProducts.getDummyCollection()), params);
+        Assert.assertFalse(jp.getPages().isEmpty());
+
+        Assert.assertNull(subreport.getName());
+        Assert.assertNull(findFooterSubreport(frozen.newCopy()).getName());
+        Assert.assertNotSame(subreport.getLayoutManager(), findFooterSubreport(frozen.newCopy()).getLayoutManager());
+    }
+
+    /**
+     * Calculations and domain constants are compared by identity, copies must get the same instances
+     */
+    public void testConstantsKeepTheirIdentity() throws Exception {
+        Style oddRowStyle = new Style();
+        oddRowStyle.setTransparency(Transparency.OPAQUE);
+        AbstractColumn state = ColumnBuilder.getNew().setColumnProperty("state", String.class.getName())
+                .setTitle("State").setWidth(85).build();
+        AbstractColumn branch = ColumnBuilder.getNew().setColumnProperty("branch", String.class.getName())
+                .setTitle("Branch").setWidth(85).build();
+        DJGroup group = new GroupBuilder().setCriteriaColumn((PropertyColumn) state)
+                .addFooterVariable(branch, DJCalculation.COUNT, null, null, new DJGroupLabel("Branches", null, LabelPosition.LEFT))
+                .addFooterVariable(state, DJCalculation.DISTINCT_COUNT)
+                .build();
+        DynamicReport dr = new DynamicReportBuilder()
+                .addColumn(state)
+                .addColumn(branch)
+                .addGroup(group)
+                .setPrintBackgroundOnOddRows(true)
+                .setOddRowBackgroundStyle(oddRowStyle)
+                .setUseFullPageWidth(true)
+                .build();
+
+        DynamicReport copy = dr.freeze().newCopy();
+        List<DJGroupVariable> variables = copy.getColumnsGroups().get(0).getFooterVariables();
+        Assert.assertSame(DJCalculation.COUNT, variables.get(0).getOperation());
+        Assert.assertSame(LabelPosition.LEFT, variables.get(0).getLabel().getLabelPosition());
+        Assert.assertSame(DJCalculation.DISTINCT_COUNT, variables.get(1).getOperation());
+        Assert.assertTrue(variables.get(1).getOperation().isCount());
+        Assert.assertSame(Transparency.OPAQUE, copy.getOptions().getOddRowBackgroundStyle().getTransparency());
+
+        List data = TestRepositoryProducts.getDummyCollectionSorted1();
+        JasperPrint original = DynamicJasperHelper.generateJasperPrint(dr, new ClassicLayoutManager(), new JRBeanCollectionDataSource(data), new HashMap<String, Object>());
+        JasperPrint frozen = DynamicJasperHelper.generateJasperPrint(copy, new ClassicLayoutManager(), new JRBeanCollectionDataSource(data), new HashMap<String, Object>());
+        Assert.assertEquals(getTexts(original), getTexts(frozen));
+    }
+
+    private static List<String> getTexts(JasperPrint jp) {
+        List<String> texts = new ArrayList<String>();
+        for (JRPrintPage page : jp.getPages()) {
+            for (JRPrintElement element : page.getElements()) {
+                if (element instanceof JRPrintText)
+                    texts.add(((JRPrintText) element).getFullText());
+            }
+        }
+        return texts;
+    }
+
+    public void testConcurrentGeneration() throws Exception {
+        final FrozenDynamicReport frozen = new FastReportTest().buildReport().freeze();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<JasperPrint>> futures = new ArrayList<Future<JasperPrint>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<JasperPrint>() {
+                    public JasperPrint call() throws Exception {
+                        return DynamicJasperHelper.generateJasperPrint(frozen, new ClassicLayoutManager(),
+                                new JRBeanCollectionDataSource(TestRepositoryProducts.getDummyCollection()), new HashMap<String, Object>());
+                    }
+                }));
+            }
+            int pages = futures.get(0).get().getPages().size();
+            for (Future<JasperPrint> future : futures)
+                Assert.assertEquals(pages, future.get().getPages().size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Subreport findFooterSubreport(DynamicReport dr) {
+        for (DJGroup group : dr.getColumnsGroups()) {
+            if (!group.getFooterSubreports().isEmpty())
+                return group.getFooterSubreports().get(0);
+        }
+        throw new IllegalStateException("no footer subreport");
+    }
+}
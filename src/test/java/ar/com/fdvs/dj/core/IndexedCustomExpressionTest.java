@@ -0,0 +1,135 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.domain.DynamicJasperDesign;
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.domain.IndexedCustomExpression;
+import ar.com.fdvs.dj.domain.IndexedValues;
+import ar.com.fdvs.dj.domain.builders.ColumnBuilder;
+import ar.com.fdvs.dj.domain.builders.FastReportBuilder;
+import ar.com.fdvs.dj.domain.customexpression.AbstractIndexedCustomExpression;
+import ar.com.fdvs.dj.domain.entities.columns.AbstractColumn;
+import ar.com.fdvs.dj.test.TestRepositoryProducts;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRExpression;
+import net.sf.jasperreports.engine.JRExpressionCollector;
+import net.sf.jasperreports.engine.JRPrintElement;
+import net.sf.jasperreports.engine.JRPrintPage;
+import net.sf.jasperreports.engine.JRPrintText;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class IndexedCustomExpressionTest extends TestCase {
+
+    private DynamicReport buildReport() throws Exception {
+        AbstractColumn stateAndBranch = ColumnBuilder.getNew()
+                .setCustomExpression(new AbstractIndexedCustomExpression(new String[]{"state", "branch"}, null, new String[]{"separator"}) {
+                    public Object evaluate(IndexedValues values) {
+                        return values.getField(0) + (String) values.getParameter(0) + values.getField(1);
+                    }
+
+                    public String getClassName() {
+                        return String.class.getName();
+                    }
+                })
+                .setTitle("State and branch").setWidth(100).build();
+
+        FastReportBuilder drb = new FastReportBuilder();
+        drb.addColumn("State", "state", String.class.getName(), 30)
+                .addColumn("Branch", "branch", String.class.getName(), 30)
+                .addColumn(stateAndBranch)
+                .addParameter("separator", String.class.getName())
+                .setUseFullPageWidth(true);
+        return drb.build();
+    }
+
+    public void testIndexedExpressionColumn() throws Exception {
+        DynamicReport dr = buildReport();
+
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("separator", " - ");
+        JasperPrint jp = DynamicJasperHelper.generateJasperPrint(dr, new ClassicLayoutManager(),
+                new JRBeanCollectionDataSource(TestRepositoryProducts.getDummyCollection()), params);
+
+        Set<String> texts = new HashSet<String>();
+        for (JRPrintPage page : jp.getPages()) {
+            for (JRPrintElement element : page.getElements()) {
+                if (element instanceof JRPrintText)
+                    texts.add(((JRPrintText) element).getFullText());
+            }
+        }
+        Assert.assertTrue(texts.contains("Florida - Main Street"));
+        Assert.assertTrue(texts.contains("New York - Shopping Center"));
+    }
+
+    public void testInvokedBySlot() throws Exception {
+        Map<String, Object> params = new HashMap<String, Object>();
+        DynamicJasperDesign jd = DynamicJasperHelper.generateJasperDesign(buildReport(), new ClassicLayoutManager(), params);
+
+        List<?> names = (List<?>) params.get(DJDefaultScriptlet.INDEXED_EXPRESSIONS + "_" + jd.getName());
+        Assert.assertEquals(1, names.size());
+        Assert.assertTrue(params.get(names.get(0)) instanceof IndexedCustomExpression);
+
+        boolean bySlot = false;
+        for (JRExpression expression : JRExpressionCollector.collector(DefaultJasperReportsContext.getInstance(), jd).getExpressions()) {
+            String text = expression.getText();
+            if (text != null && text.contains("evaluateIndexed")) {
+                Assert.assertTrue(text, text.contains(".evaluateIndexed(0, false)"));
+                bySlot = true;
+            }
+        }
+        Assert.assertTrue(bySlot);
+    }
+
+    public void testMapEvaluation() {
+        AbstractIndexedCustomExpression expression = new AbstractIndexedCustomExpression("quantity") {
+            public Object evaluate(IndexedValues values) {
+                return ((Long) values.getField(0)) * 2;
+            }
+
+            public String getClassName() {
+                return Long.class.getName();
+            }
+        };
+        Map<String, Object> fields = new HashMap<String, Object>();
+        fields.put("quantity", 21L);
+        Assert.assertEquals(42L, expression.evaluate(fields, new HashMap(), new HashMap()));
+    }
+}
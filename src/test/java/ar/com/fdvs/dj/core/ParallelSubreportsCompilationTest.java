@@ -0,0 +1,156 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.domain.Style;
+import ar.com.fdvs.dj.domain.builders.ColumnBuilder;
+import ar.com.fdvs.dj.domain.builders.DynamicReportBuilder;
+import ar.com.fdvs.dj.domain.builders.SubReportBuilder;
+import ar.com.fdvs.dj.domain.entities.Subreport;
+import ar.com.fdvs.dj.domain.entities.columns.AbstractColumn;
+import ar.com.fdvs.dj.test.FastReportTest;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.JasperReport;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ParallelSubreportsCompilationTest extends TestCase {
+
+    private ExecutorService executor;
+
+    protected void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    protected void tearDown() throws Exception {
+        DynamicJasperHelper.setSubreportsCompilationExecutor(null);
+        executor.shutdown();
+    }
+
+    private DynamicReport buildReport() throws Exception {
+        return buildReport(null);
+    }
+
+    /**
+     * @param sharedStyle if not null, the detail style of every subreport
+     */
+    private DynamicReport buildReport(Style sharedStyle) throws Exception {
+        DynamicReportBuilder drb = new DynamicReportBuilder();
+        drb.setTitle("Concatenated")
+                .setDeterministicNames(true); //so both builds can be compared
+        for (int i = 0; i < 4; i++) {
+            DynamicReport child = new FastReportTest().buildReport();
+            if (sharedStyle != null)
+                child.getOptions().setDefaultDetailStyle(sharedStyle);
+            Subreport subreport = new SubReportBuilder()
+                    .setDataSource("DataSource" + i)
+                    .setDynamicReport(child, new ClassicLayoutManager())
+                    .build();
+            drb.addConcatenatedReport(subreport);
+        }
+        return drb.build();
+    }
+
+    public void testSameResultAsSequential() throws Exception {
+        Map<String, Object> sequential = new HashMap<String, Object>();
+        DynamicJasperHelper.generateJasperReport(buildReport(), new ClassicLayoutManager(), sequential);
+
+        DynamicJasperHelper.setSubreportsCompilationExecutor(executor);
+        Map<String, Object> parallel = new HashMap<String, Object>();
+        DynamicJasperHelper.generateJasperReport(buildReport(), new ClassicLayoutManager(), parallel);
+
+        Assert.assertEquals(sequential.keySet(), parallel.keySet());
+        int subreports = 0;
+        for (Map.Entry<String, Object> entry : parallel.entrySet()) {
+            if (entry.getValue() instanceof JasperReport && entry.getKey().startsWith("r["))
+                subreports++;
+        }
+        Assert.assertEquals(4, subreports);
+    }
+
+    public void testSharedStylesAreCompiledSequentially() throws Exception {
+        final AtomicInteger tasks = new AtomicInteger();
+        ExecutorService counting = new ThreadPoolExecutor(4, 4, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>()) {
+            protected void beforeExecute(Thread t, Runnable r) {
+                tasks.incrementAndGet();
+            }
+        };
+        DynamicJasperHelper.setSubreportsCompilationExecutor(counting);
+        try {
+            DynamicJasperHelper.generateJasperReport(buildReport(), new ClassicLayoutManager(), new HashMap<String, Object>());
+            Assert.assertEquals(4, tasks.get());
+
+            tasks.set(0);
+            Style shared = new Style();
+            DynamicJasperHelper.generateJasperReport(buildReport(shared), new ClassicLayoutManager(), new HashMap<String, Object>());
+            Assert.assertEquals(0, tasks.get());
+            Assert.assertNotNull(shared.getName());
+        } finally {
+            counting.shutdown();
+        }
+    }
+
+    public void testSharedColumnsAreCompiledSequentially() throws Exception {
+        final AtomicInteger tasks = new AtomicInteger();
+        ExecutorService counting = new ThreadPoolExecutor(4, 4, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>()) {
+            protected void beforeExecute(Thread t, Runnable r) {
+                tasks.incrementAndGet();
+            }
+        };
+        DynamicJasperHelper.setSubreportsCompilationExecutor(counting);
+        try {
+            //different reports, same column instance
+            AbstractColumn shared = ColumnBuilder.getNew().setColumnProperty("state", String.class.getName())
+                    .setTitle("State").setWidth(85).build();
+            DynamicReportBuilder drb = new DynamicReportBuilder();
+            for (int i = 0; i < 2; i++) {
+                DynamicReport child = new DynamicReportBuilder().addColumn(shared).build();
+                drb.addConcatenatedReport(new SubReportBuilder()
+                        .setDataSource("DataSource" + i)
+                        .setDynamicReport(child, new ClassicLayoutManager())
+                        .build());
+            }
+            DynamicJasperHelper.generateJasperReport(drb.build(), new ClassicLayoutManager(), new HashMap<String, Object>());
+            Assert.assertEquals(0, tasks.get());
+        } finally {
+            counting.shutdown();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.domain.CustomExpression;
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.domain.builders.ColumnBuilder;
+import ar.com.fdvs.dj.domain.builders.FastReportBuilder;
+import ar.com.fdvs.dj.test.TestRepositoryProducts;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.JRPrintElement;
+import net.sf.jasperreports.engine.JRPrintPage;
+import net.sf.jasperreports.engine.JRPrintText;
+import net.sf.jasperreports.engine.JasperPrint;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PreparedDynamicReportTest extends TestCase {
+
+    public void testFillManyTimes() throws Exception {
+        FastReportBuilder drb = new FastReportBuilder();
+        drb.addColumn("State", "state", String.class.getName(), 30)
+                .addColumn("Branch", "branch", String.class.getName(), 30)
+                .addColumn("Amount", "amount", Float.class.getName(), 70, true)
+                .addGroups(1)
+                .setTitle("$P{customer}", true)
+                .setUseFullPageWidth(true);
+        DynamicReport dr = drb.build();
+
+        Map<String, Object> template = new HashMap<String, Object>();
+        template.put("customer", "nobody");
+        PreparedDynamicReport prepared = DynamicJasperHelper.prepareReport(dr, new ClassicLayoutManager(), template);
+
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("customer", "customer " + i);
+            JasperPrint jp = prepared.fill(TestRepositoryProducts.getDummyCollection(), params);
+            Assert.assertFalse(jp.getPages().isEmpty());
+        }
+        Assert.assertEquals("nobody", prepared.getParameters().get("customer"));
+    }
+
+    private List<String> getTexts(JasperPrint jp) {
+        List<String> texts = new ArrayList<String>();
+        for (JRPrintPage page : jp.getPages()) {
+            for (JRPrintElement element : page.getElements()) {
+                if (element instanceof JRPrintText)
+                    texts.add(((JRPrintText) element).getFullText());
+            }
+        }
+        return texts;
+    }
+
+    public void testGeneratedParametersAreNotReplaced() throws Exception {
+        FastReportBuilder drb = new FastReportBuilder();
+        drb.addColumn("State", "state", String.class.getName(), 30)
+                .addColumn(ColumnBuilder.getNew().setCustomExpression(new CustomExpression() {
+                    public Object evaluate(Map fields, Map variables, Map parameters) {
+                        return "branch:" + fields.get("branch");
+                    }
+
+                    public String getClassName() {
+                        return String.class.getName();
+                    }
+                }).setTitle("Branch").setWidth(60).build())
+                .setUseFullPageWidth(true);
+        drb.addField("branch", String.class.getName());
+        PreparedDynamicReport prepared = DynamicJasperHelper.prepareReport(drb.build(), new ClassicLayoutManager());
+
+        Map<String, Object> params = new HashMap<String, Object>();
+        for (String name : prepared.getParameters().keySet()) {
+            params.put(name, "replaced");
+        }
+        Map<String, Object> given = new HashMap<String, Object>(params);
+
+        JasperPrint jp = prepared.fill(TestRepositoryProducts.getDummyCollectionSorted1(), params);
+
+        Assert.assertTrue(getTexts(jp).contains("branch:Main Street"));
+        Assert.assertEquals(given, params);
+    }
+}
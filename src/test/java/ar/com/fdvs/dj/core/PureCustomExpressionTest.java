@@ -0,0 +1,198 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.domain.CustomExpression;
+import ar.com.fdvs.dj.domain.DJCalculation;
+import ar.com.fdvs.dj.domain.DynamicJasperDesign;
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.domain.PureCustomExpression;
+import ar.com.fdvs.dj.domain.builders.ColumnBuilder;
+import ar.com.fdvs.dj.domain.builders.FastReportBuilder;
+import ar.com.fdvs.dj.domain.builders.GroupBuilder;
+import ar.com.fdvs.dj.domain.entities.columns.AbstractColumn;
+import ar.com.fdvs.dj.domain.entities.columns.PropertyColumn;
+import ar.com.fdvs.dj.test.TestRepositoryProducts;
+import ar.com.fdvs.dj.util.ExpressionUtils;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.JRPrintElement;
+import net.sf.jasperreports.engine.JRPrintPage;
+import net.sf.jasperreports.engine.JRPrintText;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PureCustomExpressionTest extends TestCase {
+
+    private static class UpperCaseState implements CustomExpression {
+        int evaluations;
+
+        public Object evaluate(Map fields, Map variables, Map parameters) {
+            evaluations++;
+            return ((String) fields.get("state")).toUpperCase();
+        }
+
+        public String getClassName() {
+            return String.class.getName();
+        }
+    }
+
+    private static class PureUpperCaseState extends UpperCaseState implements PureCustomExpression {
+    }
+
+    /**
+     * The expression is the column, the group and the column of a footer variable, JasperReports also evaluates the group
+     * variable twice per record
+     */
+    private List<String> fill(UpperCaseState expression, List data) throws Exception {
+        AbstractColumn state = ColumnBuilder.getNew()
+                .setCustomExpression(expression)
+                .setTitle("State").setWidth(60).build();
+
+        FastReportBuilder drb = new FastReportBuilder();
+        drb.addColumn(state);
+        drb.addColumn("Branch", "branch", String.class.getName(), 60)
+                .addGroups(1)
+                .addFooterVariable(1, 1, DJCalculation.COUNT, null)
+                .addField("state", String.class.getName())
+                .setUseFullPageWidth(true);
+        return getTexts(drb.build(), data);
+    }
+
+    /**
+     * The expression is the column and the value of a variable in the footer of the group, where it reads the
+     * fields of the last record of the group
+     */
+    private List<String> fillWithFooter(UpperCaseState expression, List data) throws Exception {
+        AbstractColumn state = ColumnBuilder.getNew()
+                .setCustomExpression(expression)
+                .setTitle("State").setWidth(60).build();
+        AbstractColumn branch = ColumnBuilder.getNew()
+                .setColumnProperty("branch", String.class.getName())
+                .setTitle("Branch").setWidth(60).build();
+
+        FastReportBuilder drb = new FastReportBuilder();
+        drb.addColumn(state);
+        drb.addColumn(branch);
+        drb.addField("state", String.class.getName());
+        drb.addGroup(new GroupBuilder()
+                .setCriteriaColumn((PropertyColumn) branch)
+                .addFooterVariable(state, expression)
+                .build());
+        drb.setUseFullPageWidth(true);
+        return getTexts(drb.build(), data);
+    }
+
+    private List<String> getTexts(DynamicReport dr, List data) throws Exception {
+        JasperPrint jp = DynamicJasperHelper.generateJasperPrint(dr, new ClassicLayoutManager(), new JRBeanCollectionDataSource(data), new HashMap<String, Object>());
+
+        List<String> texts = new ArrayList<String>();
+        for (JRPrintPage page : jp.getPages()) {
+            for (JRPrintElement element : page.getElements()) {
+                if (element instanceof JRPrintText)
+                    texts.add(((JRPrintText) element).getFullText());
+            }
+        }
+        return texts;
+    }
+
+    public void testEvaluatedOncePerRecord() throws Exception {
+        List data = TestRepositoryProducts.getDummyCollectionSorted1();
+
+        UpperCaseState plain = new UpperCaseState();
+        List<String> plainTexts = fill(plain, data);
+
+        PureUpperCaseState pure = new PureUpperCaseState();
+        List<String> pureTexts = fill(pure, data);
+
+        //same report, fewer evaluations
+        Assert.assertEquals(plainTexts, pureTexts);
+        Assert.assertTrue(pureTexts.contains("FLORIDA"));
+        Assert.assertTrue(pure.evaluations <= data.size());
+        Assert.assertTrue(plain.evaluations > pure.evaluations);
+    }
+
+    public void testGroupFooter() throws Exception {
+        List data = TestRepositoryProducts.getDummyCollectionSorted1();
+
+        UpperCaseState plain = new UpperCaseState();
+        List<String> plainTexts = fillWithFooter(plain, data);
+
+        PureUpperCaseState pure = new PureUpperCaseState();
+        List<String> pureTexts = fillWithFooter(pure, data);
+
+        //the footer shows the state of the last record of each group, not the one memoized for the next record
+        Assert.assertEquals(plainTexts, pureTexts);
+    }
+
+    public void testOnlySharedExpressionsAreMemoized() throws Exception {
+        PureUpperCaseState shared = new PureUpperCaseState();
+        AbstractColumn grouped = ColumnBuilder.getNew()
+                .setCustomExpression(shared)
+                .setTitle("State").setWidth(60).build();
+        FastReportBuilder drb = new FastReportBuilder();
+        drb.addColumn(grouped);
+        drb.addColumn("Branch", "branch", String.class.getName(), 60)
+                .addGroups(1)
+                .addField("state", String.class.getName());
+        Assert.assertFalse(getSharedPureExpressions(drb.build()).isEmpty());
+
+        PureUpperCaseState single = new PureUpperCaseState();
+        AbstractColumn column = ColumnBuilder.getNew()
+                .setCustomExpression(single)
+                .setTitle("State").setWidth(60).build();
+        drb = new FastReportBuilder();
+        drb.addColumn(column);
+        drb.addColumn("Branch", "branch", String.class.getName(), 60)
+                .addField("state", String.class.getName());
+        Assert.assertTrue(getSharedPureExpressions(drb.build()).isEmpty());
+    }
+
+    private Collection getSharedPureExpressions(DynamicReport dr) throws Exception {
+        Map generatedParams = new HashMap();
+        DynamicJasperDesign jd = DynamicJasperHelper.generateJasperDesign(dr, new ClassicLayoutManager(), generatedParams);
+        return (Collection) generatedParams.get(DJDefaultScriptlet.SHARED_PURE_EXPRESSIONS + "_" + jd.getName());
+    }
+
+    public void testInvocationText() {
+        String plain = ExpressionUtils.createCustomExpressionInvocationText(new UpperCaseState(), "state", false);
+        String pure = ExpressionUtils.createCustomExpressionInvocationText(new PureUpperCaseState(), "state", true);
+        Assert.assertFalse(plain.contains("evaluateMemoized"));
+        Assert.assertTrue(pure.contains(".evaluateMemoized(("));
+        Assert.assertTrue(pure.endsWith("$V{REPORT_COUNT}, true)"));
+    }
+}
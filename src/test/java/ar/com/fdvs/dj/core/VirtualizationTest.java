@@ -0,0 +1,135 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core;
+
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.domain.DJVirtualization;
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.domain.builders.FastReportBuilder;
+import ar.com.fdvs.dj.test.TestRepositoryProducts;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class VirtualizationTest extends TestCase {
+
+    private DynamicReport buildReport(DJVirtualization virtualization) {
+        FastReportBuilder drb = new FastReportBuilder();
+        drb.addColumn("State", "state", String.class.getName(), 30)
+                .addColumn("Branch", "branch", String.class.getName(), 30)
+                .addColumn("Item", "item", String.class.getName(), 50)
+                .addColumn("Amount", "amount", Float.class.getName(), 60)
+                .setUseFullPageWidth(true)
+                .setVirtualization(virtualization);
+        return drb.build();
+    }
+
+    private Collection<Object> manyRows() {
+        List<Object> rows = new ArrayList<Object>();
+        for (int i = 0; i < 20; i++) {
+            rows.addAll(TestRepositoryProducts.getDummyCollection());
+        }
+        return rows;
+    }
+
+    private void assertFillsWith(DJVirtualization.Type type) throws Exception {
+        //a tiny budget forces the virtualizer to keep a single page in memory
+        DJVirtualization virtualization = new DJVirtualization(type, 1);
+        DynamicReport dr = buildReport(virtualization);
+        Assert.assertEquals(1, virtualization.getPagesInMemory(dr));
+
+        Map<String, Object> params = new HashMap<String, Object>();
+        JasperPrint jp = DynamicJasperHelper.generateJasperPrint(dr, new ClassicLayoutManager(), new JRBeanCollectionDataSource(manyRows()), params);
+
+        Assert.assertTrue(jp.getPages().size() > 1);
+        for (int i = 0; i < jp.getPages().size(); i++) {
+            Assert.assertFalse(jp.getPages().get(i).getElements().isEmpty());
+        }
+        Assert.assertNull(params.get(JRParameter.REPORT_VIRTUALIZER));
+    }
+
+    public void testSwapFileVirtualization() throws Exception {
+        assertFillsWith(DJVirtualization.Type.SWAP_FILE);
+    }
+
+    public void testFileVirtualization() throws Exception {
+        assertFillsWith(DJVirtualization.Type.FILE);
+    }
+
+    public void testGzipVirtualization() throws Exception {
+        assertFillsWith(DJVirtualization.Type.GZIP);
+    }
+
+    public void testOffHeapVirtualization() throws Exception {
+        assertFillsWith(DJVirtualization.Type.OFF_HEAP);
+    }
+
+    public void testSwapFileIsDeletedOnCleanup() throws Exception {
+        File directory = Files.createTempDirectory("dj-swap").toFile();
+        try {
+            DJVirtualization virtualization = new DJVirtualization(DJVirtualization.Type.SWAP_FILE, 1);
+            virtualization.setDirectory(directory.getAbsolutePath());
+
+            //no parameters map given, the virtualizer is still installed
+            JasperPrint jp = DynamicJasperHelper.generateJasperPrint(buildReport(virtualization), new ClassicLayoutManager(), new JRBeanCollectionDataSource(manyRows()), null);
+            Assert.assertTrue(jp.getPages().size() > 1);
+            Assert.assertEquals(1, directory.list().length);
+
+            ReportVirtualizers.cleanup(jp);
+            Assert.assertEquals(0, directory.list().length);
+        } finally {
+            directory.delete();
+        }
+    }
+
+    public void testPagesInMemoryFollowsBudget() {
+        DJVirtualization small = new DJVirtualization(DJVirtualization.Type.SWAP_FILE, 64 * 1024);
+        DJVirtualization big = new DJVirtualization(DJVirtualization.Type.SWAP_FILE, 64 * 1024 * 1024);
+        DynamicReport dr = buildReport(small);
+        Assert.assertTrue(small.getPagesInMemory(dr) < big.getPagesInMemory(dr));
+    }
+
+    public void testPreparedReportUsesVirtualization() throws Exception {
+        DynamicReport dr = buildReport(new DJVirtualization(DJVirtualization.Type.OFF_HEAP, 1));
+        PreparedDynamicReport prepared = DynamicJasperHelper.prepareReport(dr, new ClassicLayoutManager(), new HashMap<String, Object>());
+        JasperPrint jp = prepared.fill(new JRBeanCollectionDataSource(manyRows()));
+        Assert.assertTrue(jp.getPages().size() > 1);
+    }
+}
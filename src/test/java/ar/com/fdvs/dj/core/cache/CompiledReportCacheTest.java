@@ -0,0 +1,278 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.cache;
+
+import ar.com.fdvs.dj.core.DynamicJasperHelper;
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.domain.CustomExpression;
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.domain.builders.ColumnBuilder;
+import ar.com.fdvs.dj.domain.builders.FastReportBuilder;
+import ar.com.fdvs.dj.test.TestRepositoryProducts;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.JRPrintElement;
+import net.sf.jasperreports.engine.JRPrintPage;
+import net.sf.jasperreports.engine.JRPrintText;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CompiledReportCacheTest extends TestCase {
+
+    private String separator = ":";
+
+    protected void setUp() throws Exception {
+        DynamicJasperHelper.setCompiledReportCache(new LRUCompiledReportCache(2));
+    }
+
+    protected void tearDown() throws Exception {
+        DynamicJasperHelper.setCompiledReportCache(null);
+    }
+
+    private DynamicReport buildReport(String title) throws Exception {
+        FastReportBuilder drb = new FastReportBuilder();
+        drb.addColumn("State", "state", String.class.getName(), 30)
+                .addColumn("Branch", "branch", String.class.getName(), 30)
+                .addColumn("Amount", "amount", Float.class.getName(), 70, true)
+                .addGroups(1)
+                .setTitle(title)
+                .setUseFullPageWidth(true);
+        return drb.build();
+    }
+
+    public void testSameStructureIsCompiledOnce() throws Exception {
+        CompiledReportCache cache = DynamicJasperHelper.getCompiledReportCache();
+
+        Map<String, Object> params1 = new HashMap<String, Object>();
+        JasperReport jr1 = DynamicJasperHelper.generateJasperReport(buildReport("Sales"), new ClassicLayoutManager(), params1);
+
+        Map<String, Object> params2 = new HashMap<String, Object>();
+        JasperReport jr2 = DynamicJasperHelper.generateJasperReport(buildReport("Sales"), new ClassicLayoutManager(), params2);
+
+        Assert.assertSame(jr1, jr2);
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(params1.keySet(), params2.keySet());
+    }
+
+    public void testReusedReportInstanceHitsTheCache() throws Exception {
+        CompiledReportCache cache = DynamicJasperHelper.getCompiledReportCache();
+        DynamicReport dr = buildReport("Sales");
+
+        JasperReport jr1 = DynamicJasperHelper.generateJasperReport(dr, new ClassicLayoutManager(), new HashMap<String, Object>());
+        JasperReport jr2 = DynamicJasperHelper.generateJasperReport(dr, new ClassicLayoutManager(), new HashMap<String, Object>());
+
+        Assert.assertSame(jr1, jr2);
+        Assert.assertEquals(1, cache.getHitCount());
+    }
+
+    public void testDifferentStructureIsCompiledAgain() throws Exception {
+        CompiledReportCache cache = DynamicJasperHelper.getCompiledReportCache();
+
+        JasperReport jr1 = DynamicJasperHelper.generateJasperReport(buildReport("Sales"), new ClassicLayoutManager(), new HashMap<String, Object>());
+        JasperReport jr2 = DynamicJasperHelper.generateJasperReport(buildReport("Purchases"), new ClassicLayoutManager(), new HashMap<String, Object>());
+
+        Assert.assertNotSame(jr1, jr2);
+        Assert.assertEquals(0, cache.getHitCount());
+    }
+
+    /**
+     * The expression is an anonymous class of a static method, what it returns depends on the captured value only
+     */
+    private static DynamicReport buildReportWithPrefix(final String prefix) throws Exception {
+        FastReportBuilder drb = new FastReportBuilder();
+        drb.addColumn("State", "state", String.class.getName(), 30);
+        drb.addColumn(ColumnBuilder.getNew()
+                .setCustomExpression(new CustomExpression() {
+                    public Object evaluate(Map fields, Map variables, Map parameters) {
+                        return prefix + fields.get("branch");
+                    }
+
+                    public String getClassName() {
+                        return String.class.getName();
+                    }
+                })
+                .setTitle("Branch").setWidth(60).build());
+        drb.addField("branch", String.class.getName());
+        drb.setUseFullPageWidth(true);
+        return drb.build();
+    }
+
+    private static List<String> getTexts(JasperPrint jp) {
+        List<String> texts = new ArrayList<String>();
+        for (JRPrintPage page : jp.getPages()) {
+            for (JRPrintElement element : page.getElements()) {
+                if (element instanceof JRPrintText)
+                    texts.add(((JRPrintText) element).getFullText());
+            }
+        }
+        return texts;
+    }
+
+    public void testCapturedValuesAreCompared() throws Exception {
+        CompiledReportCache cache = DynamicJasperHelper.getCompiledReportCache();
+        String first = DynamicReportFingerprint.compute(buildReportWithPrefix("first:"), new ClassicLayoutManager(), new HashMap<String, Object>(), "r");
+        String second = DynamicReportFingerprint.compute(buildReportWithPrefix("second:"), new ClassicLayoutManager(), new HashMap<String, Object>(), "r");
+        Assert.assertFalse(first.equals(second));
+        Assert.assertEquals(first, DynamicReportFingerprint.compute(buildReportWithPrefix("first:"), new ClassicLayoutManager(), new HashMap<String, Object>(), "r"));
+
+        List data = TestRepositoryProducts.getDummyCollectionSorted1();
+        List<String> firstTexts = getTexts(DynamicJasperHelper.generateJasperPrint(buildReportWithPrefix("first:"), new ClassicLayoutManager(), new JRBeanCollectionDataSource(data), new HashMap<String, Object>()));
+        List<String> secondTexts = getTexts(DynamicJasperHelper.generateJasperPrint(buildReportWithPrefix("second:"), new ClassicLayoutManager(), new JRBeanCollectionDataSource(data), new HashMap<String, Object>()));
+
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertTrue(firstTexts.contains("first:Main Street"));
+        Assert.assertTrue(secondTexts.contains("second:Main Street"));
+        Assert.assertFalse(secondTexts.contains("first:Main Street"));
+    }
+
+    /**
+     * The expression reads a field of the test, what it returns depends on its enclosing instance
+     */
+    private DynamicReport buildReportWithSeparator() throws Exception {
+        FastReportBuilder drb = new FastReportBuilder();
+        drb.addColumn(ColumnBuilder.getNew()
+                .setCustomExpression(new CustomExpression() {
+                    public Object evaluate(Map fields, Map variables, Map parameters) {
+                        return fields.get("state") + separator + fields.get("branch");
+                    }
+
+                    public String getClassName() {
+                        return String.class.getName();
+                    }
+                })
+                .setTitle("Branch").setWidth(60).build());
+        drb.addField("state", String.class.getName());
+        drb.addField("branch", String.class.getName());
+        drb.setUseFullPageWidth(true);
+        return drb.build();
+    }
+
+    public void testEnclosingInstancesAreNotCached() throws Exception {
+        CompiledReportCache cache = DynamicJasperHelper.getCompiledReportCache();
+        Assert.assertNull(DynamicReportFingerprint.compute(buildReportWithSeparator(), new ClassicLayoutManager(), new HashMap<String, Object>(), "r"));
+
+        List data = TestRepositoryProducts.getDummyCollectionSorted1();
+        List<String> firstTexts = getTexts(DynamicJasperHelper.generateJasperPrint(buildReportWithSeparator(), new ClassicLayoutManager(), new JRBeanCollectionDataSource(data), new HashMap<String, Object>()));
+        separator = "/";
+        List<String> secondTexts = getTexts(DynamicJasperHelper.generateJasperPrint(buildReportWithSeparator(), new ClassicLayoutManager(), new JRBeanCollectionDataSource(data), new HashMap<String, Object>()));
+
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertEquals(0, cache.size());
+        Assert.assertTrue(firstTexts.contains("Florida:Main Street"));
+        Assert.assertTrue(secondTexts.contains("Florida/Main Street"));
+    }
+
+    public void testFillParametersAreCopied() throws Exception {
+        Map<String, Object> params = new HashMap<String, Object>();
+        List data = TestRepositoryProducts.getDummyCollectionSorted1();
+        DynamicJasperHelper.generateJasperPrint(buildReport("Sales"), new ClassicLayoutManager(), new JRBeanCollectionDataSource(data), params);
+
+        Assert.assertTrue(params.isEmpty());
+    }
+
+    public void testLeastRecentlyUsedIsEvicted() throws Exception {
+        LRUCompiledReportCache cache = new LRUCompiledReportCache(2);
+        cache.put("a", new CompiledReport(null, new HashMap<String, Object>()));
+        cache.put("b", new CompiledReport(null, new HashMap<String, Object>()));
+        cache.get("a");
+        cache.put("c", new CompiledReport(null, new HashMap<String, Object>()));
+
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(1, cache.getEvictionCount());
+    }
+
+    public void testCompiledReportsSurviveRestart() throws Exception {
+        File directory = new File("target/compiled-reports-test");
+        FileCompiledReportCache store = new FileCompiledReportCache(directory);
+        store.clear();
+        DynamicJasperHelper.setCompiledReportCache(store);
+
+        Map<String, Object> params1 = new HashMap<String, Object>();
+        JasperReport jr1 = DynamicJasperHelper.generateJasperReport(buildReport("Sales"), new ClassicLayoutManager(), params1);
+        Assert.assertTrue(store.size() > 0);
+
+        //a new instance over the same directory plays the role of the restarted application
+        FileCompiledReportCache restarted = new FileCompiledReportCache(directory);
+        Assert.assertEquals(store.size(), restarted.size());
+        Assert.assertEquals(store.size(), restarted.warmUp().get().intValue());
+        DynamicJasperHelper.setCompiledReportCache(restarted);
+
+        Map<String, Object> params2 = new HashMap<String, Object>();
+        JasperReport jr2 = DynamicJasperHelper.generateJasperReport(buildReport("Sales"), new ClassicLayoutManager(), params2);
+
+        Assert.assertEquals(1, restarted.getHitCount());
+        Assert.assertEquals(jr1.getName(), jr2.getName());
+        Assert.assertEquals(params1.keySet(), params2.keySet());
+        restarted.clear();
+    }
+
+    public void testStoredReportsOfAnotherVersionAreDiscarded() throws Exception {
+        File directory = new File("target/compiled-reports-test");
+        FileCompiledReportCache store = new FileCompiledReportCache(directory, 10, 10, "1.0");
+        store.clear();
+        DynamicJasperHelper.setCompiledReportCache(store);
+        DynamicJasperHelper.generateJasperReport(buildReport("Sales"), new ClassicLayoutManager(), new HashMap<String, Object>());
+        Assert.assertEquals(1, store.size());
+
+        FileCompiledReportCache upgraded = new FileCompiledReportCache(directory, 10, 10, "1.1");
+        Assert.assertEquals(0, upgraded.size());
+        Assert.assertEquals(0, directory.listFiles().length);
+
+        FileCompiledReportCache downgraded = new FileCompiledReportCache(directory, 10, 10, "1.0");
+        Assert.assertEquals(0, downgraded.size());
+    }
+
+    public void testStoredReportsAreBounded() throws Exception {
+        File directory = new File("target/compiled-reports-test");
+        FileCompiledReportCache store = new FileCompiledReportCache(directory, 10, 1, null);
+        store.clear();
+        DynamicJasperHelper.setCompiledReportCache(store);
+        DynamicJasperHelper.generateJasperReport(buildReport("Sales"), new ClassicLayoutManager(), new HashMap<String, Object>());
+        DynamicJasperHelper.generateJasperReport(buildReport("Purchases"), new ClassicLayoutManager(), new HashMap<String, Object>());
+        Assert.assertEquals(1, store.size());
+
+        FileCompiledReportCache restarted = new FileCompiledReportCache(directory, 10, 1, null);
+        Assert.assertEquals(1, restarted.size());
+        DynamicJasperHelper.setCompiledReportCache(restarted);
+        DynamicJasperHelper.generateJasperReport(buildReport("Purchases"), new ClassicLayoutManager(), new HashMap<String, Object>());
+        Assert.assertEquals(1, restarted.getHitCount());
+        DynamicJasperHelper.generateJasperReport(buildReport("Sales"), new ClassicLayoutManager(), new HashMap<String, Object>());
+        Assert.assertEquals(1, restarted.getHitCount());
+        restarted.clear();
+    }
+}
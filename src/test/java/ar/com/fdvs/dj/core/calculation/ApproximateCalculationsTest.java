@@ -0,0 +1,201 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.calculation;
+
+import ar.com.fdvs.dj.domain.DJCalculation;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.fill.AbstractValueProvider;
+import net.sf.jasperreports.engine.fill.JRCalculable;
+import net.sf.jasperreports.engine.fill.JRIncrementer;
+import net.sf.jasperreports.engine.fill.JRIncrementerFactory;
+import net.sf.jasperreports.engine.type.CalculationEnum;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class ApproximateCalculationsTest extends TestCase {
+
+    /**
+     * Holds the value of a variable the way the fill does
+     */
+    private static class Variable implements InvocationHandler {
+        private final JRIncrementer incrementer;
+        private final JRCalculable calculable;
+        private Object value;
+        private boolean initialized = true;
+
+        Variable(DJCalculation calculation) throws Exception {
+            JRIncrementerFactory factory = calculation.getIncrementerFactoryClass().newInstance();
+            this.incrementer = factory.getIncrementer(calculation.getValue());
+            this.calculable = (JRCalculable) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{JRCalculable.class}, this);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if ("isInitialized".equals(method.getName()))
+                return initialized;
+            if ("getIncrementedValue".equals(method.getName()) || "getValue".equals(method.getName()))
+                return value;
+            if ("setInitialized".equals(method.getName()))
+                initialized = (Boolean) args[0];
+            return null;
+        }
+
+        Object add(Object expressionValue) throws Exception {
+            value = incrementer.increment(calculable, expressionValue, AbstractValueProvider.getCurrentValueProvider());
+            initialized = false;
+            return value;
+        }
+
+        Object estimate(Object expressionValue) throws Exception {
+            return incrementer.increment(calculable, expressionValue, AbstractValueProvider.getEstimatedValueProvider());
+        }
+
+        void reset(Object initialValue) {
+            value = initialValue;
+            initialized = true;
+        }
+    }
+
+    public void testHyperLogLogAccuracy() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        Assert.assertEquals(0, sketch.estimate());
+        int distinct = 500000;
+        for (int i = 0; i < distinct; i++) {
+            sketch.offer(Long.valueOf(i));
+            sketch.offer("value " + (i % 1000));
+        }
+        double error = Math.abs(sketch.estimate() - (distinct + 1000)) / (double) (distinct + 1000);
+        Assert.assertTrue("error " + error, error < 3 * HyperLogLog.getRelativeError(12));
+
+        //duplicates don't change the sketch
+        long estimation = sketch.estimate();
+        for (int i = 0; i < 1000; i++)
+            Assert.assertFalse(sketch.offer(Long.valueOf(i)));
+        Assert.assertEquals(estimation, sketch.estimate());
+
+        sketch.clear();
+        for (int i = 0; i < 100; i++)
+            sketch.offer(Integer.valueOf(i));
+        //linear counting is almost exact with few values
+        Assert.assertTrue(Math.abs(sketch.estimate() - 100) <= 2);
+        Assert.assertEquals(sketch.estimate(), sketch.estimateWith(Integer.valueOf(5)));
+        long with = sketch.estimateWith("new value");
+        sketch.offer("new value");
+        Assert.assertEquals(sketch.estimate(), with);
+    }
+
+    public void testPrecisionForError() {
+        Assert.assertEquals(12, HyperLogLog.getPrecision(0.0163));
+        Assert.assertEquals(HyperLogLogIncrementerFactory.Precision12.class, HyperLogLogIncrementerFactory.getFactoryClass(0.0163));
+        Assert.assertEquals(HyperLogLogIncrementerFactory.Precision14.class, HyperLogLogIncrementerFactory.getFactoryClass(0.01));
+        Assert.assertEquals(HyperLogLogIncrementerFactory.Precision8.class, HyperLogLogIncrementerFactory.getFactoryClass(0.5));
+        Assert.assertEquals(HyperLogLogIncrementerFactory.Precision16.class, HyperLogLogIncrementerFactory.getFactoryClass(0.0041));
+        try {
+            HyperLogLogIncrementerFactory.getFactoryClass(0.0001);
+            Assert.fail("error beyond the largest sketch accepted");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+
+    public void testTDigestQuantiles() {
+        List<Double> values = new ArrayList<Double>();
+        for (int i = 0; i <= 100000; i++)
+            values.add((double) i);
+        Collections.shuffle(values, new Random(42));
+
+        TDigest digest = new TDigest();
+        for (Double value : values)
+            digest.add(value);
+
+        Assert.assertEquals(100001, digest.getCount());
+        Assert.assertTrue(digest.getCentroidCount() <= 5 * TDigest.DEFAULT_COMPRESSION);
+        Assert.assertEquals(0d, digest.quantile(0), 0);
+        Assert.assertEquals(100000d, digest.quantile(1), 0);
+        Assert.assertEquals(50000d, digest.quantile(0.5), 500);
+        Assert.assertEquals(90000d, digest.quantile(0.9), 300);
+        Assert.assertEquals(99000d, digest.quantile(0.99), 50);
+        Assert.assertEquals(1000d, digest.quantile(0.01), 50);
+
+        digest.clear();
+        Assert.assertTrue(Double.isNaN(digest.quantile(0.5)));
+        for (int i = 1; i <= 5; i++)
+            digest.add(i);
+        Assert.assertEquals(3d, digest.quantile(0.5), 0);
+    }
+
+    public void testDistinctCountIncrementer() throws Exception {
+        Variable variable = new Variable(DJCalculation.APPROXIMATE_DISTINCT_COUNT);
+        variable.reset(Long.valueOf(0));
+        Assert.assertEquals(Long.valueOf(0), variable.add(null));
+        for (int i = 0; i < 10; i++) {
+            variable.add("a");
+            variable.add("b");
+        }
+        Assert.assertEquals(Long.valueOf(2), variable.value);
+        Assert.assertEquals(Long.valueOf(3), variable.estimate("c"));
+        Assert.assertEquals(Long.valueOf(2), variable.add("a"));
+
+        //group break
+        variable.reset(Long.valueOf(0));
+        Assert.assertEquals(Long.valueOf(1), variable.add("c"));
+    }
+
+    public void testQuantileIncrementer() throws Exception {
+        Variable variable = new Variable(DJCalculation.MEDIAN);
+        variable.reset(null);
+        Assert.assertNull(variable.add(null));
+        for (long i = 1; i <= 5; i++)
+            variable.add(Long.valueOf(i));
+        Assert.assertEquals(Long.valueOf(3), variable.value);
+        Assert.assertEquals(Long.valueOf(3), variable.add(null));
+
+        variable.reset(null);
+        variable.add(Double.valueOf(10));
+        variable.add(Double.valueOf(20));
+        Assert.assertEquals(Double.valueOf(15), variable.value);
+    }
+
+    public void testCalculations() {
+        Assert.assertTrue(DJCalculation.APPROXIMATE_DISTINCT_COUNT.isCount());
+        Assert.assertTrue(DJCalculation.DISTINCT_COUNT.isCount());
+        Assert.assertFalse(DJCalculation.PERCENTILE_99.isCount());
+        Assert.assertNull(DJCalculation.SUM.getIncrementerFactoryClass());
+        Assert.assertEquals(QuantileIncrementerFactory.Percentile90.class, DJCalculation.PERCENTILE_90.getIncrementerFactoryClass());
+        Assert.assertEquals(HyperLogLogIncrementerFactory.Precision16.class, DJCalculation.approximateDistinctCount(0.005).getIncrementerFactoryClass());
+        Assert.assertEquals(CalculationEnum.NOTHING.getValue(), DJCalculation.MEDIAN.getValue());
+    }
+}
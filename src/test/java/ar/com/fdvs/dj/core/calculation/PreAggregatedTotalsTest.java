@@ -0,0 +1,358 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+package ar.com.fdvs.dj.core.calculation;
+
+import ar.com.fdvs.dj.core.DJConstants;
+import ar.com.fdvs.dj.core.DynamicJasperHelper;
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.domain.DJCalculation;
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.domain.builders.ColumnBuilder;
+import ar.com.fdvs.dj.domain.builders.DJBuilderException;
+import ar.com.fdvs.dj.domain.builders.DynamicReportBuilder;
+import ar.com.fdvs.dj.domain.builders.FastReportBuilder;
+import ar.com.fdvs.dj.domain.builders.GroupBuilder;
+import ar.com.fdvs.dj.domain.entities.DJGroup;
+import ar.com.fdvs.dj.domain.entities.columns.AbstractColumn;
+import ar.com.fdvs.dj.domain.entities.columns.PropertyColumn;
+import ar.com.fdvs.dj.test.TestRepositoryProducts;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JRPrintElement;
+import net.sf.jasperreports.engine.JRPrintPage;
+import net.sf.jasperreports.engine.JRPrintText;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+import net.sf.jasperreports.engine.data.JRMapCollectionDataSource;
+import net.sf.jasperreports.engine.design.JRDesignField;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PreAggregatedTotalsTest extends TestCase {
+
+    public void testGroupTotals() {
+        GroupTotals totals = new GroupTotals();
+        for (int i = 0; i < 1000; i++)
+            totals.add(new Object[]{"state" + (i % 10), Integer.valueOf(i % 100)}, 1.5d);
+        totals.add(new Object[]{null, null}, 2d);
+
+        Assert.assertEquals(101, totals.size());
+        Assert.assertEquals(15d, totals.getTotal(new Object[]{"state3", Integer.valueOf(3)}), 0d);
+        Assert.assertEquals(2d, totals.getTotal(new Object[]{null, null}), 0d);
+        Assert.assertTrue(Double.isNaN(totals.getTotal(new Object[]{"state3", Integer.valueOf(4)})));
+    }
+
+    public void testTotalsInValueClass() {
+        GroupTotals decimals = new GroupTotals(BigDecimal.class);
+        GroupTotals doubles = new GroupTotals(Double.class);
+        for (int i = 0; i < 10; i++) {
+            decimals.add(new Object[]{"a"}, new BigDecimal("0.1"));
+            doubles.add(new Object[]{"a"}, Double.valueOf(0.1d));
+        }
+        Assert.assertEquals(0, new BigDecimal("1.0").compareTo((BigDecimal) decimals.getSum(new Object[]{"a"})));
+        //compensated, as the SUM variables of the report
+        Assert.assertEquals(Double.valueOf(1d), doubles.getSum(new Object[]{"a"}));
+
+        GroupTotals longs = new GroupTotals(Long.class);
+        longs.add(new Object[]{"a"}, Long.valueOf(1L << 53));
+        longs.add(new Object[]{"a"}, Long.valueOf(1L));
+        Assert.assertEquals(Long.valueOf((1L << 53) + 1), longs.getSum(new Object[]{"a"}));
+
+        GroupTotals floats = new GroupTotals(Float.class);
+        floats.add(new Object[]{"a"}, Float.valueOf(1.5f));
+        Assert.assertEquals(Float.valueOf(1.5f), floats.getSum(new Object[]{"a"}));
+        Assert.assertNull(floats.getSum(new Object[]{"b"}));
+    }
+
+    private static JRDesignField field(String name, Class clazz) {
+        JRDesignField field = new JRDesignField();
+        field.setName(name);
+        field.setValueClass(clazz);
+        return field;
+    }
+
+    private static Map<String, Object> row(String state, String branch, Double amount) {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put("state", state);
+        row.put("branch", branch);
+        row.put("amount", amount);
+        return row;
+    }
+
+    public void testCompute() throws Exception {
+        Collection<Map<String, ?>> rows = new ArrayList<Map<String, ?>>();
+        rows.add(row("Florida", "Main Street", 10d));
+        rows.add(row("Florida", "Main Street", 30d));
+        rows.add(row("Florida", "Railway Station", null));
+        rows.add(row("Florida", "Railway Station", 5d));
+        rows.add(row("New York", "Main Street", 7d));
+        JRMapCollectionDataSource dataSource = new JRMapCollectionDataSource(rows);
+
+        Map<String, JRField> fields = new HashMap<String, JRField>();
+        fields.put("state", field("state", String.class));
+        fields.put("branch", field("branch", String.class));
+        fields.put("amount", field("amount", Double.class));
+
+        PreAggregatedTotals byBranch = new PreAggregatedTotals(new String[]{"state", "branch"}, "amount");
+        PreAggregatedTotals byState = new PreAggregatedTotals(new String[]{"state"}, "amount");
+        List<PreAggregatedTotals> definitions = new ArrayList<PreAggregatedTotals>();
+        definitions.add(byBranch);
+        definitions.add(byState);
+        Map<PreAggregatedTotals, GroupTotals> totals = PreAggregatedTotals.compute(dataSource, fields, definitions);
+
+        Assert.assertEquals(40d, totals.get(byBranch).getTotal(new Object[]{"Florida", "Main Street"}), 0d);
+        Assert.assertEquals(5d, totals.get(byBranch).getTotal(new Object[]{"Florida", "Railway Station"}), 0d);
+        Assert.assertEquals(7d, totals.get(byBranch).getTotal(new Object[]{"New York", "Main Street"}), 0d);
+        Assert.assertEquals(45d, totals.get(byState).getTotal(new Object[]{"Florida"}), 0d);
+
+        //rewound for the fill
+        Assert.assertTrue(dataSource.next());
+        Assert.assertEquals(10d, dataSource.getFieldValue(fields.get("amount")));
+
+        try {
+            PreAggregatedTotals.compute(dataSource, fields, Collections.singletonList(new PreAggregatedTotals(new String[]{"city"}, "amount")));
+            fail("missing field accepted");
+        } catch (JRException e) {
+            //expected
+        }
+    }
+
+    /**
+     * Groups are keyed by value: the records of a group that appears twice in unsorted data are summed together,
+     * while the report starts the group again
+     */
+    public void testUnsortedData() throws Exception {
+        Collection<Map<String, ?>> rows = new ArrayList<Map<String, ?>>();
+        rows.add(row("Florida", "Main Street", 10d));
+        rows.add(row("New York", "Main Street", 7d));
+        rows.add(row("Florida", "Main Street", 30d));
+
+        Map<String, JRField> fields = new HashMap<String, JRField>();
+        fields.put("state", field("state", String.class));
+        fields.put("amount", field("amount", Double.class));
+
+        PreAggregatedTotals byState = new PreAggregatedTotals(new String[]{"state"}, "amount");
+        GroupTotals totals = PreAggregatedTotals.compute(new JRMapCollectionDataSource(rows), fields, Collections.singletonList(byState)).get(byState);
+
+        Assert.assertEquals(2, totals.size());
+        Assert.assertEquals(40d, totals.getTotal(new Object[]{"Florida"}), 0d);
+    }
+
+    private DynamicReport buildReport(boolean preAggregate) throws Exception {
+        return buildReport(preAggregate, false);
+    }
+
+    private DynamicReport buildReport(boolean preAggregate, boolean withId) throws Exception {
+        return buildReport(preAggregate, withId, new DynamicReportBuilder());
+    }
+
+    private DynamicReport buildReport(boolean preAggregate, boolean withId, DynamicReportBuilder drb) throws Exception {
+        AbstractColumn state = ColumnBuilder.getNew().setColumnProperty("state", String.class.getName())
+                .setTitle("State").setWidth(85).build();
+        AbstractColumn branch = ColumnBuilder.getNew().setColumnProperty("branch", String.class.getName())
+                .setTitle("Branch").setWidth(85).build();
+        AbstractColumn amount = ColumnBuilder.getNew().setColumnProperty("amount", Float.class.getName())
+                .setTitle("Amount").setWidth(90).setPattern("$ 0.00").build();
+        AbstractColumn percentage = ColumnBuilder.getNew().setPercentageColumn((PropertyColumn) amount)
+                .setTitle("Amount [%]").setWidth(90).setPattern("0.0000").build();
+
+        if (withId) {
+            drb.addColumn(ColumnBuilder.getNew().setColumnProperty("id", String.class.getName())
+                    .setTitle("Id").setWidth(60).build());
+        }
+        drb.addColumn(state);
+        drb.addColumn(branch);
+        drb.addColumn(amount);
+        drb.addColumn(percentage);
+
+        DJGroup stateGroup = new GroupBuilder().setCriteriaColumn((PropertyColumn) state)
+                .addFooterVariable(amount, DJCalculation.SUM)
+                .build();
+        DJGroup branchGroup = new GroupBuilder().setCriteriaColumn((PropertyColumn) branch)
+                .addFooterVariable(amount, DJCalculation.SUM)
+                .addFooterVariable(percentage, DJCalculation.SUM)
+                .build();
+        drb.addGroup(stateGroup);
+        drb.addGroup(branchGroup);
+
+        drb.setPreAggregatePercentages(preAggregate);
+        drb.setUseFullPageWidth(true);
+        return drb.build();
+    }
+
+    private static List<String> getTexts(JasperPrint jp) {
+        List<String> texts = new ArrayList<String>();
+        for (JRPrintPage page : jp.getPages()) {
+            for (JRPrintElement element : page.getElements()) {
+                if (element instanceof JRPrintText)
+                    texts.add(((JRPrintText) element).getFullText());
+            }
+        }
+        return texts;
+    }
+
+    public void testFill() throws Exception {
+        List data = TestRepositoryProducts.getDummyCollectionSorted1();
+
+        JasperPrint delayed = DynamicJasperHelper.generateJasperPrint(buildReport(false), new ClassicLayoutManager(), new JRBeanCollectionDataSource(data), new HashMap<String, Object>());
+        JasperPrint preAggregated = DynamicJasperHelper.generateJasperPrint(buildReport(true), new ClassicLayoutManager(), new JRBeanCollectionDataSource(data), new HashMap<String, Object>());
+
+        List<String> texts = getTexts(preAggregated);
+        Assert.assertEquals(getTexts(delayed), texts);
+        boolean percentages = false;
+        for (String text : texts)
+            percentages |= text != null && text.matches("0[.,]\\d{4}");
+        Assert.assertTrue(percentages);
+    }
+
+    /**
+     * JasperReports reads the first record before the report is initialized, the first pass must be done before
+     * the fill or the first record would be repeated
+     */
+    public void testEveryRecordIsFilledOnce() throws Exception {
+        String[][] values = {
+                {"Florida", "Main Street", "10"},
+                {"Florida", "Main Street", "30"},
+                {"Florida", "Railway Station", "5"},
+                {"New York", "Main Street", "7"}};
+        Collection<Map<String, ?>> rows = new ArrayList<Map<String, ?>>();
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < values.length; i++) {
+            Map<String, Object> row = new HashMap<String, Object>();
+            row.put("id", "row-" + i);
+            row.put("state", values[i][0]);
+            row.put("branch", values[i][1]);
+            row.put("amount", Float.valueOf(values[i][2]));
+            rows.add(row);
+            ids.add("row-" + i);
+        }
+
+        JasperPrint delayed = DynamicJasperHelper.generateJasperPrint(buildReport(false, true), new ClassicLayoutManager(), new JRMapCollectionDataSource(rows), new HashMap<String, Object>());
+        JasperPrint preAggregated = DynamicJasperHelper.generateJasperPrint(buildReport(true, true), new ClassicLayoutManager(), new JRMapCollectionDataSource(rows), new HashMap<String, Object>());
+
+        List<String> texts = getTexts(preAggregated);
+        List<String> filledIds = new ArrayList<String>();
+        for (String text : texts) {
+            if (text != null && text.startsWith("row-"))
+                filledIds.add(text);
+        }
+        Assert.assertEquals(ids, filledIds);
+        Assert.assertEquals(getTexts(delayed), texts);
+    }
+
+    public void testNotRewindable() throws Exception {
+        final JRBeanCollectionDataSource beans = new JRBeanCollectionDataSource(TestRepositoryProducts.getDummyCollectionSorted1());
+        JRDataSource forwardOnly = new JRDataSource() {
+            public boolean next() throws JRException {
+                return beans.next();
+            }
+
+            public Object getFieldValue(JRField jrField) throws JRException {
+                return beans.getFieldValue(jrField);
+            }
+        };
+
+        try {
+            DynamicJasperHelper.generateJasperPrint(buildReport(true), new ClassicLayoutManager(), forwardOnly, new HashMap<String, Object>());
+            fail("pre-aggregated with a datasource that can't be rewound");
+        } catch (Exception e) {
+            Throwable cause = e;
+            while (cause.getMessage() == null || !cause.getMessage().contains("rewindable")) {
+                cause = cause.getCause();
+                Assert.assertNotNull("unexpected exception: " + e, cause);
+            }
+        }
+    }
+
+    /**
+     * The detail cells read the pre-aggregated totals, only the footer variable of the percentage needs its group sum
+     */
+    public void testGroupSumsAreOnlyRegisteredForGroupVariables() throws Exception {
+        Set<String> delayed = DynamicJasperHelper.generateJasperDesign(buildReport(false), new ClassicLayoutManager(), new HashMap<String, Object>()).getVariablesMap().keySet();
+        Set<String> preAggregated = DynamicJasperHelper.generateJasperDesign(buildReport(true), new ClassicLayoutManager(), new HashMap<String, Object>()).getVariablesMap().keySet();
+
+        Assert.assertTrue(containsVariable(delayed, "variable-state_amount_percentage"));
+        Assert.assertTrue(containsVariable(delayed, "variable-branch_amount_percentage"));
+        Assert.assertFalse(containsVariable(preAggregated, "variable-state_amount_percentage"));
+        Assert.assertTrue(containsVariable(preAggregated, "variable-branch_amount_percentage"));
+    }
+
+    private static boolean containsVariable(Set<String> names, String suffix) {
+        for (String name : names) {
+            if (name.endsWith(suffix))
+                return true;
+        }
+        return false;
+    }
+
+    public void testSubreportsAreRejected() throws Exception {
+        FastReportBuilder drb = new FastReportBuilder();
+        drb.addColumn("State", "state", String.class.getName(), 30)
+                .addConcatenatedReport(buildReport(true), new ClassicLayoutManager(), "statistics",
+                        DJConstants.DATA_SOURCE_ORIGIN_PARAMETER, DJConstants.DATA_SOURCE_TYPE_COLLECTION);
+
+        try {
+            DynamicJasperHelper.generateJasperReport(drb.build(), new ClassicLayoutManager(), new HashMap<String, Object>());
+            fail("pre-aggregated subreport accepted");
+        } catch (JRException e) {
+            //expected
+        }
+    }
+
+    public void testQueriesAreRejected() throws Exception {
+        DynamicReportBuilder drb = new DynamicReportBuilder();
+        drb.setQuery("select * from products", DJConstants.QUERY_LANGUAGE_SQL);
+        try {
+            buildReport(true, false, drb);
+            fail("pre-aggregated report with a query accepted");
+        } catch (DJBuilderException e) {
+            //expected
+        }
+    }
+
+    public void testConnectionsAreRejected() throws Exception {
+        try {
+            DynamicJasperHelper.prepareReport(buildReport(true), new ClassicLayoutManager()).fill((Connection) null, new HashMap<String, Object>());
+            fail("pre-aggregated report filled from a connection");
+        } catch (JRException e) {
+            Assert.assertTrue(e.getMessage().contains("connection"));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.calculation;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.fill.AbstractValueProvider;
+import net.sf.jasperreports.engine.fill.JRCalculable;
+import net.sf.jasperreports.engine.fill.JRIncrementer;
+import net.sf.jasperreports.engine.type.CalculationEnum;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+
+public class PrimitiveIncrementerFactoryTest extends TestCase {
+
+    /**
+     * Holds the value of a variable the way the fill does: the incremented value and the initialized flag
+     */
+    private static class Variable implements InvocationHandler {
+        private final JRIncrementer incrementer;
+        private final JRCalculable calculable;
+        private Object value;
+        private boolean initialized = true;
+
+        Variable(JRIncrementer incrementer) {
+            this.incrementer = incrementer;
+            this.calculable = (JRCalculable) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{JRCalculable.class}, this);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if ("isInitialized".equals(method.getName()))
+                return initialized;
+            if ("getIncrementedValue".equals(method.getName()) || "getValue".equals(method.getName()))
+                return value;
+            if ("setInitialized".equals(method.getName()))
+                initialized = (Boolean) args[0];
+            return null;
+        }
+
+        Object add(Object expressionValue) throws Exception {
+            value = incrementer.increment(calculable, expressionValue, AbstractValueProvider.getCurrentValueProvider());
+            initialized = false;
+            return value;
+        }
+
+        Object estimate(Object expressionValue) throws Exception {
+            return incrementer.increment(calculable, expressionValue, AbstractValueProvider.getEstimatedValueProvider());
+        }
+
+        void reset() {
+            value = null;
+            initialized = true;
+        }
+    }
+
+    private static JRIncrementer sumIncrementer(String valueClassName) throws Exception {
+        Class<? extends PrimitiveIncrementerFactory> factoryClass = PrimitiveIncrementerFactory.getFactoryClass(valueClassName);
+        Assert.assertNotNull(factoryClass);
+        return factoryClass.newInstance().getIncrementer(CalculationEnum.SUM.getValue());
+    }
+
+    public void testSelection() {
+        Assert.assertEquals(PrimitiveIncrementerFactory.DoubleIncrementerFactory.class, PrimitiveIncrementerFactory.getFactoryClass(Double.class.getName()));
+        Assert.assertEquals(PrimitiveIncrementerFactory.BigDecimalIncrementerFactory.class, PrimitiveIncrementerFactory.getFactoryClass(BigDecimal.class.getName()));
+        Assert.assertNull(PrimitiveIncrementerFactory.getFactoryClass(Long.class.getName()));
+        Assert.assertNull(PrimitiveIncrementerFactory.getFactoryClass(String.class.getName()));
+        PrimitiveIncrementerFactory.setEnabled(false);
+        try {
+            Assert.assertNull(PrimitiveIncrementerFactory.getFactoryClass(Double.class.getName()));
+        } finally {
+            PrimitiveIncrementerFactory.setEnabled(true);
+        }
+    }
+
+    public void testCompensatedDoubleSum() throws Exception {
+        Variable variable = new Variable(sumIncrementer(Double.class.getName()));
+        double naive = 0d;
+        for (int i = 0; i < 1000000; i++) {
+            variable.add(0.1d);
+            naive += 0.1d;
+        }
+        Assert.assertEquals(100000d, ((Double) variable.value).doubleValue(), 1e-9);
+        //plain double arithmetic drifts
+        Assert.assertTrue(Math.abs(naive - 100000d) > 1e-9);
+
+        variable.reset();
+        variable.add(1e100);
+        variable.add(1.0);
+        variable.add(-1e100);
+        Assert.assertEquals(Double.valueOf(1.0), variable.value);
+    }
+
+    public void testNullsResetsAndEstimations() throws Exception {
+        Variable variable = new Variable(sumIncrementer(Double.class.getName()));
+        Assert.assertNull(variable.add(null));
+        variable.add(2.5d);
+        Assert.assertEquals(Double.valueOf(2.5d), variable.add(null));
+        Assert.assertEquals(Double.valueOf(3.5d), variable.estimate(1d));
+        Assert.assertEquals(Double.valueOf(5d), variable.add(2.5d));
+
+        variable.reset();
+        Assert.assertEquals(Double.valueOf(1d), variable.add(1d));
+
+        //the value changed behind the incrementer's back
+        variable.value = Double.valueOf(10d);
+        Assert.assertEquals(Double.valueOf(11d), variable.add(1d));
+    }
+
+    public void testFloatSum() throws Exception {
+        Variable variable = new Variable(sumIncrementer(Float.class.getName()));
+        for (int i = 0; i < 100000; i++)
+            variable.add(Float.valueOf(0.1f));
+        Assert.assertTrue(variable.value instanceof Float);
+        Assert.assertEquals(10000f, ((Float) variable.value).floatValue(), 0.01f);
+    }
+
+    public void testBigDecimalSum() throws Exception {
+        Variable variable = new Variable(sumIncrementer(BigDecimal.class.getName()));
+        variable.add(BigDecimal.valueOf(7));
+        variable.add(Long.valueOf(3));
+        Assert.assertEquals(new BigDecimal("10"), variable.value);
+
+        //a value with decimals switches to BigDecimal arithmetic, keeping the scale add() gives
+        variable.add(new BigDecimal("0.25"));
+        Assert.assertEquals(new BigDecimal("10.25"), variable.value);
+        variable.add(Integer.valueOf(1));
+        Assert.assertEquals(new BigDecimal("11.25"), variable.value);
+
+        variable.reset();
+        variable.add(Long.valueOf(Long.MAX_VALUE));
+        variable.add(Long.valueOf(Long.MAX_VALUE));
+        Assert.assertEquals(BigDecimal.valueOf(Long.MAX_VALUE).multiply(BigDecimal.valueOf(2)), variable.value);
+
+        variable.reset();
+        Assert.assertEquals(BigDecimal.valueOf(5), variable.add(BigDecimal.valueOf(5)));
+        Assert.assertEquals(BigDecimal.valueOf(6), variable.estimate(BigDecimal.ONE));
+        Assert.assertEquals(BigDecimal.valueOf(7), variable.add(BigDecimal.valueOf(2)));
+    }
+}
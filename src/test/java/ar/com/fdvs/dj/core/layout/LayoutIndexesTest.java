@@ -0,0 +1,102 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.layout;
+
+import ar.com.fdvs.dj.core.DynamicJasperHelper;
+import ar.com.fdvs.dj.domain.DJCalculation;
+import ar.com.fdvs.dj.domain.DynamicJasperDesign;
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.domain.builders.FastReportBuilder;
+import ar.com.fdvs.dj.domain.entities.DJGroup;
+import ar.com.fdvs.dj.domain.entities.columns.AbstractColumn;
+import ar.com.fdvs.dj.util.LayoutUtils;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.design.JRDesignGroup;
+import net.sf.jasperreports.engine.design.JRDesignSection;
+
+import java.util.HashMap;
+import java.util.List;
+
+public class LayoutIndexesTest extends TestCase {
+
+    private DynamicReport buildWideReport(int columns, int groups) throws Exception {
+        FastReportBuilder drb = new FastReportBuilder();
+        for (int i = 0; i < columns; i++) {
+            if (i < groups)
+                drb.addColumn("Group " + i, "group" + i, String.class.getName(), 30);
+            else
+                drb.addColumn("Column " + i, "column" + i, Long.class.getName(), 30);
+        }
+        drb.addGroups(groups);
+        for (int group = 1; group <= groups; group++) {
+            for (int column = groups + 1; column <= columns; column++)
+                drb.addFooterVariable(group, column, DJCalculation.SUM, null);
+        }
+        return drb.build();
+    }
+
+    public void testIndexesAgreeWithTheLists() throws Exception {
+        DynamicReport dr = buildWideReport(200, 4);
+        ClassicLayoutManager layoutManager = new ClassicLayoutManager();
+        DynamicJasperDesign design = DynamicJasperHelper.generateJasperDesign(dr, layoutManager, new HashMap<String, Object>());
+
+        List<DJGroup> groups = dr.getColumnsGroups();
+        for (int i = 0; i < groups.size(); i++) {
+            DJGroup group = groups.get(i);
+            JRDesignGroup jrGroup = layoutManager.getJRGroupFromDJGroup(group);
+            Assert.assertSame(layoutManager.realGroups.get(i), jrGroup);
+            Assert.assertSame(jrGroup, LayoutUtils.getJRDesignGroup(design, layoutManager, group));
+            Assert.assertSame(i == 0 ? jrGroup : layoutManager.realGroups.get(i - 1), layoutManager.getParent(jrGroup));
+            Assert.assertSame(group, layoutManager.getDJGroup(group.getColumnToGroupBy()));
+        }
+
+        List<AbstractColumn> columns = dr.getColumns();
+        for (int i = groups.size(); i < columns.size(); i++) {
+            Assert.assertNull(layoutManager.getDJGroup(columns.get(i)));
+            Assert.assertEquals(i, layoutManager.getColumnIndex(columns.get(i)));
+            Assert.assertEquals(layoutManager.getVisibleColumns().indexOf(columns.get(i)), layoutManager.getVisibleColumnIndex(columns.get(i)));
+        }
+    }
+
+    public void testGroupVariableKeys() throws Exception {
+        DynamicReport dr = buildWideReport(60, 3);
+        ClassicLayoutManager layoutManager = new ClassicLayoutManager();
+        DynamicJasperDesign design = DynamicJasperHelper.generateJasperDesign(dr, layoutManager, new HashMap<String, Object>());
+
+        //the keys of the group variables are made of the visible column and group positions
+        for (int group = 0; group < 3; group++) {
+            JRDesignGroup jrGroup = layoutManager.getJRGroupFromDJGroup(dr.getColumnsGroups().get(group));
+            String key = "variable_for_column_" + layoutManager.getVisibleColumns().indexOf(dr.getColumns().get(10))
+                    + "_in_group_" + design.getGroupsList().indexOf(jrGroup);
+            Assert.assertNotNull(LayoutUtils.getBandFromSection((JRDesignSection) jrGroup.getGroupFooterSection()).getElementByKey(key));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.metrics;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public class HistogramTest extends TestCase {
+
+    public void testEmpty() {
+        Histogram histogram = new Histogram();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMin());
+        Assert.assertEquals(0, histogram.getMax());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    public void testSmallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10; i++)
+            histogram.record(i);
+        Assert.assertEquals(10, histogram.getCount());
+        Assert.assertEquals(55, histogram.getSum());
+        Assert.assertEquals(1, histogram.getMin());
+        Assert.assertEquals(10, histogram.getMax());
+        Assert.assertEquals(5, histogram.getValueAtPercentile(50));
+        Assert.assertEquals(10, histogram.getValueAtPercentile(100));
+    }
+
+    public void testPercentilesWithinError() {
+        Histogram histogram = new Histogram();
+        Random random = new Random(42);
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1000 + random.nextInt(10000000);
+            histogram.record(values[i]);
+        }
+        java.util.Arrays.sort(values);
+        double[] percentiles = {50, 90, 99, 99.9};
+        for (double percentile : percentiles) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long actual = histogram.getValueAtPercentile(percentile);
+            Assert.assertTrue("p" + percentile + " expected " + expected + " but was " + actual,
+                    Math.abs(actual - expected) <= expected / Histogram.SUB_BUCKETS);
+        }
+    }
+
+    public void testBuckets() {
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 33, 1000, 123456789L, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = Histogram.bucketOf(value);
+            Assert.assertTrue(value + " above its bucket", value <= Histogram.upperBoundOf(bucket));
+            if (bucket > 0)
+                Assert.assertTrue(value + " below its bucket", value > Histogram.upperBoundOf(bucket - 1));
+        }
+    }
+
+    public void testNegativeAndReset() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        Assert.assertEquals(0, histogram.getMax());
+        Assert.assertEquals(1, histogram.getCount());
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.core.metrics;
+
+import ar.com.fdvs.dj.core.DJConstants;
+import ar.com.fdvs.dj.core.DynamicJasperHelper;
+import ar.com.fdvs.dj.core.PreparedDynamicReport;
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.domain.builders.FastReportBuilder;
+import ar.com.fdvs.dj.output.ReportWriter;
+import ar.com.fdvs.dj.output.ReportWriterFactory;
+import ar.com.fdvs.dj.test.TestRepositoryProducts;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.JRExporterParameter;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+
+import java.util.Collection;
+import java.util.HashMap;
+
+public class ReportMetricsTest extends TestCase {
+
+    private final HistogramReportMetricsListener listener = new HistogramReportMetricsListener();
+
+    protected void setUp() throws Exception {
+        ReportMetrics.setListener(listener);
+    }
+
+    protected void tearDown() throws Exception {
+        ReportMetrics.setListener(null);
+    }
+
+    private DynamicReport buildReport() {
+        FastReportBuilder drb = new FastReportBuilder();
+        drb.addColumn("State", "state", String.class.getName(), 30)
+                .addColumn("Branch", "branch", String.class.getName(), 30)
+                .addColumn("Item", "item", String.class.getName(), 50)
+                .setReportName("metrics report")
+                .setUseFullPageWidth(true);
+        return drb.build();
+    }
+
+    public void testPhasesAreMeasured() throws Exception {
+        Collection dummyCollection = TestRepositoryProducts.getDummyCollection();
+        JasperPrint jp = DynamicJasperHelper.generateJasperPrint(buildReport(), new ClassicLayoutManager(), new JRBeanCollectionDataSource(dummyCollection), new HashMap<String, Object>());
+
+        ReportWriter writer = ReportWriterFactory.getInstance().getReportWriter(jp, DJConstants.FORMAT_PDF, new HashMap<JRExporterParameter, Object>());
+        writer.write().close();
+
+        Assert.assertTrue(listener.getReportNames().contains("metrics report"));
+        ReportPhase[] phases = {ReportPhase.SUBREPORTS, ReportPhase.DESIGN, ReportPhase.REGISTER_ENTITIES, ReportPhase.LAYOUT, ReportPhase.COMPILE, ReportPhase.FILL, ReportPhase.EXPORT};
+        for (ReportPhase phase : phases) {
+            Histogram durations = listener.getPhaseDurations("metrics report", phase);
+            Assert.assertEquals(phase.name(), 1, durations.getCount());
+        }
+        Assert.assertEquals(dummyCollection.size(), listener.getRowsFilled("metrics report").getMax());
+        Assert.assertEquals(jp.getPages().size(), listener.getPagesFilled("metrics report").getMax());
+        Assert.assertEquals(0, listener.getSubreportsGenerated("metrics report").getMax());
+        Assert.assertTrue(listener.getExportedBytes("metrics report").getMax() > 0);
+    }
+
+    public void testPreparedReportFillsAreMeasured() throws Exception {
+        PreparedDynamicReport prepared = DynamicJasperHelper.prepareReport(buildReport(), new ClassicLayoutManager());
+        Assert.assertEquals("metrics report", prepared.getReportName());
+        for (int i = 0; i < 3; i++)
+            prepared.fill(TestRepositoryProducts.getDummyCollection());
+
+        Assert.assertEquals(3, listener.getPhaseDurations("metrics report", ReportPhase.FILL).getCount());
+        Assert.assertEquals(1, listener.getPhaseDurations("metrics report", ReportPhase.COMPILE).getCount());
+    }
+
+    public void testFailingListenerDoesNotBreakReports() throws Exception {
+        ReportMetrics.setListener(new HistogramReportMetricsListener() {
+            public void phaseCompleted(String reportName, ReportPhase phase, long durationNanos) {
+                throw new IllegalStateException("broken listener");
+            }
+        });
+        JasperPrint jp = DynamicJasperHelper.generateJasperPrint(buildReport(), new ClassicLayoutManager(), TestRepositoryProducts.getDummyCollection());
+        Assert.assertFalse(jp.getPages().isEmpty());
+    }
+}
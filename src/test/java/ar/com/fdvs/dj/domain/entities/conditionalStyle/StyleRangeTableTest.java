@@ -0,0 +1,183 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+package ar.com.fdvs.dj.domain.entities.conditionalStyle;
+
+import ar.com.fdvs.dj.core.DynamicJasperHelper;
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.domain.DynamicReport;
+import ar.com.fdvs.dj.domain.Style;
+import ar.com.fdvs.dj.domain.builders.ColumnBuilder;
+import ar.com.fdvs.dj.domain.builders.FastReportBuilder;
+import ar.com.fdvs.dj.domain.entities.columns.AbstractColumn;
+import ar.com.fdvs.dj.test.TestRepositoryProducts;
+import ar.com.fdvs.dj.test.domain.Product;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.JRPrintElement;
+import net.sf.jasperreports.engine.JRPrintPage;
+import net.sf.jasperreports.engine.JRPrintText;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class StyleRangeTableTest extends TestCase {
+
+    private static Style textColor(Color color) {
+        Style style = new Style();
+        style.setTextColor(color);
+        return style;
+    }
+
+    private static StyleRangeTable createTable() {
+        //added out of order on purpose
+        return new StyleRangeTable()
+                .addRange(2000d, textColor(Color.YELLOW))
+                .addRange(0d, textColor(Color.RED))
+                .addRange(5000d, textColor(Color.GREEN));
+    }
+
+    public void testIndexOf() {
+        StyleRangeTable table = createTable();
+        Assert.assertEquals(3, table.size());
+        Assert.assertEquals(Color.RED, table.getStyle(0).getTextColor());
+
+        Assert.assertEquals(-1, table.indexOf(null));
+        Assert.assertEquals(-1, table.indexOf("1000"));
+        Assert.assertEquals(-1, table.indexOf(Double.NaN));
+        Assert.assertEquals(-1, table.indexOf(-0.5d));
+        Assert.assertEquals(0, table.indexOf(0));
+        Assert.assertEquals(0, table.indexOf(1999.99f));
+        Assert.assertEquals(1, table.indexOf(2000L));
+        Assert.assertEquals(1, table.indexOf(4999));
+        Assert.assertEquals(2, table.indexOf(5000));
+        Assert.assertEquals(2, table.indexOf(Double.MAX_VALUE));
+    }
+
+    public void testDuplicatedBound() {
+        try {
+            createTable().addRange(2000d, new Style());
+            fail("duplicated bound accepted");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+
+    public void testConditions() {
+        List<ConditionalStyle> conditionalStyles = createTable().getConditionalStyles();
+        Assert.assertEquals(3, conditionalStyles.size());
+
+        RangeTableCondition yellow = (RangeTableCondition) conditionalStyles.get(1).getCondition();
+        Assert.assertEquals(Color.YELLOW, conditionalStyles.get(1).getStyle().getTextColor());
+        Assert.assertNull(yellow.evaluate(null, null, null, null));
+        Assert.assertEquals(Boolean.TRUE, yellow.evaluate(null, null, null, 3000L));
+        Assert.assertEquals(Boolean.FALSE, yellow.evaluate(null, null, null, 5000L));
+        Assert.assertNull(yellow.getInlineText("$F{quantity}"));
+    }
+
+    public void testInlineStatusLights() {
+        Double[][] bounds = {{1000d, null}, {1000d, 3000d}, {null, 3000d}};
+        Object[] values = {null, 0, 999.9d, 1000L, 2999.9f, 3000, 10000L};
+        for (Double[] bound : bounds) {
+            StatusLightCondition condition = new StatusLightCondition(bound[0], bound[1]);
+            Assert.assertTrue(condition.getInlineText("$F{quantity}").startsWith(InlineConditions.class.getName()));
+            Assert.assertTrue(condition.getInlineText("$F{quantity}").contains("($F{quantity}, "));
+            for (Object value : values) {
+                Boolean inline;
+                if (bound[1] == null)
+                    inline = InlineConditions.lessThan(value, bound[0]);
+                else if (bound[0] == null)
+                    inline = InlineConditions.atLeast(value, bound[1]);
+                else
+                    inline = InlineConditions.between(value, bound[0], bound[1]);
+                Assert.assertEquals(condition.evaluate(null, null, null, value), inline);
+            }
+        }
+
+        //subclasses may override evaluate, they are invoked as before
+        StatusLightCondition subclass = new StatusLightCondition(1000d, null) {
+            public Object evaluate(Map fields, Map variables, Map parameters) {
+                return Boolean.TRUE;
+            }
+        };
+        Assert.assertNull(subclass.getInlineText("$F{quantity}"));
+        Assert.assertNull(new StatusLightCondition(Double.NEGATIVE_INFINITY, null).getInlineText("$F{quantity}"));
+    }
+
+    private Map<String, Color> fill(Collection<ConditionalStyle> conditionalStyles) throws Exception {
+        AbstractColumn quantity = ColumnBuilder.getNew()
+                .setColumnProperty("quantity", Long.class.getName())
+                .setTitle("Quantity").setWidth(80)
+                .addConditionalStyles(conditionalStyles)
+                .build();
+
+        FastReportBuilder drb = new FastReportBuilder();
+        drb.addColumn(quantity);
+        drb.setUseFullPageWidth(true);
+        DynamicReport dr = drb.build();
+
+        List data = TestRepositoryProducts.getDummyCollectionSorted1();
+        JasperPrint jp = DynamicJasperHelper.generateJasperPrint(dr, new ClassicLayoutManager(), new JRBeanCollectionDataSource(data), new HashMap<String, Object>());
+
+        Set<String> quantities = new HashSet<String>();
+        for (Object product : data)
+            quantities.add(String.valueOf(((Product) product).getQuantity()));
+
+        Map<String, Color> colors = new HashMap<String, Color>();
+        for (JRPrintPage page : jp.getPages()) {
+            for (JRPrintElement element : page.getElements()) {
+                if (element instanceof JRPrintText && quantities.contains(((JRPrintText) element).getFullText()))
+                    colors.put(((JRPrintText) element).getFullText(), element.getForecolor());
+            }
+        }
+        return colors;
+    }
+
+    public void testFill() throws Exception {
+        StyleRangeTable table = createTable();
+        Map<String, Color> rangeColors = fill(table.getConditionalStyles());
+        Assert.assertFalse(rangeColors.isEmpty());
+        for (Map.Entry<String, Color> entry : rangeColors.entrySet())
+            Assert.assertEquals(entry.getKey(), table.getStyle(table.indexOf(Long.valueOf(entry.getKey()))).getTextColor(), entry.getValue());
+
+        //the same ranges with status lights, inlined
+        List<ConditionalStyle> statusLights = new ArrayList<ConditionalStyle>();
+        statusLights.add(new ConditionalStyle(new StatusLightCondition(2000d, null), textColor(Color.RED)));
+        statusLights.add(new ConditionalStyle(new StatusLightCondition(2000d, 5000d), textColor(Color.YELLOW)));
+        statusLights.add(new ConditionalStyle(new StatusLightCondition(null, 5000d), textColor(Color.GREEN)));
+        Assert.assertEquals(rangeColors, fill(statusLights));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.output;
+
+import ar.com.fdvs.dj.core.DJConstants;
+import ar.com.fdvs.dj.core.DynamicJasperHelper;
+import ar.com.fdvs.dj.core.layout.ClassicLayoutManager;
+import ar.com.fdvs.dj.test.FastReportTest;
+import ar.com.fdvs.dj.test.TestRepositoryProducts;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.JRExporterParameter;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class StreamingReportWriterTest extends TestCase {
+
+    public void testPooledStream() throws Exception {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        PooledBufferedOutputStream stream = new PooledBufferedOutputStream(target);
+        byte[] expected = new byte[BufferPool.BUFFER_SIZE * 3 + 17];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = (byte) i;
+        }
+        stream.write(expected, 0, 10);
+        for (int i = 10; i < 1000; i++) {
+            stream.write(expected[i]);
+        }
+        stream.write(expected, 1000, BufferPool.BUFFER_SIZE);
+        stream.write(expected, 1000 + BufferPool.BUFFER_SIZE, expected.length - 1000 - BufferPool.BUFFER_SIZE);
+        stream.close();
+        stream.close();
+
+        Assert.assertTrue(Arrays.equals(expected, target.toByteArray()));
+    }
+
+    public void testStreamingExport() throws Exception {
+        JasperPrint jp = DynamicJasperHelper.generateJasperPrint(new FastReportTest().buildReport(), new ClassicLayoutManager(),
+                new JRBeanCollectionDataSource(TestRepositoryProducts.getDummyCollection()));
+
+        ReportWriter writer = ReportWriterFactory.buildStreaming().getReportWriter(jp, DJConstants.FORMAT_CSV, new HashMap<JRExporterParameter, Object>());
+        Assert.assertTrue(writer instanceof StreamingReportWriter);
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        ((StreamingReportWriter) writer).writeTo(streamed);
+        Assert.assertTrue(streamed.size() > 0);
+
+        writer = ReportWriterFactory.buildStreaming().getReportWriter(jp, DJConstants.FORMAT_CSV, new HashMap<JRExporterParameter, Object>());
+        InputStream input = writer.write();
+        ByteArrayOutputStream spilled = new ByteArrayOutputStream();
+        ReportWriter.copyStreams(input, spilled);
+        Assert.assertTrue(Arrays.equals(streamed.toByteArray(), spilled.toByteArray()));
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.util;
+
+import ar.com.fdvs.dj.core.DJConstants;
+import ar.com.fdvs.dj.domain.DJDataSource;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.design.JRDesignField;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BeanAccessorDataSourceTest extends TestCase {
+
+    public static class Address {
+        private final String city;
+
+        public Address(String city) {
+            this.city = city;
+        }
+
+        public String getCity() {
+            return city;
+        }
+    }
+
+    public static class ForeignAddress extends Address {
+        public ForeignAddress(String city) {
+            super(city);
+        }
+
+        public String getCity() {
+            return super.getCity() + " (abroad)";
+        }
+    }
+
+    public static class Customer {
+        private final String name;
+        private final Address address;
+
+        public Customer(String name, Address address) {
+            this.name = name;
+            this.address = address;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Address getAddress() {
+            return address;
+        }
+    }
+
+    public static class Order {
+        private final int number;
+        private final Customer customer;
+
+        public Order(int number, Customer customer) {
+            this.number = number;
+            this.customer = customer;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public Customer getCustomer() {
+            return customer;
+        }
+    }
+
+    public static class Broken {
+        private final Object value = "not a number";
+
+        public Integer getNumber() {
+            return (Integer) value;
+        }
+    }
+
+    private static JRDesignField field(String name, String description) {
+        JRDesignField field = new JRDesignField();
+        field.setName(name);
+        field.setDescription(description);
+        return field;
+    }
+
+    private static List<Object> readAll(BeanAccessorDataSource ds, JRField field) throws JRException {
+        List<Object> values = new ArrayList<Object>();
+        while (ds.next())
+            values.add(ds.getFieldValue(field));
+        return values;
+    }
+
+    public void testNestedProperties() throws JRException {
+        List<Order> orders = new ArrayList<Order>();
+        orders.add(new Order(1, new Customer("Ann", new Address("Rosario"))));
+        orders.add(new Order(2, new Customer("Bob", new ForeignAddress("Porto"))));
+        orders.add(new Order(3, new Customer("Cid", null)));
+        orders.add(new Order(4, null));
+        orders.add(new Order(5, new Customer("Dan", new Address("Salta"))));
+
+        JRDesignField city = field("city", "customer.address.city");
+        JRDesignField number = field("number", null);
+        BeanAccessorDataSource ds = new BeanAccessorDataSource(orders, new JRField[]{city, number});
+        Assert.assertEquals(2, ds.getBoundFieldCount());
+
+        List<Object> cities = readAll(ds, city);
+        Assert.assertEquals("Rosario", cities.get(0));
+        Assert.assertEquals("Porto (abroad)", cities.get(1));
+        Assert.assertNull(cities.get(2));
+        Assert.assertNull(cities.get(3));
+        Assert.assertEquals("Salta", cities.get(4));
+
+        ds.moveFirst();
+        Assert.assertTrue(ds.next());
+        Assert.assertEquals(Integer.valueOf(1), ds.getFieldValue(number));
+    }
+
+    /**
+     * The fill passes its own field instances, the ones bound in advance are matched by name
+     */
+    public void testFieldsBoundInAdvanceAreMatchedByName() throws JRException {
+        List<Order> orders = new ArrayList<Order>();
+        orders.add(new Order(1, new Customer("Ann", new Address("Rosario"))));
+        orders.add(new Order(2, new Customer("Bob", new Address("Porto"))));
+
+        BeanAccessorDataSource ds = new BeanAccessorDataSource(orders, new JRField[]{field("city", "customer.address.city"), field("number", null)});
+        //the description is not looked at again
+        JRDesignField city = field("city", null);
+        JRDesignField number = field("number", null);
+
+        Assert.assertTrue(ds.next());
+        Assert.assertEquals("Rosario", ds.getFieldValue(city));
+        Assert.assertEquals(Integer.valueOf(1), ds.getFieldValue(number));
+        Assert.assertTrue(ds.next());
+        Assert.assertEquals("Porto", ds.getFieldValue(city));
+        Assert.assertEquals(Integer.valueOf(2), ds.getFieldValue(number));
+        //out of the fill order
+        Assert.assertEquals(Integer.valueOf(2), ds.getFieldValue(number));
+        Assert.assertEquals(2, ds.getBoundFieldCount());
+    }
+
+    public void testFieldsBoundOnFirstUse() throws JRException {
+        List<Object> rows = new ArrayList<Object>();
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("name", "from map");
+        rows.add(map);
+        rows.add(new Customer("from bean", null));
+
+        BeanAccessorDataSource ds = new BeanAccessorDataSource(rows);
+        Assert.assertEquals(0, ds.getBoundFieldCount());
+        JRDesignField name = field("name", null);
+        //a different instance for the same property shares the reader
+        JRDesignField sameName = field("name", "");
+        JRDesignField self = field("self", "_THIS");
+
+        Assert.assertTrue(ds.next());
+        Assert.assertEquals("from map", ds.getFieldValue(name));
+        Assert.assertSame(map, ds.getFieldValue(self));
+        Assert.assertTrue(ds.next());
+        Assert.assertEquals("from bean", ds.getFieldValue(sameName));
+        Assert.assertFalse(ds.next());
+        Assert.assertEquals(2, ds.getBoundFieldCount());
+    }
+
+    public void testNullCollection() throws JRException {
+        BeanAccessorDataSource ds = new BeanAccessorDataSource(null);
+        Assert.assertFalse(ds.next());
+        ds.moveFirst();
+        Assert.assertFalse(ds.next());
+    }
+
+    public void testNestedAccessorMatchesPropertyUtilsContract() throws Exception {
+        Order order = new Order(1, new Customer("Ann", null));
+        Assert.assertEquals("Ann", PropertyAccessor.getProperty(order, "customer.name"));
+        try {
+            PropertyAccessor.getProperty(order, "customer.address.city");
+            fail("a null in the middle of the path should throw");
+        } catch (org.apache.commons.beanutils.NestedNullException e) {
+            Assert.assertTrue(e.getMessage().indexOf("customer.address") >= 0);
+        }
+    }
+
+    public void testGetterExceptionsAreNotMissingProperties() throws Exception {
+        try {
+            PropertyAccessor.getProperty(new Broken(), "number");
+            fail("the getter throws");
+        } catch (InvocationTargetException e) {
+            Assert.assertTrue(e.getCause() instanceof ClassCastException);
+        }
+        try {
+            PropertyAccessor.getAccessor(Customer.class, "name").getValue(new Address("Rosario"));
+            fail("a bean of another class has no such property");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().indexOf("has no property name") >= 0);
+        }
+    }
+
+    public void testSubreportsUseBeanCollectionDataSourceUnlessRequested() {
+        DJDataSource ds = new DJDataSource("items", DJConstants.DATA_SOURCE_ORIGIN_FIELD, DJConstants.DATA_SOURCE_TYPE_COLLECTION);
+        Assert.assertTrue(ExpressionUtils.getDataSourceExpression(ds).getText().contains("JRBeanCollectionDataSource"));
+        Assert.assertTrue(ExpressionUtils.getDataSourceExpression(ds, true).getText().contains(BeanAccessorDataSource.class.getName()));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.util;
+
+import ar.com.fdvs.dj.test.TestRepositoryProducts;
+import ar.com.fdvs.dj.test.domain.Product;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.design.JRDesignField;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class SortUtilsTest extends TestCase {
+
+    public void testSameOrderAsComparator() {
+        Collection<Product> products = TestRepositoryProducts.getDummyCollection();
+        String[] properties = {"state", "branch", "quantity"};
+
+        List<Product> sorted = SortUtils.sortCollection(products, properties);
+
+        List<SortInfo> info = new ArrayList<SortInfo>();
+        for (String property : properties) {
+            info.add(new SortInfo(property, true));
+        }
+        List<Product> expected = new ArrayList<Product>(products);
+        Collections.sort(expected, new MultiPropertyComparator<Product>(info));
+
+        Assert.assertEquals(expected.size(), sorted.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertSame(expected.get(i), sorted.get(i));
+        }
+    }
+
+    public void testMapsAndUnreadableProperties() {
+        List<Object> rows = new ArrayList<Object>();
+        for (int i = 5; i > 0; i--) {
+            Map<String, Object> row = new HashMap<String, Object>();
+            row.put("value", i);
+            rows.add(row);
+        }
+
+        List<Object> sorted = SortUtils.sortCollection(rows, new String[]{"value"});
+        for (int i = 0; i < sorted.size(); i++) {
+            Assert.assertEquals(i + 1, ((Map) sorted.get(i)).get("value"));
+        }
+
+        //unknown properties leave the original order
+        List<Product> products = new ArrayList<Product>(TestRepositoryProducts.getDummyCollection());
+        List<Product> unsorted = SortUtils.sortCollection(products, new String[]{"doesNotExist"});
+        Assert.assertEquals(products, unsorted);
+    }
+
+    public void testParallelSort() {
+        List<Map<String, Object>> rows = randomRows(20000);
+        int threshold = SortUtils.getParallelThreshold();
+        try {
+            SortUtils.setParallelThreshold(Integer.MAX_VALUE);
+            List<Map<String, Object>> sequential = SortUtils.sortCollection(rows, new String[]{"group", "value"});
+            SortUtils.setParallelThreshold(1000);
+            List<Map<String, Object>> parallel = SortUtils.sortCollection(rows, new String[]{"group", "value"});
+            Assert.assertEquals(sequential, parallel);
+        } finally {
+            SortUtils.setParallelThreshold(threshold);
+        }
+    }
+
+    public void testExternalMergeSort() throws Exception {
+        List<Map<String, Object>> rows = randomRows(10000);
+        String[] properties = {"group", "value"};
+        List<Map<String, Object>> expected = SortUtils.sortCollection(rows, properties);
+
+        //100 runs, more than can be merged at once
+        ExternalMergeSortDataSource<Map<String, Object>> ds = SortUtils.sortToDataSource(rows.iterator(), properties, 100);
+        JRDesignField field = new JRDesignField();
+        field.setName("id");
+        field.setValueClass(Integer.class);
+
+        int i = 0;
+        try {
+            while (ds.next()) {
+                Assert.assertEquals(expected.get(i++).get("id"), ds.getFieldValue(field));
+            }
+        } finally {
+            ds.close();
+        }
+        Assert.assertEquals(expected.size(), i);
+        Assert.assertTrue(ds.getSpilledRunCount() > ExternalMergeSortDataSource.MAX_MERGE_WIDTH);
+
+        //everything fits in memory, nothing is written to disk
+        ds = SortUtils.sortToDataSource(rows.iterator(), properties, rows.size());
+        i = 0;
+        while (ds.next()) {
+            Assert.assertEquals(expected.get(i++).get("id"), ds.getFieldValue(field));
+        }
+        Assert.assertEquals(0, ds.getSpilledRunCount());
+    }
+
+    private static List<Map<String, Object>> randomRows(int count) {
+        Random random = new Random(17);
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < count; i++) {
+            HashMap<String, Object> row = new HashMap<String, Object>();
+            row.put("id", i);
+            row.put("group", "group " + random.nextInt(20));
+            row.put("value", random.nextInt(100));
+            rows.add(row);
+        }
+        return rows;
+    }
+}
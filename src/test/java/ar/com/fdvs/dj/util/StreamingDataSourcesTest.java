@@ -0,0 +1,182 @@
+/*
+ * DynamicJasper: A library for creating reports dynamically by specifying
+ * columns, groups, styles, etc. at runtime. It also saves a lot of development
+ * time in many cases! (http://sourceforge.net/projects/dynamicjasper)
+ *
+ * Copyright (C) 2008  FDV Solutions (http://www.fdvsolutions.com)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ *
+ * License as published by the Free Software Foundation; either
+ *
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ *
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *
+ */
+
+package ar.com.fdvs.dj.util;
+
+import ar.com.fdvs.dj.test.TestRepositoryProducts;
+import ar.com.fdvs.dj.test.domain.Product;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.design.JRDesignField;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+public class StreamingDataSourcesTest extends TestCase {
+
+    private static JRDesignField field(String name) {
+        JRDesignField field = new JRDesignField();
+        field.setName(name);
+        return field;
+    }
+
+    public void testIteratorIsReadLazily() throws JRException {
+        final List<Product> products = new ArrayList<Product>(TestRepositoryProducts.getDummyCollection());
+        final AtomicLong read = new AtomicLong();
+        Iterator<Product> iterator = new Iterator<Product>() {
+            private int i = 0;
+            public boolean hasNext() {
+                return i < products.size();
+            }
+            public Product next() {
+                read.incrementAndGet();
+                return products.get(i++);
+            }
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        IteratorDataSource<Product> ds = new IteratorDataSource<Product>(iterator);
+        JRDesignField state = field("state");
+        Assert.assertEquals(0, read.get());
+        for (int i = 0; i < products.size(); i++) {
+            Assert.assertTrue(ds.next());
+            Assert.assertEquals(i + 1, read.get());
+            Assert.assertEquals(products.get(i).getState(), ds.getFieldValue(state));
+        }
+        Assert.assertFalse(ds.next());
+        Assert.assertFalse(ds.next());
+        Assert.assertEquals(products.size(), ds.getRowCount());
+    }
+
+    public void testStreamIsClosed() throws JRException {
+        final AtomicBoolean closed = new AtomicBoolean();
+        Stream<Product> stream = TestRepositoryProducts.getDummyCollection().stream().onClose(new Runnable() {
+            public void run() {
+                closed.set(true);
+            }
+        });
+        IteratorDataSource<Product> ds = IteratorDataSource.fromStream(stream);
+        int rows = 0;
+        while (ds.next())
+            rows++;
+        Assert.assertEquals(TestRepositoryProducts.getDummyCollection().size(), rows);
+        Assert.assertTrue(closed.get());
+    }
+
+    public void testPublisherWithBackpressure() throws Exception {
+        final int total = 1000;
+        final int prefetch = 16;
+        final AtomicLong requested = new AtomicLong();
+        final AtomicLong maxOutstanding = new AtomicLong();
+        final SubscriberDataSource<Integer> ds = new SubscriberDataSource<Integer>(prefetch);
+
+        //emits synchronously from request(), the way most publishers do when they have the data at hand
+        ds.onSubscribe(new SubscriberDataSource.Subscription() {
+            private int emitted = 0;
+            private boolean emitting;
+            public void request(long n) {
+                requested.addAndGet(n);
+                maxOutstanding.set(Math.max(maxOutstanding.get(), requested.get() - emitted));
+                if (emitting)
+                    return;
+                emitting = true;
+                while (emitted < requested.get() && emitted < total)
+                    ds.onNext(Integer.valueOf(emitted++));
+                if (emitted == total)
+                    ds.onComplete();
+                emitting = false;
+            }
+            public void cancel() {
+            }
+        });
+
+        JRDesignField self = new JRDesignField();
+        self.setName("value");
+        self.setDescription("_THIS");
+        int expected = 0;
+        while (ds.next()) {
+            Assert.assertTrue(ds.getBufferedCount() <= prefetch);
+            Assert.assertEquals(Integer.valueOf(expected++), ds.getFieldValue(self));
+        }
+        Assert.assertEquals(total, expected);
+        Assert.assertTrue(maxOutstanding.get() <= prefetch);
+    }
+
+    public void testPushFromAnotherThread() throws Exception {
+        final int total = 500;
+        final SubscriberDataSource<Integer> ds = new SubscriberDataSource<Integer>(8);
+        Thread producer = new Thread(new Runnable() {
+            public void run() {
+                for (int i = 0; i < total; i++)
+                    ds.onNext(Integer.valueOf(i));
+                ds.onError(new IllegalStateException("source failed"));
+            }
+        });
+        producer.start();
+
+        int rows = 0;
+        try {
+            while (ds.next()) {
+                Assert.assertTrue(ds.getBufferedCount() <= 8);
+                rows++;
+            }
+            fail("the error should be thrown");
+        } catch (JRException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertEquals(total, rows);
+        producer.join();
+    }
+
+    public void testCloseCancelsSubscription() throws Exception {
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        SubscriberDataSource<Integer> ds = new SubscriberDataSource<Integer>(4);
+        ds.onSubscribe(new SubscriberDataSource.Subscription() {
+            public void request(long n) {
+            }
+            public void cancel() {
+                cancelled.set(true);
+            }
+        });
+        ds.onNext(Integer.valueOf(1));
+        Assert.assertTrue(ds.next());
+        ds.close();
+        Assert.assertTrue(cancelled.get());
+        Assert.assertFalse(ds.next());
+        ds.onNext(Integer.valueOf(2));
+        Assert.assertEquals(0, ds.getBufferedCount());
+    }
+}